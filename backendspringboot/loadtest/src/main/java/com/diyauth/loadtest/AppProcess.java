@@ -0,0 +1,93 @@
+package com.diyauth.loadtest;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.SecureRandom;
+import java.time.Duration;
+import java.util.Base64;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The backend jar running in a child JVM, configured through the same environment
+ * variables as the container image.
+ */
+public class AppProcess implements AutoCloseable {
+
+    private static final Duration STARTUP_TIMEOUT = Duration.ofMinutes(3);
+
+    private final Process process;
+    private final String baseUrl;
+
+    private AppProcess(Process process, String baseUrl) {
+        this.process = process;
+        this.baseUrl = baseUrl;
+    }
+
+    public static AppProcess start(Path jar, String mongoUri, int port, Path logFile)
+            throws IOException, InterruptedException {
+        if (!Files.isRegularFile(jar)) {
+            throw new IllegalStateException("Backend jar not found: " + jar + " (run mvn package in backendspringboot)");
+        }
+        String baseUrl = "http://localhost:" + port;
+        byte[] secret = new byte[64];
+        new SecureRandom().nextBytes(secret);
+
+        Path java = Path.of(System.getProperty("java.home"), "bin", "java");
+        ProcessBuilder builder = new ProcessBuilder(java.toString(), "-jar", jar.toAbsolutePath().toString());
+        Map<String, String> env = builder.environment();
+        env.put("SERVER_PORT", String.valueOf(port));
+        env.put("MONGODB_URI", mongoUri);
+        env.put("JWT_SECRET", Base64.getEncoder().encodeToString(secret));
+        env.put("JWT_EXPIRATION_MS", "86400000");
+        env.put("GOOGLE_CLIENT_ID", "loadtest");
+        env.put("GOOGLE_CLIENT_SECRET", "loadtest");
+        env.put("APP_URL", baseUrl);
+        env.put("FRONTEND_URL", "http://localhost:3000");
+        env.put("BACKEND_URL", baseUrl);
+        builder.redirectErrorStream(true);
+        builder.redirectOutput(logFile.toFile());
+
+        AppProcess app = new AppProcess(builder.start(), baseUrl);
+        app.awaitReady();
+        return app;
+    }
+
+    private void awaitReady() throws InterruptedException {
+        HttpClient client = HttpClient.newBuilder().connectTimeout(Duration.ofSeconds(1)).build();
+        HttpRequest probe = HttpRequest.newBuilder(URI.create(baseUrl + "/")).timeout(Duration.ofSeconds(2)).build();
+        long deadline = System.nanoTime() + STARTUP_TIMEOUT.toNanos();
+        while (System.nanoTime() < deadline) {
+            if (!process.isAlive()) {
+                throw new IllegalStateException("Backend exited during startup with code " + process.exitValue());
+            }
+            try {
+                if (client.send(probe, HttpResponse.BodyHandlers.discarding()).statusCode() == 200) {
+                    return;
+                }
+            } catch (IOException e) {
+                // not listening yet
+            }
+            Thread.sleep(200);
+        }
+        close();
+        throw new IllegalStateException("Backend did not become ready within " + STARTUP_TIMEOUT);
+    }
+
+    public String getBaseUrl() {
+        return baseUrl;
+    }
+
+    @Override
+    public void close() throws InterruptedException {
+        process.destroy();
+        if (!process.waitFor(30, TimeUnit.SECONDS)) {
+            process.destroyForcibly();
+        }
+    }
+}
@@ -0,0 +1,78 @@
+package com.diyauth.loadtest;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Thin async HTTP client for the three endpoints under test.
+ */
+public class AuthClient {
+
+    private static final Duration REQUEST_TIMEOUT = Duration.ofSeconds(30);
+
+    private final HttpClient client;
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final URI signupUri;
+    private final URI signinUri;
+    private final URI meUri;
+
+    public AuthClient(String baseUrl) {
+        this.client = HttpClient.newBuilder()
+                .version(HttpClient.Version.HTTP_1_1)
+                .connectTimeout(Duration.ofSeconds(5))
+                .build();
+        this.signupUri = URI.create(baseUrl + "/api/auth/signup");
+        this.signinUri = URI.create(baseUrl + "/api/auth/signin");
+        this.meUri = URI.create(baseUrl + "/api/auth/me");
+    }
+
+    public CompletableFuture<HttpResponse<String>> signup(String username, String password) {
+        String body = "{\"username\":\"" + username + "\",\"email\":\"" + username + "@loadtest.local\","
+                + "\"password\":\"" + password + "\"}";
+        return client.sendAsync(post(signupUri, body), HttpResponse.BodyHandlers.ofString());
+    }
+
+    public CompletableFuture<HttpResponse<String>> signin(String username, String password) {
+        String body = "{\"username\":\"" + username + "\",\"password\":\"" + password + "\"}";
+        return client.sendAsync(post(signinUri, body), HttpResponse.BodyHandlers.ofString());
+    }
+
+    public CompletableFuture<HttpResponse<String>> me(String token) {
+        HttpRequest request = HttpRequest.newBuilder(meUri)
+                .timeout(REQUEST_TIMEOUT)
+                .header("Authorization", "Bearer " + token)
+                .GET()
+                .build();
+        return client.sendAsync(request, HttpResponse.BodyHandlers.ofString());
+    }
+
+    /**
+     * Extracts the access token from a successful signin response.
+     */
+    public String accessToken(HttpResponse<String> response) throws IOException {
+        if (response.statusCode() != 200) {
+            throw new IOException("Signin failed with HTTP " + response.statusCode() + ": " + response.body());
+        }
+        JsonNode token = objectMapper.readTree(response.body()).get("accessToken");
+        if (token == null || !token.isTextual()) {
+            throw new IOException("Signin response has no accessToken: " + response.body());
+        }
+        return token.asText();
+    }
+
+    private static HttpRequest post(URI uri, String body) {
+        return HttpRequest.newBuilder(uri)
+                .timeout(REQUEST_TIMEOUT)
+                .header("Content-Type", "application/json")
+                .POST(HttpRequest.BodyPublishers.ofString(body))
+                .build();
+    }
+}
@@ -0,0 +1,106 @@
+package com.diyauth.loadtest;
+
+import com.mongodb.MongoException;
+import com.mongodb.client.MongoDatabase;
+import org.bson.Document;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Size figures of a collection (collStats) and of the WiredTiger cache (serverStatus) at one
+ * point in time. Values the server does not report, as with the in-memory stand-in, are -1.
+ */
+public class CollectionReport {
+
+    private final long count;
+    private final long dataBytes;
+    private final long storageBytes;
+    private final long averageDocumentBytes;
+    private final long totalIndexBytes;
+    private final Map<String, Long> indexBytes = new LinkedHashMap<>();
+    private final long cacheMaxBytes;
+    private final long cacheUsedBytes;
+    private final long pagesReadIntoCache;
+
+    private CollectionReport(Document collStats, Document cache) {
+        this.count = number(collStats, "count");
+        this.dataBytes = number(collStats, "size");
+        this.storageBytes = number(collStats, "storageSize");
+        this.averageDocumentBytes = number(collStats, "avgObjSize");
+        this.totalIndexBytes = number(collStats, "totalIndexSize");
+        Document indexSizes = collStats.get("indexSizes", Document.class);
+        if (indexSizes != null) {
+            indexSizes.forEach((name, bytes) -> indexBytes.put(name, ((Number) bytes).longValue()));
+        }
+        this.cacheMaxBytes = number(cache, "maximum bytes configured");
+        this.cacheUsedBytes = number(cache, "bytes currently in the cache");
+        this.pagesReadIntoCache = number(cache, "pages read into cache");
+    }
+
+    public static CollectionReport read(MongoDatabase database, String collection) {
+        return new CollectionReport(command(database, new Document("collStats", collection)), cache(database));
+    }
+
+    /**
+     * Pages WiredTiger has read from disk so far; -1 when not available.
+     */
+    public static long pagesReadIntoCache(MongoDatabase database) {
+        return number(cache(database), "pages read into cache");
+    }
+
+    private static Document cache(MongoDatabase database) {
+        Document wiredTiger = command(database, new Document("serverStatus", 1)).get("wiredTiger", Document.class);
+        Document cache = wiredTiger != null ? wiredTiger.get("cache", Document.class) : null;
+        return cache != null ? cache : new Document();
+    }
+
+    private static Document command(MongoDatabase database, Document command) {
+        try {
+            return database.runCommand(command);
+        } catch (MongoException ex) {
+            return new Document();
+        }
+    }
+
+    private static long number(Document document, String key) {
+        Object value = document.get(key);
+        return value instanceof Number number ? number.longValue() : -1;
+    }
+
+    public long getCount() {
+        return count;
+    }
+
+    public long getDataBytes() {
+        return dataBytes;
+    }
+
+    public long getStorageBytes() {
+        return storageBytes;
+    }
+
+    public long getAverageDocumentBytes() {
+        return averageDocumentBytes;
+    }
+
+    public long getTotalIndexBytes() {
+        return totalIndexBytes;
+    }
+
+    public Map<String, Long> getIndexBytes() {
+        return indexBytes;
+    }
+
+    public long getCacheMaxBytes() {
+        return cacheMaxBytes;
+    }
+
+    public long getCacheUsedBytes() {
+        return cacheUsedBytes;
+    }
+
+    public long getPagesReadIntoCache() {
+        return pagesReadIntoCache;
+    }
+}
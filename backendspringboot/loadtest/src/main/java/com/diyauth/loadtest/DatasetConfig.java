@@ -0,0 +1,175 @@
+package com.diyauth.loadtest;
+
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Command line settings of DatasetMain, given as {@code --name=value}.
+ */
+public class DatasetConfig {
+
+    private final Map<String, String> args;
+
+    private final String mongoUri;
+    private final String embeddedMongo;
+    private final List<Long> sizes;
+    private final long seed;
+    private final double oauth2Share;
+    private final boolean drop;
+    private final int loadThreads;
+    private final int batchSize;
+    private final int threads;
+    private final int warmupSeconds;
+    private final int durationSeconds;
+    private final Map<LookupBenchmark.Action, Integer> mix;
+    private final double zipfTheta;
+    private final Path csv;
+
+    private DatasetConfig(Map<String, String> args) {
+        this.args = args;
+        this.mongoUri = stringArg("mongo-uri", null);
+        this.embeddedMongo = stringArg("embedded-mongo", "mongod");
+        this.sizes = parseSizes(stringArg("sizes", "1000000,10000000,50000000"));
+        this.seed = Long.parseLong(stringArg("seed", "42"));
+        this.oauth2Share = doubleArg("oauth2-share", 0.3);
+        this.drop = Boolean.parseBoolean(stringArg("drop", "false"));
+        this.loadThreads = intArg("load-threads", Runtime.getRuntime().availableProcessors());
+        this.batchSize = intArg("batch-size", 1000);
+        this.threads = intArg("threads", 8);
+        this.warmupSeconds = intArg("warmup-seconds", 10);
+        this.durationSeconds = intArg("duration-seconds", 60);
+        this.mix = parseMix(stringArg("mix", "login=16,signup=3,oauth2=1"));
+        this.zipfTheta = doubleArg("zipf-theta", 0.99);
+        String csvPath = stringArg("csv", null);
+        this.csv = csvPath != null ? Path.of(csvPath) : null;
+
+        if (oauth2Share < 0 || oauth2Share > 1) {
+            throw new IllegalArgumentException("--oauth2-share must be between 0 and 1");
+        }
+        if (zipfTheta <= 0 || zipfTheta >= 1) {
+            throw new IllegalArgumentException("--zipf-theta must be between 0 and 1 (exclusive)");
+        }
+        if (loadThreads < 1 || batchSize < 1 || threads < 1 || durationSeconds < 1) {
+            throw new IllegalArgumentException("--load-threads, --batch-size, --threads and --duration-seconds must be positive");
+        }
+    }
+
+    public static DatasetConfig parse(String[] argv) {
+        Map<String, String> args = new HashMap<>();
+        for (String arg : argv) {
+            if (!arg.startsWith("--") || !arg.contains("=")) {
+                throw new IllegalArgumentException("Expected --name=value, got: " + arg);
+            }
+            int eq = arg.indexOf('=');
+            args.put(arg.substring(2, eq), arg.substring(eq + 1));
+        }
+        return new DatasetConfig(args);
+    }
+
+    private static List<Long> parseSizes(String spec) {
+        List<Long> sizes = new ArrayList<>();
+        long previous = 0;
+        for (String part : spec.split(",")) {
+            long size = Long.parseLong(part.trim().replace("_", ""));
+            if (size <= previous) {
+                throw new IllegalArgumentException("--sizes must be positive and increasing: " + spec);
+            }
+            sizes.add(size);
+            previous = size;
+        }
+        return sizes;
+    }
+
+    private static Map<LookupBenchmark.Action, Integer> parseMix(String spec) {
+        Map<LookupBenchmark.Action, Integer> mix = new LinkedHashMap<>();
+        for (String part : spec.split(",")) {
+            String[] kv = part.trim().split("=");
+            if (kv.length != 2) {
+                throw new IllegalArgumentException("Invalid --mix entry: " + part);
+            }
+            int weight = Integer.parseInt(kv[1].trim());
+            if (weight < 0) {
+                throw new IllegalArgumentException("Negative --mix weight: " + part);
+            }
+            mix.put(LookupBenchmark.Action.fromKey(kv[0].trim()), weight);
+        }
+        if (mix.values().stream().mapToInt(Integer::intValue).sum() == 0) {
+            throw new IllegalArgumentException("--mix needs at least one positive weight");
+        }
+        return mix;
+    }
+
+    private String stringArg(String name, String defaultValue) {
+        return args.getOrDefault(name, defaultValue);
+    }
+
+    private int intArg(String name, int defaultValue) {
+        String value = args.get(name);
+        return value != null ? Integer.parseInt(value) : defaultValue;
+    }
+
+    private double doubleArg(String name, double defaultValue) {
+        String value = args.get(name);
+        return value != null ? Double.parseDouble(value) : defaultValue;
+    }
+
+    public String getMongoUri() {
+        return mongoUri;
+    }
+
+    public String getEmbeddedMongo() {
+        return embeddedMongo;
+    }
+
+    public List<Long> getSizes() {
+        return sizes;
+    }
+
+    public long getSeed() {
+        return seed;
+    }
+
+    public double getOauth2Share() {
+        return oauth2Share;
+    }
+
+    public boolean isDrop() {
+        return drop;
+    }
+
+    public int getLoadThreads() {
+        return loadThreads;
+    }
+
+    public int getBatchSize() {
+        return batchSize;
+    }
+
+    public int getThreads() {
+        return threads;
+    }
+
+    public int getWarmupSeconds() {
+        return warmupSeconds;
+    }
+
+    public int getDurationSeconds() {
+        return durationSeconds;
+    }
+
+    public Map<LookupBenchmark.Action, Integer> getMix() {
+        return mix;
+    }
+
+    public double getZipfTheta() {
+        return zipfTheta;
+    }
+
+    public Path getCsv() {
+        return csv;
+    }
+}
@@ -0,0 +1,174 @@
+package com.diyauth.loadtest;
+
+import com.mongodb.MongoBulkWriteException;
+import com.mongodb.bulk.BulkWriteError;
+import com.mongodb.client.MongoCollection;
+import com.mongodb.client.MongoDatabase;
+import com.mongodb.client.model.IndexOptions;
+import com.mongodb.client.model.Indexes;
+import com.mongodb.client.model.InsertManyOptions;
+import com.mongodb.client.model.ReplaceOptions;
+import org.bson.Document;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Grows the users collection to a target size with UserDocuments, inserting unordered
+ * batches from several threads. The indexes are the ones UserIndexInitializer creates,
+ * built before loading so that the load pays the same index maintenance as real signups.
+ *
+ * How far the collection has been generated, and with which seed, is kept in a
+ * datasetMeta document, so a later run continues (1M, then 10M, then 50M) instead of
+ * starting over; a batch interrupted by a crash is retried and its duplicates skipped.
+ */
+public class DatasetLoader {
+
+    private static final Logger logger = LoggerFactory.getLogger(DatasetLoader.class);
+
+    public static final String USERS = "users";
+    private static final String META = "datasetMeta";
+    private static final int DUPLICATE_KEY = 11000;
+    private static final long PROGRESS_INTERVAL_NANOS = TimeUnit.SECONDS.toNanos(10);
+
+    private final MongoDatabase database;
+    private final MongoCollection<Document> users;
+    private final UserDocuments documents;
+    private final long seed;
+    private final int threads;
+    private final int batchSize;
+
+    private long generated;
+
+    public DatasetLoader(MongoDatabase database, UserDocuments documents, long seed, int threads, int batchSize) {
+        this.database = database;
+        this.users = database.getCollection(USERS);
+        this.documents = documents;
+        this.seed = seed;
+        this.threads = threads;
+        this.batchSize = batchSize;
+    }
+
+    /**
+     * Drops the collection when asked, checks that an existing one was generated with the
+     * same seed, and creates the indexes.
+     */
+    public void prepare(boolean drop) {
+        MongoCollection<Document> meta = database.getCollection(META);
+        if (drop) {
+            users.drop();
+            meta.drop();
+        }
+        Document state = meta.find(new Document("_id", USERS)).first();
+        if (state != null) {
+            long stateSeed = state.get("seed", Number.class).longValue();
+            if (stateSeed != seed) {
+                throw new IllegalArgumentException("The users collection was generated with seed " + stateSeed
+                        + "; rerun with --seed=" + stateSeed + " or --drop=true");
+            }
+            generated = state.get("generated", Number.class).longValue();
+        } else if (users.estimatedDocumentCount() > 0) {
+            throw new IllegalArgumentException("The users collection was not generated by this tool;"
+                    + " point --mongo-uri at another database or rerun with --drop=true");
+        }
+
+        // Keep in step with UserIndexInitializer
+        users.createIndex(Indexes.ascending("username"), new IndexOptions().unique(true).name("username_unique"));
+        users.createIndex(Indexes.ascending("email"), new IndexOptions().unique(true).sparse(true).name("email_unique"));
+        users.createIndex(Indexes.ascending("provider", "providerId"), new IndexOptions().name("provider_providerId"));
+        users.createIndex(Indexes.ascending("provider", "enabled", "_id"), new IndexOptions().name("provider_enabled_id"));
+        users.createIndex(Indexes.ascending("enabled", "_id"), new IndexOptions().name("enabled_id"));
+        users.createIndex(Indexes.ascending("updatedAt"), new IndexOptions().name("updatedAt"));
+    }
+
+    public long getGenerated() {
+        return generated;
+    }
+
+    /**
+     * Inserts users [generated, size); returns the insert rate in documents per second, or
+     * 0 when nothing had to be inserted.
+     */
+    public double growTo(long size) throws Exception {
+        if (size <= generated) {
+            return 0;
+        }
+        long from = generated;
+        AtomicLong next = new AtomicLong(from);
+        AtomicLong inserted = new AtomicLong();
+        logger.info("Generating users {} to {}", from, size);
+
+        long start = System.nanoTime();
+        ExecutorService pool = Executors.newFixedThreadPool(threads);
+        try {
+            List<Future<?>> workers = new ArrayList<>();
+            for (int i = 0; i < threads; i++) {
+                workers.add(pool.submit(() -> {
+                    List<Document> batch = new ArrayList<>(batchSize);
+                    for (long first = next.getAndAdd(batchSize); first < size; first = next.getAndAdd(batchSize)) {
+                        batch.clear();
+                        for (long index = first; index < Math.min(first + batchSize, size); index++) {
+                            batch.add(documents.user(index));
+                        }
+                        inserted.addAndGet(insert(batch));
+                    }
+                    return null;
+                }));
+            }
+            long lastReport = start;
+            for (Future<?> worker : workers) {
+                while (!isDone(worker)) {
+                    long now = System.nanoTime();
+                    if (now - lastReport >= PROGRESS_INTERVAL_NANOS) {
+                        logger.info("  {} / {} users, {} docs/s", from + inserted.get(), size,
+                                Math.round(inserted.get() / ((now - start) / 1e9)));
+                        lastReport = now;
+                    }
+                }
+            }
+        } finally {
+            pool.shutdownNow();
+        }
+        double seconds = (System.nanoTime() - start) / 1e9;
+
+        generated = size;
+        database.getCollection(META).replaceOne(new Document("_id", USERS),
+                new Document("_id", USERS).append("seed", seed).append("generated", size),
+                new ReplaceOptions().upsert(true));
+        double rate = (size - from) / seconds;
+        logger.info("Generated {} users in {} s ({} docs/s)", size - from, Math.round(seconds), Math.round(rate));
+        return rate;
+    }
+
+    private static boolean isDone(Future<?> worker) throws Exception {
+        try {
+            worker.get(1, TimeUnit.SECONDS);
+            return true;
+        } catch (TimeoutException ex) {
+            return false;
+        }
+    }
+
+    // Documents written; duplicates of an earlier, interrupted run are skipped
+    private int insert(List<Document> batch) {
+        try {
+            users.insertMany(batch, new InsertManyOptions().ordered(false));
+            return batch.size();
+        } catch (MongoBulkWriteException ex) {
+            for (BulkWriteError error : ex.getWriteErrors()) {
+                if (error.getCode() != DUPLICATE_KEY) {
+                    throw ex;
+                }
+            }
+            return ex.getWriteResult().getInsertedCount();
+        }
+    }
+}
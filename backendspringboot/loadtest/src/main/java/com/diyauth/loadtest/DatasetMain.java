@@ -0,0 +1,233 @@
+package com.diyauth.loadtest;
+
+import com.mongodb.ConnectionString;
+import com.mongodb.client.MongoClient;
+import com.mongodb.client.MongoClients;
+import com.mongodb.client.MongoDatabase;
+import org.HdrHistogram.Histogram;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Lookup scaling benchmark: how the user queries behave as the users collection grows.
+ *
+ * For each of {@code --sizes}, grows a users collection with synthetic documents
+ * (UserDocuments: local and Google users, skewed names and email domains) and runs
+ * LookupBenchmark against it, then reports latency per query next to the collection, index
+ * and cache sizes and an estimate of the working set. Growth is incremental and resumable,
+ * so 1M, 10M and 50M share one load. Use a local mongod ({@code --mongo-uri}) with the
+ * storage and cache size of the target; the embedded ones are for trying the tool out.
+ *
+ * <pre>
+ * cd loadtest &amp;&amp; mvn -q compile exec:java -Dexec.mainClass=com.diyauth.loadtest.DatasetMain \
+ *     -Dexec.args="--mongo-uri=mongodb://localhost:27017/diyauth-dataset --sizes=1000000,10000000,50000000 \
+ *     --threads=16 --duration-seconds=60 --csv=scaling.csv"
+ * </pre>
+ *
+ * Options: mongo-uri, embedded-mongo, sizes, seed, oauth2-share, drop, load-threads, batch-size,
+ * threads, warmup-seconds, duration-seconds, mix (login, signup, oauth2), zipf-theta, csv.
+ */
+public class DatasetMain {
+
+    private static final Logger logger = LoggerFactory.getLogger(DatasetMain.class);
+
+    private static final String DEFAULT_DATABASE = "diyauth-dataset";
+
+    public static void main(String[] argv) throws Exception {
+        DatasetConfig config;
+        try {
+            config = DatasetConfig.parse(argv);
+        } catch (IllegalArgumentException e) {
+            System.err.println(e.getMessage());
+            System.exit(2);
+            return;
+        }
+        EmbeddedMongo mongo = null;
+        try {
+            String mongoUri = config.getMongoUri();
+            if (mongoUri == null) {
+                logger.info("Starting embedded MongoDB ({})", config.getEmbeddedMongo());
+                mongo = EmbeddedMongo.start(config.getEmbeddedMongo());
+                mongoUri = mongo.uri(DEFAULT_DATABASE);
+            }
+            String databaseName = new ConnectionString(mongoUri).getDatabase();
+            try (MongoClient client = MongoClients.create(mongoUri)) {
+                run(config, client.getDatabase(databaseName != null ? databaseName : DEFAULT_DATABASE));
+            }
+        } catch (IllegalArgumentException e) {
+            System.err.println(e.getMessage());
+            System.exit(2);
+        } finally {
+            if (mongo != null) {
+                mongo.close();
+            }
+        }
+    }
+
+    private static void run(DatasetConfig config, MongoDatabase database) throws Exception {
+        UserDocuments documents = new UserDocuments(config.getSeed(), config.getOauth2Share());
+        DatasetLoader loader = new DatasetLoader(database, documents, config.getSeed(),
+                config.getLoadThreads(), config.getBatchSize());
+        loader.prepare(config.isDrop());
+        if (loader.getGenerated() > 0) {
+            logger.info("Continuing from {} generated users", loader.getGenerated());
+        }
+
+        Map<LookupBenchmark.Step, Map<Long, Double>> p99BySize = new EnumMap<>(LookupBenchmark.Step.class);
+        for (long size : config.getSizes()) {
+            double loadRate = loader.growTo(size);
+            CollectionReport collection = CollectionReport.read(database, DatasetLoader.USERS);
+
+            LookupBenchmark benchmark = new LookupBenchmark(database.getCollection(DatasetLoader.USERS), documents,
+                    size, config.getZipfTheta(), config.getMix(), config.getThreads());
+            long pagesBefore = CollectionReport.pagesReadIntoCache(database);
+            long elapsedNanos;
+            try {
+                elapsedNanos = benchmark.run(config.getWarmupSeconds(), config.getDurationSeconds());
+            } finally {
+                benchmark.removeInsertedUsers();
+            }
+            long pagesAfter = CollectionReport.pagesReadIntoCache(database);
+
+            List<Row> rows = rows(benchmark, elapsedNanos);
+            long operations = rows.stream().mapToLong(row -> row.count).sum();
+            double pagesPerOperation = pagesBefore >= 0 && pagesAfter >= 0 && operations > 0
+                    ? (double) (pagesAfter - pagesBefore) / operations : -1;
+            long workingSet = workingSet(collection, benchmark.getTouchedUsers());
+
+            report(size, loadRate, collection, benchmark.getTouchedUsers(), workingSet, pagesPerOperation, rows);
+            for (Row row : rows) {
+                p99BySize.computeIfAbsent(row.step, step -> new LinkedHashMap<>()).put(size, row.p99Ms);
+            }
+            if (config.getCsv() != null) {
+                appendCsv(config, size, collection, workingSet, pagesPerOperation, rows);
+            }
+        }
+        summary(config.getSizes(), p99BySize);
+    }
+
+    private record Row(LookupBenchmark.Step step, long count, long errors, double opsPerSecond,
+                       double p50Ms, double p90Ms, double p99Ms, double p999Ms, double maxMs) {
+    }
+
+    private static List<Row> rows(LookupBenchmark benchmark, long elapsedNanos) {
+        List<Row> rows = new ArrayList<>();
+        for (LookupBenchmark.Step step : LookupBenchmark.Step.values()) {
+            Histogram h = benchmark.getLatency(step);
+            if (h.getTotalCount() == 0) {
+                continue;
+            }
+            rows.add(new Row(step, h.getTotalCount(), benchmark.getErrors(step), h.getTotalCount() / (elapsedNanos / 1e9),
+                    ms(h.getValueAtPercentile(50)), ms(h.getValueAtPercentile(90)), ms(h.getValueAtPercentile(99)),
+                    ms(h.getValueAtPercentile(99.9)), ms(h.getMaxValue())));
+        }
+        return rows;
+    }
+
+    /**
+     * What random lookups keep hot: the documents read during the measurement plus the
+     * username and email indexes they seek through (an upper bound for the index part).
+     */
+    private static long workingSet(CollectionReport collection, long touchedUsers) {
+        Long username = collection.getIndexBytes().get("username_unique");
+        Long email = collection.getIndexBytes().get("email_unique");
+        if (username == null || email == null || collection.getAverageDocumentBytes() < 0) {
+            return -1;
+        }
+        return touchedUsers * collection.getAverageDocumentBytes() + username + email;
+    }
+
+    private static void report(long size, double loadRate, CollectionReport collection, long touchedUsers,
+                               long workingSet, double pagesPerOperation, List<Row> rows) {
+        System.out.println();
+        System.out.printf("=== %,d users ===%n", size);
+        if (loadRate > 0) {
+            System.out.printf("Load:        %,.0f docs/s%n", loadRate);
+        }
+        System.out.printf("Collection:  %,d documents, data %s (avg %s/doc), storage %s, indexes %s%n",
+                collection.getCount(), bytes(collection.getDataBytes()), bytes(collection.getAverageDocumentBytes()),
+                bytes(collection.getStorageBytes()), bytes(collection.getTotalIndexBytes()));
+        StringBuilder indexes = new StringBuilder();
+        collection.getIndexBytes().forEach((name, indexBytes) ->
+                indexes.append(indexes.length() > 0 ? ", " : "").append(name).append(' ').append(bytes(indexBytes)));
+        if (indexes.length() > 0) {
+            System.out.println("Indexes:     " + indexes);
+        }
+        System.out.printf("Cache:       max %s, in use %s%n",
+                bytes(collection.getCacheMaxBytes()), bytes(collection.getCacheUsedBytes()));
+        System.out.printf("Working set: %s (est.: %,d users read + username and email indexes)%s%n",
+                bytes(workingSet), touchedUsers,
+                workingSet > 0 && collection.getCacheMaxBytes() > 0
+                        ? String.format(", %.0f%% of the cache", 100.0 * workingSet / collection.getCacheMaxBytes()) : "");
+        System.out.printf("Disk reads:  %s pages per query during the measurement%n",
+                pagesPerOperation >= 0 ? String.format("%.4f", pagesPerOperation) : "n/a");
+        System.out.println("Latency in ms");
+        System.out.printf("%-14s %9s %7s %9s %8s %8s %8s %8s %8s%n",
+                "query", "count", "errors", "ops/s", "p50", "p90", "p99", "p99.9", "max");
+        for (Row row : rows) {
+            System.out.printf("%-14s %9d %7d %9.1f %8.2f %8.2f %8.2f %8.2f %8.2f%n",
+                    row.step.key(), row.count, row.errors, row.opsPerSecond,
+                    row.p50Ms, row.p90Ms, row.p99Ms, row.p999Ms, row.maxMs);
+        }
+    }
+
+    private static void summary(List<Long> sizes, Map<LookupBenchmark.Step, Map<Long, Double>> p99BySize) {
+        System.out.println();
+        System.out.println("p99 latency in ms by collection size");
+        StringBuilder header = new StringBuilder(String.format("%-14s", "query"));
+        sizes.forEach(size -> header.append(String.format(" %12s", String.format("%,d", size))));
+        System.out.println(header);
+        p99BySize.forEach((step, bySize) -> {
+            StringBuilder line = new StringBuilder(String.format("%-14s", step.key()));
+            sizes.forEach(size -> {
+                Double p99 = bySize.get(size);
+                line.append(p99 != null ? String.format(" %12.2f", p99) : String.format(" %12s", "-"));
+            });
+            System.out.println(line);
+        });
+    }
+
+    private static void appendCsv(DatasetConfig config, long size, CollectionReport collection, long workingSet,
+                                  double pagesPerOperation, List<Row> rows) throws IOException {
+        boolean header = !Files.exists(config.getCsv());
+        try (PrintWriter out = new PrintWriter(Files.newBufferedWriter(config.getCsv(),
+                StandardOpenOption.CREATE, StandardOpenOption.APPEND))) {
+            if (header) {
+                out.println("size,query,count,errors,ops_per_sec,p50_ms,p90_ms,p99_ms,p999_ms,max_ms,"
+                        + "data_bytes,storage_bytes,index_bytes,cache_max_bytes,working_set_bytes,pages_read_per_query");
+            }
+            for (Row row : rows) {
+                out.printf("%d,%s,%d,%d,%.1f,%.3f,%.3f,%.3f,%.3f,%.3f,%d,%d,%d,%d,%d,%.5f%n",
+                        size, row.step.key(), row.count, row.errors, row.opsPerSecond,
+                        row.p50Ms, row.p90Ms, row.p99Ms, row.p999Ms, row.maxMs,
+                        collection.getDataBytes(), collection.getStorageBytes(), collection.getTotalIndexBytes(),
+                        collection.getCacheMaxBytes(), workingSet, pagesPerOperation);
+            }
+        }
+    }
+
+    private static String bytes(long bytes) {
+        if (bytes < 0) {
+            return "n/a";
+        }
+        if (bytes < 1024) {
+            return bytes + " B";
+        }
+        int unit = (63 - Long.numberOfLeadingZeros(bytes)) / 10;
+        return String.format("%.1f %siB", bytes / (double) (1L << (unit * 10)), "KMGTPE".charAt(unit - 1));
+    }
+
+    private static double ms(long micros) {
+        return micros / 1000.0;
+    }
+}
@@ -0,0 +1,75 @@
+package com.diyauth.loadtest;
+
+import de.bwaldvogel.mongo.MongoServer;
+import de.bwaldvogel.mongo.backend.memory.MemoryBackend;
+import de.flapdoodle.embed.mongo.commands.ServerAddress;
+import de.flapdoodle.embed.mongo.distribution.Version;
+import de.flapdoodle.embed.mongo.transitions.Mongod;
+import de.flapdoodle.embed.mongo.transitions.RunningMongodProcess;
+import de.flapdoodle.reverse.TransitionWalker;
+
+import java.net.InetSocketAddress;
+
+/**
+ * A throwaway MongoDB for the run: either a real mongod binary (downloaded and cached
+ * by flapdoodle on first use) or an in-process wire-protocol server backed by memory,
+ * which needs no download but does not reflect mongod's performance.
+ */
+public abstract class EmbeddedMongo implements AutoCloseable {
+
+    public abstract String uri(String database);
+
+    @Override
+    public abstract void close();
+
+    public static EmbeddedMongo start(String kind) {
+        switch (kind) {
+            case "mongod":
+                return new Mongod6(Mongod.instance().start(Version.Main.V6_0));
+            case "memory":
+                MongoServer server = new MongoServer(new MemoryBackend());
+                server.bind("127.0.0.1", 0);
+                return new InMemory(server);
+            default:
+                throw new IllegalArgumentException("Unknown --embedded-mongo: " + kind + " (expected mongod or memory)");
+        }
+    }
+
+    private static class Mongod6 extends EmbeddedMongo {
+        private final TransitionWalker.ReachedState<RunningMongodProcess> running;
+
+        Mongod6(TransitionWalker.ReachedState<RunningMongodProcess> running) {
+            this.running = running;
+        }
+
+        @Override
+        public String uri(String database) {
+            ServerAddress address = running.current().getServerAddress();
+            return "mongodb://" + address.getHost() + ":" + address.getPort() + "/" + database;
+        }
+
+        @Override
+        public void close() {
+            running.close();
+        }
+    }
+
+    private static class InMemory extends EmbeddedMongo {
+        private final MongoServer server;
+
+        InMemory(MongoServer server) {
+            this.server = server;
+        }
+
+        @Override
+        public String uri(String database) {
+            InetSocketAddress address = server.getLocalAddress();
+            return "mongodb://" + address.getHostString() + ":" + address.getPort() + "/" + database;
+        }
+
+        @Override
+        public void close() {
+            server.shutdownNow();
+        }
+    }
+}
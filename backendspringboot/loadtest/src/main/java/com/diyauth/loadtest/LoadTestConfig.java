@@ -0,0 +1,157 @@
+package com.diyauth.loadtest;
+
+import java.nio.file.Path;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Command line settings, given as {@code --name=value}.
+ */
+public class LoadTestConfig {
+
+    private final Map<String, String> args;
+
+    private final String baseUrl;
+    private final Path appJar;
+    private final String mongoUri;
+    private final String embeddedMongo;
+    private final int port;
+    private final double rate;
+    private final int warmupSeconds;
+    private final int durationSeconds;
+    private final int seedUsers;
+    private final int maxInFlight;
+    private final Map<Operation, Integer> mix;
+    private final Map<Operation, Double> maxP99Ms;
+    private final double maxErrorRate;
+    private final double minThroughputRatio;
+
+    private LoadTestConfig(Map<String, String> args) {
+        this.args = args;
+        this.port = intArg("port", 18080);
+        this.baseUrl = stringArg("base-url", null);
+        this.appJar = Path.of(stringArg("app-jar", "../target/diy-auth-1.0.0.jar"));
+        this.mongoUri = stringArg("mongo-uri", null);
+        this.embeddedMongo = stringArg("embedded-mongo", "mongod");
+        this.rate = doubleArg("rate", 50);
+        this.warmupSeconds = intArg("warmup-seconds", 10);
+        this.durationSeconds = intArg("duration-seconds", 60);
+        this.seedUsers = intArg("seed-users", 50);
+        this.maxInFlight = intArg("max-in-flight", 1000);
+        this.mix = parseMix(stringArg("mix", "signup=1,signin=2,me=17"));
+        this.maxErrorRate = doubleArg("max-error-rate", 0.01);
+        this.minThroughputRatio = doubleArg("min-throughput-ratio", 0.95);
+
+        this.maxP99Ms = new EnumMap<>(Operation.class);
+        double defaultMaxP99 = doubleArg("max-p99-ms", 500);
+        for (Operation operation : Operation.values()) {
+            maxP99Ms.put(operation, doubleArg("max-p99-ms." + operation.key(), defaultMaxP99));
+        }
+
+        if (rate <= 0) {
+            throw new IllegalArgumentException("--rate must be positive");
+        }
+    }
+
+    public static LoadTestConfig parse(String[] argv) {
+        Map<String, String> args = new HashMap<>();
+        for (String arg : argv) {
+            if (!arg.startsWith("--") || !arg.contains("=")) {
+                throw new IllegalArgumentException("Expected --name=value, got: " + arg);
+            }
+            int eq = arg.indexOf('=');
+            args.put(arg.substring(2, eq), arg.substring(eq + 1));
+        }
+        return new LoadTestConfig(args);
+    }
+
+    private static Map<Operation, Integer> parseMix(String spec) {
+        Map<Operation, Integer> mix = new EnumMap<>(Operation.class);
+        for (String part : spec.split(",")) {
+            String[] kv = part.trim().split("=");
+            if (kv.length != 2) {
+                throw new IllegalArgumentException("Invalid --mix entry: " + part);
+            }
+            int weight = Integer.parseInt(kv[1].trim());
+            if (weight < 0) {
+                throw new IllegalArgumentException("Negative --mix weight: " + part);
+            }
+            mix.put(Operation.fromKey(kv[0].trim()), weight);
+        }
+        if (mix.values().stream().mapToInt(Integer::intValue).sum() == 0) {
+            throw new IllegalArgumentException("--mix needs at least one positive weight");
+        }
+        return mix;
+    }
+
+    private String stringArg(String name, String defaultValue) {
+        return args.getOrDefault(name, defaultValue);
+    }
+
+    private int intArg(String name, int defaultValue) {
+        String value = args.get(name);
+        return value != null ? Integer.parseInt(value) : defaultValue;
+    }
+
+    private double doubleArg(String name, double defaultValue) {
+        String value = args.get(name);
+        return value != null ? Double.parseDouble(value) : defaultValue;
+    }
+
+    public String getBaseUrl() {
+        return baseUrl;
+    }
+
+    public Path getAppJar() {
+        return appJar;
+    }
+
+    public String getMongoUri() {
+        return mongoUri;
+    }
+
+    public String getEmbeddedMongo() {
+        return embeddedMongo;
+    }
+
+    public int getPort() {
+        return port;
+    }
+
+    public double getRate() {
+        return rate;
+    }
+
+    public int getWarmupSeconds() {
+        return warmupSeconds;
+    }
+
+    public int getDurationSeconds() {
+        return durationSeconds;
+    }
+
+    public int getSeedUsers() {
+        return seedUsers;
+    }
+
+    public int getMaxInFlight() {
+        return maxInFlight;
+    }
+
+    public Map<Operation, Integer> getMix() {
+        return mix;
+    }
+
+    public double getMaxP99Ms(Operation operation) {
+        return maxP99Ms.get(operation);
+    }
+
+    public double getMaxErrorRate() {
+        return maxErrorRate;
+    }
+
+    public double getMinThroughputRatio() {
+        return minThroughputRatio;
+    }
+}
@@ -0,0 +1,158 @@
+package com.diyauth.loadtest;
+
+import org.HdrHistogram.Histogram;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * End-to-end load test and performance regression gate.
+ *
+ * Starts an embedded MongoDB ({@code --embedded-mongo=mongod|memory}, or uses
+ * {@code --mongo-uri} for a local one), launches the backend jar
+ * against it (or targets {@code --base-url}), seeds accounts, then offers an open-loop
+ * mix of signup / signin / me at {@code --rate} requests per second. Exits with 1 when a
+ * threshold is missed, so it can gate a build:
+ *
+ * <pre>
+ * cd backendspringboot &amp;&amp; mvn package -DskipTests
+ * cd loadtest &amp;&amp; mvn -q compile exec:java -Dexec.args="--rate=100 --duration-seconds=60 \
+ *     --mix=signup=1,signin=2,me=17 --max-p99-ms=250 --max-p99-ms.signin=600"
+ * </pre>
+ *
+ * Options: base-url, app-jar, mongo-uri, embedded-mongo, port, rate, warmup-seconds, duration-seconds,
+ * seed-users, max-in-flight, mix, max-p99-ms[.op], max-error-rate, min-throughput-ratio.
+ */
+public class LoadTestMain {
+
+    private static final Logger logger = LoggerFactory.getLogger(LoadTestMain.class);
+
+    private static final String PASSWORD = "loadtest-password";
+
+    public static void main(String[] argv) throws Exception {
+        LoadTestConfig config;
+        try {
+            config = LoadTestConfig.parse(argv);
+        } catch (IllegalArgumentException e) {
+            System.err.println(e.getMessage());
+            System.exit(2);
+            return;
+        }
+        System.exit(run(config) ? 0 : 1);
+    }
+
+    private static boolean run(LoadTestConfig config) throws Exception {
+        EmbeddedMongo mongo = null;
+        AppProcess app = null;
+        try {
+            String baseUrl = config.getBaseUrl();
+            if (baseUrl == null) {
+                String mongoUri = config.getMongoUri();
+                if (mongoUri == null) {
+                    logger.info("Starting embedded MongoDB ({})", config.getEmbeddedMongo());
+                    mongo = EmbeddedMongo.start(config.getEmbeddedMongo());
+                    mongoUri = mongo.uri("diyauth-loadtest");
+                }
+                Path log = Files.createTempFile("diy-auth-loadtest-", ".log");
+                logger.info("Starting backend {} (log: {})", config.getAppJar(), log);
+                app = AppProcess.start(config.getAppJar(), mongoUri, config.getPort(), log);
+                baseUrl = app.getBaseUrl();
+            }
+
+            AuthClient client = new AuthClient(baseUrl);
+            String runId = Integer.toString(ThreadLocalRandom.current().nextInt(36 * 36 * 36, 36 * 36 * 36 * 36), 36);
+            List<String> usernames = new ArrayList<>();
+            List<String> tokens = new ArrayList<>();
+            seed(client, runId, config.getSeedUsers(), usernames, tokens);
+
+            OpenLoopDriver driver = new OpenLoopDriver(client, PASSWORD, runId, usernames, tokens,
+                    config.getMix(), config.getMaxInFlight());
+            if (config.getWarmupSeconds() > 0) {
+                logger.info("Warm-up: {} req/s for {}s", config.getRate(), config.getWarmupSeconds());
+                driver.run(config.getRate(), config.getWarmupSeconds());
+            }
+            logger.info("Measurement: {} req/s for {}s, mix {}", config.getRate(), config.getDurationSeconds(), config.getMix());
+            OpenLoopDriver.Result result = driver.run(config.getRate(), config.getDurationSeconds());
+            return report(config, result);
+        } finally {
+            if (app != null) {
+                app.close();
+            }
+            if (mongo != null) {
+                mongo.close();
+            }
+        }
+    }
+
+    private static void seed(AuthClient client, String runId, int count, List<String> usernames, List<String> tokens)
+            throws Exception {
+        logger.info("Seeding {} accounts", count);
+        for (int i = 0; i < count; i++) {
+            String username = "ls" + runId + Integer.toString(i, 36);
+            int status = client.signup(username, PASSWORD).get().statusCode();
+            if (status != 200) {
+                throw new IllegalStateException("Seeding signup failed with HTTP " + status);
+            }
+            usernames.add(username);
+            tokens.add(client.accessToken(client.signin(username, PASSWORD).get()));
+        }
+    }
+
+    private static boolean report(LoadTestConfig config, OpenLoopDriver.Result result) {
+        List<String> failures = new ArrayList<>();
+
+        System.out.println();
+        System.out.printf("Offered %.1f req/s, achieved %.1f req/s (%d requests in %.1fs)%n",
+                config.getRate(), result.getThroughput(), result.getTotalRequests(), result.getElapsedNanos() / 1e9);
+        System.out.println("Latency in ms, corrected for coordinated omission (uncorrected p99 for comparison)");
+        System.out.printf("%-8s %8s %7s %8s %8s %8s %8s %8s %8s %10s%n",
+                "op", "count", "errors", "p50", "p90", "p99", "p99.9", "max", "req/s", "p99 uncorr");
+
+        for (Map.Entry<Operation, OperationStats> entry : result.getStats().entrySet()) {
+            OperationStats stats = entry.getValue();
+            if (stats.getTotal() == 0) {
+                continue;
+            }
+            Histogram h = stats.getCorrected();
+            double p99 = ms(h.getValueAtPercentile(99));
+            System.out.printf("%-8s %8d %7d %8.2f %8.2f %8.2f %8.2f %8.2f %8.1f %10.2f%n",
+                    entry.getKey().key(), stats.getTotal(), stats.getErrors(),
+                    ms(h.getValueAtPercentile(50)), ms(h.getValueAtPercentile(90)), p99,
+                    ms(h.getValueAtPercentile(99.9)), ms(h.getMaxValue()),
+                    stats.getTotal() / (result.getElapsedNanos() / 1e9),
+                    ms(stats.getUncorrected().getValueAtPercentile(99)));
+
+            double maxP99 = config.getMaxP99Ms(entry.getKey());
+            if (p99 > maxP99) {
+                failures.add(String.format("%s p99 %.2f ms > %.2f ms", entry.getKey().key(), p99, maxP99));
+            }
+            if (stats.getErrorRate() > config.getMaxErrorRate()) {
+                failures.add(String.format("%s error rate %.4f > %.4f",
+                        entry.getKey().key(), stats.getErrorRate(), config.getMaxErrorRate()));
+            }
+        }
+
+        double minThroughput = config.getRate() * config.getMinThroughputRatio();
+        if (result.getThroughput() < minThroughput) {
+            failures.add(String.format("throughput %.1f req/s < %.1f req/s", result.getThroughput(), minThroughput));
+        }
+
+        System.out.println();
+        if (failures.isEmpty()) {
+            System.out.println("PASS");
+            return true;
+        }
+        failures.forEach(failure -> System.out.println("FAIL: " + failure));
+        return false;
+    }
+
+    private static double ms(long micros) {
+        return micros / 1000.0;
+    }
+}
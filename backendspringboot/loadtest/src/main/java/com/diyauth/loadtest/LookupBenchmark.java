@@ -0,0 +1,311 @@
+package com.diyauth.loadtest;
+
+import com.mongodb.client.MongoCollection;
+import com.mongodb.client.model.Filters;
+import com.mongodb.client.model.Projections;
+import org.HdrHistogram.ConcurrentHistogram;
+import org.HdrHistogram.Histogram;
+import org.bson.Document;
+import org.bson.conversions.Bson;
+import org.bson.types.ObjectId;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.SplittableRandom;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Runs the backend's user queries straight against the collection, closed loop from a
+ * fixed number of threads, and records each one's latency:
+ * <ul>
+ *     <li>login: CustomUserDetailsService's username-or-email lookup, for an existing user
+ *     picked with a Zipf skew (a few users log in far more often than the rest), by
+ *     username or, one time in three, by email;</li>
+ *     <li>signup: AuthController's username/email conflict check for a new user, then the
+ *     insert;</li>
+ *     <li>oauth2: CustomOAuth2UserService's lookup by email; an existing Google user whose
+ *     profile picture changed (one time in ten) is saved again, and one login in ten is a
+ *     first one, inserting the user.</li>
+ * </ul>
+ * This is the database's service time without the application in front; the load test
+ * covers the full request path. Users inserted by the benchmark are removed afterwards so
+ * that each collection size stays exact.
+ */
+public class LookupBenchmark {
+
+    private static final Logger logger = LoggerFactory.getLogger(LookupBenchmark.class);
+
+    private static final long HIGHEST_TRACKABLE_MICROS = TimeUnit.MINUTES.toMicros(1);
+    // Users created by the benchmark take indexes from here, far beyond any generated ones
+    private static final long BENCHMARK_INDEX_BASE = 1L << 40;
+    private static final double EMAIL_LOGIN_SHARE = 1 / 3.0;
+    private static final double PROFILE_CHANGE_SHARE = 0.1;
+    private static final double FIRST_OAUTH2_LOGIN_SHARE = 0.1;
+    private static final int OAUTH2_USER_SEARCH = 64;
+
+    public enum Action {
+        LOGIN("login"),
+        SIGNUP("signup"),
+        OAUTH2("oauth2");
+
+        private final String key;
+
+        Action(String key) {
+            this.key = key;
+        }
+
+        public String key() {
+            return key;
+        }
+
+        public static Action fromKey(String key) {
+            for (Action action : values()) {
+                if (action.key.equals(key)) {
+                    return action;
+                }
+            }
+            throw new IllegalArgumentException("Unknown action: " + key + " (expected login, signup or oauth2)");
+        }
+    }
+
+    /**
+     * The individually timed queries of the actions.
+     */
+    public enum Step {
+        LOGIN("login"),
+        SIGNUP_CHECK("signup-check"),
+        SIGNUP_INSERT("signup-insert"),
+        OAUTH2_FIND("oauth2-find"),
+        OAUTH2_SAVE("oauth2-save");
+
+        private final String key;
+
+        Step(String key) {
+            this.key = key;
+        }
+
+        public String key() {
+            return key;
+        }
+    }
+
+    private final MongoCollection<Document> users;
+    private final UserDocuments documents;
+    private final ZipfianSampler popularity;
+    private final Action[] actions;
+    private final int threads;
+
+    private final Map<Step, Histogram> latencies = new EnumMap<>(Step.class);
+    private final Map<Step, LongAdder> errors = new EnumMap<>(Step.class);
+    private final AtomicLong newUsers = new AtomicLong();
+    private final Queue<ObjectId> inserted = new ConcurrentLinkedQueue<>();
+    private final AtomicLongArray touched;
+    private volatile boolean recording;
+
+    public LookupBenchmark(MongoCollection<Document> users, UserDocuments documents, long size, double zipfTheta,
+                           Map<Action, Integer> mix, int threads) {
+        this.users = users;
+        this.documents = documents;
+        this.popularity = new ZipfianSampler(size, zipfTheta);
+        this.threads = threads;
+        List<Action> weighted = new ArrayList<>();
+        mix.forEach((action, weight) -> {
+            for (int i = 0; i < weight; i++) {
+                weighted.add(action);
+            }
+        });
+        this.actions = weighted.toArray(new Action[0]);
+        for (Step step : Step.values()) {
+            latencies.put(step, new ConcurrentHistogram(HIGHEST_TRACKABLE_MICROS, 3));
+            errors.put(step, new LongAdder());
+        }
+        this.touched = new AtomicLongArray((int) ((size + 63) / 64));
+    }
+
+    /**
+     * Warms up without recording, then measures for {@code durationSeconds}; returns the
+     * measured time in nanoseconds.
+     */
+    public long run(int warmupSeconds, int durationSeconds) throws Exception {
+        if (warmupSeconds > 0) {
+            logger.info("Warm-up: {} threads for {}s", threads, warmupSeconds);
+            runFor(warmupSeconds);
+        }
+        logger.info("Measurement: {} threads for {}s", threads, durationSeconds);
+        recording = true;
+        try {
+            return runFor(durationSeconds);
+        } finally {
+            recording = false;
+        }
+    }
+
+    private long runFor(int seconds) throws Exception {
+        long start = System.nanoTime();
+        long deadline = start + TimeUnit.SECONDS.toNanos(seconds);
+        ExecutorService pool = Executors.newFixedThreadPool(threads);
+        try {
+            List<Future<?>> workers = new ArrayList<>();
+            for (int i = 0; i < threads; i++) {
+                SplittableRandom random = new SplittableRandom(start + i);
+                workers.add(pool.submit(() -> {
+                    while (System.nanoTime() - deadline < 0) {
+                        Action action = actions[random.nextInt(actions.length)];
+                        switch (action) {
+                            case LOGIN -> login(random);
+                            case SIGNUP -> signup();
+                            case OAUTH2 -> oauth2(random);
+                        }
+                    }
+                    return null;
+                }));
+            }
+            for (Future<?> worker : workers) {
+                worker.get();
+            }
+        } finally {
+            pool.shutdownNow();
+        }
+        return System.nanoTime() - start;
+    }
+
+    private void login(SplittableRandom random) {
+        long index = popularUser(random);
+        UserDocuments.Identity identity = documents.identity(index);
+        String usernameOrEmail = random.nextDouble() < EMAIL_LOGIN_SHARE ? identity.email() : identity.username();
+        Bson query = Filters.or(Filters.eq("username", usernameOrEmail), Filters.eq("email", usernameOrEmail));
+        long begin = System.nanoTime();
+        List<Document> found = users.find(query).into(new ArrayList<>());
+        record(Step.LOGIN, begin, !found.isEmpty());
+    }
+
+    private void signup() {
+        Document user = documents.localUser(BENCHMARK_INDEX_BASE + newUsers.getAndIncrement());
+        Bson conflicts = Filters.or(Filters.eq("username", user.getString("username")),
+                Filters.eq("email", user.getString("email")));
+        long begin = System.nanoTime();
+        List<Document> found = users.find(conflicts).projection(Projections.include("username", "email"))
+                .into(new ArrayList<>());
+        record(Step.SIGNUP_CHECK, begin, found.isEmpty());
+        insert(user);
+    }
+
+    private void oauth2(SplittableRandom random) {
+        long index = random.nextDouble() < FIRST_OAUTH2_LOGIN_SHARE ? -1 : popularOAuth2User(random);
+        if (index < 0) {
+            Document user = documents.oauth2User(BENCHMARK_INDEX_BASE + newUsers.getAndIncrement());
+            long begin = System.nanoTime();
+            Document existing = users.find(Filters.eq("email", user.getString("email"))).first();
+            record(Step.OAUTH2_FIND, begin, existing == null);
+            insert(user);
+            return;
+        }
+        String email = documents.identity(index).email();
+        long begin = System.nanoTime();
+        Document user = users.find(Filters.eq("email", email)).first();
+        record(Step.OAUTH2_FIND, begin, user != null);
+        if (user != null && random.nextDouble() < PROFILE_CHANGE_SHARE) {
+            user.put("imageUrl", "https://lh3.googleusercontent.com/a/changed-" + Long.toString(random.nextLong(), 36) + "=s96-c");
+            user.put("updatedAt", new Date());
+            begin = System.nanoTime();
+            boolean saved = users.replaceOne(Filters.eq("_id", user.getObjectId("_id")), user).getMatchedCount() == 1;
+            record(Step.OAUTH2_SAVE, begin, saved);
+        }
+    }
+
+    private void insert(Document user) {
+        Step step = user.containsKey("provider") ? Step.OAUTH2_SAVE : Step.SIGNUP_INSERT;
+        long begin = System.nanoTime();
+        try {
+            users.insertOne(user);
+            record(step, begin, true);
+            inserted.add(user.getObjectId("_id"));
+        } catch (RuntimeException ex) {
+            record(step, begin, false);
+        }
+    }
+
+    private long popularUser(SplittableRandom random) {
+        long index = popularity.nextScrambled(random);
+        if (recording) {
+            touched.getAndAccumulate((int) (index >>> 6), 1L << (index & 63), (a, b) -> a | b);
+        }
+        return index;
+    }
+
+    // A popular user who signed up with Google, or -1 when there is none nearby
+    private long popularOAuth2User(SplittableRandom random) {
+        long index = popularity.nextScrambled(random);
+        for (int i = 0; i < OAUTH2_USER_SEARCH; i++, index = (index + 1) % popularity.size()) {
+            if (documents.isOAuth2(index)) {
+                if (recording) {
+                    touched.getAndAccumulate((int) (index >>> 6), 1L << (index & 63), (a, b) -> a | b);
+                }
+                return index;
+            }
+        }
+        return -1;
+    }
+
+    private void record(Step step, long beginNanos, boolean success) {
+        if (!recording) {
+            return;
+        }
+        long micros = TimeUnit.NANOSECONDS.toMicros(System.nanoTime() - beginNanos);
+        latencies.get(step).recordValue(Math.min(Math.max(micros, 1), HIGHEST_TRACKABLE_MICROS));
+        if (!success) {
+            errors.get(step).increment();
+        }
+    }
+
+    /**
+     * Removes the users the benchmark inserted.
+     */
+    public void removeInsertedUsers() {
+        List<ObjectId> batch = new ArrayList<>();
+        long removed = 0;
+        for (ObjectId id = inserted.poll(); id != null; id = inserted.poll()) {
+            batch.add(id);
+            if (batch.size() == 1000) {
+                removed += users.deleteMany(Filters.in("_id", batch)).getDeletedCount();
+                batch.clear();
+            }
+        }
+        if (!batch.isEmpty()) {
+            removed += users.deleteMany(Filters.in("_id", batch)).getDeletedCount();
+        }
+        logger.info("Removed {} users inserted by the benchmark", removed);
+    }
+
+    public Histogram getLatency(Step step) {
+        return latencies.get(step);
+    }
+
+    public long getErrors(Step step) {
+        return errors.get(step).sum();
+    }
+
+    /**
+     * Distinct generated users read during the measurement.
+     */
+    public long getTouchedUsers() {
+        long count = 0;
+        for (int i = 0; i < touched.length(); i++) {
+            count += Long.bitCount(touched.get(i));
+        }
+        return count;
+    }
+}
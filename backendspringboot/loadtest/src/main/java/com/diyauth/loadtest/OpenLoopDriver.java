@@ -0,0 +1,155 @@
+package com.diyauth.loadtest;
+
+import java.net.http.HttpResponse;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Open-loop request scheduler: request {@code n} is due at {@code start + n / rate}
+ * regardless of how long earlier requests took, and its latency is measured from
+ * that due time. A slow server therefore shows up as latency instead of silently
+ * lowering the offered load.
+ */
+public class OpenLoopDriver {
+
+    private final AuthClient client;
+    private final String password;
+    private final String runId;
+    private final List<String> usernames;
+    private final List<String> tokens;
+    private final Operation[] schedule;
+    private final Semaphore inFlight;
+    private final int maxInFlight;
+    private final AtomicLong signupSequence = new AtomicLong();
+
+    public OpenLoopDriver(AuthClient client, String password, String runId, List<String> usernames,
+                          List<String> tokens, Map<Operation, Integer> mix, int maxInFlight) {
+        this.client = client;
+        this.password = password;
+        this.runId = runId;
+        this.usernames = usernames;
+        this.tokens = tokens;
+        this.schedule = expand(mix);
+        this.maxInFlight = maxInFlight;
+        this.inFlight = new Semaphore(maxInFlight);
+    }
+
+    private static Operation[] expand(Map<Operation, Integer> mix) {
+        int total = mix.values().stream().mapToInt(Integer::intValue).sum();
+        Operation[] schedule = new Operation[total];
+        int i = 0;
+        for (Map.Entry<Operation, Integer> entry : mix.entrySet()) {
+            for (int w = 0; w < entry.getValue(); w++) {
+                schedule[i++] = entry.getKey();
+            }
+        }
+        return schedule;
+    }
+
+    /**
+     * Offers load at {@code rate} requests per second for {@code seconds} and returns the
+     * per-operation results once every issued request has completed.
+     */
+    public Result run(double rate, int seconds) throws InterruptedException {
+        Map<Operation, OperationStats> stats = new EnumMap<>(Operation.class);
+        for (Operation operation : Operation.values()) {
+            stats.put(operation, new OperationStats(operation));
+        }
+
+        double intervalNanos = TimeUnit.SECONDS.toNanos(1) / rate;
+        long durationNanos = TimeUnit.SECONDS.toNanos(seconds);
+        long start = System.nanoTime();
+        AtomicLong lastCompletion = new AtomicLong(start);
+
+        for (long n = 0; ; n++) {
+            long intended = start + (long) (n * intervalNanos);
+            if (intended - start >= durationNanos) {
+                break;
+            }
+            long now;
+            while ((now = System.nanoTime()) < intended) {
+                LockSupport.parkNanos(intended - now);
+            }
+            // Waiting for a permit counts against the request: its clock started at "intended"
+            inFlight.acquire();
+
+            Operation operation = schedule[ThreadLocalRandom.current().nextInt(schedule.length)];
+            OperationStats operationStats = stats.get(operation);
+            long sent = System.nanoTime();
+            CompletableFuture<HttpResponse<String>> response;
+            try {
+                response = issue(operation);
+            } catch (RuntimeException ex) {
+                // Failed before reaching the server (e.g. the client rejected the request):
+                // an error like any other, and its permit is not lost
+                long end = System.nanoTime();
+                lastCompletion.accumulateAndGet(end, Math::max);
+                operationStats.record(intended, sent, end, false);
+                inFlight.release();
+                continue;
+            }
+            response.whenComplete((completed, error) -> {
+                try {
+                    long end = System.nanoTime();
+                    lastCompletion.accumulateAndGet(end, Math::max);
+                    operationStats.record(intended, sent, end, error == null && completed.statusCode() == 200);
+                } finally {
+                    inFlight.release();
+                }
+            });
+        }
+
+        // Drain: wait for every outstanding request
+        inFlight.acquire(maxInFlight);
+        inFlight.release(maxInFlight);
+        return new Result(stats, lastCompletion.get() - start);
+    }
+
+    private CompletableFuture<HttpResponse<String>> issue(Operation operation) {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        switch (operation) {
+            case SIGNUP:
+                String username = "lt" + runId + Long.toString(signupSequence.incrementAndGet(), 36);
+                return client.signup(username, password);
+            case SIGNIN:
+                return client.signin(usernames.get(random.nextInt(usernames.size())), password);
+            case ME:
+                return client.me(tokens.get(random.nextInt(tokens.size())));
+            default:
+                throw new IllegalStateException("Unhandled operation " + operation);
+        }
+    }
+
+    public static class Result {
+        private final Map<Operation, OperationStats> stats;
+        private final long elapsedNanos;
+
+        Result(Map<Operation, OperationStats> stats, long elapsedNanos) {
+            this.stats = stats;
+            this.elapsedNanos = elapsedNanos;
+        }
+
+        public Map<Operation, OperationStats> getStats() {
+            return stats;
+        }
+
+        public long getElapsedNanos() {
+            return elapsedNanos;
+        }
+
+        public long getTotalRequests() {
+            return stats.values().stream().mapToLong(OperationStats::getTotal).sum();
+        }
+
+        public double getThroughput() {
+            return getTotalRequests() / (elapsedNanos / 1e9);
+        }
+    }
+}
@@ -0,0 +1,29 @@
+package com.diyauth.loadtest;
+
+/**
+ * Request types the generator can issue against the backend.
+ */
+public enum Operation {
+    SIGNUP("signup"),
+    SIGNIN("signin"),
+    ME("me");
+
+    private final String key;
+
+    Operation(String key) {
+        this.key = key;
+    }
+
+    public String key() {
+        return key;
+    }
+
+    public static Operation fromKey(String key) {
+        for (Operation operation : values()) {
+            if (operation.key.equalsIgnoreCase(key)) {
+                return operation;
+            }
+        }
+        throw new IllegalArgumentException("Unknown operation: " + key + " (expected signup, signin or me)");
+    }
+}
@@ -0,0 +1,73 @@
+package com.diyauth.loadtest;
+
+import org.HdrHistogram.ConcurrentHistogram;
+import org.HdrHistogram.Histogram;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Latency and outcome counters for one operation.
+ *
+ * Two histograms are kept: {@code corrected} measures from the time the request was
+ * scheduled to be sent, so queueing behind a stalled server is counted (the
+ * coordinated-omission correction); {@code uncorrected} measures from the time it was
+ * actually sent and is reported only for comparison.
+ */
+public class OperationStats {
+
+    private static final long HIGHEST_TRACKABLE_MICROS = TimeUnit.MINUTES.toMicros(5);
+
+    private final Operation operation;
+    private final Histogram corrected = new ConcurrentHistogram(HIGHEST_TRACKABLE_MICROS, 3);
+    private final Histogram uncorrected = new ConcurrentHistogram(HIGHEST_TRACKABLE_MICROS, 3);
+    private final LongAdder successes = new LongAdder();
+    private final LongAdder errors = new LongAdder();
+
+    public OperationStats(Operation operation) {
+        this.operation = operation;
+    }
+
+    public void record(long intendedStartNanos, long actualStartNanos, long endNanos, boolean success) {
+        corrected.recordValue(clamp(endNanos - intendedStartNanos));
+        uncorrected.recordValue(clamp(endNanos - actualStartNanos));
+        if (success) {
+            successes.increment();
+        } else {
+            errors.increment();
+        }
+    }
+
+    private static long clamp(long nanos) {
+        return Math.min(Math.max(TimeUnit.NANOSECONDS.toMicros(nanos), 1), HIGHEST_TRACKABLE_MICROS);
+    }
+
+    public Operation getOperation() {
+        return operation;
+    }
+
+    public Histogram getCorrected() {
+        return corrected;
+    }
+
+    public Histogram getUncorrected() {
+        return uncorrected;
+    }
+
+    public long getSuccesses() {
+        return successes.sum();
+    }
+
+    public long getErrors() {
+        return errors.sum();
+    }
+
+    public long getTotal() {
+        return getSuccesses() + getErrors();
+    }
+
+    public double getErrorRate() {
+        long total = getTotal();
+        return total == 0 ? 0 : (double) getErrors() / total;
+    }
+}
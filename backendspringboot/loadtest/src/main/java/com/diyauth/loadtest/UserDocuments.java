@@ -0,0 +1,177 @@
+package com.diyauth.loadtest;
+
+import org.bson.Document;
+import org.bson.types.ObjectId;
+
+import java.time.Instant;
+import java.util.Date;
+import java.util.List;
+import java.util.SplittableRandom;
+
+/**
+ * Synthetic users collection documents, in the shape Spring Data writes the backend's User:
+ * local signups (bcrypt-length password hash, no provider) and Google OAuth2 users (no
+ * password, username taken from the email as CustomOAuth2UserService does).
+ *
+ * Every document is a pure function of the seed and its index, so a benchmark can recompute
+ * any existing user's username and email without reading them back. Names and email
+ * domains are drawn with a Zipf skew (many "john"s and gmail.com addresses, a long tail of
+ * company domains); a per-index suffix keeps usernames and emails unique. Password hashes
+ * are random strings of bcrypt's format and length, not hashes of a known password.
+ */
+public class UserDocuments {
+
+    public static final String USER_CLASS = "com.diyauth.model.User";
+
+    private static final String[] FIRST_NAMES = {
+            "james", "mary", "john", "patricia", "robert", "jennifer", "michael", "linda", "william", "elizabeth",
+            "david", "barbara", "richard", "susan", "joseph", "jessica", "thomas", "sarah", "charles", "karen",
+            "maria", "wei", "mohammed", "ana", "juan", "fatima", "luis", "olga", "carlos", "yuki",
+            "daniel", "nancy", "matthew", "lisa", "anthony", "betty", "mark", "margaret", "donald", "sandra",
+            "priya", "raj", "chen", "li", "hiroshi", "sofia", "lucas", "emma", "noah", "olivia",
+            "ahmed", "aisha", "ivan", "elena", "pierre", "chloe", "kofi", "amara", "sven", "ingrid",
+    };
+
+    private static final String[] LAST_NAMES = {
+            "smith", "johnson", "williams", "brown", "jones", "garcia", "miller", "davis", "rodriguez", "martinez",
+            "hernandez", "lopez", "gonzalez", "wilson", "anderson", "thomas", "taylor", "moore", "jackson", "martin",
+            "wang", "li", "zhang", "liu", "chen", "kumar", "singh", "sharma", "patel", "khan",
+            "nguyen", "kim", "lee", "park", "tanaka", "suzuki", "sato", "muller", "schmidt", "schneider",
+            "rossi", "russo", "ferrari", "silva", "santos", "oliveira", "ivanov", "smirnov", "kowalski", "nowak",
+            "dubois", "martins", "okafor", "mensah", "hansen", "johansson", "novak", "horvat", "cohen", "levi",
+    };
+
+    // Public mail providers by popularity; the remaining share goes to company domains
+    private static final String[] PUBLIC_DOMAINS = {
+            "gmail.com", "yahoo.com", "outlook.com", "hotmail.com", "icloud.com",
+            "proton.me", "aol.com", "gmx.de", "mail.ru", "yandex.ru",
+    };
+    private static final double PUBLIC_DOMAIN_SHARE = 0.85;
+    private static final int COMPANY_DOMAINS = 20_000;
+
+    private static final char[] BCRYPT_ALPHABET = "./ABCDEFGHIJKLMNOPQRSTUVWXYZabcdefghijklmnopqrstuvwxyz0123456789".toCharArray();
+    private static final char[] URL_ALPHABET = "ABCDEFGHIJKLMNOPQRSTUVWXYZabcdefghijklmnopqrstuvwxyz0123456789-_".toCharArray();
+
+    // Users were created 2 s apart from here on, so _id and updatedAt follow the index
+    private static final long EPOCH_SECONDS = Instant.parse("2022-01-01T00:00:00Z").getEpochSecond();
+    private static final long SECONDS_BETWEEN_SIGNUPS = 2;
+    private static final double DISABLED_SHARE = 0.01;
+    private static final double ADMIN_SHARE = 0.0001;
+
+    private final long seed;
+    private final double oauth2Share;
+    private final ZipfianSampler firstNames = new ZipfianSampler(FIRST_NAMES.length, 0.8);
+    private final ZipfianSampler lastNames = new ZipfianSampler(LAST_NAMES.length, 0.8);
+    private final ZipfianSampler publicDomains = new ZipfianSampler(PUBLIC_DOMAINS.length, 0.9);
+    private final ZipfianSampler companyDomains = new ZipfianSampler(COMPANY_DOMAINS, 0.9);
+
+    public UserDocuments(long seed, double oauth2Share) {
+        this.seed = seed;
+        this.oauth2Share = oauth2Share;
+    }
+
+    /**
+     * Identifiers of the user at {@code index}; a signup or login uses exactly these.
+     */
+    public record Identity(String username, String email, boolean oauth2) {
+    }
+
+    public Identity identity(long index) {
+        return identity(random(index), index, null);
+    }
+
+    public boolean isOAuth2(long index) {
+        return random(index).nextDouble() < oauth2Share;
+    }
+
+    public Document user(long index) {
+        return build(index, null);
+    }
+
+    public Document localUser(long index) {
+        return build(index, false);
+    }
+
+    public Document oauth2User(long index) {
+        return build(index, true);
+    }
+
+    private SplittableRandom random(long index) {
+        return new SplittableRandom(seed ^ (index * 0x9E3779B97F4A7C15L));
+    }
+
+    // Draws in a fixed order: kind, then names, then the rest of the document
+    private Identity identity(SplittableRandom random, long index, Boolean oauth2Override) {
+        boolean oauth2 = random.nextDouble() < oauth2Share;
+        if (oauth2Override != null) {
+            oauth2 = oauth2Override;
+        }
+        String first = FIRST_NAMES[(int) firstNames.next(random)];
+        String last = LAST_NAMES[(int) lastNames.next(random)];
+        String suffix = Long.toString(index);
+
+        String local = switch (random.nextInt(4)) {
+            case 0 -> first + "." + last;
+            case 1 -> first + last;
+            case 2 -> first.charAt(0) + last;
+            default -> first + "_" + last;
+        } + suffix;
+        String domain = random.nextDouble() < PUBLIC_DOMAIN_SHARE
+                ? PUBLIC_DOMAINS[(int) publicDomains.next(random)]
+                : "company" + companyDomains.nextScrambled(random) + ".example.com";
+        String email = local + "@" + domain;
+
+        String username;
+        if (oauth2) {
+            username = local;
+        } else {
+            username = switch (random.nextInt(3)) {
+                case 0 -> first + last;
+                case 1 -> first + "_" + last.charAt(0);
+                default -> first.charAt(0) + last;
+            } + suffix;
+        }
+        return new Identity(username, email, oauth2);
+    }
+
+    private Document build(long index, Boolean oauth2Override) {
+        SplittableRandom random = random(index);
+        Identity identity = identity(random, index, oauth2Override);
+
+        long createdSeconds = EPOCH_SECONDS + index * SECONDS_BETWEEN_SIGNUPS;
+        long updatedSeconds = createdSeconds + (long) (random.nextDouble() * 180 * 24 * 3600);
+        Document document = new Document("_id", new ObjectId(new Date(createdSeconds * 1000)))
+                .append("username", identity.username())
+                .append("email", identity.email());
+        if (!identity.oauth2()) {
+            document.append("password", "$2a$10$" + randomString(random, BCRYPT_ALPHABET, 53));
+        }
+        document.append("enabled", random.nextDouble() >= DISABLED_SHARE);
+        document.append("roles", random.nextDouble() < ADMIN_SHARE
+                ? List.of("ROLE_USER", "ROLE_ADMIN") : List.of("ROLE_USER"));
+        if (identity.oauth2()) {
+            document.append("provider", "google")
+                    .append("providerId", "1" + randomDigits(random, 20))
+                    .append("imageUrl", "https://lh3.googleusercontent.com/a/"
+                            + randomString(random, URL_ALPHABET, 42) + "=s96-c");
+        }
+        return document.append("updatedAt", new Date(updatedSeconds * 1000))
+                .append("_class", USER_CLASS);
+    }
+
+    private static String randomString(SplittableRandom random, char[] alphabet, int length) {
+        char[] chars = new char[length];
+        for (int i = 0; i < length; i++) {
+            chars[i] = alphabet[random.nextInt(alphabet.length)];
+        }
+        return new String(chars);
+    }
+
+    private static String randomDigits(SplittableRandom random, int length) {
+        char[] digits = new char[length];
+        for (int i = 0; i < length; i++) {
+            digits[i] = (char) ('0' + random.nextInt(10));
+        }
+        return new String(digits);
+    }
+}
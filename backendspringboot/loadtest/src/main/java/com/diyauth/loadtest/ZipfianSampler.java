@@ -0,0 +1,71 @@
+package com.diyauth.loadtest;
+
+import java.util.SplittableRandom;
+
+/**
+ * Zipf-distributed ranks in [0, n): rank 0 is the most frequent, and frequencies fall off
+ * as 1 / rank^theta (Gray et al., "Quickly Generating Billion-Record Synthetic Databases",
+ * as used by YCSB). Building one costs a pass over n to compute the zeta constant, about a
+ * second at 50M.
+ *
+ * {@link #nextScrambled} spreads the popular ranks over the whole range with a hash, so
+ * that the hot items are not simply the first (oldest) ones.
+ */
+public class ZipfianSampler {
+
+    private final long n;
+    private final double theta;
+    private final double alpha;
+    private final double zetaN;
+    private final double eta;
+
+    public ZipfianSampler(long n, double theta) {
+        if (n < 1 || theta <= 0 || theta >= 1) {
+            throw new IllegalArgumentException("Zipfian needs n >= 1 and 0 < theta < 1");
+        }
+        this.n = n;
+        this.theta = theta;
+        this.alpha = 1 / (1 - theta);
+        this.zetaN = zeta(n, theta);
+        double zeta2 = zeta(Math.min(n, 2), theta);
+        this.eta = n < 2 ? 0 : (1 - Math.pow(2.0 / n, 1 - theta)) / (1 - zeta2 / zetaN);
+    }
+
+    private static double zeta(long n, double theta) {
+        double sum = 0;
+        for (long i = 1; i <= n; i++) {
+            sum += 1 / Math.pow(i, theta);
+        }
+        return sum;
+    }
+
+    public long next(SplittableRandom random) {
+        double u = random.nextDouble();
+        double uz = u * zetaN;
+        if (uz < 1) {
+            return 0;
+        }
+        if (n > 1 && uz < 1 + Math.pow(0.5, theta)) {
+            return 1;
+        }
+        return Math.min(n - 1, (long) (n * Math.pow(eta * u - eta + 1, alpha)));
+    }
+
+    public long nextScrambled(SplittableRandom random) {
+        return Math.floorMod(mix(next(random)), n);
+    }
+
+    public long size() {
+        return n;
+    }
+
+    // FNV-1a over the rank's bytes
+    private static long mix(long value) {
+        long hash = 0xCBF29CE484222325L;
+        for (int i = 0; i < 8; i++) {
+            hash ^= (value >>> (i * 8)) & 0xff;
+            hash *= 0x100000001B3L;
+        }
+        return hash;
+    }
+}
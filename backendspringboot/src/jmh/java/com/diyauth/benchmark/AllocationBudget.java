@@ -0,0 +1,51 @@
+package com.diyauth.benchmark;
+
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.results.Result;
+import org.openjdk.jmh.results.RunResult;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.openjdk.jmh.runner.options.TimeValue;
+
+import java.util.Collection;
+
+/**
+ * Runs the request-path benchmarks with the GC profiler and fails (exit code 1) when
+ * gc.alloc.rate.norm, the bytes allocated per operation, exceeds the ceiling given by
+ * -Djmh.alloc.ceiling.bytes.
+ */
+public class AllocationBudget {
+
+    public static void main(String[] args) throws Exception {
+        long ceiling = Long.getLong("jmh.alloc.ceiling.bytes", 8192);
+
+        Options options = new OptionsBuilder()
+                .include(AuthenticatedRequestBenchmark.class.getSimpleName())
+                .addProfiler(GCProfiler.class)
+                .forks(1)
+                .warmupIterations(3)
+                .warmupTime(TimeValue.seconds(2))
+                .measurementIterations(5)
+                .measurementTime(TimeValue.seconds(2))
+                .build();
+        Collection<RunResult> results = new Runner(options).run();
+
+        boolean failed = false;
+        for (RunResult result : results) {
+            String benchmark = result.getParams().getBenchmark();
+            Result<?> allocation = result.getSecondaryResults().get("gc.alloc.rate.norm");
+            if (allocation == null) {
+                System.err.println(benchmark + ": no gc.alloc.rate.norm result");
+                failed = true;
+                continue;
+            }
+            double bytesPerOp = allocation.getScore();
+            boolean over = bytesPerOp > ceiling;
+            System.out.printf("%s: %.0f B/op (ceiling %d B/op) %s%n",
+                    benchmark, bytesPerOp, ceiling, over ? "FAIL" : "OK");
+            failed |= over;
+        }
+        System.exit(failed ? 1 : 0);
+    }
+}
@@ -0,0 +1,95 @@
+package com.diyauth.benchmark;
+
+import ch.qos.logback.classic.Level;
+import com.diyauth.controller.AuthController;
+import com.diyauth.model.User;
+import com.diyauth.security.JwtAuthenticationFilter;
+import com.diyauth.security.JwtKeyring;
+import com.diyauth.security.JwtTokenProvider;
+import com.diyauth.security.RecentPrincipalCache;
+import com.diyauth.security.UserPrincipal;
+import com.diyauth.service.CustomUserDetailsService;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import io.micrometer.observation.ObservationRegistry;
+import jakarta.servlet.FilterChain;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.infra.Blackhole;
+import org.slf4j.LoggerFactory;
+import org.springframework.http.ResponseEntity;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.security.core.userdetails.UserDetails;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.security.SecureRandom;
+import java.util.Base64;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The authenticated request path without the servlet container or Mongo: JWT filter,
+ * principal construction and the /api/auth/me controller method. Request and response
+ * objects are reused so the allocation figure covers only the application code.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class AuthenticatedRequestBenchmark {
+
+    private JwtAuthenticationFilter filter;
+    private AuthController controller;
+    private MockHttpServletRequest request;
+    private MockHttpServletResponse response;
+
+    @Setup
+    public void setUp() {
+        // The benchmark JVM has no Boot logging config; keep debug logging out of the numbers
+        ((ch.qos.logback.classic.Logger) LoggerFactory.getLogger(org.slf4j.Logger.ROOT_LOGGER_NAME))
+                .setLevel(Level.WARN);
+
+        byte[] secret = new byte[64];
+        new SecureRandom().nextBytes(secret);
+        JwtTokenProvider tokenProvider = new JwtTokenProvider(
+                new JwtKeyring(Base64.getEncoder().encodeToString(secret), ""), ObservationRegistry.NOOP);
+        ReflectionTestUtils.setField(tokenProvider, "jwtExpirationInMs", 3_600_000);
+
+        User user = new User();
+        user.setId("64b7f0c2a1b2c3d4e5f60718");
+        user.setUsername("benchmark");
+        user.setEmail("benchmark@example.com");
+        user.setPassword("$2a$10$benchmarkbenchmarkbenchmarkbenchmarkbenchmarkbenchm");
+
+        CustomUserDetailsService userDetailsService = new CustomUserDetailsService(null, ObservationRegistry.NOOP, null) {
+            @Override
+            public UserDetails loadUserByUsername(String usernameOrEmail) {
+                return UserPrincipal.create(user);
+            }
+        };
+
+        filter = new JwtAuthenticationFilter(tokenProvider, userDetailsService,
+                new RecentPrincipalCache(10_000, 900_000, 60_000, 5_000, new SimpleMeterRegistry()), ObservationRegistry.NOOP);
+        controller = new AuthController();
+        request = new MockHttpServletRequest("GET", "/api/auth/me");
+        request.addHeader("Authorization", "Bearer " + tokenProvider.generateToken(user.getUsername()));
+        response = new MockHttpServletResponse();
+    }
+
+    @Benchmark
+    public void authenticatedMe(Blackhole blackhole) throws Exception {
+        FilterChain chain = (req, res) -> {
+            ResponseEntity<?> entity = controller.getCurrentUser();
+            blackhole.consume(entity.getBody());
+        };
+        try {
+            filter.doFilter(request, response, chain);
+        } finally {
+            SecurityContextHolder.clearContext();
+        }
+    }
+}
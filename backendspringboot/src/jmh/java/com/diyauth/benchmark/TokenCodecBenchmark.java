@@ -0,0 +1,76 @@
+package com.diyauth.benchmark;
+
+import ch.qos.logback.classic.Level;
+import com.diyauth.security.JwtKeyring;
+import com.diyauth.security.JwtTokenProvider;
+import io.micrometer.observation.ObservationRegistry;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.slf4j.LoggerFactory;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.security.SecureRandom;
+import java.util.Base64;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Token mint and verify throughput through JwtTokenProvider, with jjwt only ({@code jjwt})
+ * and with the HS512 fast codec ({@code codec}). Setup cross-checks that tokens minted by
+ * either path verify on the other before anything is measured.
+ *
+ * mvn -Pjmh test-compile exec:exec -Djmh.main=org.openjdk.jmh.Main -Djmh.include=TokenCodecBenchmark
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class TokenCodecBenchmark {
+
+    @Param({"jjwt", "codec"})
+    public String implementation;
+
+    private JwtTokenProvider tokenProvider;
+    private String token;
+
+    @Setup
+    public void setUp() {
+        ((ch.qos.logback.classic.Logger) LoggerFactory.getLogger(org.slf4j.Logger.ROOT_LOGGER_NAME))
+                .setLevel(Level.WARN);
+
+        byte[] secret = new byte[64];
+        new SecureRandom().nextBytes(secret);
+        JwtKeyring keyring = new JwtKeyring(Base64.getEncoder().encodeToString(secret), "");
+        JwtTokenProvider jjwt = provider(keyring, false);
+        JwtTokenProvider codec = provider(keyring, true);
+
+        String subject = "benchmark.user@example.com";
+        if (!subject.equals(jjwt.validateAndGetUsername(codec.generateToken(subject)))
+                || !subject.equals(codec.validateAndGetUsername(jjwt.generateToken(subject)))) {
+            throw new IllegalStateException("codec and jjwt tokens are not interchangeable");
+        }
+
+        tokenProvider = "codec".equals(implementation) ? codec : jjwt;
+        token = tokenProvider.generateToken(subject);
+    }
+
+    private static JwtTokenProvider provider(JwtKeyring keyring, boolean fastCodec) {
+        JwtTokenProvider provider = new JwtTokenProvider(keyring, ObservationRegistry.NOOP, fastCodec);
+        ReflectionTestUtils.setField(provider, "jwtExpirationInMs", 3_600_000);
+        return provider;
+    }
+
+    @Benchmark
+    public String mint() {
+        return tokenProvider.generateToken("benchmark.user@example.com");
+    }
+
+    @Benchmark
+    public String verify() {
+        return tokenProvider.validateAndGetUsername(token);
+    }
+}
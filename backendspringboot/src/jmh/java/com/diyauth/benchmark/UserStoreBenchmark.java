@@ -0,0 +1,178 @@
+package com.diyauth.benchmark;
+
+import com.diyauth.config.mongo.MongoReadRouting;
+import com.diyauth.model.User;
+import com.diyauth.repository.UserRepository;
+import com.diyauth.repository.UserRepositoryCustomImpl;
+import com.diyauth.security.RecentPrincipalCache;
+import com.diyauth.service.UserIdentifierFilter;
+import com.diyauth.store.MongoUserStore;
+import com.diyauth.store.UserStore;
+import com.diyauth.store.embedded.MappedUserStore;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.mongodb.client.MongoClient;
+import com.mongodb.client.MongoClients;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.slf4j.LoggerFactory;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.index.Index;
+import org.springframework.data.mongodb.repository.support.MongoRepositoryFactory;
+import org.springframework.data.repository.core.support.RepositoryComposition;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The embedded store against MongoDB at {@code users} users (1M by default): latency of a
+ * username lookup through the UserStore, and the time from nothing to the first answered
+ * lookup ({@code open}: mapping the log and rebuilding the indexes, or creating the Mongo
+ * client and running the first query).
+ *
+ * The dataset (user{n}, user{n}@example.com) is generated on the first run and reused: the
+ * embedded log goes to bench.dir, the Mongo users to bench.mongo.uri, which is needed for
+ * the mongo runs only.
+ *
+ * java -cp ... org.openjdk.jmh.Main UserStoreBenchmark -p store=embedded
+ * java -Dbench.mongo.uri=mongodb://localhost:27017/diyauth_bench -cp ... org.openjdk.jmh.Main UserStoreBenchmark
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SampleTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class UserStoreBenchmark {
+
+    private static final String PASSWORD_HASH = "$2a$10$benchmarkbenchmarkbenchmarkbenchmarkbenchmarkbenchm";
+    private static final int MONGO_BATCH = 10_000;
+
+    @Param({"embedded", "mongo"})
+    public String store;
+
+    @Param({"1000000"})
+    public int users;
+
+    private OpenStore open;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        ((ch.qos.logback.classic.Logger) LoggerFactory.getLogger(org.slf4j.Logger.ROOT_LOGGER_NAME))
+                .setLevel(ch.qos.logback.classic.Level.WARN);
+        open = open();
+        populate(open);
+        open.close();
+        open = open();
+        if (open.store.findByUsername(username(users - 1)).isEmpty()) {
+            throw new IllegalStateException("dataset is incomplete");
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        open.close();
+    }
+
+    @Benchmark
+    public Optional<User> lookup() {
+        return open.store.findByUsername(username(ThreadLocalRandom.current().nextInt(users)));
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.SingleShotTime)
+    @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    public Optional<User> openAndLookup() throws IOException {
+        // The trial's store holds the embedded log's file lock
+        open.close();
+        open = open();
+        return open.store.findByUsername(username(0));
+    }
+
+    private OpenStore open() throws IOException {
+        if ("embedded".equals(store)) {
+            Path directory = Paths.get(System.getProperty("bench.dir", "target/jmh/user-store"));
+            MappedUserStore mapped = new MappedUserStore(directory, 64 << 20, false, 0.5, 16 << 20,
+                    new ObjectMapper(), new SimpleMeterRegistry());
+            return new OpenStore(mapped, mapped::destroy);
+        }
+        String uri = System.getProperty("bench.mongo.uri");
+        if (uri == null) {
+            throw new IllegalStateException("-Dbench.mongo.uri is required for store=mongo");
+        }
+        MongoClient client = MongoClients.create(uri);
+        MongoTemplate template = new MongoTemplate(client, uri.substring(uri.lastIndexOf('/') + 1));
+        SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+        // Never built: every lookup goes to the database
+        UserIdentifierFilter identifierFilter = new UserIdentifierFilter(template,
+                new RecentPrincipalCache(0, 0, 0, 0, meterRegistry), meterRegistry, false, 0, 0.01, false);
+        UserRepository repository = new MongoRepositoryFactory(template).getRepository(UserRepository.class,
+                RepositoryComposition.RepositoryFragments.just(
+                        new UserRepositoryCustomImpl(template, new MongoReadRouting("primary", 90, 0, 0), identifierFilter, 3000)));
+        OpenStore open = new OpenStore(new MongoUserStore(repository), client::close);
+        open.template = template;
+        return open;
+    }
+
+    private void populate(OpenStore open) {
+        long existing = open.store.count();
+        if (existing >= users) {
+            return;
+        }
+        if (open.template != null) {
+            open.template.indexOps(User.class).ensureIndex(
+                    new Index("username", Sort.Direction.ASC).unique().named("username_unique"));
+            open.template.indexOps(User.class).ensureIndex(
+                    new Index("email", Sort.Direction.ASC).unique().sparse().named("email_unique"));
+            List<User> batch = new ArrayList<>(MONGO_BATCH);
+            for (int i = (int) existing; i < users; i++) {
+                batch.add(user(i));
+                if (batch.size() == MONGO_BATCH || i == users - 1) {
+                    open.template.insert(batch, User.class);
+                    batch.clear();
+                }
+            }
+        } else {
+            for (int i = (int) existing; i < users; i++) {
+                open.store.save(user(i));
+            }
+        }
+    }
+
+    private static User user(int n) {
+        return new User(username(n), username(n) + "@example.com", PASSWORD_HASH);
+    }
+
+    private static String username(int n) {
+        return "user" + n;
+    }
+
+    private static final class OpenStore implements Closeable {
+        final UserStore store;
+        final Closeable resource;
+        MongoTemplate template;
+
+        OpenStore(UserStore store, Closeable resource) {
+            this.store = store;
+            this.resource = resource;
+        }
+
+        @Override
+        public void close() throws IOException {
+            resource.close();
+        }
+    }
+}
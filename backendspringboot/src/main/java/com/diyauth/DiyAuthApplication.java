@@ -1,21 +1,43 @@
 package com.diyauth;
 
+import com.diyauth.config.NativeRuntimeHints;
+import com.diyauth.security.JwtTokenProvider;
 import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
+import org.springframework.context.ConfigurableApplicationContext;
 import org.springframework.context.annotation.EnableAspectJAutoProxy;
-import org.springframework.data.mongodb.config.EnableMongoAuditing;
-import org.springframework.data.mongodb.repository.config.EnableMongoRepositories;
+import org.springframework.context.annotation.ImportRuntimeHints;
+import org.springframework.scheduling.annotation.EnableScheduling;
+import org.springframework.security.crypto.password.PasswordEncoder;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 @SpringBootApplication
-@EnableMongoRepositories
-@EnableMongoAuditing
 @EnableAspectJAutoProxy(proxyTargetClass = true)
+@EnableScheduling
+@ImportRuntimeHints(NativeRuntimeHints.class)
 public class DiyAuthApplication {
     private static final Logger logger = LoggerFactory.getLogger(DiyAuthApplication.class);
     public static void main(String[] args) {
-        SpringApplication.run(DiyAuthApplication.class, args);
+        ConfigurableApplicationContext context = SpringApplication.run(DiyAuthApplication.class, args);
         logger.info("=== DIY Auth Application started successfully ===");
+
+        // Class Data Sharing training run (Dockerfile.runtime): load the classes of the
+        // signin path, then exit so the JVM can write the archive.
+        if (context.getEnvironment().getProperty("app.cds.training-run", Boolean.class, false)) {
+            trainingRun(context);
+            System.exit(SpringApplication.exit(context));
+        }
+    }
+
+    private static void trainingRun(ConfigurableApplicationContext context) {
+        JwtTokenProvider tokenProvider = context.getBean(JwtTokenProvider.class);
+        PasswordEncoder passwordEncoder = context.getBean(PasswordEncoder.class);
+
+        String token = tokenProvider.generateToken("cds-training");
+        tokenProvider.validateToken(token);
+        tokenProvider.getUsernameFromJWT(token);
+        passwordEncoder.matches("cds-training", passwordEncoder.encode("cds-training"));
+        logger.info("CDS training run completed");
     }
 }
@@ -0,0 +1,43 @@
+package com.diyauth.aop;
+
+import com.diyauth.config.mongo.MongoBulkhead;
+import com.diyauth.exception.ServiceDegradedException;
+import org.aspectj.lang.ProceedingJoinPoint;
+import org.aspectj.lang.annotation.Around;
+import org.aspectj.lang.annotation.Aspect;
+import org.springframework.stereotype.Component;
+
+/**
+ * Runs every repository call, and every call into the partitioned user store, through the
+ * {@link MongoBulkhead}. Failures that mean the database is unreachable or too slow are
+ * rethrown as ServiceDegradedException, so callers handle a rejected call and a failed one
+ * the same way.
+ */
+@Aspect
+@Component
+public class MongoBulkheadAspect {
+
+    private final MongoBulkhead bulkhead;
+
+    public MongoBulkheadAspect(MongoBulkhead bulkhead) {
+        this.bulkhead = bulkhead;
+    }
+
+    @Around("target(com.diyauth.repository.UserRepository)"
+            + " || target(com.diyauth.store.partitioned.PartitionedMongoUserStore)")
+    public Object guardRepositoryCall(ProceedingJoinPoint proceedingJoinPoint) throws Throwable {
+        bulkhead.acquire();
+        Throwable failure = null;
+        try {
+            return proceedingJoinPoint.proceed();
+        } catch (Throwable ex) {
+            failure = ex;
+            if (MongoBulkhead.isUnavailability(ex)) {
+                throw new ServiceDegradedException("Database unavailable", ex);
+            }
+            throw ex;
+        } finally {
+            bulkhead.release(failure);
+        }
+    }
+}
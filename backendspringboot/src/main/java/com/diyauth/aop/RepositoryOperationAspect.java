@@ -0,0 +1,45 @@
+package com.diyauth.aop;
+
+import com.diyauth.config.mongo.MongoRepositoryOperation;
+import io.micrometer.observation.Observation;
+import io.micrometer.observation.ObservationRegistry;
+import org.aspectj.lang.ProceedingJoinPoint;
+import org.aspectj.lang.annotation.Around;
+import org.aspectj.lang.annotation.Aspect;
+import org.springframework.stereotype.Component;
+
+/**
+ * Marks the repository method in progress so the Mongo command metrics can be tagged
+ * with it (findByUsername, save, ...), and opens a {@code mongodb.repository} span around
+ * the call so each repository method appears once in a trace regardless of how many
+ * commands it issues. Calls into the partitioned user store are tagged the same way.
+ */
+@Aspect
+@Component
+public class RepositoryOperationAspect {
+
+    private final ObservationRegistry observationRegistry;
+
+    public RepositoryOperationAspect(ObservationRegistry observationRegistry) {
+        this.observationRegistry = observationRegistry;
+    }
+
+    @Around("target(com.diyauth.repository.UserRepository)"
+            + " || target(com.diyauth.store.partitioned.PartitionedMongoUserStore)")
+    public Object tagRepositoryOperation(ProceedingJoinPoint proceedingJoinPoint) throws Throwable {
+        String operation = proceedingJoinPoint.getSignature().getName();
+        String previous = MongoRepositoryOperation.enter(operation);
+        Observation observation = Observation.createNotStarted("mongodb.repository", observationRegistry)
+                .lowCardinalityKeyValue("operation", operation)
+                .start();
+        try (Observation.Scope scope = observation.openScope()) {
+            return proceedingJoinPoint.proceed();
+        } catch (Throwable ex) {
+            observation.error(ex);
+            throw ex;
+        } finally {
+            observation.stop();
+            MongoRepositoryOperation.exit(previous);
+        }
+    }
+}
@@ -0,0 +1,80 @@
+package com.diyauth.config;
+
+import com.diyauth.aop.LoggingAspect;
+import com.diyauth.aop.MongoBulkheadAspect;
+import com.diyauth.aop.RepositoryOperationAspect;
+import com.diyauth.model.User;
+import com.diyauth.payload.request.UserImportRecord;
+import com.diyauth.payload.response.UserExportRecord;
+import com.diyauth.payload.response.UserImportResult;
+import com.diyauth.security.UserPrincipal;
+import org.springframework.aot.hint.BindingReflectionHintsRegistrar;
+import org.springframework.aot.hint.MemberCategory;
+import org.springframework.aot.hint.RuntimeHints;
+import org.springframework.aot.hint.RuntimeHintsRegistrar;
+import org.springframework.aot.hint.TypeReference;
+import org.springframework.security.core.context.SecurityContextImpl;
+import org.springframework.security.oauth2.client.authentication.OAuth2AuthenticationToken;
+import org.springframework.security.oauth2.core.endpoint.OAuth2AuthorizationRequest;
+
+/**
+ * Reachability metadata for the GraalVM native image (mvn -Pnative native:compile).
+ * Spring AOT covers the bean graph; this registers what it cannot see: classes jjwt
+ * loads by name, the Mongo-mapped User document, OAuth2 session state and the
+ * reflectively invoked LoggingAspect advice.
+ */
+public class NativeRuntimeHints implements RuntimeHintsRegistrar {
+
+    // jjwt-api instantiates its implementation classes by name (io.jsonwebtoken.lang.Classes)
+    private static final String[] JJWT_IMPL_TYPES = {
+            "io.jsonwebtoken.impl.DefaultJwtBuilder",
+            "io.jsonwebtoken.impl.DefaultJwtParserBuilder",
+            "io.jsonwebtoken.impl.DefaultJwtParser",
+            "io.jsonwebtoken.impl.DefaultClaims",
+            "io.jsonwebtoken.impl.DefaultHeader",
+            "io.jsonwebtoken.impl.DefaultJwsHeader"
+    };
+
+    // Discovered through ServiceLoader (META-INF/services/io.jsonwebtoken.io.*)
+    private static final String[] JJWT_JACKSON_TYPES = {
+            "io.jsonwebtoken.jackson.io.JacksonSerializer",
+            "io.jsonwebtoken.jackson.io.JacksonDeserializer"
+    };
+
+    @Override
+    public void registerHints(RuntimeHints hints, ClassLoader classLoader) {
+        for (String type : JJWT_IMPL_TYPES) {
+            hints.reflection().registerType(TypeReference.of(type),
+                    MemberCategory.INVOKE_PUBLIC_CONSTRUCTORS, MemberCategory.INVOKE_PUBLIC_METHODS);
+        }
+        for (String type : JJWT_JACKSON_TYPES) {
+            hints.reflection().registerType(TypeReference.of(type), MemberCategory.INVOKE_PUBLIC_CONSTRUCTORS);
+        }
+        hints.resources().registerPattern("META-INF/services/io.jsonwebtoken.*");
+
+        // Lombok-generated accessors and the no-arg constructor used by the Mongo mapping layer
+        hints.reflection().registerType(User.class,
+                MemberCategory.DECLARED_FIELDS,
+                MemberCategory.INVOKE_DECLARED_CONSTRUCTORS,
+                MemberCategory.INVOKE_DECLARED_METHODS);
+
+        // Bulk import/export lines are (de)serialized with the ObjectMapper directly, not by MVC
+        BindingReflectionHintsRegistrar bindingHints = new BindingReflectionHintsRegistrar();
+        bindingHints.registerReflectionHints(hints.reflection(),
+                UserImportRecord.class, UserExportRecord.class, UserImportResult.class);
+
+        // The servlet container serializes sessions holding OAuth2 login state on shutdown
+        hints.serialization().registerType(OAuth2AuthorizationRequest.class);
+        hints.serialization().registerType(OAuth2AuthenticationToken.class);
+        hints.serialization().registerType(SecurityContextImpl.class);
+        hints.serialization().registerType(UserPrincipal.class);
+
+        // @Around advice is invoked reflectively from the AOT-generated proxies
+        hints.reflection().registerType(LoggingAspect.class,
+                MemberCategory.INVOKE_DECLARED_CONSTRUCTORS, MemberCategory.INVOKE_DECLARED_METHODS);
+        hints.reflection().registerType(RepositoryOperationAspect.class,
+                MemberCategory.INVOKE_DECLARED_CONSTRUCTORS, MemberCategory.INVOKE_DECLARED_METHODS);
+        hints.reflection().registerType(MongoBulkheadAspect.class,
+                MemberCategory.INVOKE_DECLARED_CONSTRUCTORS, MemberCategory.INVOKE_DECLARED_METHODS);
+    }
+}
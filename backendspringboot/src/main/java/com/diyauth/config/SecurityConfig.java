@@ -1,9 +1,16 @@
 package com.diyauth.config;
 
+import com.diyauth.config.tracing.ObservedAuthorizationCodeTokenResponseClient;
 import com.diyauth.security.JwtAuthenticationFilter;
 import com.diyauth.security.JwtTokenProvider;
+import com.diyauth.security.RecentPrincipalCache;
+import com.diyauth.security.RoleAuthorizationManager;
+import com.diyauth.security.UserPrincipal;
+import com.diyauth.service.LoginHistoryRecorder;
+import com.diyauth.security.ObservedPasswordEncoder;
 import com.diyauth.service.CustomOAuth2UserService;
 import com.diyauth.service.CustomUserDetailsService;
+import io.micrometer.observation.ObservationRegistry;
 import lombok.RequiredArgsConstructor;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
@@ -15,6 +22,8 @@ import org.springframework.security.config.annotation.web.configuration.EnableWe
 import org.springframework.security.config.http.SessionCreationPolicy;
 import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
 import org.springframework.security.crypto.password.PasswordEncoder;
+import org.springframework.security.oauth2.client.authentication.OAuth2AuthenticationToken;
+import org.springframework.security.oauth2.client.endpoint.DefaultAuthorizationCodeTokenResponseClient;
 import org.springframework.security.oauth2.client.oidc.web.logout.OidcClientInitiatedLogoutSuccessHandler;
 import org.springframework.security.oauth2.client.registration.ClientRegistrationRepository;
 import org.springframework.security.web.SecurityFilterChain;
@@ -38,18 +47,22 @@ public class SecurityConfig {
     private final CustomUserDetailsService userDetailsService;
     private final JwtTokenProvider tokenProvider;
     private final CustomOAuth2UserService customOAuth2UserService;
+    private final RecentPrincipalCache recentPrincipalCache;
+    private final ObservationRegistry observationRegistry;
+    private final LoginHistoryRecorder loginHistory;
 
     @Value("${cors.allowed-origins}")
     private String[] allowedOrigins;
 
     @Bean
     public JwtAuthenticationFilter jwtAuthenticationFilter() {
-        return new JwtAuthenticationFilter(tokenProvider, userDetailsService);
+        return new JwtAuthenticationFilter(tokenProvider, userDetailsService, recentPrincipalCache,
+                observationRegistry);
     }
 
     @Bean
     public PasswordEncoder passwordEncoder() {
-        return new BCryptPasswordEncoder();
+        return new ObservedPasswordEncoder(new BCryptPasswordEncoder(), observationRegistry);
     }
 
     @Bean
@@ -77,8 +90,11 @@ public class SecurityConfig {
                     "/oauth2/**",
                     "/login/oauth2/**",
                     "/api/oauth2/**",
-                    "/error"
+                    "/error",
+                    "/actuator/health/**",
+                    "/actuator/prometheus"
                 ).permitAll()
+                .requestMatchers("/api/admin/**").access(RoleAuthorizationManager.hasRole("ADMIN"))
                 .anyRequest().authenticated()
             )
             .oauth2Login(oauth2 -> oauth2
@@ -88,14 +104,27 @@ public class SecurityConfig {
                 .redirectionEndpoint(redirection -> redirection
                     .baseUri("/login/oauth2/code/*")
                 )
+                .tokenEndpoint(token -> token
+                    .accessTokenResponseClient(new ObservedAuthorizationCodeTokenResponseClient(
+                        new DefaultAuthorizationCodeTokenResponseClient(), observationRegistry))
+                )
                 .userInfoEndpoint(userInfo -> userInfo
                     .userService(customOAuth2UserService)
                 )
                 .successHandler((request, response, authentication) -> {
+                    loginHistory.recordSuccess(
+                        authentication.getPrincipal() instanceof UserPrincipal principal
+                            ? principal.getUsername() : authentication.getName(),
+                        ((OAuth2AuthenticationToken) authentication).getAuthorizedClientRegistrationId(),
+                        request);
                     String targetUrl = "/api/oauth2/success";
                     request.getRequestDispatcher(targetUrl).forward(request, response);
                 })
                 .failureHandler((request, response, exception) -> {
+                    // The user is unknown at this point; the registration id ends the callback path
+                    String uri = request.getRequestURI();
+                    loginHistory.recordFailure(null, uri.substring(uri.lastIndexOf('/') + 1),
+                        exception.getClass().getSimpleName(), request);
                     System.out.println("\n=== OAuth2 Authentication Failure ===");
                     System.out.println("Error: " + exception.getMessage());
                     System.out.println("Request URL: " + request.getRequestURL());
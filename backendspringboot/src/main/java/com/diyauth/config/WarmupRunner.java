@@ -0,0 +1,189 @@
+package com.diyauth.config;
+
+import com.diyauth.model.User;
+import com.diyauth.payload.response.JwtResponse;
+import com.diyauth.payload.response.UserInfoResponse;
+import com.diyauth.security.JwtTokenProvider;
+import com.diyauth.security.RecentPrincipalCache;
+import com.diyauth.security.UserPrincipal;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.bson.Document;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.security.crypto.password.PasswordEncoder;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Warms the JVM and the Mongo pool before the instance reports ready.
+ *
+ * Boot publishes ReadinessState.ACCEPTING_TRAFFIC only after all ApplicationRunners have
+ * returned, so while this runs /actuator/health/readiness stays DOWN and Kubernetes keeps
+ * the pod out of the Service. Liveness is already UP, so the startup probe is not affected.
+ *
+ * Steps: open app.warmup.mongo-connections pooled connections in parallel; run the token,
+ * principal and JSON code of the request path app.warmup.iterations times and BCrypt
+ * app.warmup.password-iterations times so the JIT compiles them; optionally put the
+ * app.warmup.preload-users most recently created users into the RecentPrincipalCache. The
+ * whole phase stops at app.warmup.max-duration-ms; failures are logged, never fatal. The
+ * Mongo steps are skipped with the embedded user store.
+ */
+@Component
+@Order(Ordered.LOWEST_PRECEDENCE)
+public class WarmupRunner implements ApplicationRunner {
+
+    private static final Logger logger = LoggerFactory.getLogger(WarmupRunner.class);
+
+    private static final String WARMUP_SUBJECT = "warmup";
+    private static final String WARMUP_PASSWORD = "warmup-password";
+
+    private final JwtTokenProvider tokenProvider;
+    private final PasswordEncoder passwordEncoder;
+    private final ObjectMapper objectMapper;
+    private final MongoTemplate mongoTemplate;
+    private final RecentPrincipalCache recentPrincipalCache;
+
+    @Value("${app.warmup.enabled:true}")
+    private boolean enabled;
+
+    @Value("${app.cds.training-run:false}")
+    private boolean trainingRun;
+
+    @Value("${app.warmup.max-duration-ms:30000}")
+    private long maxDurationMs;
+
+    @Value("${app.warmup.iterations:5000}")
+    private int iterations;
+
+    @Value("${app.warmup.password-iterations:20}")
+    private int passwordIterations;
+
+    @Value("${app.warmup.mongo-connections:10}")
+    private int mongoConnections;
+
+    @Value("${app.warmup.preload-users:0}")
+    private int preloadUsers;
+
+    public WarmupRunner(JwtTokenProvider tokenProvider, PasswordEncoder passwordEncoder, ObjectMapper objectMapper,
+                        ObjectProvider<MongoTemplate> mongoTemplate, RecentPrincipalCache recentPrincipalCache) {
+        this.tokenProvider = tokenProvider;
+        this.passwordEncoder = passwordEncoder;
+        this.objectMapper = objectMapper;
+        this.mongoTemplate = mongoTemplate.getIfAvailable();
+        this.recentPrincipalCache = recentPrincipalCache;
+    }
+
+    @Override
+    public void run(ApplicationArguments args) {
+        if (!enabled || trainingRun) {
+            return;
+        }
+        long start = System.nanoTime();
+        long deadline = start + TimeUnit.MILLISECONDS.toNanos(maxDurationMs);
+
+        int connections = openMongoConnections(deadline);
+        int requestPath = warmRequestPath(deadline);
+        int passwords = warmPasswordEncoder(deadline);
+        int preloaded = preloadRecentUsers();
+
+        logger.info("Warm-up finished in {} ms: {} Mongo connections, {} request-path iterations, "
+                        + "{} password checks, {} users preloaded",
+                TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start),
+                connections, requestPath, passwords, preloaded);
+    }
+
+    /**
+     * Pings from parallel threads: each concurrent command needs its own connection, so the
+     * pool ends up holding that many established (TCP + TLS + auth) connections.
+     */
+    private int openMongoConnections(long deadline) {
+        if (mongoConnections <= 0 || mongoTemplate == null) {
+            return 0;
+        }
+        ExecutorService executor = Executors.newFixedThreadPool(mongoConnections);
+        try {
+            List<Future<?>> pings = new ArrayList<>(mongoConnections);
+            for (int i = 0; i < mongoConnections; i++) {
+                pings.add(executor.submit(() -> mongoTemplate.executeCommand(new Document("ping", 1))));
+            }
+            int opened = 0;
+            for (Future<?> ping : pings) {
+                try {
+                    ping.get(Math.max(0, deadline - System.nanoTime()), TimeUnit.NANOSECONDS);
+                    opened++;
+                } catch (Exception ex) {
+                    logger.warn("Warm-up Mongo ping failed: {}", ex.getMessage());
+                    break;
+                }
+            }
+            return opened;
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    private int warmRequestPath(long deadline) {
+        User user = new User(WARMUP_SUBJECT, WARMUP_SUBJECT + "@example.com", "");
+        user.setId("000000000000000000000000");
+        int done = 0;
+        try {
+            for (; done < iterations && System.nanoTime() - deadline < 0; done++) {
+                String token = tokenProvider.generateToken(WARMUP_SUBJECT);
+                String username = tokenProvider.validateAndGetUsername(token);
+                UserPrincipal principal = UserPrincipal.create(user);
+                objectMapper.writeValueAsString(new UserInfoResponse(principal.getId(), username, principal.getEmail()));
+                objectMapper.writeValueAsString(new JwtResponse(token, principal.getId(), username, principal.getEmail()));
+            }
+        } catch (Exception ex) {
+            logger.warn("Warm-up of the request path stopped after {} iterations: {}", done, ex.getMessage());
+        }
+        return done;
+    }
+
+    private int warmPasswordEncoder(long deadline) {
+        if (passwordIterations <= 0) {
+            return 0;
+        }
+        String hash = passwordEncoder.encode(WARMUP_PASSWORD);
+        int done = 0;
+        for (; done < passwordIterations && System.nanoTime() - deadline < 0; done++) {
+            passwordEncoder.matches(WARMUP_PASSWORD, hash);
+        }
+        return done;
+    }
+
+    private int preloadRecentUsers() {
+        if (preloadUsers <= 0 || mongoTemplate == null) {
+            return 0;
+        }
+        try {
+            long generation = recentPrincipalCache.generation();
+            Query query = new Query().with(Sort.by(Sort.Direction.DESC, "_id")).limit(preloadUsers);
+            query.fields().exclude("attributes");
+            int loaded = 0;
+            for (User user : mongoTemplate.find(query, User.class)) {
+                recentPrincipalCache.put(user.getUsername(), UserPrincipal.create(user), generation);
+                loaded++;
+            }
+            return loaded;
+        } catch (RuntimeException ex) {
+            logger.warn("Warm-up user preload failed: {}", ex.getMessage());
+            return 0;
+        }
+    }
+}
@@ -0,0 +1,88 @@
+package com.diyauth.config.capture;
+
+import java.time.Instant;
+import java.util.Map;
+
+/**
+ * One request snapshot held by {@link RequestCapture}; credentials are already redacted.
+ */
+public class CapturedRequest {
+    private final long sequence;
+    private final Instant timestamp;
+    private final String method;
+    private final String path;
+    private final String query;
+    private final Map<String, String> headers;
+    private final String remoteAddress;
+    private final boolean sessionPresent;
+    private final int status;
+    private final long durationMicros;
+    private final String exception;
+
+    public CapturedRequest(long sequence, Instant timestamp, String method, String path, String query,
+                           Map<String, String> headers, String remoteAddress, boolean sessionPresent,
+                           int status, long durationMicros, String exception) {
+        this.sequence = sequence;
+        this.timestamp = timestamp;
+        this.method = method;
+        this.path = path;
+        this.query = query;
+        this.headers = headers;
+        this.remoteAddress = remoteAddress;
+        this.sessionPresent = sessionPresent;
+        this.status = status;
+        this.durationMicros = durationMicros;
+        this.exception = exception;
+    }
+
+    public long getSequence() {
+        return sequence;
+    }
+
+    public Instant getTimestamp() {
+        return timestamp;
+    }
+
+    public String getMethod() {
+        return method;
+    }
+
+    public String getPath() {
+        return path;
+    }
+
+    public String getQuery() {
+        return query;
+    }
+
+    public Map<String, String> getHeaders() {
+        return headers;
+    }
+
+    public String getRemoteAddress() {
+        return remoteAddress;
+    }
+
+    /**
+     * Whether the request arrived with (or created) an HTTP session; the id itself is a
+     * credential and is never captured.
+     */
+    public boolean isSessionPresent() {
+        return sessionPresent;
+    }
+
+    public int getStatus() {
+        return status;
+    }
+
+    public long getDurationMicros() {
+        return durationMicros;
+    }
+
+    /**
+     * Class name of an exception that escaped the filter chain, or null.
+     */
+    public String getException() {
+        return exception;
+    }
+}
@@ -0,0 +1,127 @@
+package com.diyauth.config.capture;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Admin-triggered request capture: while a session is active, {@link RequestCaptureFilter}
+ * stores matching requests in a fixed-size ring buffer (the oldest entries are overwritten).
+ * Sessions always expire, capped at {@code app.capture.max-duration-seconds}. With no session
+ * the filter's only work is one volatile read.
+ */
+@Component
+public class RequestCapture {
+
+    private static final Logger logger = LoggerFactory.getLogger(RequestCapture.class);
+
+    /**
+     * What to capture and until when; method null matches every method.
+     */
+    public record Session(String pathPrefix, String method, Instant startedAt, Instant expiresAt) {
+
+        boolean matches(String requestPath, String requestMethod) {
+            return requestPath.startsWith(pathPrefix) && (method == null || method.equalsIgnoreCase(requestMethod));
+        }
+    }
+
+    private final int capacity;
+    private final Duration maxDuration;
+    private final AtomicReferenceArray<CapturedRequest> slots;
+    private final AtomicLong sequence = new AtomicLong();
+
+    private volatile Session session;
+
+    public RequestCapture(@Value("${app.capture.buffer-size:256}") int capacity,
+                          @Value("${app.capture.max-duration-seconds:900}") long maxDurationSeconds) {
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("app.capture.buffer-size must be positive");
+        }
+        this.capacity = capacity;
+        this.maxDuration = Duration.ofSeconds(maxDurationSeconds);
+        this.slots = new AtomicReferenceArray<>(capacity);
+    }
+
+    public Session start(String pathPrefix, String method, Duration duration) {
+        if (duration.isNegative() || duration.isZero()) {
+            throw new IllegalArgumentException("duration must be positive");
+        }
+        if (duration.compareTo(maxDuration) > 0) {
+            duration = maxDuration;
+        }
+        Instant now = Instant.now();
+        Session started = new Session(pathPrefix == null ? "/" : pathPrefix, method, now, now.plus(duration));
+        session = started;
+        logger.info("Request capture started for {} {} until {}",
+                method == null ? "*" : method, started.pathPrefix(), started.expiresAt());
+        return started;
+    }
+
+    public void stop() {
+        if (session != null) {
+            session = null;
+            logger.info("Request capture stopped");
+        }
+    }
+
+    /**
+     * The running session, or null when capture is off or has expired.
+     */
+    public Session activeSession() {
+        Session current = session;
+        if (current != null && Instant.now().isAfter(current.expiresAt())) {
+            session = null;
+            logger.info("Request capture expired");
+            return null;
+        }
+        return current;
+    }
+
+    long nextSequence() {
+        return sequence.getAndIncrement();
+    }
+
+    void store(CapturedRequest request) {
+        slots.set((int) (request.getSequence() % capacity), request);
+    }
+
+    /**
+     * Buffered requests, oldest first.
+     */
+    public List<CapturedRequest> entries() {
+        List<CapturedRequest> entries = new ArrayList<>(capacity);
+        for (int i = 0; i < capacity; i++) {
+            CapturedRequest entry = slots.get(i);
+            if (entry != null) {
+                entries.add(entry);
+            }
+        }
+        entries.sort((a, b) -> Long.compare(a.getSequence(), b.getSequence()));
+        return entries;
+    }
+
+    public void clear() {
+        for (int i = 0; i < capacity; i++) {
+            slots.set(i, null);
+        }
+    }
+
+    public int getCapacity() {
+        return capacity;
+    }
+
+    /**
+     * Requests captured since startup, including those already overwritten.
+     */
+    public long getCapturedCount() {
+        return sequence.get();
+    }
+}
@@ -0,0 +1,162 @@
+package com.diyauth.config.capture;
+
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.boot.autoconfigure.security.SecurityProperties;
+import org.springframework.core.annotation.Order;
+import org.springframework.stereotype.Component;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import java.io.IOException;
+import java.time.Instant;
+import java.util.Collections;
+import java.util.Enumeration;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Feeds {@link RequestCapture}. Runs after ConcurrencyLimitFilter (shed requests are not
+ * captured) and ahead of ForwardAuthFilter and Spring Security, so forward-auth checks and
+ * rejected requests (401/403, OAuth2 redirects) are captured with their final status.
+ *
+ * Only the request line and headers are read: the body and form parameters are left alone
+ * (reading them would consume the input stream), and no session is created. Credential
+ * headers keep their scheme but lose the value, and credential query parameters (OAuth2
+ * code/state, tokens, passwords) are masked, also in the URLs of Referer and similar
+ * headers: after an OAuth2 login the frontend's calls carry the /oauth2/redirect URL, with
+ * its token and email, as their Referer.
+ */
+@Component
+@Order(SecurityProperties.DEFAULT_FILTER_ORDER - 2)
+public class RequestCaptureFilter extends OncePerRequestFilter {
+
+    static final String REDACTED = "[REDACTED]";
+    private static final int MAX_VALUE_LENGTH = 512;
+
+    private static final Set<String> SECRET_HEADERS = Set.of(
+            "authorization", "proxy-authorization", "cookie", "set-cookie", "x-api-key", "x-auth-token");
+
+    private static final Set<String> SECRET_PARAMETERS = Set.of(
+            "code", "state", "password", "token", "access_token", "refresh_token", "id_token",
+            "client_secret", "code_verifier", "session_state", "email");
+
+    private static final Set<String> URL_HEADERS = Set.of("referer", "origin", "location", "content-location");
+
+    private final RequestCapture requestCapture;
+
+    public RequestCaptureFilter(RequestCapture requestCapture) {
+        this.requestCapture = requestCapture;
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain filterChain)
+            throws ServletException, IOException {
+        RequestCapture.Session session = requestCapture.activeSession();
+        if (session == null || !session.matches(request.getRequestURI(), request.getMethod())) {
+            filterChain.doFilter(request, response);
+            return;
+        }
+
+        Instant timestamp = Instant.now();
+        long start = System.nanoTime();
+        String exception = null;
+        try {
+            filterChain.doFilter(request, response);
+        } catch (IOException | ServletException | RuntimeException ex) {
+            exception = ex.getClass().getName();
+            throw ex;
+        } finally {
+            long durationMicros = (System.nanoTime() - start) / 1000;
+            int status = exception != null && !response.isCommitted()
+                    ? HttpServletResponse.SC_INTERNAL_SERVER_ERROR : response.getStatus();
+            requestCapture.store(new CapturedRequest(requestCapture.nextSequence(), timestamp,
+                    request.getMethod(), request.getRequestURI(), redactQuery(request.getQueryString()),
+                    redactHeaders(request), request.getRemoteAddr(), request.getSession(false) != null,
+                    status, durationMicros, exception));
+        }
+    }
+
+    static Map<String, String> redactHeaders(HttpServletRequest request) {
+        Map<String, String> headers = new LinkedHashMap<>();
+        Enumeration<String> names = request.getHeaderNames();
+        if (names == null) {
+            return headers;
+        }
+        for (String name : Collections.list(names)) {
+            String value = String.join(", ", Collections.list(request.getHeaders(name)));
+            String lowerCaseName = name.toLowerCase(Locale.ROOT);
+            if (SECRET_HEADERS.contains(lowerCaseName)) {
+                headers.put(name, redactCredential(value));
+            } else if (URL_HEADERS.contains(lowerCaseName)) {
+                headers.put(name, redactUrl(value));
+            } else {
+                headers.put(name, truncate(value));
+            }
+        }
+        return headers;
+    }
+
+    /**
+     * Keeps the authentication scheme ("Bearer [REDACTED]") so malformed headers can
+     * still be told apart from missing tokens.
+     */
+    private static String redactCredential(String value) {
+        int space = value.indexOf(' ');
+        if (space > 0 && space < 16 && value.indexOf('=') < 0) {
+            return value.substring(0, space) + " " + REDACTED;
+        }
+        return REDACTED;
+    }
+
+    /**
+     * The URL with its query, and a fragment that carries parameters, redacted.
+     */
+    static String redactUrl(String url) {
+        int hash = url.indexOf('#');
+        String fragment = hash < 0 ? null : url.substring(hash + 1);
+        String rest = hash < 0 ? url : url.substring(0, hash);
+        int question = rest.indexOf('?');
+        StringBuilder redacted = new StringBuilder(url.length());
+        if (question < 0) {
+            redacted.append(rest);
+        } else {
+            redacted.append(rest, 0, question + 1).append(redactPairs(rest.substring(question + 1)));
+        }
+        if (fragment != null) {
+            redacted.append('#').append(fragment.indexOf('=') >= 0 ? redactPairs(fragment) : fragment);
+        }
+        return truncate(redacted.toString());
+    }
+
+    static String redactQuery(String query) {
+        if (query == null || query.isEmpty()) {
+            return query;
+        }
+        return truncate(redactPairs(query));
+    }
+
+    private static String redactPairs(String query) {
+        StringBuilder redacted = new StringBuilder(query.length());
+        for (String pair : query.split("&")) {
+            if (redacted.length() > 0) {
+                redacted.append('&');
+            }
+            int eq = pair.indexOf('=');
+            String name = eq < 0 ? pair : pair.substring(0, eq);
+            if (eq >= 0 && SECRET_PARAMETERS.contains(name.toLowerCase(Locale.ROOT))) {
+                redacted.append(name).append('=').append(REDACTED);
+            } else {
+                redacted.append(pair);
+            }
+        }
+        return redacted.toString();
+    }
+
+    private static String truncate(String value) {
+        return value.length() <= MAX_VALUE_LENGTH ? value : value.substring(0, MAX_VALUE_LENGTH) + "...";
+    }
+}
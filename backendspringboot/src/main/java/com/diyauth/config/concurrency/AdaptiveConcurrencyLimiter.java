@@ -0,0 +1,203 @@
+package com.diyauth.config.concurrency;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.util.StringUtils;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Concurrency limit for HTTP requests that adapts to latency (a gradient limit in the style
+ * of TCP Vegas), shared between partitions with guaranteed shares. Used by
+ * ConcurrencyLimitFilter.
+ *
+ * Each completed request is a sample: its latency is compared with its partition's no-load
+ * latency, estimated as the lowest latency seen, which creeps up slowly (doubling over about
+ * 400 samples) so that it follows real changes such as a slower database. Partitions keep
+ * separate baselines since BCrypt-bound signins and token-checked API calls differ by two
+ * orders of magnitude. While latency stays within rtt-tolerance of the baseline the limit
+ * grows by queue-size per sample; as requests queue, baseline/latency drops and the limit
+ * shrinks in proportion (by at most half per sample). Updates are smoothed, bounded by min
+ * and max, and skipped while less than half the limit is in use (no evidence either way).
+ * A request that failed for lack of capacity downstream (503) cuts the limit by
+ * backoff-ratio.
+ *
+ * A partition holds {@code share * limit} slots of its own. Past that it may borrow unused
+ * capacity, but once the total is reached only partitions still under their share are
+ * admitted, so a flood of signins cannot starve authenticated traffic or the reverse.
+ */
+@Component
+public class AdaptiveConcurrencyLimiter {
+
+    // Growth of a partition's no-load latency per sample without a lower one
+    private static final double BASELINE_DRIFT = 1.0 / 600;
+
+    private final Map<String, Partition> partitions = new LinkedHashMap<>();
+    private final double minLimit;
+    private final double maxLimit;
+    private final double rttTolerance;
+    private final double smoothing;
+    private final int queueSize;
+    private final double backoffRatio;
+
+    private double limit;
+    private int inflight;
+
+    public AdaptiveConcurrencyLimiter(MeterRegistry meterRegistry,
+                                      @Value("${app.concurrency-limit.shares:api:0.6,login:0.25,oauth2:0.15}") String shares,
+                                      @Value("${app.concurrency-limit.initial:20}") int initialLimit,
+                                      @Value("${app.concurrency-limit.min:4}") int minLimit,
+                                      @Value("${app.concurrency-limit.max:200}") int maxLimit,
+                                      @Value("${app.concurrency-limit.rtt-tolerance:2.0}") double rttTolerance,
+                                      @Value("${app.concurrency-limit.smoothing:0.2}") double smoothing,
+                                      @Value("${app.concurrency-limit.queue-size:4}") int queueSize,
+                                      @Value("${app.concurrency-limit.backoff-ratio:0.9}") double backoffRatio) {
+        this.minLimit = minLimit;
+        this.maxLimit = maxLimit;
+        this.rttTolerance = rttTolerance;
+        this.smoothing = smoothing;
+        this.queueSize = queueSize;
+        this.backoffRatio = backoffRatio;
+        this.limit = Math.max(minLimit, Math.min(maxLimit, initialLimit));
+
+        for (String entry : StringUtils.commaDelimitedListToStringArray(shares)) {
+            int colon = entry.indexOf(':');
+            if (colon < 0) {
+                throw new IllegalArgumentException("Invalid concurrency share '" + entry + "', expected name:fraction");
+            }
+            String name = entry.substring(0, colon).trim();
+            Partition partition = new Partition(name, Double.parseDouble(entry.substring(colon + 1).trim()),
+                    meterRegistry);
+            partitions.put(name, partition);
+            Gauge.builder("http.server.concurrency.guaranteed", this, l -> partition.guaranteed(l.getLimit()))
+                    .description("Slots the partition keeps when the limit is reached")
+                    .tag("partition", name)
+                    .register(meterRegistry);
+        }
+
+        Gauge.builder("http.server.concurrency.limit", this, AdaptiveConcurrencyLimiter::getLimit)
+                .description("Adaptive limit on concurrent requests")
+                .register(meterRegistry);
+    }
+
+    /**
+     * The partition of that name, or null when there is none (requests outside every
+     * partition are not limited).
+     */
+    public Partition partition(String name) {
+        return partitions.get(name);
+    }
+
+    public synchronized double getLimit() {
+        return limit;
+    }
+
+    /**
+     * Admits a request or returns false; every admitted request must be followed by exactly
+     * one {@link #onSample}, {@link #onDropped} or {@link #onIgnored}.
+     */
+    public boolean tryAcquire(Partition partition) {
+        synchronized (this) {
+            if (inflight >= (int) limit && partition.inflight >= partition.guaranteed(limit)) {
+                partition.rejected.increment();
+                return false;
+            }
+            inflight++;
+            partition.inflight++;
+            return true;
+        }
+    }
+
+    /**
+     * Releases a request that completed normally after {@code rttNanos}.
+     */
+    public void onSample(Partition partition, long rttNanos) {
+        double rtt = Math.max(1, rttNanos);
+        synchronized (this) {
+            int inflightAtCompletion = inflight;
+            release(partition);
+
+            double baseline = partition.updateBaseline(rtt);
+            if (inflightAtCompletion < limit / 2) {
+                return;
+            }
+            double gradient = Math.max(0.5, Math.min(1.0, rttTolerance * baseline / rtt));
+            double target = limit * gradient + queueSize;
+            limit = clamp(limit * (1 - smoothing) + target * smoothing);
+        }
+    }
+
+    /**
+     * Releases a request that failed for lack of capacity downstream.
+     */
+    public void onDropped(Partition partition) {
+        synchronized (this) {
+            release(partition);
+            limit = clamp(limit * backoffRatio);
+        }
+    }
+
+    /**
+     * Releases a request whose latency says nothing about capacity (it failed).
+     */
+    public synchronized void onIgnored(Partition partition) {
+        release(partition);
+    }
+
+    private void release(Partition partition) {
+        inflight--;
+        partition.inflight--;
+    }
+
+    private double clamp(double value) {
+        return Math.max(minLimit, Math.min(maxLimit, value));
+    }
+
+    /**
+     * A class of requests with a guaranteed share of the limit. Updated under the limiter's
+     * lock; the gauges read without it.
+     */
+    public static final class Partition {
+
+        private final String name;
+        private final double share;
+        private final Counter rejected;
+        private volatile int inflight;
+        private volatile double baselineRtt;
+
+        private Partition(String name, double share, MeterRegistry meterRegistry) {
+            this.name = name;
+            this.share = share;
+            this.rejected = Counter.builder("http.server.concurrency.rejected")
+                    .description("Requests shed by the concurrency limit")
+                    .tag("partition", name)
+                    .register(meterRegistry);
+            Gauge.builder("http.server.concurrency.inflight", this, p -> p.inflight)
+                    .description("Requests in progress")
+                    .tag("partition", name)
+                    .register(meterRegistry);
+            Gauge.builder("http.server.concurrency.baseline", this, p -> p.baselineRtt / 1e9)
+                    .description("No-load latency the partition's samples are compared with")
+                    .tag("partition", name)
+                    .baseUnit("seconds")
+                    .register(meterRegistry);
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        private int guaranteed(double limit) {
+            return Math.max(1, (int) Math.ceil(limit * share));
+        }
+
+        private double updateBaseline(double rtt) {
+            baselineRtt = baselineRtt == 0 ? rtt : Math.min(rtt, baselineRtt * (1 + BASELINE_DRIFT));
+            return baselineRtt;
+        }
+    }
+}
@@ -0,0 +1,106 @@
+package com.diyauth.config.concurrency;
+
+import com.diyauth.payload.response.MessageResponse;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.security.SecurityProperties;
+import org.springframework.core.annotation.Order;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.stereotype.Component;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import java.io.IOException;
+
+/**
+ * Sheds requests beyond the {@link AdaptiveConcurrencyLimiter} limit with 503 and
+ * Retry-After, before any work is done for them: it runs ahead of RequestCaptureFilter,
+ * ForwardAuthFilter and the Spring Security chain (JwtAuthenticationFilter).
+ *
+ * Partitions: {@code login} for POST /api/auth/signin and /api/auth/signup, {@code oauth2}
+ * for the OAuth2 authorization redirects, callbacks and landing pages, {@code api} for
+ * everything else under /api. Static resources, actuator endpoints (health probes must
+ * answer under load) and the root are not limited.
+ */
+@Component
+@Order(SecurityProperties.DEFAULT_FILTER_ORDER - 3)
+public class ConcurrencyLimitFilter extends OncePerRequestFilter {
+
+    private static final String RETRY_AFTER_SECONDS = "1";
+
+    private final AdaptiveConcurrencyLimiter limiter;
+    private final ObjectMapper objectMapper;
+    private final boolean enabled;
+    private final AdaptiveConcurrencyLimiter.Partition api;
+    private final AdaptiveConcurrencyLimiter.Partition login;
+    private final AdaptiveConcurrencyLimiter.Partition oauth2;
+
+    public ConcurrencyLimitFilter(AdaptiveConcurrencyLimiter limiter, ObjectMapper objectMapper,
+                                  @Value("${app.concurrency-limit.enabled:true}") boolean enabled) {
+        this.limiter = limiter;
+        this.objectMapper = objectMapper;
+        this.enabled = enabled;
+        this.api = limiter.partition("api");
+        this.login = limiter.partition("login");
+        this.oauth2 = limiter.partition("oauth2");
+    }
+
+    @Override
+    protected boolean shouldNotFilter(HttpServletRequest request) {
+        return !enabled;
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain filterChain)
+            throws ServletException, IOException {
+        AdaptiveConcurrencyLimiter.Partition partition = partitionOf(request.getRequestURI());
+        if (partition == null) {
+            filterChain.doFilter(request, response);
+            return;
+        }
+        if (!limiter.tryAcquire(partition)) {
+            reject(response);
+            return;
+        }
+
+        long start = System.nanoTime();
+        boolean completed = false;
+        try {
+            filterChain.doFilter(request, response);
+            completed = true;
+        } finally {
+            if (!completed) {
+                limiter.onIgnored(partition);
+            } else if (response.getStatus() == HttpServletResponse.SC_SERVICE_UNAVAILABLE) {
+                limiter.onDropped(partition);
+            } else {
+                limiter.onSample(partition, System.nanoTime() - start);
+            }
+        }
+    }
+
+    private AdaptiveConcurrencyLimiter.Partition partitionOf(String path) {
+        if (path.equals("/api/auth/signin") || path.equals("/api/auth/signup")) {
+            return login;
+        }
+        if (path.startsWith("/oauth2/") || path.startsWith("/login/oauth2/") || path.startsWith("/api/oauth2/")) {
+            return oauth2;
+        }
+        if (path.startsWith("/api/")) {
+            return api;
+        }
+        return null;
+    }
+
+    private void reject(HttpServletResponse response) throws IOException {
+        response.setStatus(HttpServletResponse.SC_SERVICE_UNAVAILABLE);
+        response.setHeader(HttpHeaders.RETRY_AFTER, RETRY_AFTER_SECONDS);
+        response.setContentType(MediaType.APPLICATION_JSON_VALUE);
+        objectMapper.writeValue(response.getOutputStream(),
+                new MessageResponse("Error: Server busy, please retry shortly"));
+    }
+}
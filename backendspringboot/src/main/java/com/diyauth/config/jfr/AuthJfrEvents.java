@@ -0,0 +1,79 @@
+package com.diyauth.config.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * Flight recorder events for the application's own stages, emitted by
+ * JfrObservationHandler from the observations those stages already have. All are in the
+ * "DIY Auth" category of JDK Mission Control, without stack traces (they fire on every
+ * request); with no recording running they cost a flag check.
+ */
+public final class AuthJfrEvents {
+
+    private AuthJfrEvents() {
+    }
+
+    @Category("DIY Auth")
+    @StackTrace(false)
+    abstract static class StageEvent extends Event {
+
+        @Label("Outcome")
+        String outcome;
+
+        @Label("Error")
+        @Description("Exception class and message when the stage failed")
+        String error;
+    }
+
+    @Name("com.diyauth.JwtVerify")
+    @Label("JWT Verify")
+    @Description("Token signature and expiry check (auth.token.verify)")
+    static class JwtVerify extends StageEvent {
+    }
+
+    @Name("com.diyauth.JwtSign")
+    @Label("JWT Sign")
+    @Description("Token issue at signin and OAuth2 login (auth.token.sign)")
+    static class JwtSign extends StageEvent {
+    }
+
+    @Name("com.diyauth.UserLookup")
+    @Label("User Lookup")
+    @Description("Principal load by username or email (auth.user.lookup)")
+    static class UserLookup extends StageEvent {
+
+        @Label("Mongo Commands")
+        @Description("Round trips to MongoDB during the lookup; 0 when answered by the identifier filter")
+        int queries;
+    }
+
+    @Name("com.diyauth.PasswordEncoder")
+    @Label("Password Encoder")
+    @Description("BCrypt hash or match (password.encoder)")
+    static class PasswordEncoder extends StageEvent {
+
+        @Label("Operation")
+        String operation;
+
+        @Label("Cost Factor")
+        @Description("BCrypt log2 rounds of the hash; 0 when not a BCrypt hash")
+        int cost;
+    }
+
+    @Name("com.diyauth.OAuth2Provider")
+    @Label("OAuth2 Provider Call")
+    @Description("Round trip to the identity provider (oauth2.token.exchange, oauth2.userinfo)")
+    static class OAuth2Provider extends StageEvent {
+
+        @Label("Call")
+        String call;
+
+        @Label("Registration")
+        String registration;
+    }
+}
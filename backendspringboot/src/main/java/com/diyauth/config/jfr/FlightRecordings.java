@@ -0,0 +1,96 @@
+package com.diyauth.config.jfr;
+
+import jdk.jfr.Configuration;
+import jdk.jfr.Recording;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.text.ParseException;
+import java.time.Duration;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * On-demand flight recordings (see AdminFlightRecordingController): records this JVM for a
+ * bounded duration with one of the JDK's settings, then copies the .jfr data out.
+ *
+ * One recording at a time; at most {@code app.jfr.max-duration-seconds} long and
+ * {@code app.jfr.max-size-bytes} on disk (older chunks are dropped past that). "default" is
+ * the low-overhead continuous profile; "profile" adds method sampling every 10-20 ms and
+ * allocation samples, still around a few percent of CPU. The AuthJfrEvents are on in both.
+ */
+@Component
+public class FlightRecordings {
+
+    private static final Logger logger = LoggerFactory.getLogger(FlightRecordings.class);
+
+    private static final Set<String> SETTINGS = Set.of("default", "profile");
+
+    private final long maxDurationSeconds;
+    private final long maxSizeBytes;
+    private final AtomicBoolean recording = new AtomicBoolean();
+
+    public FlightRecordings(@Value("${app.jfr.max-duration-seconds:300}") long maxDurationSeconds,
+                            @Value("${app.jfr.max-size-bytes:104857600}") long maxSizeBytes) {
+        this.maxDurationSeconds = maxDurationSeconds;
+        this.maxSizeBytes = maxSizeBytes;
+    }
+
+    /**
+     * Rejects what {@link #record} would: IllegalArgumentException for a bad duration or
+     * settings name.
+     */
+    public void validate(Duration duration, String settings) {
+        if (duration.isNegative() || duration.isZero() || duration.getSeconds() > maxDurationSeconds) {
+            throw new IllegalArgumentException("durationSeconds must be between 1 and " + maxDurationSeconds);
+        }
+        if (!SETTINGS.contains(settings)) {
+            throw new IllegalArgumentException("settings must be one of " + SETTINGS);
+        }
+    }
+
+    public boolean isRecording() {
+        return recording.get();
+    }
+
+    /**
+     * Records for {@code duration}, blocking the caller, and writes the recording to
+     * {@code out}. Throws IllegalStateException when another recording is running.
+     */
+    public void record(Duration duration, String settings, OutputStream out) throws IOException {
+        validate(duration, settings);
+        if (!recording.compareAndSet(false, true)) {
+            throw new IllegalStateException("A flight recording is already running");
+        }
+        try (Recording jfr = new Recording(Configuration.getConfiguration(settings))) {
+            jfr.setName("diyauth-on-demand");
+            jfr.setToDisk(true);
+            jfr.setMaxSize(maxSizeBytes);
+            jfr.start();
+            logger.info("Flight recording started: {} s, settings {}", duration.getSeconds(), settings);
+            try {
+                TimeUnit.MILLISECONDS.sleep(duration.toMillis());
+            } catch (InterruptedException ex) {
+                // Shutting down: hand over what was recorded so far
+                Thread.currentThread().interrupt();
+            }
+            jfr.stop();
+            logger.info("Flight recording finished, {} bytes", jfr.getSize());
+            try (InputStream data = jfr.getStream(null, null)) {
+                if (data != null) {
+                    data.transferTo(out);
+                }
+            }
+        } catch (ParseException ex) {
+            throw new IOException("JDK settings '" + settings + "' unreadable", ex);
+        } finally {
+            recording.set(false);
+        }
+    }
+}
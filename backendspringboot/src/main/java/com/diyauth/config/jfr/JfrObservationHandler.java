@@ -0,0 +1,97 @@
+package com.diyauth.config.jfr;
+
+import com.diyauth.config.mongo.MongoCommandCounter;
+import io.micrometer.common.KeyValue;
+import io.micrometer.observation.Observation;
+import io.micrometer.observation.ObservationHandler;
+import org.springframework.security.core.userdetails.UsernameNotFoundException;
+import org.springframework.stereotype.Component;
+
+import java.util.Map;
+import java.util.function.Supplier;
+
+/**
+ * Emits {@link AuthJfrEvents} for the stage observations (token sign/verify, user lookup,
+ * password encoder, OAuth2 provider calls). Registered with the ObservationRegistry by
+ * Spring Boot next to the metrics and tracing handlers.
+ *
+ * Unless a recording has the event enabled, the cost is one short-lived event object and a
+ * flag check; the event duration is the observation's start to stop on the observing thread.
+ */
+@Component
+public class JfrObservationHandler implements ObservationHandler<Observation.Context> {
+
+    private static final Map<String, Supplier<AuthJfrEvents.StageEvent>> EVENTS = Map.of(
+            "auth.token.verify", AuthJfrEvents.JwtVerify::new,
+            "auth.token.sign", AuthJfrEvents.JwtSign::new,
+            "auth.user.lookup", AuthJfrEvents.UserLookup::new,
+            "password.encoder", AuthJfrEvents.PasswordEncoder::new,
+            "oauth2.token.exchange", AuthJfrEvents.OAuth2Provider::new,
+            "oauth2.userinfo", AuthJfrEvents.OAuth2Provider::new);
+
+    @Override
+    public boolean supportsContext(Observation.Context context) {
+        return context.getName() != null && EVENTS.containsKey(context.getName());
+    }
+
+    @Override
+    public void onStart(Observation.Context context) {
+        Supplier<AuthJfrEvents.StageEvent> factory = EVENTS.get(context.getName());
+        AuthJfrEvents.StageEvent event = factory.get();
+        if (!event.isEnabled()) {
+            return;
+        }
+        MongoCommandCounter.Scope commands = event instanceof AuthJfrEvents.UserLookup
+                ? MongoCommandCounter.open() : null;
+        event.begin();
+        context.put(Recording.class, new Recording(event, commands));
+    }
+
+    @Override
+    public void onStop(Observation.Context context) {
+        Recording recording = context.get(Recording.class);
+        if (recording == null) {
+            return;
+        }
+        AuthJfrEvents.StageEvent event = recording.event;
+        event.end();
+        if (recording.commands != null) {
+            recording.commands.close();
+        }
+        if (!event.shouldCommit()) {
+            return;
+        }
+
+        Throwable error = context.getError();
+        event.outcome = error == null ? "success" : "error";
+        if (error != null) {
+            event.error = error.getClass().getSimpleName() + ": " + error.getMessage();
+        }
+        if (event instanceof AuthJfrEvents.UserLookup lookup) {
+            lookup.queries = recording.commands.getCount();
+            if (error instanceof UsernameNotFoundException) {
+                lookup.outcome = "not_found";
+            }
+        } else if (event instanceof AuthJfrEvents.PasswordEncoder password) {
+            password.operation = value(context, "operation");
+            String cost = value(context, "cost");
+            password.cost = cost != null && !cost.equals("unknown") ? Integer.parseInt(cost) : 0;
+            String outcome = value(context, "outcome");
+            if (outcome != null) {
+                password.outcome = outcome;
+            }
+        } else if (event instanceof AuthJfrEvents.OAuth2Provider provider) {
+            provider.call = context.getName().substring("oauth2.".length());
+            provider.registration = value(context, "registration");
+        }
+        event.commit();
+    }
+
+    private static String value(Observation.Context context, String key) {
+        KeyValue keyValue = context.getLowCardinalityKeyValue(key);
+        return keyValue != null ? keyValue.getValue() : null;
+    }
+
+    private record Recording(AuthJfrEvents.StageEvent event, MongoCommandCounter.Scope commands) {
+    }
+}
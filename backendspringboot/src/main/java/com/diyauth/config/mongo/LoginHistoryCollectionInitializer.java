@@ -0,0 +1,84 @@
+package com.diyauth.config.mongo;
+
+import com.diyauth.model.LoginEvent;
+import com.diyauth.store.ConditionalOnMongoDatabase;
+import com.mongodb.MongoException;
+import com.mongodb.client.model.CreateCollectionOptions;
+import com.mongodb.client.model.TimeSeriesGranularity;
+import com.mongodb.client.model.TimeSeriesOptions;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.core.annotation.Order;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.index.Index;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Creates login_history before the first event is written: a time-series collection
+ * (timestamp, meta field username) that expires documents after
+ * {@code app.login-history.retention-days}, or, on servers without time-series support,
+ * a capped collection of {@code app.login-history.capped-size-bytes}. Either way it gets a
+ * (username, timestamp desc) index for the per-user history pages. An existing collection
+ * is left as it is.
+ */
+@Component
+@Order(0)
+@ConditionalOnMongoDatabase
+public class LoginHistoryCollectionInitializer implements ApplicationRunner {
+
+    private static final Logger logger = LoggerFactory.getLogger(LoginHistoryCollectionInitializer.class);
+
+    private final MongoTemplate mongoTemplate;
+    private final long retentionDays;
+    private final long cappedSizeBytes;
+    private final boolean trainingRun;
+
+    public LoginHistoryCollectionInitializer(MongoTemplate mongoTemplate,
+                                             @Value("${app.login-history.retention-days:90}") long retentionDays,
+                                             @Value("${app.login-history.capped-size-bytes:268435456}") long cappedSizeBytes,
+                                             @Value("${app.cds.training-run:false}") boolean trainingRun) {
+        this.mongoTemplate = mongoTemplate;
+        this.retentionDays = retentionDays;
+        this.cappedSizeBytes = cappedSizeBytes;
+        this.trainingRun = trainingRun;
+    }
+
+    @Override
+    public void run(ApplicationArguments args) {
+        if (trainingRun) {
+            return;
+        }
+        try {
+            if (!mongoTemplate.collectionExists(LoginEvent.COLLECTION)) {
+                create();
+            }
+            mongoTemplate.indexOps(LoginEvent.COLLECTION).ensureIndex(new Index("username", Sort.Direction.ASC)
+                    .on("timestamp", Sort.Direction.DESC).named("username_timestamp"));
+        } catch (RuntimeException ex) {
+            logger.warn("Could not prepare the {} collection: {}", LoginEvent.COLLECTION, ex.getMessage());
+        }
+    }
+
+    private void create() {
+        try {
+            mongoTemplate.getDb().createCollection(LoginEvent.COLLECTION, new CreateCollectionOptions()
+                    .timeSeriesOptions(new TimeSeriesOptions("timestamp")
+                            .metaField("username")
+                            .granularity(TimeSeriesGranularity.SECONDS))
+                    .expireAfter(retentionDays, TimeUnit.DAYS));
+            logger.info("Created time-series collection {} ({} day retention)", LoginEvent.COLLECTION, retentionDays);
+        } catch (MongoException ex) {
+            logger.info("Time-series collections unavailable ({}), creating {} as a capped collection",
+                    ex.getMessage(), LoginEvent.COLLECTION);
+            mongoTemplate.getDb().createCollection(LoginEvent.COLLECTION, new CreateCollectionOptions()
+                    .capped(true)
+                    .sizeInBytes(cappedSizeBytes));
+        }
+    }
+}
@@ -0,0 +1,183 @@
+package com.diyauth.config.mongo;
+
+import com.diyauth.exception.ServiceDegradedException;
+import com.mongodb.MongoExecutionTimeoutException;
+import com.mongodb.MongoSocketException;
+import com.mongodb.MongoTimeoutException;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataAccessResourceFailureException;
+import org.springframework.dao.TransientDataAccessException;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Concurrency bulkhead and circuit breaker for repository calls (see MongoBulkheadAspect).
+ *
+ * At most {@code max-concurrent} calls run at once; a caller waits up to {@code max-wait-ms}
+ * for a permit. The lookups among those calls carry {@code call-timeout-ms} as their
+ * server-side time limit (maxTime); everything else keeps the driver's timeouts, so index
+ * builds, imports and other long operations on the same client are not cut short.
+ * After {@code failure-threshold} consecutive failures (timeouts, unreachable server) the
+ * bulkhead turns DEGRADED and rejects calls without touching the database. Running out of
+ * permits is not a failure: a burst against a healthy database gets 503s for the calls
+ * that found no permit, not a degraded period. After {@code degraded-duration-ms} one
+ * PROBING call is let through, and its outcome decides between NORMAL and another DEGRADED
+ * period. Rejections surface as {@link ServiceDegradedException}.
+ */
+@Component
+public class MongoBulkhead {
+
+    private static final Logger logger = LoggerFactory.getLogger(MongoBulkhead.class);
+
+    public enum State { NORMAL, DEGRADED, PROBING }
+
+    private final Semaphore permits;
+    private final long maxWaitMs;
+    private final int failureThreshold;
+    private final long degradedDurationNanos;
+
+    private final AtomicReference<State> state = new AtomicReference<>(State.NORMAL);
+    private final AtomicInteger consecutiveFailures = new AtomicInteger();
+    private volatile long degradedUntilNanos;
+
+    private final MeterRegistry meterRegistry;
+    private final Counter rejectedDegraded;
+    private final Counter rejectedSaturated;
+
+    public MongoBulkhead(MeterRegistry meterRegistry,
+                         @Value("${app.mongo.bulkhead.max-concurrent:20}") int maxConcurrent,
+                         @Value("${app.mongo.bulkhead.max-wait-ms:100}") long maxWaitMs,
+                         @Value("${app.mongo.bulkhead.failure-threshold:5}") int failureThreshold,
+                         @Value("${app.mongo.bulkhead.degraded-duration-ms:10000}") long degradedDurationMs) {
+        this.permits = new Semaphore(maxConcurrent);
+        this.maxWaitMs = maxWaitMs;
+        this.failureThreshold = failureThreshold;
+        this.degradedDurationNanos = TimeUnit.MILLISECONDS.toNanos(degradedDurationMs);
+        this.meterRegistry = meterRegistry;
+
+        Gauge.builder("mongodb.bulkhead.state", state, s -> s.get().ordinal())
+                .description("Bulkhead state: 0 normal, 1 degraded, 2 probing")
+                .register(meterRegistry);
+        Gauge.builder("mongodb.bulkhead.available.permits", permits, Semaphore::availablePermits)
+                .register(meterRegistry);
+        this.rejectedDegraded = rejectedCounter(meterRegistry, "degraded");
+        this.rejectedSaturated = rejectedCounter(meterRegistry, "saturated");
+    }
+
+    private static Counter rejectedCounter(MeterRegistry registry, String reason) {
+        return Counter.builder("mongodb.bulkhead.rejected")
+                .description("Repository calls rejected without reaching the database")
+                .tag("reason", reason)
+                .register(registry);
+    }
+
+    public State getState() {
+        return state.get();
+    }
+
+    /**
+     * True while calls are being rejected; callers use it to fail fast before doing
+     * expensive work (password hashing) that would end in a database call anyway.
+     */
+    public boolean isDegraded() {
+        State current = state.get();
+        return current == State.PROBING
+                || (current == State.DEGRADED && System.nanoTime() - degradedUntilNanos < 0);
+    }
+
+    /**
+     * Admits a call or throws ServiceDegradedException. Every successful acquire must be
+     * followed by {@link #release}.
+     */
+    public void acquire() {
+        State current = state.get();
+        if (current == State.PROBING
+                || (current == State.DEGRADED
+                    && (System.nanoTime() - degradedUntilNanos < 0 || !transition(State.DEGRADED, State.PROBING)))) {
+            rejectedDegraded.increment();
+            throw new ServiceDegradedException("Database unavailable, request rejected");
+        }
+        boolean probe = current == State.DEGRADED;
+        boolean acquired;
+        try {
+            acquired = permits.tryAcquire(maxWaitMs, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            acquired = false;
+        }
+        if (!acquired) {
+            rejectedSaturated.increment();
+            if (probe) {
+                // The probe never reached the database; the next call probes instead
+                transition(State.PROBING, State.DEGRADED);
+            }
+            throw new ServiceDegradedException("Database saturated, no permit within " + maxWaitMs + " ms");
+        }
+    }
+
+    public void release(Throwable failure) {
+        permits.release();
+        if (failure != null && isUnavailability(failure)) {
+            onFailure();
+        } else {
+            onSuccess();
+        }
+    }
+
+    private void onSuccess() {
+        consecutiveFailures.set(0);
+        if (state.get() != State.NORMAL) {
+            transition(State.PROBING, State.NORMAL);
+        }
+    }
+
+    private void onFailure() {
+        if (state.get() == State.PROBING) {
+            degrade(State.PROBING);
+        } else if (consecutiveFailures.incrementAndGet() >= failureThreshold) {
+            degrade(State.NORMAL);
+        }
+    }
+
+    private void degrade(State from) {
+        degradedUntilNanos = System.nanoTime() + degradedDurationNanos;
+        if (transition(from, State.DEGRADED)) {
+            consecutiveFailures.set(0);
+        }
+    }
+
+    private boolean transition(State from, State to) {
+        if (!state.compareAndSet(from, to)) {
+            return false;
+        }
+        meterRegistry.counter("mongodb.bulkhead.transitions", "from", from.name(), "to", to.name()).increment();
+        if (to == State.NORMAL) {
+            logger.info("Mongo bulkhead {} -> {}", from, to);
+        } else {
+            logger.warn("Mongo bulkhead {} -> {}", from, to);
+        }
+        return true;
+    }
+
+    public static boolean isUnavailability(Throwable failure) {
+        for (Throwable t = failure; t != null; t = t.getCause()) {
+            if (t instanceof DataAccessResourceFailureException
+                    || t instanceof TransientDataAccessException
+                    || t instanceof MongoTimeoutException
+                    || t instanceof MongoExecutionTimeoutException
+                    || t instanceof MongoSocketException) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
@@ -0,0 +1,57 @@
+package com.diyauth.config.mongo;
+
+import com.diyauth.store.ConditionalOnMongoDatabase;
+import com.mongodb.MongoClientSettings;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.mongo.MongoClientSettingsBuilderCustomizer;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Customizations of the auto-configured MongoClient, also applied to the clients of the
+ * partitioned user store (see {@link #applyTo}).
+ */
+@Configuration
+@ConditionalOnMongoDatabase
+public class MongoClientConfig {
+
+    @Value("${app.mongo.pool.max-size:100}")
+    private int poolMaxSize;
+
+    @Value("${app.mongo.pool.min-size:0}")
+    private int poolMinSize;
+
+    @Value("${app.mongo.pool.max-wait-time-ms:120000}")
+    private long poolMaxWaitTimeMs;
+
+    @Value("${app.mongo.pool.max-idle-time-ms:0}")
+    private long poolMaxIdleTimeMs;
+
+    @Bean
+    public MongoClientSettingsBuilderCustomizer mongoCommandCounterCustomizer() {
+        return settings -> settings.addCommandListener(new MongoCommandCounter());
+    }
+
+    @Bean
+    public MongoClientSettingsBuilderCustomizer mongoMetricsCustomizer(MeterRegistry meterRegistry) {
+        return settings -> settings
+                .addCommandListener(new MongoCommandMetrics(meterRegistry))
+                .applyToConnectionPoolSettings(pool -> pool
+                        .maxSize(poolMaxSize)
+                        .minSize(poolMinSize)
+                        .maxWaitTime(poolMaxWaitTimeMs, TimeUnit.MILLISECONDS)
+                        .maxConnectionIdleTime(poolMaxIdleTimeMs, TimeUnit.MILLISECONDS)
+                        .addConnectionPoolListener(new MongoPoolMetrics(meterRegistry)));
+    }
+
+    /**
+     * The settings above for a client the application creates itself.
+     */
+    public void applyTo(MongoClientSettings.Builder settings, MeterRegistry meterRegistry) {
+        mongoCommandCounterCustomizer().customize(settings);
+        mongoMetricsCustomizer(meterRegistry).customize(settings);
+    }
+}
@@ -0,0 +1,65 @@
+package com.diyauth.config.mongo;
+
+import com.mongodb.event.CommandListener;
+import com.mongodb.event.CommandStartedEvent;
+
+/**
+ * Counts the Mongo commands issued by the current thread while a scope is open.
+ *
+ * The sync driver notifies command listeners on the calling thread, so a scope opened
+ * around a request sees exactly the round trips that request caused. Driver monitoring
+ * runs on its own threads and is never counted.
+ */
+public class MongoCommandCounter implements CommandListener {
+
+    private static final ThreadLocal<Scope> CURRENT = new ThreadLocal<>();
+
+    @Override
+    public void commandStarted(CommandStartedEvent event) {
+        Scope scope = CURRENT.get();
+        if (scope != null) {
+            scope.count++;
+        }
+    }
+
+    /**
+     * Starts counting on the current thread. Scopes nest: the outer count resumes
+     * (including the inner commands) when the inner scope is closed.
+     */
+    public static Scope open() {
+        Scope scope = new Scope(CURRENT.get());
+        CURRENT.set(scope);
+        return scope;
+    }
+
+    /**
+     * Commands issued so far in the innermost open scope, or 0 when none is open.
+     */
+    public static int currentCount() {
+        Scope scope = CURRENT.get();
+        return scope != null ? scope.count : 0;
+    }
+
+    public static final class Scope implements AutoCloseable {
+        private final Scope parent;
+        private int count;
+
+        private Scope(Scope parent) {
+            this.parent = parent;
+        }
+
+        public int getCount() {
+            return count;
+        }
+
+        @Override
+        public void close() {
+            if (parent != null) {
+                parent.count += count;
+                CURRENT.set(parent);
+            } else {
+                CURRENT.remove();
+            }
+        }
+    }
+}
@@ -0,0 +1,49 @@
+package com.diyauth.config.mongo;
+
+import com.mongodb.event.CommandFailedEvent;
+import com.mongodb.event.CommandListener;
+import com.mongodb.event.CommandSucceededEvent;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Records {@code mongodb.repository.commands}: command latency histograms tagged with the
+ * command name and the repository method that issued it (see {@link MongoRepositoryOperation}).
+ */
+public class MongoCommandMetrics implements CommandListener {
+
+    static final String METRIC = "mongodb.repository.commands";
+
+    private final MeterRegistry registry;
+    private final Map<String, Timer> timers = new ConcurrentHashMap<>();
+
+    public MongoCommandMetrics(MeterRegistry registry) {
+        this.registry = registry;
+    }
+
+    @Override
+    public void commandSucceeded(CommandSucceededEvent event) {
+        record(event.getCommandName(), "success", event.getElapsedTime(TimeUnit.NANOSECONDS));
+    }
+
+    @Override
+    public void commandFailed(CommandFailedEvent event) {
+        record(event.getCommandName(), "failure", event.getElapsedTime(TimeUnit.NANOSECONDS));
+    }
+
+    private void record(String command, String status, long nanos) {
+        String operation = MongoRepositoryOperation.current();
+        timers.computeIfAbsent(operation + '|' + command + '|' + status, key -> Timer.builder(METRIC)
+                .description("Mongo command latency by repository method")
+                .tag("operation", operation)
+                .tag("command", command)
+                .tag("status", status)
+                .publishPercentileHistogram()
+                .register(registry))
+                .record(nanos, TimeUnit.NANOSECONDS);
+    }
+}
@@ -0,0 +1,61 @@
+package com.diyauth.config.mongo;
+
+import com.mongodb.event.ConnectionCheckOutFailedEvent;
+import com.mongodb.event.ConnectionCheckOutStartedEvent;
+import com.mongodb.event.ConnectionCheckedOutEvent;
+import com.mongodb.event.ConnectionPoolListener;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Connection pool wait time and exhaustion, complementing the size / checked-out /
+ * wait-queue gauges of Boot's {@code mongodb.driver.pool.*} metrics.
+ *
+ * The sync driver checks connections out on the calling thread, so the wait is measured
+ * between the started and checked-out (or failed) events of the same thread.
+ */
+public class MongoPoolMetrics implements ConnectionPoolListener {
+
+    private static final ThreadLocal<long[]> CHECK_OUT_STARTED = ThreadLocal.withInitial(() -> new long[1]);
+
+    private final Timer waitSuccess;
+    private final Timer waitFailure;
+    private final Counter exhausted;
+
+    public MongoPoolMetrics(MeterRegistry registry) {
+        this.waitSuccess = waitTimer(registry, "success");
+        this.waitFailure = waitTimer(registry, "failure");
+        this.exhausted = Counter.builder("mongodb.pool.exhausted")
+                .description("Connection check-outs that timed out waiting for a free connection")
+                .register(registry);
+    }
+
+    private static Timer waitTimer(MeterRegistry registry, String outcome) {
+        return Timer.builder("mongodb.pool.wait")
+                .description("Time spent waiting to check a connection out of the pool")
+                .tag("outcome", outcome)
+                .publishPercentileHistogram()
+                .register(registry);
+    }
+
+    @Override
+    public void connectionCheckOutStarted(ConnectionCheckOutStartedEvent event) {
+        CHECK_OUT_STARTED.get()[0] = System.nanoTime();
+    }
+
+    @Override
+    public void connectionCheckedOut(ConnectionCheckedOutEvent event) {
+        waitSuccess.record(System.nanoTime() - CHECK_OUT_STARTED.get()[0], TimeUnit.NANOSECONDS);
+    }
+
+    @Override
+    public void connectionCheckOutFailed(ConnectionCheckOutFailedEvent event) {
+        waitFailure.record(System.nanoTime() - CHECK_OUT_STARTED.get()[0], TimeUnit.NANOSECONDS);
+        if (event.getReason() == ConnectionCheckOutFailedEvent.Reason.TIMEOUT) {
+            exhausted.increment();
+        }
+    }
+}
@@ -0,0 +1,177 @@
+package com.diyauth.config.mongo;
+
+import com.mongodb.ReadPreference;
+import com.mongodb.client.ClientSession;
+import org.bson.BsonDocument;
+import org.bson.BsonTimestamp;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.Collections;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Read preference for the hot user lookups (login, per-request principal, signup and
+ * availability pre-checks), and the read-your-writes bookkeeping that goes with it.
+ *
+ * Lookups use {@code app.mongo.read.lookup-preference} (secondaryPreferred by default)
+ * bounded by {@code max-staleness-seconds}; every other read and all writes stay on the
+ * primary. Writes that a client is likely to read back straight away (signup, OAuth2
+ * registration) run in a causally consistent session, and the session's operation and
+ * cluster time are remembered per username/email for {@code recent-write-window-ms}: a
+ * lookup of one of those identifiers joins a new causal session at that point, so the
+ * secondary serving it waits until it has replicated the write. Where sessions are not
+ * available (standalone server), such lookups go to the primary instead. Changes made by
+ * other instances are recorded the same way when UserChangeFeed applies them.
+ *
+ * At most {@code max-tracked-writes} identifiers are remembered. Past that the oldest marks
+ * are dropped, and until the last of them would have expired every lookup without a mark
+ * goes to the primary, since it may be one whose mark was dropped.
+ */
+@Component
+public class MongoReadRouting {
+
+    private static final Logger logger = LoggerFactory.getLogger(MongoReadRouting.class);
+
+    /**
+     * Where a write happened: both times are null when it ran without a session, and only the
+     * operation time is known for changes seen on the users change stream.
+     */
+    public record WriteMark(BsonTimestamp operationTime, BsonDocument clusterTime, long expiresAtNanos) {
+
+        public boolean hasCausalTime() {
+            return operationTime != null;
+        }
+
+        public void applyTo(ClientSession session) {
+            if (clusterTime != null) {
+                session.advanceClusterTime(clusterTime);
+            }
+            // Without a cluster time, the client's own gossiped cluster time (at least that
+            // of the change stream response) is sent along
+            session.advanceOperationTime(operationTime);
+        }
+    }
+
+    private record Tracked(String identifier, WriteMark mark) {
+    }
+
+    private final ReadPreference lookupPreference;
+    private final long recentWriteWindowNanos;
+    private final int maxTrackedWrites;
+    private final Map<String, WriteMark> recentWrites = new ConcurrentHashMap<>();
+    // In recording order, which is also expiry order since every mark gets the same window
+    private final Queue<Tracked> recordingOrder = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger tracked = new AtomicInteger();
+    private volatile WriteMark droppedUntil;
+
+    public MongoReadRouting(@Value("${app.mongo.read.lookup-preference:secondaryPreferred}") String lookupPreference,
+                            @Value("${app.mongo.read.max-staleness-seconds:90}") long maxStalenessSeconds,
+                            @Value("${app.mongo.read.recent-write-window-ms:120000}") long recentWriteWindowMs,
+                            @Value("${app.mongo.read.max-tracked-writes:100000}") int maxTrackedWrites) {
+        ReadPreference preference = ReadPreference.valueOf(lookupPreference);
+        if (!ReadPreference.primary().equals(preference)) {
+            // The server rejects maxStalenessSeconds below 90
+            preference = ReadPreference.valueOf(lookupPreference, Collections.emptyList(),
+                    Math.max(90, maxStalenessSeconds), TimeUnit.SECONDS);
+        }
+        this.lookupPreference = preference;
+        this.recentWriteWindowNanos = TimeUnit.MILLISECONDS.toNanos(recentWriteWindowMs);
+        this.maxTrackedWrites = maxTrackedWrites;
+        logger.info("User lookups read from {}", preference);
+    }
+
+    public ReadPreference lookupPreference() {
+        return lookupPreference;
+    }
+
+    public boolean lookupsUseSecondaries() {
+        return !ReadPreference.primary().equals(lookupPreference);
+    }
+
+    /**
+     * Records a write of these identifiers; the session may be null.
+     */
+    public void recordWrite(ClientSession session, String... identifiers) {
+        if (!lookupsUseSecondaries()) {
+            return;
+        }
+        long expiresAt = System.nanoTime() + recentWriteWindowNanos;
+        record(session != null
+                ? new WriteMark(session.getOperationTime(), session.getClusterTime(), expiresAt)
+                : new WriteMark(null, null, expiresAt), identifiers);
+    }
+
+    /**
+     * Records a change of these identifiers made anywhere, as seen by UserChangeFeed: the
+     * event's cluster time, or null when it is not known (polling) and lookups should go to
+     * the primary. Without this, the lookup that follows an eviction could read the old
+     * document from a lagging secondary and cache it again.
+     */
+    public void recordChange(BsonTimestamp clusterTime, String... identifiers) {
+        if (!lookupsUseSecondaries()) {
+            return;
+        }
+        record(new WriteMark(clusterTime, null, System.nanoTime() + recentWriteWindowNanos), identifiers);
+    }
+
+    private void record(WriteMark mark, String... identifiers) {
+        for (String identifier : identifiers) {
+            if (identifier != null) {
+                recentWrites.put(identifier, mark);
+                recordingOrder.add(new Tracked(identifier, mark));
+                tracked.incrementAndGet();
+            }
+        }
+        evict(System.nanoTime());
+    }
+
+    // Drops expired marks from the head of the queue, then the oldest ones past the bound
+    private void evict(long now) {
+        Tracked head;
+        while ((head = recordingOrder.peek()) != null
+                && (head.mark().expiresAtNanos() - now <= 0 || tracked.get() > maxTrackedWrites)) {
+            Tracked oldest = recordingOrder.poll();
+            if (oldest == null) {
+                return;
+            }
+            tracked.decrementAndGet();
+            // A no-op when the identifier was recorded again since
+            if (recentWrites.remove(oldest.identifier(), oldest.mark())
+                    && oldest.mark().expiresAtNanos() - now > 0) {
+                droppedUntil = oldest.mark();
+            }
+        }
+    }
+
+    /**
+     * The mark of a write of this identifier within the window, or null. While marks dropped
+     * for the bound could still be current, a mark without causal time (read the primary)
+     * stands in for a missing one.
+     */
+    public WriteMark recentWrite(String identifier) {
+        if (identifier == null) {
+            return null;
+        }
+        long now = System.nanoTime();
+        WriteMark mark = recentWrites.isEmpty() ? null : recentWrites.get(identifier);
+        if (mark != null && mark.expiresAtNanos() - now <= 0) {
+            recentWrites.remove(identifier, mark);
+            mark = null;
+        }
+        if (mark == null) {
+            WriteMark dropped = droppedUntil;
+            if (dropped != null && dropped.expiresAtNanos() - now > 0) {
+                return new WriteMark(null, null, dropped.expiresAtNanos());
+            }
+        }
+        return mark;
+    }
+}
@@ -0,0 +1,17 @@
+package com.diyauth.config.mongo;
+
+import com.diyauth.repository.UserRepository;
+import com.diyauth.store.ConditionalOnMongoUserStore;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.data.mongodb.config.EnableMongoAuditing;
+import org.springframework.data.mongodb.repository.config.EnableMongoRepositories;
+
+/**
+ * Spring Data repositories, only when users are kept in MongoDB.
+ */
+@Configuration
+@ConditionalOnMongoUserStore
+@EnableMongoRepositories(basePackageClasses = UserRepository.class)
+@EnableMongoAuditing
+public class MongoRepositoryConfig {
+}
@@ -0,0 +1,37 @@
+package com.diyauth.config.mongo;
+
+/**
+ * The repository method currently executing on this thread, used to attribute Mongo
+ * commands (which the driver reports by command name only) to the call that caused them.
+ */
+public final class MongoRepositoryOperation {
+
+    public static final String NONE = "none";
+
+    private static final ThreadLocal<String> CURRENT = new ThreadLocal<>();
+
+    private MongoRepositoryOperation() {
+    }
+
+    /**
+     * Marks {@code operation} as current and returns the previous value for {@link #exit}.
+     */
+    public static String enter(String operation) {
+        String previous = CURRENT.get();
+        CURRENT.set(operation);
+        return previous;
+    }
+
+    public static void exit(String previous) {
+        if (previous != null) {
+            CURRENT.set(previous);
+        } else {
+            CURRENT.remove();
+        }
+    }
+
+    public static String current() {
+        String operation = CURRENT.get();
+        return operation != null ? operation : NONE;
+    }
+}
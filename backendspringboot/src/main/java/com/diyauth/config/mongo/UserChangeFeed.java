@@ -0,0 +1,343 @@
+package com.diyauth.config.mongo;
+
+import com.diyauth.model.User;
+import com.diyauth.security.RecentPrincipalCache;
+import com.diyauth.service.UserIdentifierFilter;
+import com.diyauth.store.ConditionalOnMongoUserStore;
+import com.mongodb.MongoCommandException;
+import com.mongodb.client.MongoChangeStreamCursor;
+import com.mongodb.client.model.changestream.ChangeStreamDocument;
+import com.mongodb.client.model.changestream.FullDocument;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.bson.BsonDocument;
+import org.bson.BsonValue;
+import org.bson.Document;
+import org.bson.types.ObjectId;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.SmartLifecycle;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Keeps RecentPrincipalCache in step with user changes made by any replica (signup, OAuth2
+ * profile updates, role changes, even edits made directly in the database).
+ *
+ * With app.user-cache.invalidation.mode=change-stream it tails a change stream on users and
+ * evicts the user of every event. The cursor waits at most max-await-ms per round trip; each
+ * empty round trip means "caught up", which is what lets the cache serve principals (see
+ * RecentPrincipalCache#invalidationsCurrentAsOf). A dropped cursor resumes from its token.
+ *
+ * Where change streams are not available (standalone servers) it falls back to polling the
+ * updatedAt field every poll-interval-ms, re-reading poll-overlap-ms before the newest change
+ * seen to absorb clock skew between replicas. Polling only sees writes made through the
+ * application, since only those set updatedAt. mode=poll polls from the start; mode=none
+ * disables the feed, so the cache never serves principals.
+ *
+ * Each change is also recorded in MongoReadRouting before the eviction, so the lookup that
+ * reloads the user reads it causally after the change (or from the primary, when polling)
+ * rather than from a secondary that has not replicated it yet, and its username and email
+ * are added to UserIdentifierFilter, which otherwise only sees this instance's saves.
+ *
+ * When events may have been lost (no resume token, history rolled off the oplog, invalidated
+ * stream) the whole cache is flushed and users.cache.invalidation.missed counts it.
+ */
+@Component
+@ConditionalOnMongoUserStore
+public class UserChangeFeed implements SmartLifecycle {
+
+    private static final Logger logger = LoggerFactory.getLogger(UserChangeFeed.class);
+
+    // Resume points that no longer exist (ChangeStreamHistoryLost, ChangeStreamFatalError,
+    // InvalidResumeToken)
+    private static final Set<Integer> HISTORY_LOST_CODES = Set.of(286, 280, 260);
+    private static final long RETRY_DELAY_MS = 1000;
+
+    private final MongoTemplate mongoTemplate;
+    private final RecentPrincipalCache principalCache;
+    private final MongoReadRouting readRouting;
+    private final UserIdentifierFilter identifierFilter;
+    private final String mode;
+    private final long maxAwaitMs;
+    private final long pollIntervalMs;
+    private final long pollOverlapMs;
+    private final int pollBatchSize;
+    private final boolean trainingRun;
+
+    private final Timer lag;
+    private final Counter missed;
+    private final Counter changeStreamInvalidations;
+    private final Counter pollInvalidations;
+    private final Counter failures;
+
+    private volatile boolean running;
+    private volatile boolean polling;
+    private Thread worker;
+    private BsonDocument resumeToken;
+    private boolean watched;
+    private Instant pollSince;
+
+    public UserChangeFeed(MongoTemplate mongoTemplate, RecentPrincipalCache principalCache, MongoReadRouting readRouting,
+                          UserIdentifierFilter identifierFilter, MeterRegistry meterRegistry,
+                          @Value("${app.user-cache.invalidation.mode:change-stream}") String mode,
+                          @Value("${app.user-cache.invalidation.max-await-ms:1000}") long maxAwaitMs,
+                          @Value("${app.user-cache.invalidation.poll-interval-ms:1000}") long pollIntervalMs,
+                          @Value("${app.user-cache.invalidation.poll-overlap-ms:5000}") long pollOverlapMs,
+                          @Value("${app.user-cache.invalidation.poll-batch-size:1000}") int pollBatchSize,
+                          @Value("${app.cds.training-run:false}") boolean trainingRun) {
+        this.mongoTemplate = mongoTemplate;
+        this.principalCache = principalCache;
+        this.readRouting = readRouting;
+        this.identifierFilter = identifierFilter;
+        this.mode = mode;
+        this.maxAwaitMs = maxAwaitMs;
+        this.pollIntervalMs = pollIntervalMs;
+        this.pollOverlapMs = pollOverlapMs;
+        this.pollBatchSize = pollBatchSize;
+        this.trainingRun = trainingRun;
+
+        this.lag = Timer.builder("users.cache.invalidation.lag")
+                .description("Time from a user change to its eviction here")
+                .publishPercentiles(0.5, 0.99)
+                .register(meterRegistry);
+        this.missed = Counter.builder("users.cache.invalidation.missed")
+                .description("Full cache flushes because user changes may have been missed")
+                .register(meterRegistry);
+        this.changeStreamInvalidations = invalidationCounter(meterRegistry, "change_stream");
+        this.pollInvalidations = invalidationCounter(meterRegistry, "poll");
+        this.failures = Counter.builder("users.cache.invalidation.failures")
+                .description("Change stream or poll errors")
+                .register(meterRegistry);
+        Gauge.builder("users.cache.invalidation.staleness", principalCache, RecentPrincipalCache::invalidationStalenessSeconds)
+                .description("Seconds since the feed was last known to be caught up (-1: never)")
+                .baseUnit("seconds")
+                .register(meterRegistry);
+    }
+
+    private static Counter invalidationCounter(MeterRegistry registry, String source) {
+        return Counter.builder("users.cache.invalidations")
+                .description("Users evicted from the principal cache")
+                .tag("source", source)
+                .register(registry);
+    }
+
+    private void run() {
+        while (running) {
+            try {
+                if (polling) {
+                    long started = System.nanoTime();
+                    poll(started);
+                    TimeUnit.MILLISECONDS.sleep(pollIntervalMs);
+                } else {
+                    watch();
+                }
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+                return;
+            } catch (MongoCommandException ex) {
+                if (!polling && HISTORY_LOST_CODES.contains(ex.getErrorCode())) {
+                    logger.warn("Cannot resume the users change stream ({}), flushing the principal cache",
+                            ex.getErrorMessage());
+                    resumeToken = null;
+                    flush();
+                } else {
+                    failed(ex);
+                }
+            } catch (RuntimeException ex) {
+                failed(ex);
+            }
+        }
+    }
+
+    private void failed(RuntimeException ex) {
+        failures.increment();
+        if (running) {
+            logger.warn("User change feed error, retrying in {} ms: {}", RETRY_DELAY_MS, ex.getMessage());
+            try {
+                TimeUnit.MILLISECONDS.sleep(RETRY_DELAY_MS);
+            } catch (InterruptedException interrupted) {
+                Thread.currentThread().interrupt();
+                running = false;
+            }
+        }
+    }
+
+    private void watch() {
+        if (resumeToken == null && watched) {
+            // Changes made since the last stream ended are unknown
+            flush();
+        }
+        var stream = mongoTemplate.getCollection(mongoTemplate.getCollectionName(User.class))
+                .watch()
+                .fullDocument(FullDocument.UPDATE_LOOKUP)
+                .maxAwaitTime(maxAwaitMs, TimeUnit.MILLISECONDS);
+        if (resumeToken != null) {
+            stream = stream.resumeAfter(resumeToken);
+        }
+        MongoChangeStreamCursor<ChangeStreamDocument<Document>> opened;
+        try {
+            opened = stream.cursor();
+        } catch (MongoCommandException ex) {
+            if (HISTORY_LOST_CODES.contains(ex.getErrorCode())) {
+                throw ex;
+            }
+            // The server answered but will not open a change stream (standalone, or a
+            // server or proxy without $changeStream support)
+            logger.info("Change streams unavailable ({}), polling users.updatedAt instead", ex.getErrorMessage());
+            startPolling();
+            return;
+        }
+        watched = true;
+        try (MongoChangeStreamCursor<ChangeStreamDocument<Document>> cursor = opened) {
+            while (running) {
+                long requested = System.nanoTime();
+                ChangeStreamDocument<Document> change = cursor.tryNext();
+                if (change != null) {
+                    apply(change);
+                } else {
+                    principalCache.invalidationsCurrentAsOf(requested);
+                }
+                if (cursor.getResumeToken() != null) {
+                    resumeToken = cursor.getResumeToken();
+                }
+            }
+        }
+    }
+
+    private void apply(ChangeStreamDocument<Document> change) {
+        switch (change.getOperationType()) {
+            case INSERT, UPDATE, REPLACE, DELETE -> {
+                Document user = change.getFullDocument();
+                String id = idOf(change.getDocumentKey());
+                String username = user != null ? user.getString("username")
+                        : id != null ? principalCache.usernameOf(id) : null;
+                // Before the eviction: the lookup that reloads the user must see this change
+                String email = user != null ? user.getString("email") : null;
+                readRouting.recordChange(change.getClusterTime(), username, email);
+                if (user != null) {
+                    identifierFilter.recordChange(username, email);
+                }
+                principalCache.invalidate(id, username);
+                changeStreamInvalidations.increment();
+                if (change.getWallTime() != null) {
+                    lag.record(Duration.ofMillis(Math.max(0, System.currentTimeMillis() - change.getWallTime().getValue())));
+                }
+            }
+            case DROP, DROP_DATABASE, RENAME, INVALIDATE -> {
+                logger.warn("Users change stream ended by {}, flushing the principal cache", change.getOperationType());
+                resumeToken = null;
+                flush();
+            }
+            default -> {
+                // Index and collection option changes do not affect users
+            }
+        }
+    }
+
+    private static String idOf(BsonDocument documentKey) {
+        if (documentKey == null) {
+            return null;
+        }
+        BsonValue id = documentKey.get("_id");
+        if (id == null) {
+            return null;
+        }
+        return id.isObjectId() ? id.asObjectId().getValue().toHexString()
+                : id.isString() ? id.asString().getValue() : id.toString();
+    }
+
+    private void startPolling() {
+        polling = true;
+        pollSince = Instant.now();
+        if (watched) {
+            flush();
+        }
+    }
+
+    private void poll(long started) {
+        Criteria page = Criteria.where("updatedAt").gt(pollSince.minusMillis(pollOverlapMs));
+        while (true) {
+            Query query = new Query(page)
+                    .with(Sort.by(Sort.Direction.ASC, "updatedAt", "id"))
+                    .limit(pollBatchSize);
+            query.fields().include("username").include("email").include("updatedAt");
+            List<User> changed = mongoTemplate.find(query, User.class);
+            Instant now = Instant.now();
+            for (User user : changed) {
+                // No cluster time here, so the reload goes to the primary
+                readRouting.recordChange(null, user.getUsername(), user.getEmail());
+                identifierFilter.recordChange(user.getUsername(), user.getEmail());
+                principalCache.invalidate(user.getId(), user.getUsername());
+                pollInvalidations.increment();
+                if (user.getUpdatedAt().isAfter(pollSince)) {
+                    lag.record(Duration.between(user.getUpdatedAt(), now).isNegative()
+                            ? Duration.ZERO : Duration.between(user.getUpdatedAt(), now));
+                    pollSince = user.getUpdatedAt();
+                }
+            }
+            if (changed.size() < pollBatchSize) {
+                break;
+            }
+            // The next page starts after the last row; users stamped with the same updatedAt
+            // are ordered by _id, so a burst larger than a batch is still read through once.
+            // The id is converted by hand: the query mapper leaves operands of $gt as strings
+            User last = changed.get(changed.size() - 1);
+            page = new Criteria().orOperator(
+                    Criteria.where("updatedAt").gt(last.getUpdatedAt()),
+                    Criteria.where("updatedAt").is(last.getUpdatedAt())
+                            .and("id").gt(mongoTemplate.getConverter().convertId(last.getId(), ObjectId.class)));
+        }
+        // Writes stamped up to pollOverlapMs before they become visible are still caught
+        principalCache.invalidationsCurrentAsOf(started);
+    }
+
+    private void flush() {
+        principalCache.invalidateAll();
+        missed.increment();
+    }
+
+    @Override
+    public void start() {
+        if (trainingRun || "none".equals(mode)) {
+            return;
+        }
+        polling = "poll".equals(mode);
+        pollSince = Instant.now();
+        running = true;
+        worker = new Thread(this::run, "user-change-feed");
+        worker.setDaemon(true);
+        worker.start();
+    }
+
+    @Override
+    public void stop() {
+        if (!running) {
+            return;
+        }
+        running = false;
+        worker.interrupt();
+        try {
+            worker.join(maxAwaitMs + TimeUnit.SECONDS.toMillis(5));
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    @Override
+    public boolean isRunning() {
+        return running;
+    }
+}
@@ -0,0 +1,88 @@
+package com.diyauth.config.mongo;
+
+import com.diyauth.model.User;
+import com.diyauth.store.ConditionalOnMongoUserStore;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.core.annotation.Order;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.index.Index;
+import org.springframework.data.mongodb.core.index.IndexOperations;
+import org.springframework.stereotype.Component;
+
+/**
+ * Creates the users collection indexes at startup.
+ *
+ * Done here rather than with auto-index-creation so that a failure (existing duplicates,
+ * database not reachable) is logged instead of failing the context, and so that the CDS
+ * training run, which has no database, skips it. The unique indexes are what turn
+ * duplicate usernames and emails into per-record errors in the bulk import, and they
+ * double as the seek indexes of the prefix searches in the admin listing.
+ */
+@Component
+@Order(0)
+@ConditionalOnMongoUserStore
+public class UserIndexInitializer implements ApplicationRunner {
+
+    private static final Logger logger = LoggerFactory.getLogger(UserIndexInitializer.class);
+
+    private final MongoTemplate mongoTemplate;
+    private final boolean trainingRun;
+
+    public UserIndexInitializer(MongoTemplate mongoTemplate,
+                                @Value("${app.cds.training-run:false}") boolean trainingRun) {
+        this.mongoTemplate = mongoTemplate;
+        this.trainingRun = trainingRun;
+    }
+
+    @Override
+    public void run(ApplicationArguments args) {
+        if (trainingRun) {
+            return;
+        }
+        try {
+            ensureIndexes(mongoTemplate);
+        } catch (RuntimeException ex) {
+            logger.warn("Could not create user indexes, continuing without them: {}", ex.getMessage());
+        }
+    }
+
+    /**
+     * The users collection indexes, in the database of {@code mongoTemplate}; also used for
+     * each database of the partitioned user store.
+     */
+    public static void ensureIndexes(MongoTemplate mongoTemplate) {
+        IndexOperations indexes = mongoTemplate.indexOps(User.class);
+        ensure(indexes, new Index("username", Sort.Direction.ASC).unique().named("username_unique"));
+        ensure(indexes, new Index("email", Sort.Direction.ASC).unique().sparse().named("email_unique"));
+        ensure(indexes, new Index("provider", Sort.Direction.ASC).on("providerId", Sort.Direction.ASC)
+                .named("provider_providerId"));
+        // Admin listing (UserRepositoryCustomImpl): equality filters first, then the _id seek key
+        ensure(indexes, new Index("provider", Sort.Direction.ASC).on("enabled", Sort.Direction.ASC)
+                .on("_id", Sort.Direction.ASC).named("provider_enabled_id"));
+        // A provider filter alone: provider_enabled_id cannot return _id order while enabled
+        // is unconstrained, and the planner would sort every user of the provider in memory
+        ensure(indexes, new Index("provider", Sort.Direction.ASC).on("_id", Sort.Direction.ASC)
+                .named("provider_id"));
+        ensure(indexes, new Index("enabled", Sort.Direction.ASC).on("_id", Sort.Direction.ASC)
+                .named("enabled_id"));
+        // Polling fallback of UserChangeFeed, which pages on (updatedAt, _id). Supersedes the
+        // "updatedAt" index of earlier versions, which can be dropped
+        ensure(indexes, new Index("updatedAt", Sort.Direction.ASC).on("_id", Sort.Direction.ASC)
+                .named("updatedAt_id"));
+    }
+
+    private static void ensure(IndexOperations indexes, Index index) {
+        try {
+            indexes.ensureIndex(index);
+        } catch (DuplicateKeyException ex) {
+            logger.warn("Index {} not created, the collection has duplicates: {}",
+                    index.getIndexOptions().get("name"), ex.getMessage());
+        }
+    }
+}
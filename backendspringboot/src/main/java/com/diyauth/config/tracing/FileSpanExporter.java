@@ -0,0 +1,107 @@
+package com.diyauth.config.tracing;
+
+import com.fasterxml.jackson.core.JsonEncoding;
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+import io.opentelemetry.api.common.AttributeKey;
+import io.opentelemetry.api.trace.SpanId;
+import io.opentelemetry.api.trace.StatusCode;
+import io.opentelemetry.sdk.common.CompletableResultCode;
+import io.opentelemetry.sdk.trace.data.SpanData;
+import io.opentelemetry.sdk.trace.export.SpanExporter;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Collection;
+import java.util.Map;
+
+/**
+ * Local stand-in for an OTLP collector: appends one span per line, using the field names
+ * of the OTLP/JSON span encoding (traceId, spanId, parentSpanId, name, kind,
+ * startTimeUnixNano, endTimeUnixNano, attributes, status), so the file can be inspected with
+ * jq or converted for any OTLP tool. Meant for development and load tests, not rotation-safe.
+ */
+public class FileSpanExporter implements SpanExporter {
+
+    private static final Logger logger = LoggerFactory.getLogger(FileSpanExporter.class);
+
+    private final JsonFactory jsonFactory = new JsonFactory();
+    private final OutputStream out;
+    private final Path path;
+
+    public FileSpanExporter(Path path) throws IOException {
+        this.path = path;
+        this.out = Files.newOutputStream(path, StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+        logger.info("Writing trace spans to {}", path.toAbsolutePath());
+    }
+
+    @Override
+    public synchronized CompletableResultCode export(Collection<SpanData> spans) {
+        try {
+            for (SpanData span : spans) {
+                writeSpan(span);
+                out.write('\n');
+            }
+            out.flush();
+            return CompletableResultCode.ofSuccess();
+        } catch (IOException ex) {
+            logger.warn("Failed to write {} spans to {}: {}", spans.size(), path, ex.getMessage());
+            return CompletableResultCode.ofFailure();
+        }
+    }
+
+    private void writeSpan(SpanData span) throws IOException {
+        JsonGenerator json = jsonFactory.createGenerator(out, JsonEncoding.UTF8);
+        json.disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+        json.writeStartObject();
+        json.writeStringField("traceId", span.getTraceId());
+        json.writeStringField("spanId", span.getSpanId());
+        if (SpanId.isValid(span.getParentSpanId())) {
+            json.writeStringField("parentSpanId", span.getParentSpanId());
+        }
+        json.writeStringField("name", span.getName());
+        json.writeStringField("kind", "SPAN_KIND_" + span.getKind().name());
+        json.writeStringField("startTimeUnixNano", Long.toString(span.getStartEpochNanos()));
+        json.writeStringField("endTimeUnixNano", Long.toString(span.getEndEpochNanos()));
+        json.writeArrayFieldStart("attributes");
+        for (Map.Entry<AttributeKey<?>, Object> attribute : span.getAttributes().asMap().entrySet()) {
+            json.writeStartObject();
+            json.writeStringField("key", attribute.getKey().getKey());
+            json.writeObjectFieldStart("value");
+            json.writeStringField("stringValue", String.valueOf(attribute.getValue()));
+            json.writeEndObject();
+            json.writeEndObject();
+        }
+        json.writeEndArray();
+        if (span.getStatus().getStatusCode() != StatusCode.UNSET) {
+            json.writeObjectFieldStart("status");
+            json.writeStringField("code", "STATUS_CODE_" + span.getStatus().getStatusCode().name());
+            if (!span.getStatus().getDescription().isEmpty()) {
+                json.writeStringField("message", span.getStatus().getDescription());
+            }
+            json.writeEndObject();
+        }
+        json.writeEndObject();
+        json.close();
+    }
+
+    @Override
+    public CompletableResultCode flush() {
+        return CompletableResultCode.ofSuccess();
+    }
+
+    @Override
+    public synchronized CompletableResultCode shutdown() {
+        try {
+            out.close();
+            return CompletableResultCode.ofSuccess();
+        } catch (IOException ex) {
+            return CompletableResultCode.ofFailure();
+        }
+    }
+}
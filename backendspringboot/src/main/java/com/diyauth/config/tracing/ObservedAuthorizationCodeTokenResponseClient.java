@@ -0,0 +1,32 @@
+package com.diyauth.config.tracing;
+
+import io.micrometer.observation.Observation;
+import io.micrometer.observation.ObservationRegistry;
+import org.springframework.security.oauth2.client.endpoint.OAuth2AccessTokenResponseClient;
+import org.springframework.security.oauth2.client.endpoint.OAuth2AuthorizationCodeGrantRequest;
+import org.springframework.security.oauth2.core.endpoint.OAuth2AccessTokenResponse;
+
+/**
+ * Wraps the OAuth2 authorization-code token exchange in an {@code oauth2.token.exchange}
+ * observation (span + timer).
+ */
+public class ObservedAuthorizationCodeTokenResponseClient
+        implements OAuth2AccessTokenResponseClient<OAuth2AuthorizationCodeGrantRequest> {
+
+    private final OAuth2AccessTokenResponseClient<OAuth2AuthorizationCodeGrantRequest> delegate;
+    private final ObservationRegistry observationRegistry;
+
+    public ObservedAuthorizationCodeTokenResponseClient(
+            OAuth2AccessTokenResponseClient<OAuth2AuthorizationCodeGrantRequest> delegate,
+            ObservationRegistry observationRegistry) {
+        this.delegate = delegate;
+        this.observationRegistry = observationRegistry;
+    }
+
+    @Override
+    public OAuth2AccessTokenResponse getTokenResponse(OAuth2AuthorizationCodeGrantRequest request) {
+        return Observation.createNotStarted("oauth2.token.exchange", observationRegistry)
+                .lowCardinalityKeyValue("registration", request.getClientRegistration().getRegistrationId())
+                .observe(() -> delegate.getTokenResponse(request));
+    }
+}
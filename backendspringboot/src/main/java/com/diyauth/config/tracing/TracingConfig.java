@@ -0,0 +1,61 @@
+package com.diyauth.config.tracing;
+
+import io.opentelemetry.exporter.otlp.http.trace.OtlpHttpSpanExporter;
+import io.opentelemetry.sdk.common.CompletableResultCode;
+import io.opentelemetry.sdk.trace.data.SpanData;
+import io.opentelemetry.sdk.trace.export.SpanExporter;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.io.IOException;
+import java.nio.file.Paths;
+import java.util.Collection;
+
+/**
+ * Span export for the Micrometer Observation -> OpenTelemetry bridge.
+ *
+ * Boot's OTLP exporter auto-configuration is excluded (application.properties) and the
+ * exporter is chosen at runtime from {@code app.tracing.exporter}, so the same AOT/native
+ * build can switch between: {@code otlp} (HTTP/protobuf to {@code app.tracing.otlp.endpoint}),
+ * {@code file} (OTLP/JSON lines to {@code app.tracing.file.path}, see FileSpanExporter) and
+ * {@code none}. Sampling is Boot's {@code management.tracing.sampling.probability}, parent-
+ * based, so a sampled W3C traceparent from the ingress is always honoured.
+ */
+@Configuration
+public class TracingConfig {
+
+    @Bean
+    public SpanExporter spanExporter(@Value("${app.tracing.exporter:none}") String exporter,
+                                     @Value("${app.tracing.otlp.endpoint:http://localhost:4318/v1/traces}") String otlpEndpoint,
+                                     @Value("${app.tracing.file.path:traces.ndjson}") String filePath) throws IOException {
+        switch (exporter) {
+            case "otlp":
+                return OtlpHttpSpanExporter.builder().setEndpoint(otlpEndpoint).build();
+            case "file":
+                return new FileSpanExporter(Paths.get(filePath));
+            case "none":
+                return new NoopSpanExporter();
+            default:
+                throw new IllegalArgumentException("Unknown app.tracing.exporter '" + exporter + "', expected otlp, file or none");
+        }
+    }
+
+    static class NoopSpanExporter implements SpanExporter {
+
+        @Override
+        public CompletableResultCode export(Collection<SpanData> spans) {
+            return CompletableResultCode.ofSuccess();
+        }
+
+        @Override
+        public CompletableResultCode flush() {
+            return CompletableResultCode.ofSuccess();
+        }
+
+        @Override
+        public CompletableResultCode shutdown() {
+            return CompletableResultCode.ofSuccess();
+        }
+    }
+}
@@ -0,0 +1,65 @@
+package com.diyauth.controller;
+
+import com.diyauth.config.capture.RequestCapture;
+import com.diyauth.payload.response.MessageResponse;
+import com.diyauth.payload.response.RequestCaptureResponse;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.ResponseEntity;
+import org.springframework.util.StringUtils;
+import org.springframework.web.bind.annotation.*;
+
+import java.time.Duration;
+import java.util.Collections;
+
+/**
+ * Turns request capture on and off and reads the buffer, restricted to ROLE_ADMIN.
+ *
+ * <pre>
+ * curl -X POST -H "Authorization: Bearer $TOKEN" \
+ *      "$BACKEND_URL/api/admin/captures/start?pathPrefix=/login/oauth2&amp;durationSeconds=120"
+ * curl -H "Authorization: Bearer $TOKEN" $BACKEND_URL/api/admin/captures
+ * </pre>
+ */
+@RestController
+@RequestMapping("/api/admin/captures")
+public class AdminCaptureController {
+
+    @Autowired
+    RequestCapture requestCapture;
+
+    @GetMapping
+    public RequestCaptureResponse getCaptures() {
+        return response(true);
+    }
+
+    @PostMapping("/start")
+    public ResponseEntity<?> startCapture(@RequestParam(defaultValue = "/") String pathPrefix,
+                                          @RequestParam(required = false) String method,
+                                          @RequestParam(defaultValue = "60") long durationSeconds) {
+        try {
+            requestCapture.start(pathPrefix, StringUtils.hasText(method) ? method : null,
+                    Duration.ofSeconds(durationSeconds));
+        } catch (IllegalArgumentException ex) {
+            return ResponseEntity.badRequest().body(new MessageResponse("Error: " + ex.getMessage()));
+        }
+        return ResponseEntity.ok(response(false));
+    }
+
+    @PostMapping("/stop")
+    public RequestCaptureResponse stopCapture() {
+        requestCapture.stop();
+        return response(false);
+    }
+
+    @DeleteMapping
+    public RequestCaptureResponse clearCaptures() {
+        requestCapture.clear();
+        return response(false);
+    }
+
+    private RequestCaptureResponse response(boolean withEntries) {
+        return new RequestCaptureResponse(requestCapture.activeSession(), requestCapture.getCapacity(),
+                requestCapture.getCapturedCount(),
+                withEntries ? requestCapture.entries() : Collections.emptyList());
+    }
+}
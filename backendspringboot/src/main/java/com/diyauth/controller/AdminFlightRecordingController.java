@@ -0,0 +1,60 @@
+package com.diyauth.controller;
+
+import com.diyauth.config.jfr.FlightRecordings;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.web.bind.annotation.*;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+
+/**
+ * Records this instance with Java Flight Recorder and streams back the .jfr file, restricted
+ * to ROLE_ADMIN. The request stays open for the recording; open the file in JDK Mission
+ * Control or with {@code jfr print --events com.diyauth.* recording.jfr}.
+ *
+ * <pre>
+ * curl -X POST -H "Authorization: Bearer $TOKEN" -o recording.jfr \
+ *      "$BACKEND_URL/api/admin/flight-recordings?durationSeconds=60&amp;settings=profile"
+ * </pre>
+ */
+@RestController
+@RequestMapping("/api/admin/flight-recordings")
+public class AdminFlightRecordingController {
+
+    private static final DateTimeFormatter FILE_TIMESTAMP = DateTimeFormatter.ofPattern("yyyyMMdd-HHmmss");
+
+    @Autowired
+    FlightRecordings flightRecordings;
+
+    @PostMapping
+    public void record(@RequestParam(defaultValue = "30") long durationSeconds,
+                       @RequestParam(defaultValue = "profile") String settings,
+                       HttpServletResponse response) throws IOException {
+        Duration duration = Duration.ofSeconds(durationSeconds);
+        try {
+            flightRecordings.validate(duration, settings);
+        } catch (IllegalArgumentException ex) {
+            response.sendError(HttpServletResponse.SC_BAD_REQUEST, ex.getMessage());
+            return;
+        }
+        if (flightRecordings.isRecording()) {
+            response.sendError(HttpServletResponse.SC_CONFLICT, "A flight recording is already running");
+            return;
+        }
+        response.setContentType(MediaType.APPLICATION_OCTET_STREAM_VALUE);
+        response.setHeader(HttpHeaders.CONTENT_DISPOSITION,
+                "attachment; filename=\"diyauth-" + LocalDateTime.now().format(FILE_TIMESTAMP) + ".jfr\"");
+        try {
+            flightRecordings.record(duration, settings, response.getOutputStream());
+        } catch (IllegalStateException ex) {
+            // Lost the race to a concurrent request; nothing has been written yet
+            response.reset();
+            response.sendError(HttpServletResponse.SC_CONFLICT, ex.getMessage());
+        }
+    }
+}
@@ -0,0 +1,99 @@
+package com.diyauth.controller;
+
+import com.diyauth.payload.response.MessageResponse;
+import com.diyauth.repository.UserListFilter;
+import com.diyauth.service.LoginHistoryService;
+import com.diyauth.service.UserBulkService;
+import com.diyauth.service.UserListingService;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.util.StringUtils;
+import org.springframework.web.bind.annotation.*;
+
+import java.io.IOException;
+
+/**
+ * User administration, restricted to ROLE_ADMIN (see SecurityConfig): keyset-paginated
+ * listing, per-user login history, and bulk import / export streaming NDJSON straight between the socket and Mongo.
+ *
+ * <pre>
+ * curl -H "Authorization: Bearer $TOKEN" -H 'Content-Type: application/x-ndjson' \
+ *      --data-binary @users.ndjson $BACKEND_URL/api/admin/users/import
+ * curl -H "Authorization: Bearer $TOKEN" $BACKEND_URL/api/admin/users/export > users.ndjson
+ * </pre>
+ */
+@RestController
+@RequestMapping("/api/admin/users")
+public class AdminUserController {
+
+    private static final String BULK_UNAVAILABLE = "Bulk import and export need the MongoDB user store";
+
+    // Mongo only: not present with the embedded user store
+    @Autowired(required = false)
+    UserBulkService userBulkService;
+
+    @Autowired
+    UserListingService userListingService;
+
+    @Autowired
+    LoginHistoryService loginHistoryService;
+
+    /**
+     * One page of users, e.g. {@code GET /api/admin/users?provider=google&enabled=true&limit=50};
+     * follow {@code nextCursor} with {@code &cursor=...} for the next page.
+     */
+    @GetMapping
+    public ResponseEntity<?> listUsers(@RequestParam(required = false) String provider,
+                                       @RequestParam(required = false) Boolean enabled,
+                                       @RequestParam(required = false) String usernamePrefix,
+                                       @RequestParam(required = false) String emailPrefix,
+                                       @RequestParam(required = false) String cursor,
+                                       @RequestParam(defaultValue = "50") int limit) {
+        UserListFilter filter = new UserListFilter(emptyToNull(provider), enabled,
+                emptyToNull(usernamePrefix), emptyToNull(emailPrefix));
+        try {
+            return ResponseEntity.ok(userListingService.list(filter, emptyToNull(cursor), limit));
+        } catch (IllegalArgumentException ex) {
+            return ResponseEntity.badRequest().body(new MessageResponse("Error: " + ex.getMessage()));
+        }
+    }
+
+    @GetMapping("/{username}/logins")
+    public ResponseEntity<?> listLogins(@PathVariable String username,
+                                        @RequestParam(required = false) String cursor,
+                                        @RequestParam(defaultValue = "20") int limit) {
+        try {
+            return ResponseEntity.ok(loginHistoryService.recentLogins(username, emptyToNull(cursor), limit));
+        } catch (IllegalArgumentException ex) {
+            return ResponseEntity.badRequest().body(new MessageResponse("Error: " + ex.getMessage()));
+        }
+    }
+
+    @PostMapping(value = "/import", consumes = MediaType.APPLICATION_NDJSON_VALUE)
+    public void importUsers(HttpServletRequest request, HttpServletResponse response) throws IOException {
+        if (userBulkService == null) {
+            response.sendError(HttpServletResponse.SC_NOT_IMPLEMENTED, BULK_UNAVAILABLE);
+            return;
+        }
+        response.setContentType(MediaType.APPLICATION_NDJSON_VALUE);
+        userBulkService.importUsers(request.getInputStream(), response.getOutputStream());
+    }
+
+    @GetMapping("/export")
+    public void exportUsers(@RequestParam(defaultValue = "false") boolean includePasswordHashes,
+                            HttpServletResponse response) throws IOException {
+        if (userBulkService == null) {
+            response.sendError(HttpServletResponse.SC_NOT_IMPLEMENTED, BULK_UNAVAILABLE);
+            return;
+        }
+        response.setContentType(MediaType.APPLICATION_NDJSON_VALUE);
+        userBulkService.exportUsers(includePasswordHashes, response.getOutputStream());
+    }
+
+    private static String emptyToNull(String value) {
+        return StringUtils.hasLength(value) ? value : null;
+    }
+}
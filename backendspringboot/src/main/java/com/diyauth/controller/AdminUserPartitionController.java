@@ -0,0 +1,73 @@
+package com.diyauth.controller;
+
+import com.diyauth.payload.response.UserPartitionsResponse;
+import com.diyauth.payload.response.UserPartitionsResponse.PartitionResponse;
+import com.diyauth.payload.response.UserPartitionsResponse.RebalanceResponse;
+import com.diyauth.store.partitioned.PartitionedMongoUserStore;
+import com.diyauth.store.partitioned.UserPartitionRebalancer;
+import com.diyauth.store.partitioned.UserPartitions;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+import java.io.IOException;
+import java.util.List;
+
+/**
+ * The partitions of the partitioned user store, restricted to ROLE_ADMIN: document counts
+ * per partition, and the rebalancing run that moves users into a newly added partition and
+ * claims the emails of users stored before partitioning (see UserPartitionRebalancer).
+ *
+ * <pre>
+ * curl -X POST -H "Authorization: Bearer $TOKEN" $BACKEND_URL/api/admin/user-partitions/rebalance
+ * curl -H "Authorization: Bearer $TOKEN" $BACKEND_URL/api/admin/user-partitions
+ * </pre>
+ */
+@RestController
+@RequestMapping("/api/admin/user-partitions")
+public class AdminUserPartitionController {
+
+    private static final String NOT_PARTITIONED = "The user store is not partitioned (app.user-store.type)";
+
+    // Partitioned user store only
+    @Autowired(required = false)
+    UserPartitions userPartitions;
+
+    @Autowired(required = false)
+    UserPartitionRebalancer rebalancer;
+
+    @GetMapping
+    public UserPartitionsResponse partitions(HttpServletResponse response) throws IOException {
+        if (userPartitions == null) {
+            response.sendError(HttpServletResponse.SC_NOT_IMPLEMENTED, NOT_PARTITIONED);
+            return null;
+        }
+        List<PartitionResponse> partitions = userPartitions.all().stream()
+                .map(partition -> new PartitionResponse(partition.index(), partition.name(),
+                        partition.template().getCollection(PartitionedMongoUserStore.USERS).estimatedDocumentCount(),
+                        partition.template().getCollection(PartitionedMongoUserStore.USER_EMAILS).estimatedDocumentCount()))
+                .toList();
+        return new UserPartitionsResponse(partitions, userPartitions.previousCount(), rebalance());
+    }
+
+    @PostMapping("/rebalance")
+    public ResponseEntity<?> startRebalance(HttpServletResponse response) throws IOException {
+        if (rebalancer == null) {
+            response.sendError(HttpServletResponse.SC_NOT_IMPLEMENTED, NOT_PARTITIONED);
+            return null;
+        }
+        if (!rebalancer.start()) {
+            response.sendError(HttpServletResponse.SC_CONFLICT, "A rebalancing run is already in progress");
+            return null;
+        }
+        return ResponseEntity.status(HttpStatus.ACCEPTED).body(rebalance());
+    }
+
+    private RebalanceResponse rebalance() {
+        return new RebalanceResponse(rebalancer.getState().name(), rebalancer.getStartedAt(), rebalancer.getFinishedAt(),
+                rebalancer.getScanned(), rebalancer.getMovedUsers(), rebalancer.getMovedEmails(),
+                rebalancer.getCreatedClaims(), rebalancer.getConflicts(), rebalancer.getError());
+    }
+}
@@ -1,13 +1,21 @@
 package com.diyauth.controller;
 
+import com.diyauth.config.mongo.MongoBulkhead;
+import com.diyauth.exception.GlobalExceptionHandler;
+import com.diyauth.exception.ServiceDegradedException;
 import com.diyauth.model.User;
 import com.diyauth.payload.request.LoginRequest;
 import com.diyauth.payload.request.SignupRequest;
+import com.diyauth.payload.response.AvailabilityResponse;
 import com.diyauth.payload.response.JwtResponse;
 import com.diyauth.payload.response.MessageResponse;
-import com.diyauth.repository.UserRepository;
+import com.diyauth.payload.response.UserInfoResponse;
 import com.diyauth.security.JwtTokenProvider;
 import com.diyauth.security.UserPrincipal;
+import com.diyauth.service.LoginHistoryRecorder;
+import com.diyauth.service.LoginHistoryService;
+import com.diyauth.service.UserIdentifierFilter;
+import com.diyauth.store.UserStore;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -17,14 +25,16 @@ import org.springframework.security.authentication.AuthenticationManager;
 import org.springframework.security.authentication.AnonymousAuthenticationToken;
 import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
 import org.springframework.security.core.Authentication;
+import org.springframework.security.core.annotation.AuthenticationPrincipal;
 import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.security.core.userdetails.UsernameNotFoundException;
 import org.springframework.security.crypto.password.PasswordEncoder;
+import org.springframework.util.StringUtils;
 import org.springframework.web.bind.annotation.*;
 
+import jakarta.servlet.http.HttpServletRequest;
 import jakarta.validation.Valid;
-import java.util.HashMap;
-import java.util.Map;
+import java.util.List;
 
 @CrossOrigin(origins = "*", maxAge = 3600)
 @RestController
@@ -32,11 +42,13 @@ import java.util.Map;
 public class AuthController {
     private static final Logger logger = LoggerFactory.getLogger(AuthController.class);
 
+    private static final String LOCAL_PROVIDER = "local";
+
     @Autowired
     AuthenticationManager authenticationManager;
 
     @Autowired
-    UserRepository userRepository;
+    UserStore userStore;
 
     @Autowired
     PasswordEncoder encoder;
@@ -44,8 +56,25 @@ public class AuthController {
     @Autowired
     JwtTokenProvider tokenProvider;
 
+    @Autowired
+    MongoBulkhead mongoBulkhead;
+
+    @Autowired(required = false)
+    UserIdentifierFilter userIdentifierFilter;
+
+    @Autowired
+    LoginHistoryRecorder loginHistory;
+
+    @Autowired
+    LoginHistoryService loginHistoryService;
+
     @PostMapping("/signin")
-    public ResponseEntity<?> authenticateUser(@Valid @RequestBody LoginRequest loginRequest) {
+    public ResponseEntity<?> authenticateUser(@Valid @RequestBody LoginRequest loginRequest,
+                                              HttpServletRequest request) {
+        // Fail fast instead of hashing a password for a lookup that cannot happen
+        if (mongoBulkhead.isDegraded()) {
+            return GlobalExceptionHandler.serviceUnavailable();
+        }
         try {
             System.out.println("Login attempt for user: " + loginRequest.getUsername());
             
@@ -60,6 +89,7 @@ public class AuthController {
             SecurityContextHolder.getContext().setAuthentication(authentication);
             String jwt = tokenProvider.generateToken(authentication);
             UserPrincipal userDetails = (UserPrincipal) authentication.getPrincipal();
+            loginHistory.recordSuccess(userDetails.getUsername(), LOCAL_PROVIDER, request);
 
             return ResponseEntity.ok(new JwtResponse(
                     jwt,
@@ -68,6 +98,10 @@ public class AuthController {
                     userDetails.getEmail()
             ));
         } catch (Exception e) {
+            if (ServiceDegradedException.isCause(e)) {
+                return GlobalExceptionHandler.serviceUnavailable();
+            }
+            loginHistory.recordFailure(loginRequest.getUsername(), LOCAL_PROVIDER, e.getClass().getSimpleName(), request);
             System.out.println("Authentication failed for user: " + loginRequest.getUsername());
             System.out.println("Error: " + e.getMessage());
             e.printStackTrace();
@@ -81,15 +115,22 @@ public class AuthController {
     @PostMapping("/signup")
     public ResponseEntity<?> registerUser(@Valid @RequestBody SignupRequest signUpRequest) {
         System.out.println("Registration attempt for user: " + signUpRequest.getUsername());
+        if (mongoBulkhead.isDegraded()) {
+            return GlobalExceptionHandler.serviceUnavailable();
+        }
         
-        if (userRepository.existsByUsername(signUpRequest.getUsername())) {
+        // One round trip for both duplicate checks
+        List<User> conflicts = userStore.findUsernameOrEmailConflicts(
+                signUpRequest.getUsername(), signUpRequest.getEmail());
+
+        if (conflicts.stream().anyMatch(u -> signUpRequest.getUsername().equals(u.getUsername()))) {
             System.out.println("Username is already taken: " + signUpRequest.getUsername());
             return ResponseEntity
                     .badRequest()
                     .body(new MessageResponse("Error: Username is already taken!"));
         }
 
-        if (userRepository.existsByEmail(signUpRequest.getEmail())) {
+        if (!conflicts.isEmpty()) {
             System.out.println("Email is already in use: " + signUpRequest.getEmail());
             return ResponseEntity
                     .badRequest()
@@ -104,10 +145,13 @@ public class AuthController {
         );
 
         try {
-            User savedUser = userRepository.save(user);
+            User savedUser = userStore.save(user);
             System.out.println("User registered successfully: " + savedUser.getUsername());
             return ResponseEntity.ok(new MessageResponse("User registered successfully!"));
         } catch (Exception e) {
+            if (ServiceDegradedException.isCause(e)) {
+                return GlobalExceptionHandler.serviceUnavailable();
+            }
             System.out.println("Error registering user: " + e.getMessage());
             e.printStackTrace();
             return ResponseEntity
@@ -116,6 +160,38 @@ public class AuthController {
         }
     }
 
+    /**
+     * Signup form check, e.g. {@code GET /api/auth/availability?username=alice&email=a@example.com}.
+     * Names the identifier filter has never seen are answered without touching the store.
+     */
+    @GetMapping("/availability")
+    public ResponseEntity<?> checkAvailability(@RequestParam(required = false) String username,
+                                               @RequestParam(required = false) String email) {
+        if (!StringUtils.hasText(username) && !StringUtils.hasText(email)) {
+            return ResponseEntity.badRequest()
+                    .body(new MessageResponse("Error: username or email is required"));
+        }
+        boolean usernameMaybeTaken = StringUtils.hasText(username) && mightExist(username);
+        boolean emailMaybeTaken = StringUtils.hasText(email) && mightExist(email);
+        if ((usernameMaybeTaken || emailMaybeTaken) && mongoBulkhead.isDegraded()) {
+            return GlobalExceptionHandler.serviceUnavailable();
+        }
+        try {
+            Boolean usernameAvailable = !StringUtils.hasText(username) ? null
+                    : !usernameMaybeTaken || !userStore.existsByUsername(username);
+            Boolean emailAvailable = !StringUtils.hasText(email) ? null
+                    : !emailMaybeTaken || !userStore.existsByEmail(email);
+            return ResponseEntity.ok(new AvailabilityResponse(usernameAvailable, emailAvailable));
+        } catch (ServiceDegradedException ex) {
+            return GlobalExceptionHandler.serviceUnavailable();
+        }
+    }
+
+    // Without the identifier filter (embedded store) every name goes to the store
+    private boolean mightExist(String identifier) {
+        return userIdentifierFilter == null || userIdentifierFilter.mightExist(identifier);
+    }
+
     @GetMapping("/me")
     public ResponseEntity<?> getCurrentUser() {
         try {
@@ -137,13 +213,8 @@ public class AuthController {
             UserPrincipal userPrincipal = (UserPrincipal) authentication.getPrincipal();
             logger.debug("Returning user details for user: {}", userPrincipal.getUsername());
             
-            // Create a response object with the user details
-            Map<String, Object> response = new HashMap<>();
-            response.put("id", userPrincipal.getId());
-            response.put("username", userPrincipal.getUsername());
-            response.put("email", userPrincipal.getEmail());
-            
-            return ResponseEntity.ok(response);
+            return ResponseEntity.ok(new UserInfoResponse(
+                    userPrincipal.getId(), userPrincipal.getUsername(), userPrincipal.getEmail()));
             
         } catch (Exception e) {
             logger.error("Error getting current user: ", e);
@@ -151,4 +222,23 @@ public class AuthController {
                     .body(new MessageResponse("Error: Unable to retrieve current user details: " + e.getMessage()));
         }
     }
-}
\ No newline at end of file
+
+    /**
+     * The caller's own recent logins, newest first; follow {@code nextCursor} with {@code ?cursor=}.
+     */
+    @GetMapping("/me/logins")
+    public ResponseEntity<?> getMyLogins(@AuthenticationPrincipal UserPrincipal userPrincipal,
+                                         @RequestParam(required = false) String cursor,
+                                         @RequestParam(defaultValue = "20") int limit) {
+        if (userPrincipal == null) {
+            return ResponseEntity.status(HttpStatus.UNAUTHORIZED)
+                    .body(new MessageResponse("Error: Not authenticated"));
+        }
+        try {
+            return ResponseEntity.ok(loginHistoryService.recentLogins(userPrincipal.getUsername(),
+                    StringUtils.hasLength(cursor) ? cursor : null, limit));
+        } catch (IllegalArgumentException ex) {
+            return ResponseEntity.badRequest().body(new MessageResponse("Error: " + ex.getMessage()));
+        }
+    }
+}
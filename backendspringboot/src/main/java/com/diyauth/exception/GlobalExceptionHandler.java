@@ -0,0 +1,25 @@
+package com.diyauth.exception;
+
+import com.diyauth.payload.response.MessageResponse;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.ExceptionHandler;
+import org.springframework.web.bind.annotation.RestControllerAdvice;
+
+@RestControllerAdvice
+public class GlobalExceptionHandler {
+
+    static final String RETRY_AFTER_SECONDS = "5";
+
+    @ExceptionHandler(ServiceDegradedException.class)
+    public ResponseEntity<MessageResponse> handleServiceDegraded(ServiceDegradedException ex) {
+        return serviceUnavailable();
+    }
+
+    public static ResponseEntity<MessageResponse> serviceUnavailable() {
+        return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+                .header(HttpHeaders.RETRY_AFTER, RETRY_AFTER_SECONDS)
+                .body(new MessageResponse("Error: Service temporarily unavailable, please retry shortly"));
+    }
+}
@@ -0,0 +1,28 @@
+package com.diyauth.exception;
+
+/**
+ * The database is unavailable or overloaded and the call was not attempted (or gave up).
+ * Mapped to 503 by {@link GlobalExceptionHandler}.
+ */
+public class ServiceDegradedException extends RuntimeException {
+    public ServiceDegradedException(String message) {
+        super(message);
+    }
+
+    public ServiceDegradedException(String message, Throwable cause) {
+        super(message, cause);
+    }
+
+    /**
+     * True when {@code throwable} is, or was caused by, a ServiceDegradedException; Spring
+     * Security wraps it when it is thrown from a UserDetailsService.
+     */
+    public static boolean isCause(Throwable throwable) {
+        for (Throwable t = throwable; t != null; t = t.getCause()) {
+            if (t instanceof ServiceDegradedException) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
@@ -0,0 +1,42 @@
+package com.diyauth.model;
+
+import lombok.Data;
+import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.mapping.Document;
+
+import java.time.Instant;
+
+/**
+ * One sign-in attempt, password or OAuth2. Stored in the login_history time-series
+ * collection (LoginHistoryCollectionInitializer) with username as the meta field; the
+ * username is null for OAuth2 failures that never got as far as identifying the user.
+ */
+@Data
+@Document(collection = LoginEvent.COLLECTION)
+public class LoginEvent {
+    public static final String COLLECTION = "login_history";
+
+    @Id
+    private String id;
+    private String username;
+    private String provider;
+    private String ipAddress;
+    private String userAgent;
+    private boolean success;
+    private String failureReason;
+    private Instant timestamp;
+
+    public LoginEvent() {
+    }
+
+    public LoginEvent(String username, String provider, String ipAddress, String userAgent,
+                      boolean success, String failureReason) {
+        this.username = username;
+        this.provider = provider;
+        this.ipAddress = ipAddress;
+        this.userAgent = userAgent;
+        this.success = success;
+        this.failureReason = failureReason;
+        this.timestamp = Instant.now();
+    }
+}
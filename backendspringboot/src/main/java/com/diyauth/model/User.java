@@ -1,14 +1,15 @@
 package com.diyauth.model;
 
+import com.diyauth.security.GrantedAuthorities;
 import lombok.Data;
 import org.springframework.data.annotation.Id;
+import org.springframework.data.annotation.LastModifiedDate;
 import org.springframework.data.mongodb.core.mapping.Document;
 import org.springframework.security.core.GrantedAuthority;
-import org.springframework.security.core.authority.SimpleGrantedAuthority;
 import org.springframework.security.oauth2.core.user.OAuth2User;
 
+import java.time.Instant;
 import java.util.*;
-import java.util.stream.Collectors;
 
 @Data
 @Document(collection = "users")
@@ -27,6 +28,11 @@ public class User {
     // OAuth2 specific fields
     private Map<String, Object> attributes;
 
+    // Set on every save through Spring Data (auditing); UserChangeFeed polls on it when
+    // change streams are unavailable
+    @LastModifiedDate
+    private Instant updatedAt;
+
     public User() {
         this.enabled = true;
         this.roles = new String[]{"ROLE_USER"};
@@ -59,8 +65,6 @@ public class User {
     }
 
     public Collection<? extends GrantedAuthority> getAuthorities() {
-        return Arrays.stream(roles)
-                .map(SimpleGrantedAuthority::new)
-                .collect(Collectors.toList());
+        return GrantedAuthorities.of(roles);
     }
 }
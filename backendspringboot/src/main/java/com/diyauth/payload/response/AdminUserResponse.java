@@ -0,0 +1,57 @@
+package com.diyauth.payload.response;
+
+import com.diyauth.model.User;
+
+public class AdminUserResponse {
+    private final String id;
+    private final String username;
+    private final String email;
+    private final boolean enabled;
+    private final String[] roles;
+    private final String provider;
+    private final String providerId;
+    private final String imageUrl;
+
+    public AdminUserResponse(User user) {
+        this.id = user.getId();
+        this.username = user.getUsername();
+        this.email = user.getEmail();
+        this.enabled = user.isEnabled();
+        this.roles = user.getRoles();
+        this.provider = user.getProvider();
+        this.providerId = user.getProviderId();
+        this.imageUrl = user.getImageUrl();
+    }
+
+    public String getId() {
+        return id;
+    }
+
+    public String getUsername() {
+        return username;
+    }
+
+    public String getEmail() {
+        return email;
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public String[] getRoles() {
+        return roles;
+    }
+
+    public String getProvider() {
+        return provider;
+    }
+
+    public String getProviderId() {
+        return providerId;
+    }
+
+    public String getImageUrl() {
+        return imageUrl;
+    }
+}
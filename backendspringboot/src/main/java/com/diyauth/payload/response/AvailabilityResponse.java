@@ -0,0 +1,22 @@
+package com.diyauth.payload.response;
+
+/**
+ * Result of {@code GET /api/auth/availability}; a field is null when it was not asked for.
+ */
+public class AvailabilityResponse {
+    private final Boolean usernameAvailable;
+    private final Boolean emailAvailable;
+
+    public AvailabilityResponse(Boolean usernameAvailable, Boolean emailAvailable) {
+        this.usernameAvailable = usernameAvailable;
+        this.emailAvailable = emailAvailable;
+    }
+
+    public Boolean getUsernameAvailable() {
+        return usernameAvailable;
+    }
+
+    public Boolean getEmailAvailable() {
+        return emailAvailable;
+    }
+}
@@ -0,0 +1,47 @@
+package com.diyauth.payload.response;
+
+import com.diyauth.model.LoginEvent;
+
+import java.time.Instant;
+
+public class LoginEventResponse {
+    private final Instant timestamp;
+    private final String provider;
+    private final String ipAddress;
+    private final String userAgent;
+    private final boolean success;
+    private final String failureReason;
+
+    public LoginEventResponse(LoginEvent event) {
+        this.timestamp = event.getTimestamp();
+        this.provider = event.getProvider();
+        this.ipAddress = event.getIpAddress();
+        this.userAgent = event.getUserAgent();
+        this.success = event.isSuccess();
+        this.failureReason = event.getFailureReason();
+    }
+
+    public Instant getTimestamp() {
+        return timestamp;
+    }
+
+    public String getProvider() {
+        return provider;
+    }
+
+    public String getIpAddress() {
+        return ipAddress;
+    }
+
+    public String getUserAgent() {
+        return userAgent;
+    }
+
+    public boolean isSuccess() {
+        return success;
+    }
+
+    public String getFailureReason() {
+        return failureReason;
+    }
+}
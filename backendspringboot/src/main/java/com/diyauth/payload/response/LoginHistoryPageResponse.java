@@ -0,0 +1,27 @@
+package com.diyauth.payload.response;
+
+import java.util.List;
+
+public class LoginHistoryPageResponse {
+    private final List<LoginEventResponse> logins;
+    private final String nextCursor;
+
+    public LoginHistoryPageResponse(List<LoginEventResponse> logins, String nextCursor) {
+        this.logins = logins;
+        this.nextCursor = nextCursor;
+    }
+
+    /**
+     * Newest first.
+     */
+    public List<LoginEventResponse> getLogins() {
+        return logins;
+    }
+
+    /**
+     * Pass as {@code cursor} for older logins; null on the last page.
+     */
+    public String getNextCursor() {
+        return nextCursor;
+    }
+}
@@ -0,0 +1,60 @@
+package com.diyauth.payload.response;
+
+import com.diyauth.config.capture.CapturedRequest;
+import com.diyauth.config.capture.RequestCapture;
+
+import java.time.Instant;
+import java.util.List;
+
+public class RequestCaptureResponse {
+    private final boolean active;
+    private final String pathPrefix;
+    private final String method;
+    private final Instant expiresAt;
+    private final int capacity;
+    private final long capturedCount;
+    private final List<CapturedRequest> requests;
+
+    public RequestCaptureResponse(RequestCapture.Session session, int capacity, long capturedCount,
+                                  List<CapturedRequest> requests) {
+        this.active = session != null;
+        this.pathPrefix = session != null ? session.pathPrefix() : null;
+        this.method = session != null ? session.method() : null;
+        this.expiresAt = session != null ? session.expiresAt() : null;
+        this.capacity = capacity;
+        this.capturedCount = capturedCount;
+        this.requests = requests;
+    }
+
+    public boolean isActive() {
+        return active;
+    }
+
+    public String getPathPrefix() {
+        return pathPrefix;
+    }
+
+    public String getMethod() {
+        return method;
+    }
+
+    public Instant getExpiresAt() {
+        return expiresAt;
+    }
+
+    public int getCapacity() {
+        return capacity;
+    }
+
+    /**
+     * Requests captured since startup; more than {@code capacity} means older entries were
+     * overwritten.
+     */
+    public long getCapturedCount() {
+        return capturedCount;
+    }
+
+    public List<CapturedRequest> getRequests() {
+        return requests;
+    }
+}
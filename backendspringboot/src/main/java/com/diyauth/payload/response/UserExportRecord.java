@@ -0,0 +1,69 @@
+package com.diyauth.payload.response;
+
+import com.diyauth.model.User;
+import com.fasterxml.jackson.annotation.JsonInclude;
+
+/**
+ * One line of a bulk user export; the shape {@link com.diyauth.payload.request.UserImportRecord}
+ * accepts, so an export can be imported elsewhere.
+ */
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public class UserExportRecord {
+    private final String id;
+    private final String username;
+    private final String email;
+    private final String passwordHash;
+    private final boolean enabled;
+    private final String[] roles;
+    private final String provider;
+    private final String providerId;
+    private final String imageUrl;
+
+    public UserExportRecord(User user) {
+        this.id = user.getId();
+        this.username = user.getUsername();
+        this.email = user.getEmail();
+        this.passwordHash = user.getPassword();
+        this.enabled = user.isEnabled();
+        this.roles = user.getRoles();
+        this.provider = user.getProvider();
+        this.providerId = user.getProviderId();
+        this.imageUrl = user.getImageUrl();
+    }
+
+    public String getId() {
+        return id;
+    }
+
+    public String getUsername() {
+        return username;
+    }
+
+    public String getEmail() {
+        return email;
+    }
+
+    public String getPasswordHash() {
+        return passwordHash;
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public String[] getRoles() {
+        return roles;
+    }
+
+    public String getProvider() {
+        return provider;
+    }
+
+    public String getProviderId() {
+        return providerId;
+    }
+
+    public String getImageUrl() {
+        return imageUrl;
+    }
+}
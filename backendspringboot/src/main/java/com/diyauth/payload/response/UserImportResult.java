@@ -0,0 +1,58 @@
+package com.diyauth.payload.response;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+
+/**
+ * A line of the bulk import response: a rejected record (line, username, error), or the
+ * final summary (read, inserted, failed).
+ */
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public class UserImportResult {
+    private final Long line;
+    private final String username;
+    private final String error;
+    private final Long read;
+    private final Long inserted;
+    private final Long failed;
+
+    private UserImportResult(Long line, String username, String error, Long read, Long inserted, Long failed) {
+        this.line = line;
+        this.username = username;
+        this.error = error;
+        this.read = read;
+        this.inserted = inserted;
+        this.failed = failed;
+    }
+
+    public static UserImportResult error(long line, String username, String error) {
+        return new UserImportResult(line, username, error, null, null, null);
+    }
+
+    public static UserImportResult summary(long read, long inserted, long failed) {
+        return new UserImportResult(null, null, null, read, inserted, failed);
+    }
+
+    public Long getLine() {
+        return line;
+    }
+
+    public String getUsername() {
+        return username;
+    }
+
+    public String getError() {
+        return error;
+    }
+
+    public Long getRead() {
+        return read;
+    }
+
+    public Long getInserted() {
+        return inserted;
+    }
+
+    public Long getFailed() {
+        return failed;
+    }
+}
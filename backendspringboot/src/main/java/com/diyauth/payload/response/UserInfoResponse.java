@@ -0,0 +1,25 @@
+package com.diyauth.payload.response;
+
+public class UserInfoResponse {
+    private final String id;
+    private final String username;
+    private final String email;
+
+    public UserInfoResponse(String id, String username, String email) {
+        this.id = id;
+        this.username = username;
+        this.email = email;
+    }
+
+    public String getId() {
+        return id;
+    }
+
+    public String getUsername() {
+        return username;
+    }
+
+    public String getEmail() {
+        return email;
+    }
+}
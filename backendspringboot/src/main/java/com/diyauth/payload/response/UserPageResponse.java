@@ -0,0 +1,24 @@
+package com.diyauth.payload.response;
+
+import java.util.List;
+
+public class UserPageResponse {
+    private final List<AdminUserResponse> users;
+    private final String nextCursor;
+
+    public UserPageResponse(List<AdminUserResponse> users, String nextCursor) {
+        this.users = users;
+        this.nextCursor = nextCursor;
+    }
+
+    public List<AdminUserResponse> getUsers() {
+        return users;
+    }
+
+    /**
+     * Pass as {@code cursor} to get the next page; null on the last page.
+     */
+    public String getNextCursor() {
+        return nextCursor;
+    }
+}
@@ -0,0 +1,139 @@
+package com.diyauth.payload.response;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+
+import java.time.Instant;
+import java.util.List;
+
+/**
+ * The partitions of the partitioned user store with their document counts, and the state
+ * of the last rebalancing run.
+ */
+public class UserPartitionsResponse {
+    private final List<PartitionResponse> partitions;
+    private final int previousCount;
+    private final RebalanceResponse rebalance;
+
+    public UserPartitionsResponse(List<PartitionResponse> partitions, int previousCount, RebalanceResponse rebalance) {
+        this.partitions = partitions;
+        this.previousCount = previousCount;
+        this.rebalance = rebalance;
+    }
+
+    public List<PartitionResponse> getPartitions() {
+        return partitions;
+    }
+
+    /**
+     * The partition count lookups fall back to while rebalancing, 0 when not set.
+     */
+    public int getPreviousCount() {
+        return previousCount;
+    }
+
+    public RebalanceResponse getRebalance() {
+        return rebalance;
+    }
+
+    public static class PartitionResponse {
+        private final int index;
+        private final String name;
+        private final long users;
+        private final long emails;
+
+        public PartitionResponse(int index, String name, long users, long emails) {
+            this.index = index;
+            this.name = name;
+            this.users = users;
+            this.emails = emails;
+        }
+
+        public int getIndex() {
+            return index;
+        }
+
+        /**
+         * Hosts and database, without credentials.
+         */
+        public String getName() {
+            return name;
+        }
+
+        public long getUsers() {
+            return users;
+        }
+
+        public long getEmails() {
+            return emails;
+        }
+    }
+
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    public static class RebalanceResponse {
+        private final String state;
+        private final Instant startedAt;
+        private final Instant finishedAt;
+        private final long scanned;
+        private final long movedUsers;
+        private final long movedEmails;
+        private final long createdClaims;
+        private final long conflicts;
+        private final String error;
+
+        public RebalanceResponse(String state, Instant startedAt, Instant finishedAt, long scanned,
+                                 long movedUsers, long movedEmails, long createdClaims, long conflicts, String error) {
+            this.state = state;
+            this.startedAt = startedAt;
+            this.finishedAt = finishedAt;
+            this.scanned = scanned;
+            this.movedUsers = movedUsers;
+            this.movedEmails = movedEmails;
+            this.createdClaims = createdClaims;
+            this.conflicts = conflicts;
+            this.error = error;
+        }
+
+        public String getState() {
+            return state;
+        }
+
+        public Instant getStartedAt() {
+            return startedAt;
+        }
+
+        public Instant getFinishedAt() {
+            return finishedAt;
+        }
+
+        public long getScanned() {
+            return scanned;
+        }
+
+        public long getMovedUsers() {
+            return movedUsers;
+        }
+
+        public long getMovedEmails() {
+            return movedEmails;
+        }
+
+        /**
+         * Email claims created for users that had none (users stored before partitioning).
+         */
+        public long getCreatedClaims() {
+            return createdClaims;
+        }
+
+        /**
+         * Documents left in place, or emails left unclaimed, because their username or
+         * email is held by another user in their home partition.
+         */
+        public long getConflicts() {
+            return conflicts;
+        }
+
+        public String getError() {
+            return error;
+        }
+    }
+}
@@ -0,0 +1,35 @@
+package com.diyauth.repository;
+
+/**
+ * Optional filters of the admin user listing; null means "any". At most one of the
+ * prefixes is set, and it decides the sort order (see UserListingService).
+ */
+public class UserListFilter {
+    private final String provider;
+    private final Boolean enabled;
+    private final String usernamePrefix;
+    private final String emailPrefix;
+
+    public UserListFilter(String provider, Boolean enabled, String usernamePrefix, String emailPrefix) {
+        this.provider = provider;
+        this.enabled = enabled;
+        this.usernamePrefix = usernamePrefix;
+        this.emailPrefix = emailPrefix;
+    }
+
+    public String getProvider() {
+        return provider;
+    }
+
+    public Boolean getEnabled() {
+        return enabled;
+    }
+
+    public String getUsernamePrefix() {
+        return usernamePrefix;
+    }
+
+    public String getEmailPrefix() {
+        return emailPrefix;
+    }
+}
@@ -0,0 +1,49 @@
+package com.diyauth.repository;
+
+import com.diyauth.model.User;
+
+import java.util.List;
+import java.util.Optional;
+
+public interface UserRepositoryCustom {
+
+    // Lookups on the primary
+
+    Optional<User> findByUsername(String username);
+
+    Optional<User> findByEmail(String email);
+
+    // For OAuth2
+    Optional<User> findByProviderAndProviderId(String provider, String providerId);
+
+    /**
+     * Keyset page of users: {@code limit} users ordered by {@code sortField} (_id, username
+     * or email) whose sort value is greater than {@code after}. Password hashes and OAuth2
+     * attributes are not fetched.
+     */
+    List<User> findPage(UserListFilter filter, String sortField, String after, int limit);
+
+    // Lookups below read with MongoReadRouting's lookup preference (secondaries by default)
+
+    /**
+     * Users whose username or email matches, in one round trip (login accepts either). A
+     * miss on a secondary is confirmed on the primary, since it may be replication lag.
+     */
+    List<User> findByUsernameOrEmail(String username, String email);
+
+    /**
+     * Signup duplicate check in one round trip; only the two keys are fetched. A stale
+     * answer is caught by the unique indexes on save.
+     */
+    List<User> findUsernameOrEmailConflicts(String username, String email);
+
+    Boolean existsByUsername(String username);
+
+    Boolean existsByEmail(String email);
+
+    /**
+     * Saves on the primary in a causally consistent session and remembers the write, so
+     * lookups of the user's username and email right afterwards see it.
+     */
+    User saveCausally(User user);
+}
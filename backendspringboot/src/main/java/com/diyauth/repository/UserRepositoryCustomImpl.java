@@ -0,0 +1,212 @@
+package com.diyauth.repository;
+
+import com.diyauth.config.mongo.MongoReadRouting;
+import com.diyauth.model.User;
+import com.diyauth.service.UserIdentifierFilter;
+import com.mongodb.ClientSessionOptions;
+import com.mongodb.MongoClientException;
+import com.mongodb.ReadPreference;
+import com.mongodb.client.ClientSession;
+import org.bson.types.ObjectId;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * Seek pagination: each page is a range scan that starts right after the last sort value
+ * of the previous one, so page N costs the same as page 1 (skip/limit walks and discards
+ * every earlier entry). Prefixes are ranges too, [prefix, prefix + U+FFFF), which unlike
+ * regexes always turn into tight index bounds. The indexes backing these queries are
+ * created by UserIndexInitializer.
+ *
+ * The login and duplicate-check lookups are routed by MongoReadRouting: secondaries when
+ * nothing was written for the identifier recently, a causal session pinned to the write's
+ * operation time when something was, and the primary otherwise.
+ *
+ * Every query here runs with {@code app.mongo.bulkhead.call-timeout-ms} as its server-side
+ * time limit, so a slow database fails these calls (and counts towards MongoBulkhead's
+ * degraded mode) instead of holding their permits.
+ */
+public class UserRepositoryCustomImpl implements UserRepositoryCustom {
+
+    private static final Logger logger = LoggerFactory.getLogger(UserRepositoryCustomImpl.class);
+
+    private static final String ID = "_id";
+    private static final String PREFIX_UPPER_BOUND = "\uFFFF";
+    private static final ClientSessionOptions CAUSAL = ClientSessionOptions.builder().causallyConsistent(true).build();
+
+    private final MongoTemplate mongoTemplate;
+    private final MongoReadRouting readRouting;
+    private final UserIdentifierFilter identifierFilter;
+    private final Duration callTimeout;
+
+    public UserRepositoryCustomImpl(MongoTemplate mongoTemplate, MongoReadRouting readRouting,
+                                    UserIdentifierFilter identifierFilter,
+                                    @Value("${app.mongo.bulkhead.call-timeout-ms:3000}") long callTimeoutMs) {
+        this.mongoTemplate = mongoTemplate;
+        this.readRouting = readRouting;
+        this.identifierFilter = identifierFilter;
+        this.callTimeout = Duration.ofMillis(callTimeoutMs);
+    }
+
+    @Override
+    public Optional<User> findByUsername(String username) {
+        return findOne(Criteria.where("username").is(username));
+    }
+
+    @Override
+    public Optional<User> findByEmail(String email) {
+        return findOne(Criteria.where("email").is(email));
+    }
+
+    @Override
+    public Optional<User> findByProviderAndProviderId(String provider, String providerId) {
+        return findOne(Criteria.where("provider").is(provider).and("providerId").is(providerId));
+    }
+
+    private Optional<User> findOne(Criteria criteria) {
+        return Optional.ofNullable(mongoTemplate.findOne(new Query(criteria).maxTime(callTimeout), User.class));
+    }
+
+    @Override
+    public List<User> findPage(UserListFilter filter, String sortField, String after, int limit) {
+        return mongoTemplate.find(pageQuery(filter, sortField, after, limit).maxTime(callTimeout), User.class);
+    }
+
+    /**
+     * The listing query of {@link #findPage}; the partitioned user store runs it on every
+     * partition and merges the pages.
+     */
+    public static Query pageQuery(UserListFilter filter, String sortField, String after, int limit) {
+        List<Criteria> criteria = new ArrayList<>();
+        if (filter.getProvider() != null) {
+            criteria.add(Criteria.where("provider").is(filter.getProvider()));
+        }
+        if (filter.getEnabled() != null) {
+            criteria.add(Criteria.where("enabled").is(filter.getEnabled()));
+        }
+        if (filter.getUsernamePrefix() != null) {
+            criteria.add(prefix("username", filter.getUsernamePrefix()));
+        }
+        if (filter.getEmailPrefix() != null) {
+            criteria.add(prefix("email", filter.getEmailPrefix()));
+        }
+        if (after != null) {
+            criteria.add(Criteria.where(sortField).gt(ID.equals(sortField) ? new ObjectId(after) : after));
+        }
+
+        Query query = new Query();
+        if (!criteria.isEmpty()) {
+            query.addCriteria(new Criteria().andOperator(criteria));
+        }
+        query.with(Sort.by(Sort.Direction.ASC, sortField)).limit(limit);
+        query.fields().include("username", "email", "enabled", "roles", "provider", "providerId", "imageUrl");
+        return query;
+    }
+
+    private static Criteria prefix(String field, String prefix) {
+        return Criteria.where(field).gte(prefix).lt(prefix + PREFIX_UPPER_BOUND);
+    }
+
+    @Override
+    public List<User> findByUsernameOrEmail(String username, String email) {
+        Query query = new Query(new Criteria().orOperator(
+                Criteria.where("username").is(username), Criteria.where("email").is(email)));
+        List<User> users = lookup(query, username, email);
+        if (users.isEmpty() && readRouting.lookupsUseSecondaries() && identifierFilter.answersMisses()) {
+            // The identifier filter has seen this name, so the miss is most likely lag.
+            // Without the filter a miss stays a miss (one command for unknown users); users
+            // written elsewhere are routed causally once UserChangeFeed has seen the write.
+            // lookup() set the secondary preference on the query itself
+            users = mongoTemplate.find(query.withReadPreference(ReadPreference.primary()), User.class);
+        }
+        return users;
+    }
+
+    @Override
+    public List<User> findUsernameOrEmailConflicts(String username, String email) {
+        Query query = new Query(new Criteria().orOperator(
+                Criteria.where("username").is(username), Criteria.where("email").is(email)));
+        query.fields().include("username", "email");
+        return lookup(query, username, email);
+    }
+
+    @Override
+    public Boolean existsByUsername(String username) {
+        return exists("username", username);
+    }
+
+    @Override
+    public Boolean existsByEmail(String email) {
+        return exists("email", email);
+    }
+
+    private boolean exists(String field, String value) {
+        Query query = new Query(Criteria.where(field).is(value)).limit(1);
+        query.fields().include(ID);
+        return !lookup(query, value).isEmpty();
+    }
+
+    @Override
+    public User saveCausally(User user) {
+        ClientSession session = startCausalSession();
+        try {
+            User saved = session != null
+                    ? mongoTemplate.withSession(session).save(user)
+                    : mongoTemplate.save(user);
+            readRouting.recordWrite(session, saved.getUsername(), saved.getEmail());
+            return saved;
+        } finally {
+            if (session != null) {
+                session.close();
+            }
+        }
+    }
+
+    private List<User> lookup(Query query, String... identifiers) {
+        query.maxTime(callTimeout);
+        if (!readRouting.lookupsUseSecondaries()) {
+            return mongoTemplate.find(query, User.class);
+        }
+        MongoReadRouting.WriteMark mark = null;
+        for (int i = 0; i < identifiers.length && mark == null; i++) {
+            mark = readRouting.recentWrite(identifiers[i]);
+        }
+        if (mark == null) {
+            return mongoTemplate.find(query.withReadPreference(readRouting.lookupPreference()), User.class);
+        }
+        if (mark.hasCausalTime()) {
+            ClientSession session = startCausalSession();
+            if (session != null) {
+                try {
+                    mark.applyTo(session);
+                    return mongoTemplate.withSession(session)
+                            .find(query.withReadPreference(readRouting.lookupPreference()), User.class);
+                } finally {
+                    session.close();
+                }
+            }
+        }
+        // Written here recently but no causal time to wait for: read it back from the primary
+        return mongoTemplate.find(query, User.class);
+    }
+
+    // Null when the deployment has no sessions (standalone without replication, test servers)
+    private ClientSession startCausalSession() {
+        try {
+            return mongoTemplate.getMongoDatabaseFactory().getSession(CAUSAL);
+        } catch (MongoClientException ex) {
+            logger.debug("Causally consistent sessions unavailable: {}", ex.getMessage());
+            return null;
+        }
+    }
+}
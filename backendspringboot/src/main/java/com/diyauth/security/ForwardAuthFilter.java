@@ -0,0 +1,214 @@
+package com.diyauth.security;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.jsonwebtoken.JwtException;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.security.SecurityProperties;
+import org.springframework.core.annotation.Order;
+import org.springframework.http.HttpHeaders;
+import org.springframework.security.core.GrantedAuthority;
+import org.springframework.security.core.userdetails.UserDetails;
+import org.springframework.security.core.userdetails.UsernameNotFoundException;
+import org.springframework.stereotype.Component;
+import org.springframework.util.StringUtils;
+import org.springframework.web.filter.OncePerRequestFilter;
+import org.springframework.web.filter.ServerHttpObservationFilter;
+
+import java.io.IOException;
+import java.util.Base64;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * /api/auth/verify for ingress forward-auth (Traefik forwardAuth, see
+ * deploy/k3s/ingresses/forward-auth-middleware.yaml; any method, since the ingress keeps the
+ * original one): 200 with X-Auth-User-Id, X-Auth-User, X-Auth-Email and X-Auth-Roles for a
+ * valid bearer token, 401 otherwise.
+ *
+ * It sits in front of every request to the protected apps, so it is answered here, ahead of
+ * the Spring Security chain: no session, no SecurityContext, no DispatcherServlet. It runs
+ * after ConcurrencyLimitFilter (the {@code api} partition) and RequestCaptureFilter, so
+ * verify calls are limited and can be captured like any other request. Allowed
+ * decisions are cached per token for app.auth.verify.cache-ttl-ms (never past the token's
+ * expiry), so a role change or deleted user reaches the protected apps within that TTL on
+ * top of the principal cache's own bound. Denials are not cached: they are cheap to recompute
+ * and would let junk tokens crowd out real ones. While the database is unavailable, tokens
+ * are honoured like in JwtAuthenticationFilter, and those decisions are not cached.
+ */
+@Component
+@Order(SecurityProperties.DEFAULT_FILTER_ORDER - 1)
+public class ForwardAuthFilter extends OncePerRequestFilter {
+
+    private static final Logger logger = LoggerFactory.getLogger(ForwardAuthFilter.class);
+
+    static final String PATH = "/api/auth/verify";
+    static final String USER_ID_HEADER = "X-Auth-User-Id";
+    static final String USER_HEADER = "X-Auth-User";
+    static final String EMAIL_HEADER = "X-Auth-Email";
+    static final String ROLES_HEADER = "X-Auth-Roles";
+
+    private final JwtTokenProvider tokenProvider;
+    private final JwtAuthenticationFilter jwtAuthenticationFilter;
+    private final ObjectMapper objectMapper;
+    private final long cacheTtlNanos;
+    private final int maxEntries;
+
+    private final ConcurrentHashMap<String, Decision> decisions = new ConcurrentHashMap<>();
+    private volatile long lastSweepNanos = System.nanoTime();
+
+    private final Counter cachedAllowed;
+    private final Counter allowed;
+    private final Counter denied;
+
+    public ForwardAuthFilter(JwtTokenProvider tokenProvider, JwtAuthenticationFilter jwtAuthenticationFilter,
+                             ObjectMapper objectMapper, MeterRegistry meterRegistry,
+                             @Value("${app.auth.verify.cache-ttl-ms:5000}") long cacheTtlMs,
+                             @Value("${app.auth.verify.cache-max-entries:10000}") int maxEntries) {
+        this.tokenProvider = tokenProvider;
+        this.jwtAuthenticationFilter = jwtAuthenticationFilter;
+        this.objectMapper = objectMapper;
+        this.cacheTtlNanos = TimeUnit.MILLISECONDS.toNanos(cacheTtlMs);
+        this.maxEntries = maxEntries;
+        this.cachedAllowed = decisionCounter(meterRegistry, "allowed", "hit");
+        this.allowed = decisionCounter(meterRegistry, "allowed", "miss");
+        this.denied = decisionCounter(meterRegistry, "denied", "miss");
+    }
+
+    private static Counter decisionCounter(MeterRegistry registry, String result, String cache) {
+        return Counter.builder("auth.verify.decisions")
+                .description("Forward-auth verifications")
+                .tag("result", result)
+                .tag("cache", cache)
+                .register(registry);
+    }
+
+    @Override
+    protected boolean shouldNotFilter(HttpServletRequest request) {
+        return !PATH.equals(request.getRequestURI());
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain filterChain)
+            throws ServletException, IOException {
+        // No handler mapping runs, so name the endpoint for http.server.requests
+        ServerHttpObservationFilter.findObservationContext(request)
+                .ifPresent(context -> context.setPathPattern(PATH));
+        String token = bearerToken(request);
+        if (token == null) {
+            deny(response);
+            return;
+        }
+        long now = System.nanoTime();
+        Decision decision = decisions.get(token);
+        if (decision != null && now - decision.expiresAtNanos < 0) {
+            cachedAllowed.increment();
+            allow(response, decision);
+            return;
+        }
+
+        try {
+            UserDetails userDetails = jwtAuthenticationFilter.loadUser(tokenProvider.validate(token));
+            if (!(userDetails instanceof UserPrincipal principal)) {
+                deny(response);
+                return;
+            }
+            decision = new Decision(principal.getId(), principal.getUsername(), principal.getEmail(),
+                    roles(principal), now + cacheTtlNanos(token));
+        } catch (JwtException | UsernameNotFoundException ex) {
+            logger.debug("Forward-auth denied: {}", ex.getMessage());
+            deny(response);
+            return;
+        }
+        // Principals built from the token alone (database unavailable) are not worth keeping
+        if (decision.userId != null) {
+            cache(token, decision, now);
+        }
+        allowed.increment();
+        allow(response, decision);
+    }
+
+    private static String bearerToken(HttpServletRequest request) {
+        String header = request.getHeader(HttpHeaders.AUTHORIZATION);
+        if (StringUtils.hasText(header) && header.startsWith("Bearer ") && header.length() > 7) {
+            return header.substring(7);
+        }
+        return null;
+    }
+
+    private static String roles(UserPrincipal principal) {
+        StringBuilder roles = new StringBuilder();
+        for (GrantedAuthority authority : principal.getAuthorities()) {
+            if (roles.length() > 0) {
+                roles.append(',');
+            }
+            roles.append(authority.getAuthority());
+        }
+        return roles.toString();
+    }
+
+    /**
+     * The cache TTL, cut short by the token's exp claim; the token has been verified, so its
+     * payload is only decoded here.
+     */
+    private long cacheTtlNanos(String token) {
+        try {
+            int firstDot = token.indexOf('.');
+            JsonNode payload = objectMapper.readTree(
+                    Base64.getUrlDecoder().decode(token.substring(firstDot + 1, token.indexOf('.', firstDot + 1))));
+            long remainingMillis = payload.path("exp").asLong() * 1000 - System.currentTimeMillis();
+            return Math.max(0, Math.min(cacheTtlNanos, TimeUnit.MILLISECONDS.toNanos(remainingMillis)));
+        } catch (IOException | RuntimeException ex) {
+            return 0;
+        }
+    }
+
+    private void cache(String token, Decision decision, long now) {
+        if (decision.expiresAtNanos == now) {
+            return;
+        }
+        if (decisions.size() >= maxEntries) {
+            // Full: drop expired decisions, at most once per TTL
+            if (now - lastSweepNanos < cacheTtlNanos) {
+                return;
+            }
+            lastSweepNanos = now;
+            decisions.values().removeIf(d -> now - d.expiresAtNanos >= 0);
+            if (decisions.size() >= maxEntries) {
+                return;
+            }
+        }
+        decisions.put(token, decision);
+    }
+
+    private static void allow(HttpServletResponse response, Decision decision) {
+        response.setStatus(HttpServletResponse.SC_OK);
+        if (decision.userId != null) {
+            response.setHeader(USER_ID_HEADER, decision.userId);
+        }
+        response.setHeader(USER_HEADER, decision.username);
+        if (decision.email != null) {
+            response.setHeader(EMAIL_HEADER, decision.email);
+        }
+        response.setHeader(ROLES_HEADER, decision.roles);
+        response.setHeader(HttpHeaders.CACHE_CONTROL, "no-store");
+    }
+
+    private void deny(HttpServletResponse response) {
+        denied.increment();
+        response.setStatus(HttpServletResponse.SC_UNAUTHORIZED);
+        response.setHeader(HttpHeaders.WWW_AUTHENTICATE, "Bearer");
+        response.setHeader(HttpHeaders.CACHE_CONTROL, "no-store");
+    }
+
+    private record Decision(String userId, String username, String email, String roles, long expiresAtNanos) {
+    }
+}
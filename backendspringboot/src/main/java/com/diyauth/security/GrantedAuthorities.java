@@ -0,0 +1,54 @@
+package com.diyauth.security;
+
+import org.springframework.security.core.GrantedAuthority;
+import org.springframework.security.core.authority.SimpleGrantedAuthority;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Shared, immutable authority lists. The set of roles is tiny, so every principal built on
+ * the request path reuses the same instances instead of allocating them per request:
+ * catalogued roles map to RoleCatalog's list for their bit mask, anything else to an
+ * interned single-role list.
+ */
+public final class GrantedAuthorities {
+
+    private static final Map<String, List<GrantedAuthority>> SINGLE_ROLE = new ConcurrentHashMap<>();
+
+    private GrantedAuthorities() {
+    }
+
+    public static List<GrantedAuthority> of(String... roles) {
+        if (roles == null || roles.length == 0) {
+            return Collections.emptyList();
+        }
+        if (allCatalogued(roles)) {
+            return RoleCatalog.authorities(RoleCatalog.bits(roles));
+        }
+        if (roles.length == 1) {
+            return single(roles[0]);
+        }
+        List<GrantedAuthority> authorities = new ArrayList<>(roles.length);
+        for (String role : roles) {
+            authorities.add(single(role).get(0));
+        }
+        return Collections.unmodifiableList(authorities);
+    }
+
+    private static boolean allCatalogued(String[] roles) {
+        for (String role : roles) {
+            if (!RoleCatalog.isCatalogued(role)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static List<GrantedAuthority> single(String role) {
+        return SINGLE_ROLE.computeIfAbsent(role, r -> List.of(new SimpleGrantedAuthority(r)));
+    }
+}
@@ -0,0 +1,490 @@
+package com.diyauth.security;
+
+import io.jsonwebtoken.Claims;
+import io.jsonwebtoken.JwsHeader;
+import io.jsonwebtoken.Jws;
+import io.jsonwebtoken.Jwts;
+import io.jsonwebtoken.SignatureAlgorithm;
+import io.jsonwebtoken.security.Keys;
+
+import javax.crypto.Mac;
+import javax.crypto.SecretKey;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.security.SecureRandom;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
+
+/**
+ * Mints and verifies the tokens this service issues without going through jjwt's claim
+ * maps and Jackson: the header segments are pre-encoded, the payload is written and
+ * scanned as bytes, Base64URL is coded in place and each thread reuses its own HmacSHA512
+ * {@link Mac} and scratch buffers.
+ *
+ * The codec only handles the exact shape jjwt produces for our claims,
+ * <pre>
+ * {"alg":"HS512"} or {"kid":"...","alg":"HS512"}  .  {"sub":"...","iat":n,"exp":n[,"rb":n]}
+ * </pre>
+ * with a printable-ASCII subject (the role bits claim is left out when there are none), and its output is byte-for-byte what jjwt would emit
+ * ({@link #matchesJjwt()} checks both directions). Anything else, and every token that
+ * fails verification, is reported as "not handled" (null) so the caller falls back to jjwt,
+ * which then decides and produces the usual exceptions.
+ */
+public class Hs512TokenCodec {
+
+    private static final String ALGORITHM = "HmacSHA512";
+    private static final int SIGNATURE_BYTES = 64;
+    private static final int SIGNATURE_CHARS = 86;
+
+    /**
+     * RoleCatalog bits of the subject's roles, as a JSON number.
+     */
+    public static final String ROLE_BITS_CLAIM = "rb";
+
+    private static final char[] ENCODE = "ABCDEFGHIJKLMNOPQRSTUVWXYZabcdefghijklmnopqrstuvwxyz0123456789-_".toCharArray();
+    private static final byte[] DECODE = new byte[128];
+
+    static {
+        Arrays.fill(DECODE, (byte) -1);
+        for (int i = 0; i < ENCODE.length; i++) {
+            DECODE[ENCODE[i]] = (byte) i;
+        }
+    }
+
+    private static final byte[] PLAIN_HEADER_JSON = ascii("{\"alg\":\"HS512\"}");
+    private static final byte[] PLAIN_HEADER = base64Url("{\"alg\":\"HS512\"}");
+    private static final byte[] SUB = ascii("{\"sub\":\"");
+    private static final byte[] IAT = ascii("\",\"iat\":");
+    private static final byte[] EXP = ascii(",\"exp\":");
+    private static final byte[] RB = ascii(",\"rb\":");
+    private static final byte[] KID_PREFIX = ascii("{\"kid\":\"");
+    private static final byte[] KID_SUFFIX = ascii("\",\"alg\":\"HS512\"}");
+
+    private static final ThreadLocal<Scratch> SCRATCH = ThreadLocal.withInitial(Scratch::new);
+
+    private final Function<String, SecretKey> verificationKeys;
+    private final Map<String, byte[]> kidHeaders = new ConcurrentHashMap<>();
+
+    /**
+     * @param verificationKeys key for a kid (null kid = legacy key), or null when the kid is
+     *                         unknown or retired
+     */
+    public Hs512TokenCodec(Function<String, SecretKey> verificationKeys) {
+        this.verificationKeys = verificationKeys;
+    }
+
+    /**
+     * Signed token for the subject and role bits (0 = no "rb" claim), or null when the
+     * subject or kid needs JSON escaping and has to go through jjwt.
+     */
+    public String encode(String kid, SecretKey key, String subject, long issuedAtSeconds, long expiresAtSeconds,
+                         long roleBits) {
+        byte[] header = kid == null ? PLAIN_HEADER : kidHeader(kid);
+        if (header == null || !isPlainAscii(subject)) {
+            return null;
+        }
+        Scratch scratch = SCRATCH.get();
+
+        byte[] json = scratch.json(SUB.length + subject.length() + IAT.length + EXP.length + RB.length + 61);
+        int jsonLength = put(json, 0, SUB);
+        for (int i = 0; i < subject.length(); i++) {
+            json[jsonLength++] = (byte) subject.charAt(i);
+        }
+        jsonLength = put(json, jsonLength, IAT);
+        jsonLength = putLong(json, jsonLength, issuedAtSeconds);
+        jsonLength = put(json, jsonLength, EXP);
+        jsonLength = putLong(json, jsonLength, expiresAtSeconds);
+        if (roleBits != 0) {
+            jsonLength = put(json, jsonLength, RB);
+            jsonLength = putLong(json, jsonLength, roleBits);
+        }
+        json[jsonLength++] = '}';
+
+        byte[] token = scratch.token(header.length + 1 + encodedLength(jsonLength) + 1 + SIGNATURE_CHARS);
+        int length = put(token, 0, header);
+        token[length++] = '.';
+        length = encode(json, jsonLength, token, length);
+
+        Mac mac = scratch.mac(key);
+        mac.update(token, 0, length);
+        byte[] signature = scratch.signature;
+        try {
+            mac.doFinal(signature, 0);
+        } catch (GeneralSecurityException ex) {
+            throw new IllegalStateException("HmacSHA512 failed", ex);
+        }
+        token[length++] = '.';
+        length = encode(signature, SIGNATURE_BYTES, token, length);
+        return new String(token, 0, length, StandardCharsets.ISO_8859_1);
+    }
+
+    /**
+     * Claims of a valid, unexpired token, or null when the token is not in the supported
+     * shape or does not verify; the caller then hands it to jjwt.
+     */
+    public TokenClaims verify(String token, long nowMillis) {
+        int firstDot = token.indexOf('.');
+        int secondDot = firstDot < 0 ? -1 : token.indexOf('.', firstDot + 1);
+        if (secondDot < 0 || token.length() - secondDot - 1 != SIGNATURE_CHARS) {
+            return null;
+        }
+        Scratch scratch = SCRATCH.get();
+
+        // Header: decode and match one of the two templates
+        byte[] json = scratch.json(decodedLength(secondDot));
+        int headerLength = decode(token, 0, firstDot, json, 0);
+        if (headerLength < 0) {
+            return null;
+        }
+        String kid;
+        if (matches(json, 0, headerLength, PLAIN_HEADER_JSON)) {
+            kid = null;
+        } else {
+            kid = readKid(json, headerLength);
+            if (kid == null) {
+                return null;
+            }
+        }
+        SecretKey key = verificationKeys.apply(kid);
+        if (key == null) {
+            return null;
+        }
+
+        // Signature over the ASCII of header.payload
+        byte[] signingInput = scratch.token(secondDot);
+        for (int i = 0; i < secondDot; i++) {
+            char c = token.charAt(i);
+            if (c > 0x7f) {
+                return null;
+            }
+            signingInput[i] = (byte) c;
+        }
+        Mac mac = scratch.mac(key);
+        mac.update(signingInput, 0, secondDot);
+        try {
+            mac.doFinal(scratch.signature, 0);
+        } catch (GeneralSecurityException ex) {
+            throw new IllegalStateException("HmacSHA512 failed", ex);
+        }
+        if (decode(token, secondDot + 1, token.length(), scratch.presented, 0) != SIGNATURE_BYTES
+                || !MessageDigest.isEqual(scratch.signature, scratch.presented)) {
+            return null;
+        }
+
+        // Payload: {"sub":"...","iat":n,"exp":n} or {"sub":"...","iat":n,"exp":n,"rb":n}, nothing else
+        int payloadLength = decode(token, firstDot + 1, secondDot, json, 0);
+        if (payloadLength < 0 || !startsWith(json, 0, payloadLength, SUB)) {
+            return null;
+        }
+        int subjectStart = SUB.length;
+        int subjectEnd = subjectStart;
+        while (subjectEnd < payloadLength && json[subjectEnd] != '"') {
+            if (!isPlainAscii(json[subjectEnd])) {
+                return null;
+            }
+            subjectEnd++;
+        }
+        int position = subjectEnd;
+        if (!startsWith(json, position, payloadLength, IAT)) {
+            return null;
+        }
+        position += IAT.length;
+        int iatEnd = digitsEnd(json, position, payloadLength);
+        if (iatEnd < 0 || !startsWith(json, iatEnd, payloadLength, EXP)) {
+            return null;
+        }
+        position = iatEnd + EXP.length;
+        int expEnd = digitsEnd(json, position, payloadLength);
+        if (expEnd < 0) {
+            return null;
+        }
+        long roleBits = TokenClaims.NO_ROLE_BITS;
+        int end = expEnd;
+        if (startsWith(json, expEnd, payloadLength, RB)) {
+            int rbEnd = digitsEnd(json, expEnd + RB.length, payloadLength);
+            if (rbEnd < 0) {
+                return null;
+            }
+            roleBits = parseLong(json, expEnd + RB.length, rbEnd);
+            end = rbEnd;
+        }
+        if (end != payloadLength - 1 || json[end] != '}') {
+            return null;
+        }
+        long expiresAtSeconds = parseLong(json, position, expEnd);
+        // Same rule as jjwt without clock skew: expired once now is after exp
+        if (expiresAtSeconds < 0 || nowMillis > expiresAtSeconds * 1000) {
+            return null;
+        }
+        return new TokenClaims(new String(json, subjectStart, subjectEnd - subjectStart, StandardCharsets.ISO_8859_1),
+                roleBits);
+    }
+
+    /**
+     * Mints and parses tokens with both this codec and jjwt, with and without a kid and
+     * role bits, and reports whether they agree byte for byte.
+     */
+    public static boolean matchesJjwt() {
+        byte[] secret = new byte[SIGNATURE_BYTES];
+        new SecureRandom().nextBytes(secret);
+        SecretKey key = Keys.hmacShaKeyFor(secret);
+        long now = System.currentTimeMillis() / 1000;
+        Hs512TokenCodec codec = new Hs512TokenCodec(kid -> key);
+
+        String subject = "codec-check.user@example.com";
+        for (String kid : new String[] {null, "codec-check"}) {
+            for (long roleBits : new long[] {0, RoleCatalog.USER | RoleCatalog.ADMIN}) {
+                io.jsonwebtoken.JwtBuilder builder = Jwts.builder();
+                if (kid != null) {
+                    builder.setHeaderParam(JwsHeader.KEY_ID, kid);
+                }
+                builder.setSubject(subject)
+                        .setIssuedAt(new Date(now * 1000))
+                        .setExpiration(new Date((now + 60) * 1000));
+                if (roleBits != 0) {
+                    builder.claim(ROLE_BITS_CLAIM, roleBits);
+                }
+                String jjwtToken = builder.signWith(key, SignatureAlgorithm.HS512).compact();
+                String codecToken = codec.encode(kid, key, subject, now, now + 60, roleBits);
+                TokenClaims verified = codec.verify(jjwtToken, now * 1000);
+                if (!jjwtToken.equals(codecToken) || verified == null || !subject.equals(verified.subject())
+                        || verified.roleBits() != (roleBits != 0 ? roleBits : TokenClaims.NO_ROLE_BITS)) {
+                    return false;
+                }
+                Jws<Claims> parsed = Jwts.parserBuilder().setSigningKey(key).build().parseClaimsJws(codecToken);
+                Number parsedRoleBits = parsed.getBody().get(ROLE_BITS_CLAIM, Number.class);
+                if (!Objects.equals(kid, parsed.getHeader().getKeyId())
+                        || !subject.equals(parsed.getBody().getSubject())
+                        || parsed.getBody().getExpiration().getTime() != (now + 60) * 1000
+                        || (parsedRoleBits != null ? parsedRoleBits.longValue() : 0) != roleBits) {
+                    return false;
+                }
+            }
+        }
+        return true;
+    }
+
+    private byte[] kidHeader(String kid) {
+        byte[] header = kidHeaders.get(kid);
+        if (header == null) {
+            if (!isPlainAscii(kid)) {
+                return null;
+            }
+            header = base64Url("{\"kid\":\"" + kid + "\",\"alg\":\"HS512\"}");
+            kidHeaders.putIfAbsent(kid, header);
+        }
+        return header;
+    }
+
+    private static String readKid(byte[] json, int length) {
+        int kidStart = KID_PREFIX.length;
+        int kidEnd = length - KID_SUFFIX.length;
+        if (kidEnd < kidStart || !startsWith(json, 0, length, KID_PREFIX)
+                || !matches(json, kidEnd, length, KID_SUFFIX)) {
+            return null;
+        }
+        for (int i = kidStart; i < kidEnd; i++) {
+            if (!isPlainAscii(json[i])) {
+                return null;
+            }
+        }
+        return new String(json, kidStart, kidEnd - kidStart, StandardCharsets.ISO_8859_1);
+    }
+
+    // Printable ASCII that Jackson writes unescaped
+    private static boolean isPlainAscii(int c) {
+        return c >= 0x20 && c < 0x7f && c != '"' && c != '\\';
+    }
+
+    private static boolean isPlainAscii(String value) {
+        if (value == null) {
+            return false;
+        }
+        for (int i = 0; i < value.length(); i++) {
+            if (!isPlainAscii(value.charAt(i))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static boolean startsWith(byte[] bytes, int offset, int length, byte[] prefix) {
+        if (length - offset < prefix.length) {
+            return false;
+        }
+        for (int i = 0; i < prefix.length; i++) {
+            if (bytes[offset + i] != prefix[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static boolean matches(byte[] bytes, int offset, int length, byte[] expected) {
+        return length - offset == expected.length && startsWith(bytes, offset, length, expected);
+    }
+
+    // End of a run of 1..18 digits without a leading zero (Jackson's long format), or -1
+    private static int digitsEnd(byte[] bytes, int offset, int length) {
+        int end = offset;
+        while (end < length && bytes[end] >= '0' && bytes[end] <= '9') {
+            end++;
+        }
+        int digits = end - offset;
+        if (digits == 0 || digits > 18 || (digits > 1 && bytes[offset] == '0')) {
+            return -1;
+        }
+        return end;
+    }
+
+    private static long parseLong(byte[] bytes, int from, int to) {
+        long value = 0;
+        for (int i = from; i < to; i++) {
+            value = value * 10 + (bytes[i] - '0');
+        }
+        return value;
+    }
+
+    private static int put(byte[] target, int offset, byte[] source) {
+        System.arraycopy(source, 0, target, offset, source.length);
+        return offset + source.length;
+    }
+
+    private static int putLong(byte[] target, int offset, long value) {
+        if (value < 0) {
+            throw new IllegalArgumentException("negative value");
+        }
+        int digits = 1;
+        for (long v = value; v >= 10; v /= 10) {
+            digits++;
+        }
+        for (int i = offset + digits - 1; i >= offset; i--) {
+            target[i] = (byte) ('0' + value % 10);
+            value /= 10;
+        }
+        return offset + digits;
+    }
+
+    private static int encodedLength(int bytes) {
+        return (bytes * 4 + 2) / 3;
+    }
+
+    private static int decodedLength(int chars) {
+        return chars * 3 / 4 + 1;
+    }
+
+    // Unpadded Base64URL of source[0, length) into target at offset; returns the new offset
+    private static int encode(byte[] source, int length, byte[] target, int offset) {
+        int i = 0;
+        for (; i + 2 < length; i += 3) {
+            int bits = (source[i] & 0xff) << 16 | (source[i + 1] & 0xff) << 8 | (source[i + 2] & 0xff);
+            target[offset++] = (byte) ENCODE[bits >>> 18];
+            target[offset++] = (byte) ENCODE[(bits >>> 12) & 0x3f];
+            target[offset++] = (byte) ENCODE[(bits >>> 6) & 0x3f];
+            target[offset++] = (byte) ENCODE[bits & 0x3f];
+        }
+        int remaining = length - i;
+        if (remaining == 1) {
+            int bits = (source[i] & 0xff) << 16;
+            target[offset++] = (byte) ENCODE[bits >>> 18];
+            target[offset++] = (byte) ENCODE[(bits >>> 12) & 0x3f];
+        } else if (remaining == 2) {
+            int bits = (source[i] & 0xff) << 16 | (source[i + 1] & 0xff) << 8;
+            target[offset++] = (byte) ENCODE[bits >>> 18];
+            target[offset++] = (byte) ENCODE[(bits >>> 12) & 0x3f];
+            target[offset++] = (byte) ENCODE[(bits >>> 6) & 0x3f];
+        }
+        return offset;
+    }
+
+    /**
+     * Decodes unpadded Base64URL token[from, to) into target; returns the decoded length, or
+     * -1 for anything that is not canonical (foreign characters, padding, stray bits).
+     */
+    private static int decode(String token, int from, int to, byte[] target, int offset) {
+        int start = offset;
+        int bits = 0;
+        int bitCount = 0;
+        if ((to - from) % 4 == 1) {
+            return -1;
+        }
+        for (int i = from; i < to; i++) {
+            char c = token.charAt(i);
+            int value = c < 128 ? DECODE[c] : -1;
+            if (value < 0) {
+                return -1;
+            }
+            bits = bits << 6 | value;
+            bitCount += 6;
+            if (bitCount >= 8) {
+                bitCount -= 8;
+                if (offset == target.length) {
+                    return -1;
+                }
+                target[offset++] = (byte) (bits >>> bitCount);
+                bits &= (1 << bitCount) - 1;
+            }
+        }
+        if (bits != 0) {
+            return -1;
+        }
+        return offset - start;
+    }
+
+    private static byte[] ascii(String value) {
+        return value.getBytes(StandardCharsets.US_ASCII);
+    }
+
+    private static byte[] base64Url(String json) {
+        byte[] source = ascii(json);
+        byte[] target = new byte[encodedLength(source.length)];
+        encode(source, source.length, target, 0);
+        return target;
+    }
+
+    /**
+     * Per-thread Mac (re-keyed only when the signing key changes) and growable buffers.
+     */
+    private static final class Scratch {
+        final byte[] signature = new byte[SIGNATURE_BYTES];
+        final byte[] presented = new byte[SIGNATURE_BYTES];
+        byte[] json = new byte[256];
+        byte[] token = new byte[512];
+        Mac mac;
+        SecretKey macKey;
+
+        byte[] json(int size) {
+            if (json.length < size) {
+                json = new byte[Math.max(size, json.length * 2)];
+            }
+            return json;
+        }
+
+        byte[] token(int size) {
+            if (token.length < size) {
+                token = new byte[Math.max(size, token.length * 2)];
+            }
+            return token;
+        }
+
+        Mac mac(SecretKey key) {
+            try {
+                if (mac == null) {
+                    mac = Mac.getInstance(ALGORITHM);
+                }
+                if (key != macKey) {
+                    mac.init(key);
+                    macKey = key;
+                }
+            } catch (GeneralSecurityException ex) {
+                throw new IllegalStateException("HmacSHA512 unavailable", ex);
+            }
+            return mac;
+        }
+    }
+}
@@ -1,7 +1,10 @@
 package com.diyauth.security;
 
+import com.diyauth.exception.ServiceDegradedException;
 import com.diyauth.service.CustomUserDetailsService;
 import io.jsonwebtoken.JwtException;
+import io.micrometer.observation.Observation;
+import io.micrometer.observation.ObservationRegistry;
 import jakarta.servlet.FilterChain;
 import jakarta.servlet.ServletException;
 import jakarta.servlet.http.HttpServletRequest;
@@ -23,15 +26,26 @@ public class JwtAuthenticationFilter extends OncePerRequestFilter {
 
     private static final Logger logger = LoggerFactory.getLogger(JwtAuthenticationFilter.class);
 
+    private static final WebAuthenticationDetailsSource authenticationDetailsSource = new WebAuthenticationDetailsSource();
+
     @Autowired
     private JwtTokenProvider tokenProvider;
 
     @Autowired
     private CustomUserDetailsService customUserDetailsService;
 
-    public JwtAuthenticationFilter(JwtTokenProvider tokenProvider, CustomUserDetailsService customUserDetailsService) {
+    @Autowired
+    private RecentPrincipalCache recentPrincipalCache;
+
+    @Autowired
+    private ObservationRegistry observationRegistry;
+
+    public JwtAuthenticationFilter(JwtTokenProvider tokenProvider, CustomUserDetailsService customUserDetailsService,
+                                   RecentPrincipalCache recentPrincipalCache, ObservationRegistry observationRegistry) {
         this.tokenProvider = tokenProvider;
         this.customUserDetailsService = customUserDetailsService;
+        this.recentPrincipalCache = recentPrincipalCache;
+        this.observationRegistry = observationRegistry;
     }
 
     @Override
@@ -40,20 +54,15 @@ public class JwtAuthenticationFilter extends OncePerRequestFilter {
         try {
             String jwt = getJwtFromRequest(request);
             if (StringUtils.hasText(jwt)) {
-                try {
-                    if (tokenProvider.validateToken(jwt)) {
-                        String username = tokenProvider.getUsernameFromJWT(jwt);
-                        logger.debug("Authenticated user with username: {}", username);
-                        
-                        UserDetails userDetails = customUserDetailsService.loadUserByUsername(username);
-                        UsernamePasswordAuthenticationToken authentication = new UsernamePasswordAuthenticationToken(
-                                userDetails, null, userDetails.getAuthorities());
-                        authentication.setDetails(new WebAuthenticationDetailsSource().buildDetails(request));
-                        SecurityContextHolder.getContext().setAuthentication(authentication);
-                    }
-                } catch (JwtException ex) {
-                    logger.warn("JWT validation failed: {}", ex.getMessage());
-                    request.setAttribute("jwtException", ex);
+                // Span covers token verification and user lookup, not the rest of the chain
+                Observation observation = Observation.start("auth.jwt.filter", observationRegistry);
+                try (Observation.Scope scope = observation.openScope()) {
+                    authenticate(request, jwt);
+                } catch (RuntimeException ex) {
+                    observation.error(ex);
+                    throw ex;
+                } finally {
+                    observation.stop();
                 }
             } else {
                 logger.trace("No JWT token found in request headers");
@@ -66,6 +75,51 @@ public class JwtAuthenticationFilter extends OncePerRequestFilter {
         filterChain.doFilter(request, response);
     }
 
+    private void authenticate(HttpServletRequest request, String jwt) {
+        try {
+            TokenClaims claims = tokenProvider.validate(jwt);
+            if (claims.subject() != null) {
+                logger.debug("Authenticated user with username: {}", claims.subject());
+                
+                UserDetails userDetails = loadUser(claims);
+                UsernamePasswordAuthenticationToken authentication = new UsernamePasswordAuthenticationToken(
+                        userDetails, null, userDetails.getAuthorities());
+                authentication.setDetails(authenticationDetailsSource.buildDetails(request));
+                SecurityContextHolder.getContext().setAuthentication(authentication);
+            }
+        } catch (JwtException ex) {
+            logger.warn("JWT validation failed: {}", ex.getMessage());
+            request.setAttribute("jwtException", ex);
+        }
+    }
+
+    /**
+     * Loads the user for a valid token, from the principal cache while user invalidations
+     * are current. While the database is unavailable the token is still honoured: with the
+     * recently seen principal if there is one, otherwise with a minimal principal built from
+     * the token (its non-privileged role bits only, no id or email). Shared with ForwardAuthFilter.
+     */
+    UserDetails loadUser(TokenClaims claims) {
+        String username = claims.subject();
+        UserPrincipal cached = recentPrincipalCache.getFresh(username);
+        if (cached != null) {
+            return cached;
+        }
+        long generation = recentPrincipalCache.generation();
+        try {
+            UserDetails userDetails = customUserDetailsService.loadUserByUsername(username);
+            if (userDetails instanceof UserPrincipal principal) {
+                recentPrincipalCache.put(username, principal, generation);
+            }
+            return userDetails;
+        } catch (ServiceDegradedException ex) {
+            UserPrincipal recent = recentPrincipalCache.get(username);
+            logger.debug("Database unavailable, authenticating {} from {}", username,
+                    recent != null ? "recent principal" : "token claims");
+            return recent != null ? recent : UserPrincipal.fromToken(username, claims.roleBits());
+        }
+    }
+
     private String getJwtFromRequest(HttpServletRequest request) {
         String bearerToken = request.getHeader("Authorization");
         if (StringUtils.hasText(bearerToken) && bearerToken.startsWith("Bearer ")) {
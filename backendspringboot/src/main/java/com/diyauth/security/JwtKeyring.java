@@ -0,0 +1,229 @@
+package com.diyauth.security;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.jsonwebtoken.JwsHeader;
+import io.jsonwebtoken.security.Keys;
+import io.jsonwebtoken.security.SignatureException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.util.StringUtils;
+
+import javax.crypto.SecretKey;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.attribute.FileTime;
+import java.time.Instant;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * HMAC signing keys indexed by {@code kid}, reloaded from a mounted file when it changes.
+ *
+ * File format ({@code app.jwt.keyring.file}):
+ * <pre>
+ * {"keys": [
+ *   {"kid": "2026-10", "secret": "&lt;base64, at least 64 bytes&gt;",
+ *    "activateAfter": "2026-10-01T00:00:00Z", "retireAfter": "2027-01-01T00:00:00Z"}
+ * ]}
+ * </pre>
+ * New tokens are signed with the active key that was activated last. A key verifies
+ * tokens from the moment it is loaded until {@code retireAfter}, so a new key can be
+ * rolled out to every pod before any of them signs with it, and the old key should stay
+ * until the last token it signed has expired. Tokens without a {@code kid} (issued before
+ * the keyring) verify against the legacy {@code app.jwtSecret}, which also signs when no
+ * keyring key is active.
+ */
+@Component
+public class JwtKeyring {
+
+    private static final Logger logger = LoggerFactory.getLogger(JwtKeyring.class);
+
+    private static final int MIN_HS512_KEY_BYTES = 64;
+
+    private final JwtKey legacyKey;
+    private final Path keyringFile;
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    private volatile Snapshot snapshot = Snapshot.EMPTY;
+    private volatile FileTime loadedModifiedTime;
+    private volatile FileTime failedModifiedTime;
+
+    public JwtKeyring(@Value("${app.jwtSecret:}") String legacySecret,
+                      @Value("${app.jwt.keyring.file:}") String keyringFile) {
+        this.legacyKey = StringUtils.hasText(legacySecret)
+                ? new JwtKey(null, Keys.hmacShaKeyFor(Base64.getDecoder().decode(legacySecret)), null, null)
+                : null;
+        this.keyringFile = StringUtils.hasText(keyringFile) ? Paths.get(keyringFile) : null;
+        if (this.keyringFile != null) {
+            reloadIfChanged();
+        }
+        if (legacyKey == null && snapshot.byKid.isEmpty()) {
+            throw new IllegalStateException("No JWT signing key: set app.jwtSecret or app.jwt.keyring.file");
+        }
+    }
+
+    /**
+     * The key new tokens are signed with; its kid is null for the legacy key.
+     */
+    public JwtKey signingKey() {
+        Instant now = Instant.now();
+        for (JwtKey key : snapshot.newestFirst) {
+            if (key.isActive(now)) {
+                return key;
+            }
+        }
+        if (legacyKey == null) {
+            throw new IllegalStateException("No active JWT signing key in " + keyringFile);
+        }
+        return legacyKey;
+    }
+
+    /**
+     * Looks up the verification key for a token header by kid.
+     */
+    public SecretKey verificationKey(JwsHeader<?> header) {
+        String kid = header.getKeyId();
+        if (kid == null) {
+            if (legacyKey == null) {
+                throw new SignatureException("Token has no kid and no legacy key is configured");
+            }
+            return legacyKey.key();
+        }
+        JwtKey key = snapshot.byKid.get(kid);
+        if (key == null) {
+            throw new SignatureException("Unknown signing key: " + kid);
+        }
+        if (key.isRetired(Instant.now())) {
+            throw new SignatureException("Retired signing key: " + kid);
+        }
+        return key.key();
+    }
+
+    /**
+     * Same lookup as {@link #verificationKey(JwsHeader)}, but null instead of an exception for
+     * unknown or retired kids (the fast token path then defers to jjwt for the error).
+     */
+    SecretKey verificationKeyOrNull(String kid) {
+        if (kid == null) {
+            return legacyKey != null ? legacyKey.key() : null;
+        }
+        JwtKey key = snapshot.byKid.get(kid);
+        return key != null && !key.isRetired(Instant.now()) ? key.key() : null;
+    }
+
+    @Scheduled(fixedDelayString = "${app.jwt.keyring.reload-interval-ms:30000}",
+            initialDelayString = "${app.jwt.keyring.reload-interval-ms:30000}")
+    public void reloadIfChanged() {
+        if (keyringFile == null) {
+            return;
+        }
+        if (!Files.exists(keyringFile)) {
+            // Optional mount not present (yet): keep whatever is loaded, the legacy key at least
+            return;
+        }
+        FileTime modifiedTime = null;
+        try {
+            modifiedTime = Files.getLastModifiedTime(keyringFile);
+            if (modifiedTime.equals(loadedModifiedTime)) {
+                return;
+            }
+            snapshot = parse(Files.readAllBytes(keyringFile));
+            // Only once loaded: a file caught half-written can be completed within the same
+            // modification time, and must be read again then
+            loadedModifiedTime = modifiedTime;
+            failedModifiedTime = null;
+            logger.info("Loaded JWT keyring from {}: kids {}", keyringFile, snapshot.byKid.keySet());
+        } catch (IOException ex) {
+            // Parser messages can quote file content, i.e. key material: keep them out of the log
+            if (firstFailure(modifiedTime)) {
+                logger.error("Failed to read JWT keyring from {} ({}), keeping {} loaded keys",
+                        keyringFile, ex.getClass().getSimpleName(), snapshot.byKid.size());
+            }
+        } catch (IllegalArgumentException ex) {
+            // Keep the keys we have; a half-written or broken file must not log everyone out
+            if (firstFailure(modifiedTime)) {
+                logger.error("Invalid JWT keyring in {}: {}, keeping {} loaded keys",
+                        keyringFile, ex.getMessage(), snapshot.byKid.size());
+            }
+        }
+    }
+
+    // Retried on every poll, but logged once per version of the file
+    private boolean firstFailure(FileTime modifiedTime) {
+        if (modifiedTime != null && modifiedTime.equals(failedModifiedTime)) {
+            logger.debug("JWT keyring in {} still cannot be loaded", keyringFile);
+            return false;
+        }
+        failedModifiedTime = modifiedTime;
+        return true;
+    }
+
+    private Snapshot parse(byte[] content) throws IOException {
+        JsonNode keys = objectMapper.readTree(content).path("keys");
+        if (!keys.isArray() || keys.isEmpty()) {
+            throw new IllegalArgumentException("no keys");
+        }
+        Map<String, JwtKey> byKid = new HashMap<>();
+        for (JsonNode node : keys) {
+            String kid = node.path("kid").asText(null);
+            String secret = node.path("secret").asText(null);
+            if (!StringUtils.hasText(kid) || !StringUtils.hasText(secret)) {
+                throw new IllegalArgumentException("every key needs a kid and a secret");
+            }
+            byte[] keyBytes = Base64.getDecoder().decode(secret);
+            if (keyBytes.length < MIN_HS512_KEY_BYTES) {
+                throw new IllegalArgumentException("key " + kid + " is shorter than " + MIN_HS512_KEY_BYTES + " bytes");
+            }
+            JwtKey key = new JwtKey(kid, Keys.hmacShaKeyFor(keyBytes),
+                    parseInstant(node, "activateAfter"), parseInstant(node, "retireAfter"));
+            if (byKid.put(kid, key) != null) {
+                throw new IllegalArgumentException("duplicate kid " + kid);
+            }
+        }
+        List<JwtKey> newestFirst = new ArrayList<>(byKid.values());
+        newestFirst.sort(Comparator.comparing(JwtKey::activateAfterOrEpoch).reversed());
+        return new Snapshot(Map.copyOf(byKid), List.copyOf(newestFirst));
+    }
+
+    private static Instant parseInstant(JsonNode node, String field) {
+        String value = node.path(field).asText(null);
+        if (!StringUtils.hasText(value)) {
+            return null;
+        }
+        try {
+            return Instant.parse(value);
+        } catch (DateTimeParseException ex) {
+            throw new IllegalArgumentException(field + " is not an ISO-8601 instant: " + value);
+        }
+    }
+
+    public record JwtKey(String kid, SecretKey key, Instant activateAfter, Instant retireAfter) {
+
+        boolean isActive(Instant now) {
+            return (activateAfter == null || !now.isBefore(activateAfter)) && !isRetired(now);
+        }
+
+        boolean isRetired(Instant now) {
+            return retireAfter != null && !now.isBefore(retireAfter);
+        }
+
+        Instant activateAfterOrEpoch() {
+            return activateAfter != null ? activateAfter : Instant.EPOCH;
+        }
+    }
+
+    private record Snapshot(Map<String, JwtKey> byKid, List<JwtKey> newestFirst) {
+        static final Snapshot EMPTY = new Snapshot(Map.of(), List.of());
+    }
+}
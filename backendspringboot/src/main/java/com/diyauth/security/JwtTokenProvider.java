@@ -1,9 +1,11 @@
 package com.diyauth.security;
 
 import io.jsonwebtoken.*;
-import io.jsonwebtoken.security.Keys;
+import io.micrometer.observation.Observation;
+import io.micrometer.observation.ObservationRegistry;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.security.core.Authentication;
 import org.springframework.stereotype.Component;
@@ -16,35 +18,97 @@ public class JwtTokenProvider {
 
     private static final Logger logger = LoggerFactory.getLogger(JwtTokenProvider.class);
 
-    @Value("${app.jwtSecret}")
-    private String jwtSecret;
-
     @Value("${app.jwtExpirationInMs}")
     private int jwtExpirationInMs;
 
+    private final JwtKeyring keyring;
+    private final ObservationRegistry observationRegistry;
+
+    // Built once; resolves the verification key by the token's kid on every parse
+    private final JwtParser jwtParser;
+
+    // Handles our own HS512 tokens without jjwt; null when disabled or not jjwt-compatible
+    private final Hs512TokenCodec fastCodec;
+
+    public JwtTokenProvider(JwtKeyring keyring, ObservationRegistry observationRegistry) {
+        this(keyring, observationRegistry, true);
+    }
+
+    @Autowired
+    public JwtTokenProvider(JwtKeyring keyring, ObservationRegistry observationRegistry,
+                            @Value("${app.jwt.fast-codec.enabled:true}") boolean fastCodecEnabled) {
+        this.keyring = keyring;
+        this.observationRegistry = observationRegistry;
+        this.jwtParser = Jwts.parserBuilder()
+                .setSigningKeyResolver(new SigningKeyResolverAdapter() {
+                    @Override
+                    public Key resolveSigningKey(JwsHeader header, Claims claims) {
+                        return keyring.verificationKey(header);
+                    }
+                })
+                .build();
+        this.fastCodec = fastCodecEnabled ? createFastCodec(keyring) : null;
+    }
+
+    private static Hs512TokenCodec createFastCodec(JwtKeyring keyring) {
+        if (!Hs512TokenCodec.matchesJjwt()) {
+            logger.warn("HS512 token codec disagrees with jjwt, using jjwt for all tokens");
+            return null;
+        }
+        return new Hs512TokenCodec(keyring::verificationKeyOrNull);
+    }
+
     public String generateToken(Authentication authentication) {
         UserPrincipal userPrincipal = (UserPrincipal) authentication.getPrincipal();
-        return generateToken(userPrincipal.getUsername());
+        return generateToken(userPrincipal.getUsername(), userPrincipal.getRoleBits());
     }
 
     public String generateToken(String username) {
+        return generateToken(username, 0);
+    }
+
+    /**
+     * Token for the subject carrying its RoleCatalog bits in the "rb" claim (left out when 0).
+     */
+    public String generateToken(String username, long roleBits) {
+        return Observation.createNotStarted("auth.token.sign", observationRegistry)
+                .observe(() -> sign(username, roleBits));
+    }
+
+    private String sign(String username, long roleBits) {
         Date now = new Date();
         Date expiryDate = new Date(now.getTime() + jwtExpirationInMs);
+        JwtKeyring.JwtKey signingKey = keyring.signingKey();
 
-        return Jwts.builder()
-                .setSubject(username)
-                .setIssuedAt(new Date())
-                .setExpiration(expiryDate)
-                .signWith(getSigningKey(), SignatureAlgorithm.HS512)
+        if (fastCodec != null) {
+            String token = fastCodec.encode(signingKey.kid(), signingKey.key(), username,
+                    now.getTime() / 1000, expiryDate.getTime() / 1000, roleBits);
+            if (token != null) {
+                return token;
+            }
+        }
+
+        JwtBuilder builder = Jwts.builder();
+        if (signingKey.kid() != null) {
+            builder.setHeaderParam(JwsHeader.KEY_ID, signingKey.kid());
+        }
+        builder.setSubject(username)
+                .setIssuedAt(now)
+                .setExpiration(expiryDate);
+        if (roleBits != 0) {
+            builder.claim(Hs512TokenCodec.ROLE_BITS_CLAIM, roleBits);
+        }
+        return builder
+                .signWith(signingKey.key(), SignatureAlgorithm.HS512)
                 .compact();
     }
 
     public String getUsernameFromJWT(String token) {
-        Claims claims = Jwts.parserBuilder()
-                .setSigningKey(getSigningKey())
-                .build()
-                .parseClaimsJws(token)
-                .getBody();
+        TokenClaims verified = fastVerify(token);
+        if (verified != null) {
+            return verified.subject();
+        }
+        Claims claims = jwtParser.parseClaimsJws(token).getBody();
 
         return claims.getSubject();
     }
@@ -55,12 +119,40 @@ public class JwtTokenProvider {
     }
 
     public boolean validateToken(String authToken) {
+        validateAndGetUsername(authToken);
+        return true;
+    }
+
+    /**
+     * Validates the token and returns its subject with a single parse; failures are
+     * reported the same way as {@link #validateToken(String)}.
+     */
+    public String validateAndGetUsername(String authToken) {
+        return validate(authToken).subject();
+    }
+
+    /**
+     * Like {@link #validateAndGetUsername(String)}, also returning the token's role bits.
+     */
+    public TokenClaims validate(String authToken) {
+        return Observation.createNotStarted("auth.token.verify", observationRegistry)
+                .observe(() -> verify(authToken));
+    }
+
+    private TokenClaims fastVerify(String token) {
+        return fastCodec != null && token != null ? fastCodec.verify(token, System.currentTimeMillis()) : null;
+    }
+
+    private TokenClaims verify(String authToken) {
+        TokenClaims verified = fastVerify(authToken);
+        if (verified != null) {
+            return verified;
+        }
         try {
-            Jwts.parserBuilder()
-                .setSigningKey(getSigningKey())
-                .build()
-                .parseClaimsJws(authToken);
-            return true;
+            Claims claims = jwtParser.parseClaimsJws(authToken).getBody();
+            Number roleBits = claims.get(Hs512TokenCodec.ROLE_BITS_CLAIM, Number.class);
+            return new TokenClaims(claims.getSubject(),
+                    roleBits != null ? roleBits.longValue() : TokenClaims.NO_ROLE_BITS);
         } catch (SecurityException ex) {
             logger.error("Invalid JWT signature: {}", ex.getMessage());
             throw new JwtException("Invalid JWT signature");
@@ -81,9 +173,4 @@ public class JwtTokenProvider {
             throw new JwtException("JWT validation failed");
         }
     }
-
-    private Key getSigningKey() {
-        byte[] keyBytes = java.util.Base64.getDecoder().decode(jwtSecret);
-        return Keys.hmacShaKeyFor(keyBytes);
-    }
 }
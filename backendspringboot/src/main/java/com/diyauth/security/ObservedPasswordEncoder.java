@@ -0,0 +1,75 @@
+package com.diyauth.security;
+
+import io.micrometer.observation.Observation;
+import io.micrometer.observation.ObservationRegistry;
+import org.springframework.security.crypto.password.PasswordEncoder;
+
+/**
+ * Wraps encode and matches in {@code password.encoder} observations, so hashing cost shows
+ * up both as a timer and as its own span next to the Mongo lookups on the signin path.
+ * Tagged with the BCrypt cost factor, and matches with whether the password matched.
+ */
+public class ObservedPasswordEncoder implements PasswordEncoder {
+
+    private final PasswordEncoder delegate;
+    private final ObservationRegistry observationRegistry;
+
+    public ObservedPasswordEncoder(PasswordEncoder delegate, ObservationRegistry observationRegistry) {
+        this.delegate = delegate;
+        this.observationRegistry = observationRegistry;
+    }
+
+    private Observation observation(String operation) {
+        return Observation.createNotStarted("password.encoder", observationRegistry)
+                .lowCardinalityKeyValue("operation", operation);
+    }
+
+    @Override
+    public String encode(CharSequence rawPassword) {
+        Observation observation = observation("encode").start();
+        try (Observation.Scope scope = observation.openScope()) {
+            String encoded = delegate.encode(rawPassword);
+            observation.lowCardinalityKeyValue("cost", cost(encoded));
+            return encoded;
+        } catch (RuntimeException ex) {
+            observation.error(ex);
+            throw ex;
+        } finally {
+            observation.stop();
+        }
+    }
+
+    @Override
+    public boolean matches(CharSequence rawPassword, String encodedPassword) {
+        Observation observation = observation("matches")
+                .lowCardinalityKeyValue("cost", cost(encodedPassword))
+                .start();
+        try (Observation.Scope scope = observation.openScope()) {
+            boolean matched = delegate.matches(rawPassword, encodedPassword);
+            observation.lowCardinalityKeyValue("outcome", matched ? "match" : "mismatch");
+            return matched;
+        } catch (RuntimeException ex) {
+            observation.error(ex);
+            throw ex;
+        } finally {
+            observation.stop();
+        }
+    }
+
+    /**
+     * BCrypt log2 rounds from a "$2a$10$..." hash, or "unknown".
+     */
+    static String cost(String encodedPassword) {
+        if (encodedPassword != null && encodedPassword.length() > 7 && encodedPassword.charAt(0) == '$'
+                && encodedPassword.charAt(3) == '$' && encodedPassword.charAt(6) == '$'
+                && Character.isDigit(encodedPassword.charAt(4)) && Character.isDigit(encodedPassword.charAt(5))) {
+            return encodedPassword.substring(4, 6);
+        }
+        return "unknown";
+    }
+
+    @Override
+    public boolean upgradeEncoding(String encodedPassword) {
+        return delegate.upgradeEncoding(encodedPassword);
+    }
+}
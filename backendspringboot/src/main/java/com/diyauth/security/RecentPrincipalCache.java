@@ -0,0 +1,175 @@
+package com.diyauth.security;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Principals recently loaded for authenticated requests. Used in two ways:
+ * <ul>
+ * <li>on the request path instead of a user lookup, for entries up to
+ * app.auth.principal-cache.ttl-ms old, but only while UserChangeFeed reports that every user
+ * change up to app.auth.principal-cache.max-invalidation-lag-ms ago has been applied here.
+ * Without a feed (embedded store, feed down or behind) every request does the lookup;</li>
+ * <li>while the database is unavailable, so holders of valid tokens keep their identity and
+ * roles (entries up to app.auth.degraded.principal-ttl-ms old).</li>
+ * </ul>
+ * A load that overlaps an invalidation is not kept (see {@link #generation()}), so a stale
+ * value can never overtake the eviction meant to remove it. Bounded: once full, only
+ * already-known users are refreshed.
+ */
+@Component
+public class RecentPrincipalCache {
+
+    private final ConcurrentHashMap<String, Entry> principals = new ConcurrentHashMap<>();
+    private final int maxSize;
+    private final long ttlNanos;
+    private final long freshTtlNanos;
+    private final long maxInvalidationLagNanos;
+    private final AtomicLong generation = new AtomicLong();
+
+    private volatile boolean invalidationsTracked;
+    private volatile long invalidationsCurrentAsOfNanos;
+
+    private final Counter hits;
+    private final Counter misses;
+    private final Counter notCurrent;
+
+    public RecentPrincipalCache(@Value("${app.auth.degraded.principal-cache-size:10000}") int maxSize,
+                                @Value("${app.auth.degraded.principal-ttl-ms:900000}") long ttlMs,
+                                @Value("${app.auth.principal-cache.ttl-ms:60000}") long freshTtlMs,
+                                @Value("${app.auth.principal-cache.max-invalidation-lag-ms:5000}") long maxInvalidationLagMs,
+                                MeterRegistry meterRegistry) {
+        this.maxSize = maxSize;
+        this.ttlNanos = TimeUnit.MILLISECONDS.toNanos(ttlMs);
+        this.freshTtlNanos = TimeUnit.MILLISECONDS.toNanos(freshTtlMs);
+        this.maxInvalidationLagNanos = TimeUnit.MILLISECONDS.toNanos(maxInvalidationLagMs);
+        this.hits = lookupCounter(meterRegistry, "hit");
+        this.misses = lookupCounter(meterRegistry, "miss");
+        this.notCurrent = lookupCounter(meterRegistry, "not_current");
+    }
+
+    private static Counter lookupCounter(MeterRegistry registry, String result) {
+        return Counter.builder("auth.principal.cache.lookups")
+                .description("Request-path principal lookups answered from the cache")
+                .tag("result", result)
+                .register(registry);
+    }
+
+    /**
+     * Current value of the invalidation counter; take it before loading a principal and
+     * pass it to {@link #put}.
+     */
+    public long generation() {
+        return generation.get();
+    }
+
+    public void put(String username, UserPrincipal principal, long loadedAtGeneration) {
+        if (principals.size() >= maxSize && !principals.containsKey(username)) {
+            return;
+        }
+        Entry entry = new Entry(principal, System.nanoTime());
+        principals.put(username, entry);
+        // An invalidation may have run between the load and the put; it bumps the
+        // generation before evicting, so either it removes this entry or we do
+        if (generation.get() != loadedAtGeneration) {
+            principals.remove(username, entry);
+        }
+    }
+
+    /**
+     * The principal to use instead of a lookup, or null when there is none young enough or
+     * the invalidation feed is not current.
+     */
+    public UserPrincipal getFresh(String username) {
+        if (!invalidationsCurrent()) {
+            notCurrent.increment();
+            return null;
+        }
+        Entry entry = principals.get(username);
+        if (entry == null || System.nanoTime() - entry.seenAtNanos > freshTtlNanos) {
+            misses.increment();
+            return null;
+        }
+        hits.increment();
+        return entry.principal;
+    }
+
+    /**
+     * The last known principal, for degraded mode.
+     */
+    public UserPrincipal get(String username) {
+        Entry entry = principals.get(username);
+        if (entry == null) {
+            return null;
+        }
+        if (System.nanoTime() - entry.seenAtNanos > ttlNanos) {
+            principals.remove(username, entry);
+            return null;
+        }
+        return entry.principal;
+    }
+
+    /**
+     * Drops the user's principal; either argument may be null.
+     */
+    public void invalidate(String userId, String username) {
+        generation.incrementAndGet();
+        if (username != null) {
+            principals.remove(username);
+        }
+        if (userId != null) {
+            principals.values().removeIf(entry -> userId.equals(entry.principal.getId()));
+        }
+    }
+
+    /**
+     * The username of a cached principal with this id, or null.
+     */
+    public String usernameOf(String userId) {
+        for (Entry entry : principals.values()) {
+            if (userId.equals(entry.principal.getId())) {
+                return entry.principal.getUsername();
+            }
+        }
+        return null;
+    }
+
+    public void invalidateAll() {
+        generation.incrementAndGet();
+        principals.clear();
+    }
+
+    /**
+     * Called by the invalidation feed: every user change made before {@code asOfNanos}
+     * (System.nanoTime) has been applied.
+     */
+    public void invalidationsCurrentAsOf(long asOfNanos) {
+        if (asOfNanos - invalidationsCurrentAsOfNanos > 0 || !invalidationsTracked) {
+            invalidationsCurrentAsOfNanos = asOfNanos;
+        }
+        invalidationsTracked = true;
+    }
+
+    public boolean invalidationsCurrent() {
+        return invalidationsTracked && System.nanoTime() - invalidationsCurrentAsOfNanos <= maxInvalidationLagNanos;
+    }
+
+    /**
+     * Seconds since the last point the invalidation feed was known to be caught up, or -1
+     * when no feed has reported yet.
+     */
+    public double invalidationStalenessSeconds() {
+        return invalidationsTracked
+                ? (System.nanoTime() - invalidationsCurrentAsOfNanos) / 1e9
+                : -1;
+    }
+
+    private record Entry(UserPrincipal principal, long seenAtNanos) {
+    }
+}
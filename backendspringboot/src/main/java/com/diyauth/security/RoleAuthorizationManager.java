@@ -0,0 +1,53 @@
+package com.diyauth.security;
+
+import org.springframework.security.authentication.AnonymousAuthenticationToken;
+import org.springframework.security.authorization.AuthorizationDecision;
+import org.springframework.security.authorization.AuthorizationManager;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.GrantedAuthority;
+
+import java.util.function.Supplier;
+
+/**
+ * hasRole(...) for the request matchers as a bit test on the UserPrincipal's role bits
+ * instead of comparing authority strings. Other principals are checked by authority name.
+ */
+public final class RoleAuthorizationManager<T> implements AuthorizationManager<T> {
+
+    private final String role;
+    private final AuthorizationDecision granted = new AuthorizationDecision(true);
+    private final AuthorizationDecision denied = new AuthorizationDecision(false);
+
+    private RoleAuthorizationManager(String role) {
+        this.role = role;
+    }
+
+    /**
+     * @param role role name without the ROLE_ prefix, as for hasRole
+     */
+    public static <T> RoleAuthorizationManager<T> hasRole(String role) {
+        return new RoleAuthorizationManager<>("ROLE_" + role);
+    }
+
+    @Override
+    public AuthorizationDecision check(Supplier<Authentication> authentication, T object) {
+        Authentication current = authentication.get();
+        if (current == null || !current.isAuthenticated() || current instanceof AnonymousAuthenticationToken) {
+            return denied;
+        }
+        if (current.getPrincipal() instanceof UserPrincipal principal) {
+            return principal.hasRole(role) ? granted : denied;
+        }
+        for (GrantedAuthority authority : current.getAuthorities()) {
+            if (role.equals(authority.getAuthority())) {
+                return granted;
+            }
+        }
+        return denied;
+    }
+
+    @Override
+    public String toString() {
+        return "RoleAuthorizationManager[" + role + "]";
+    }
+}
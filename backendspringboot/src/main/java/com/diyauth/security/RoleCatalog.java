@@ -0,0 +1,126 @@
+package com.diyauth.security;
+
+import org.springframework.security.core.GrantedAuthority;
+import org.springframework.security.core.authority.SimpleGrantedAuthority;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The roles (and any permission-style authorities) the application knows, each with a fixed
+ * bit position. A set of catalogued roles is a {@code long}: that is what principals carry
+ * and test, and what tokens carry in their "rb" claim, so a token does not grow with the
+ * number of roles.
+ *
+ * Positions are part of every token issued: append new entries, never reorder, reuse or
+ * remove one. Authorities outside the catalog (legacy values such as "USER") still work as
+ * strings but have no bit.
+ */
+public final class RoleCatalog {
+
+    // Append only
+    private static final String[] ROLES = {
+            "ROLE_USER",
+            "ROLE_ADMIN",
+    };
+
+    public static final long USER = bit("ROLE_USER");
+    public static final long ADMIN = bit("ROLE_ADMIN");
+
+    // Roles a token alone may grant when its user cannot be loaded (degraded mode): a token
+    // outlives a revoked role, so privileged roles always need the user record
+    public static final long TOKEN_GRANTABLE = USER;
+
+    private static final Map<String, Integer> POSITIONS = new HashMap<>();
+    private static final GrantedAuthority[] AUTHORITIES = new GrantedAuthority[ROLES.length];
+    // Authority list per combination of roles, built once (the catalog is small)
+    private static final List<List<GrantedAuthority>> BY_MASK;
+
+    static {
+        if (ROLES.length > 62) {
+            throw new IllegalStateException("Role catalog is limited to 62 entries");
+        }
+        for (int i = 0; i < ROLES.length; i++) {
+            POSITIONS.put(ROLES[i], i);
+            AUTHORITIES[i] = new SimpleGrantedAuthority(ROLES[i]);
+        }
+        int combinations = ROLES.length <= 10 ? 1 << ROLES.length : 0;
+        List<List<GrantedAuthority>> byMask = new ArrayList<>(combinations);
+        for (int mask = 0; mask < combinations; mask++) {
+            byMask.add(build(mask));
+        }
+        BY_MASK = byMask;
+    }
+
+    private RoleCatalog() {
+    }
+
+    private static long bit(String role) {
+        for (int i = 0; i < ROLES.length; i++) {
+            if (ROLES[i].equals(role)) {
+                return 1L << i;
+            }
+        }
+        throw new IllegalArgumentException("Not in the role catalog: " + role);
+    }
+
+    /**
+     * The role's bit, or 0 when it is not catalogued.
+     */
+    public static long bitOf(String role) {
+        Integer position = role != null ? POSITIONS.get(role) : null;
+        return position != null ? 1L << position : 0;
+    }
+
+    public static boolean isCatalogued(String role) {
+        return bitOf(role) != 0;
+    }
+
+    /**
+     * Bits of the catalogued roles among {@code roles}; others are ignored.
+     */
+    public static long bits(String... roles) {
+        long bits = 0;
+        if (roles != null) {
+            for (String role : roles) {
+                bits |= bitOf(role);
+            }
+        }
+        return bits;
+    }
+
+    public static long bits(Collection<? extends GrantedAuthority> authorities) {
+        long bits = 0;
+        if (authorities != null) {
+            for (GrantedAuthority authority : authorities) {
+                bits |= bitOf(authority.getAuthority());
+            }
+        }
+        return bits;
+    }
+
+    /**
+     * Shared, immutable authorities for a set of catalogued roles, in catalog order.
+     */
+    public static List<GrantedAuthority> authorities(long bits) {
+        bits &= (1L << ROLES.length) - 1;
+        return bits < BY_MASK.size() ? BY_MASK.get((int) bits) : build(bits);
+    }
+
+    private static List<GrantedAuthority> build(long bits) {
+        if (bits == 0) {
+            return Collections.emptyList();
+        }
+        List<GrantedAuthority> authorities = new ArrayList<>(Long.bitCount(bits));
+        for (int i = 0; i < ROLES.length; i++) {
+            if ((bits & (1L << i)) != 0) {
+                authorities.add(AUTHORITIES[i]);
+            }
+        }
+        return Collections.unmodifiableList(authorities);
+    }
+}
@@ -0,0 +1,14 @@
+package com.diyauth.security;
+
+/**
+ * What a verified token says: its subject and the RoleCatalog bits of its "rb" claim, or
+ * {@link #NO_ROLE_BITS} for tokens issued without one.
+ */
+public record TokenClaims(String subject, long roleBits) {
+
+    public static final long NO_ROLE_BITS = -1;
+
+    public boolean hasRoleBits() {
+        return roleBits >= 0;
+    }
+}
@@ -3,12 +3,10 @@ package com.diyauth.security;
 import com.diyauth.model.User;
 import com.fasterxml.jackson.annotation.JsonIgnore;
 import org.springframework.security.core.GrantedAuthority;
-import org.springframework.security.core.authority.SimpleGrantedAuthority;
 import org.springframework.security.core.userdetails.UserDetails;
 import org.springframework.security.oauth2.core.user.OAuth2User;
 
 import java.util.*;
-import java.util.stream.Collectors;
 
 public class UserPrincipal implements OAuth2User, UserDetails {
     private static final long serialVersionUID = 1L;
@@ -19,6 +17,8 @@ public class UserPrincipal implements OAuth2User, UserDetails {
     @JsonIgnore
     private String password;
     private Collection<? extends GrantedAuthority> authorities;
+    // RoleCatalog bits of the catalogued authorities
+    private long roleBits;
     private Map<String, Object> attributes;
 
     public UserPrincipal(String id, String username, String email, String password,
@@ -28,22 +28,30 @@ public class UserPrincipal implements OAuth2User, UserDetails {
         this.email = email;
         this.password = password;
         this.authorities = authorities;
+        this.roleBits = RoleCatalog.bits(authorities);
     }
 
     public static UserPrincipal create(User user) {
-        List<GrantedAuthority> authorities = Arrays.stream(user.getRoles())
-                .map(role -> new SimpleGrantedAuthority(role))
-                .collect(Collectors.toList());
-
         return new UserPrincipal(
             user.getId(),
             user.getUsername(),
             user.getEmail(),
             user.getPassword(),
-            authorities
+            GrantedAuthorities.of(user.getRoles())
         );
     }
 
+    /**
+     * Principal for a valid token whose user cannot be loaded (degraded mode), with the
+     * token's roles limited to RoleCatalog.TOKEN_GRANTABLE (never ROLE_ADMIN); ROLE_USER for
+     * tokens without a role claim (roleBits &lt; 0) or without a grantable role.
+     */
+    public static UserPrincipal fromToken(String username, long roleBits) {
+        long bits = roleBits < 0 ? RoleCatalog.USER : roleBits & RoleCatalog.TOKEN_GRANTABLE;
+        return new UserPrincipal(null, username, null, null,
+                RoleCatalog.authorities(bits != 0 ? bits : RoleCatalog.USER));
+    }
+
     public static UserPrincipal create(User user, Map<String, Object> attributes) {
         UserPrincipal userPrincipal = UserPrincipal.create(user);
         userPrincipal.setAttributes(attributes);
@@ -72,6 +80,28 @@ public class UserPrincipal implements OAuth2User, UserDetails {
     public Collection<? extends GrantedAuthority> getAuthorities() {
         return authorities;
     }
+
+    public long getRoleBits() {
+        return roleBits;
+    }
+
+    /**
+     * Whether the principal has the authority: a bit test for catalogued roles, a scan of
+     * the authorities otherwise.
+     */
+    public boolean hasRole(String role) {
+        long bit = RoleCatalog.bitOf(role);
+        if (bit != 0) {
+            return (roleBits & bit) != 0;
+        }
+        for (GrantedAuthority authority : authorities) {
+            if (role.equals(authority.getAuthority())) {
+                return true;
+            }
+        }
+        return false;
+    }
+
     @Override
     public boolean isAccountNonExpired() {
         return true;
@@ -2,12 +2,15 @@ package com.diyauth.service;
 
 import com.diyauth.model.AuthProvider;
 import com.diyauth.model.User;
-import com.diyauth.repository.UserRepository;
 import com.diyauth.security.JwtTokenProvider;
+import com.diyauth.security.RoleCatalog;
 import com.diyauth.security.UserPrincipal;
 import com.diyauth.security.oauth2.user.OAuth2UserInfo;
 import com.diyauth.security.oauth2.user.OAuth2UserInfoFactory;
 import com.diyauth.exception.OAuth2AuthenticationProcessingException;
+import com.diyauth.store.UserStore;
+import io.micrometer.observation.Observation;
+import io.micrometer.observation.ObservationRegistry;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.security.authentication.InternalAuthenticationServiceException;
 import org.springframework.security.core.AuthenticationException;
@@ -24,15 +27,20 @@ import java.util.*;
 public class CustomOAuth2UserService extends DefaultOAuth2UserService {
 
     @Autowired
-    private UserRepository userRepository;
+    private UserStore userStore;
 
     @Autowired
     private JwtTokenProvider tokenProvider;
 
+    @Autowired
+    private ObservationRegistry observationRegistry;
+
     @Override
     public OAuth2User loadUser(OAuth2UserRequest oAuth2UserRequest) throws OAuth2AuthenticationException {
         try {
-            OAuth2User oAuth2User = super.loadUser(oAuth2UserRequest);
+            OAuth2User oAuth2User = Observation.createNotStarted("oauth2.userinfo", observationRegistry)
+                    .lowCardinalityKeyValue("registration", oAuth2UserRequest.getClientRegistration().getRegistrationId())
+                    .observe(() -> super.loadUser(oAuth2UserRequest));
             return processOAuth2User(oAuth2UserRequest, oAuth2User);
         } catch (OAuth2AuthenticationException ex) {
             throw ex;
@@ -66,7 +74,7 @@ public class CustomOAuth2UserService extends DefaultOAuth2UserService {
             }
 
             String email = oAuth2UserInfo.getEmail();
-            Optional<User> userOptional = userRepository.findByEmail(email);
+            Optional<User> userOptional = userStore.findByEmail(email);
             
             User user;
             if (userOptional.isPresent()) {
@@ -85,7 +93,7 @@ public class CustomOAuth2UserService extends DefaultOAuth2UserService {
 
             // Generate JWT token
             System.out.println("\n=== Generating JWT Token ===");
-            String token = tokenProvider.generateToken(user.getEmail());
+            String token = tokenProvider.generateToken(user.getEmail(), RoleCatalog.bits(user.getRoles()));
             System.out.println("Generated JWT Token: " + token);
             
             // Create a new mutable map with the existing attributes
@@ -124,7 +132,7 @@ public class CustomOAuth2UserService extends DefaultOAuth2UserService {
             // Set default role or any other required fields
             // user.setActive(true);  // Removed as it doesn't exist in User class
             
-            return userRepository.save(user);
+            return userStore.save(user);
             
         } catch (Exception ex) {
             System.err.println("Error registering new user: " + ex.getMessage());
@@ -134,8 +142,12 @@ public class CustomOAuth2UserService extends DefaultOAuth2UserService {
 
     private User updateExistingUser(User existingUser, OAuth2UserInfo oAuth2UserInfo) {
         try {
+            // Only write when the provider profile actually changed
+            if (Objects.equals(existingUser.getImageUrl(), oAuth2UserInfo.getImageUrl())) {
+                return existingUser;
+            }
             existingUser.setImageUrl(oAuth2UserInfo.getImageUrl());
-            return userRepository.save(existingUser);
+            return userStore.save(existingUser);
         } catch (Exception ex) {
             System.err.println("Error updating existing user: " + ex.getMessage());
             throw new OAuth2AuthenticationProcessingException("Failed to update existing user: " + ex.getMessage(), ex);
@@ -1,61 +1,83 @@
 package com.diyauth.service;
 
 import com.diyauth.model.User;
-import com.diyauth.repository.UserRepository;
 import com.diyauth.security.UserPrincipal;
+import com.diyauth.store.UserStore;
+import io.micrometer.observation.Observation;
+import io.micrometer.observation.ObservationRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.lang.Nullable;
 import org.springframework.security.core.userdetails.UserDetails;
 import org.springframework.security.core.userdetails.UserDetailsService;
 import org.springframework.security.core.userdetails.UsernameNotFoundException;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
-import java.util.Optional;
+import java.util.List;
 
 @Service
 public class CustomUserDetailsService implements UserDetailsService {
 
-    private final UserRepository userRepository;
+    private static final Logger logger = LoggerFactory.getLogger(CustomUserDetailsService.class);
 
+    private final UserStore userStore;
+    private final ObservationRegistry observationRegistry;
+    private final UserIdentifierFilter userIdentifierFilter;
+
+    // No identifier filter with the embedded store: its lookups never leave the process
     @Autowired
-    public CustomUserDetailsService(UserRepository userRepository) {
-        this.userRepository = userRepository;
+    public CustomUserDetailsService(UserStore userStore, ObservationRegistry observationRegistry,
+                                    @Nullable UserIdentifierFilter userIdentifierFilter) {
+        this.userStore = userStore;
+        this.observationRegistry = observationRegistry;
+        this.userIdentifierFilter = userIdentifierFilter;
     }
 
     @Override
     @Transactional
     public UserDetails loadUserByUsername(String usernameOrEmail) throws UsernameNotFoundException {
-        System.out.println("Loading user by username or email: " + usernameOrEmail);
+        return Observation.createNotStarted("auth.user.lookup", observationRegistry)
+                .observe(() -> findUser(usernameOrEmail));
+    }
+
+    private UserDetails findUser(String usernameOrEmail) {
+        // Runs on every authenticated request: parameterized debug logging only, no
+        // string building when the level is off
+        logger.debug("Loading user by username or email: {}", usernameOrEmail);
+
+        // Unknown names skip the query; DaoAuthenticationProvider still hashes the presented
+        // password against a dummy hash on UsernameNotFoundException, so a miss costs the same
+        if (userIdentifierFilter != null && !userIdentifierFilter.mightExist(usernameOrEmail)) {
+            logger.debug("User not found with username/email (identifier filter): {}", usernameOrEmail);
+            throw new UsernameNotFoundException("User not found with username/email: " + usernameOrEmail);
+        }
         
-        // First try to find by username
-        Optional<User> userByUsername = userRepository.findByUsername(usernameOrEmail);
-        if (userByUsername.isPresent()) {
-            User user = userByUsername.get();
-            System.out.println("User found by username: " + user.getUsername() + 
-                             ", enabled: " + user.isEnabled() + 
-                             ", password: " + user.getPassword().substring(0, 10) + "...");
-            return UserPrincipal.create(user);
+        // Username and email are matched in one query; a username match wins
+        List<User> candidates = userStore.findByUsernameOrEmail(usernameOrEmail, usernameOrEmail);
+        for (User candidate : candidates) {
+            if (usernameOrEmail.equals(candidate.getUsername())) {
+                logger.debug("User found by username: {}, enabled: {}", candidate.getUsername(), candidate.isEnabled());
+                return UserPrincipal.create(candidate);
+            }
         }
         
-        // If not found by username, try to find by email
-        Optional<User> userByEmail = userRepository.findByEmail(usernameOrEmail);
-        if (userByEmail.isPresent()) {
-            User user = userByEmail.get();
-            System.out.println("User found by email: " + user.getEmail() + 
-                             ", username: " + user.getUsername() + 
-                             ", enabled: " + user.isEnabled() + 
-                             ", password: " + user.getPassword().substring(0, 10) + "...");
+        if (!candidates.isEmpty()) {
+            User user = candidates.get(0);
+            logger.debug("User found by email: {}, username: {}, enabled: {}",
+                    user.getEmail(), user.getUsername(), user.isEnabled());
             return UserPrincipal.create(user);
         }
         
-        System.out.println("User not found with username/email: " + usernameOrEmail);
+        logger.debug("User not found with username/email: {}", usernameOrEmail);
         throw new UsernameNotFoundException("User not found with username/email: " + usernameOrEmail);
     }
 
     @Transactional
     public UserDetails loadUserById(String id) {
         System.out.println("Loading user by ID: " + id);
-        User user = userRepository.findById(id).orElseThrow(
+        User user = userStore.findById(id).orElseThrow(
             () -> {
                 System.out.println("User not found with ID: " + id);
                 return new UsernameNotFoundException("User not found with id: " + id);
@@ -71,7 +93,7 @@ public class CustomUserDetailsService implements UserDetailsService {
     @Transactional
     public UserDetails loadUserByEmail(String email) throws UsernameNotFoundException {
         System.out.println("Loading user by email: " + email);
-        User user = userRepository.findByEmail(email)
+        User user = userStore.findByEmail(email)
             .orElseThrow(() -> {
                 System.out.println("User not found with email: " + email);
                 return new UsernameNotFoundException("User not found with email: " + email);
@@ -0,0 +1,179 @@
+package com.diyauth.service;
+
+import com.diyauth.model.LoginEvent;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.servlet.http.HttpServletRequest;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.SmartLifecycle;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Write-behind login history. {@link #record} only offers the event to a bounded queue; a
+ * single writer thread drains it with one insertMany per {@code app.login-history.batch-size}
+ * events, or whatever has arrived after {@code flush-interval-ms}. When the queue is full
+ * (Mongo slow or down) new events are dropped and counted rather than slowing down logins.
+ *
+ * Stops after the web server on shutdown, so the last requests are still recorded, and
+ * writes out the remaining queue before Mongo is closed. History is kept in Mongo only: with
+ * the embedded user store there is no MongoTemplate and the recorder stays off.
+ */
+@Component
+public class LoginHistoryRecorder implements SmartLifecycle {
+
+    private static final Logger logger = LoggerFactory.getLogger(LoginHistoryRecorder.class);
+
+    private static final int MAX_USER_AGENT_LENGTH = 256;
+
+    private final MongoTemplate mongoTemplate;
+    private final boolean enabled;
+    private final int batchSize;
+    private final long flushIntervalMs;
+    private final BlockingQueue<LoginEvent> queue;
+
+    private final Counter dropped;
+    private final Counter written;
+    private final Counter failed;
+
+    private volatile boolean running;
+    private Thread writer;
+
+    public LoginHistoryRecorder(ObjectProvider<MongoTemplate> mongoTemplate, MeterRegistry meterRegistry,
+                                @Value("${app.login-history.enabled:true}") boolean enabled,
+                                @Value("${app.login-history.queue-capacity:10000}") int queueCapacity,
+                                @Value("${app.login-history.batch-size:500}") int batchSize,
+                                @Value("${app.login-history.flush-interval-ms:1000}") long flushIntervalMs) {
+        this.mongoTemplate = mongoTemplate.getIfAvailable();
+        this.enabled = enabled && this.mongoTemplate != null;
+        this.batchSize = batchSize;
+        this.flushIntervalMs = flushIntervalMs;
+        this.queue = new ArrayBlockingQueue<>(queueCapacity);
+        this.dropped = eventCounter(meterRegistry, "dropped");
+        this.written = eventCounter(meterRegistry, "written");
+        this.failed = eventCounter(meterRegistry, "failed");
+        Gauge.builder("login.history.queue.size", queue, BlockingQueue::size)
+                .description("Login events waiting to be written")
+                .register(meterRegistry);
+    }
+
+    private static Counter eventCounter(MeterRegistry registry, String outcome) {
+        return Counter.builder("login.history.events")
+                .description("Login history events by outcome")
+                .tag("outcome", outcome)
+                .register(registry);
+    }
+
+    public void recordSuccess(String username, String provider, HttpServletRequest request) {
+        record(new LoginEvent(username, provider, request.getRemoteAddr(), userAgent(request), true, null));
+    }
+
+    public void recordFailure(String username, String provider, String reason, HttpServletRequest request) {
+        record(new LoginEvent(username, provider, request.getRemoteAddr(), userAgent(request), false, reason));
+    }
+
+    public void record(LoginEvent event) {
+        if (!enabled) {
+            return;
+        }
+        if (!queue.offer(event)) {
+            dropped.increment();
+        }
+    }
+
+    private static String userAgent(HttpServletRequest request) {
+        String userAgent = request.getHeader("User-Agent");
+        return userAgent == null || userAgent.length() <= MAX_USER_AGENT_LENGTH
+                ? userAgent : userAgent.substring(0, MAX_USER_AGENT_LENGTH);
+    }
+
+    private void writeLoop() {
+        List<LoginEvent> batch = new ArrayList<>(batchSize);
+        while (running) {
+            try {
+                long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(flushIntervalMs);
+                while (batch.size() < batchSize) {
+                    long remaining = deadline - System.nanoTime();
+                    LoginEvent event = remaining > 0 ? queue.poll(remaining, TimeUnit.NANOSECONDS) : null;
+                    if (event == null) {
+                        break;
+                    }
+                    batch.add(event);
+                    queue.drainTo(batch, batchSize - batch.size());
+                }
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+                break;
+            }
+            write(batch);
+        }
+        write(batch);
+    }
+
+    private void write(List<LoginEvent> batch) {
+        if (batch.isEmpty()) {
+            return;
+        }
+        try {
+            mongoTemplate.insert(batch, LoginEvent.class);
+            written.increment(batch.size());
+        } catch (RuntimeException ex) {
+            failed.increment(batch.size());
+            logger.warn("Could not write {} login history events: {}", batch.size(), ex.getMessage());
+        }
+        batch.clear();
+    }
+
+    @Override
+    public void start() {
+        if (!enabled) {
+            return;
+        }
+        running = true;
+        writer = new Thread(this::writeLoop, "login-history-writer");
+        writer.setDaemon(true);
+        writer.start();
+    }
+
+    @Override
+    public void stop() {
+        if (!running) {
+            return;
+        }
+        // Not interrupted, which could abort an insert in flight: the writer notices within
+        // one flush interval
+        running = false;
+        try {
+            writer.join(flushIntervalMs + TimeUnit.SECONDS.toMillis(10));
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+        }
+        List<LoginEvent> remaining = new ArrayList<>(queue.size());
+        queue.drainTo(remaining);
+        for (int from = 0; from < remaining.size(); from += batchSize) {
+            write(new ArrayList<>(remaining.subList(from, Math.min(remaining.size(), from + batchSize))));
+        }
+        logger.info("Login history writer stopped");
+    }
+
+    @Override
+    public boolean isRunning() {
+        return running;
+    }
+
+    // Below the web server's graceful-shutdown phase: stopped once requests have drained
+    @Override
+    public int getPhase() {
+        return SmartLifecycle.DEFAULT_PHASE - 4096;
+    }
+}
@@ -0,0 +1,83 @@
+package com.diyauth.service;
+
+import com.diyauth.model.LoginEvent;
+import com.diyauth.payload.response.LoginEventResponse;
+import com.diyauth.payload.response.LoginHistoryPageResponse;
+import org.bson.types.ObjectId;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.stereotype.Service;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * A user's login history, newest first, paged by (timestamp, _id) like the admin user
+ * listing: the cursor is the last row's position, so every page is one seek on the
+ * username_timestamp index. Events still in LoginHistoryRecorder's queue are not visible yet,
+ * and with the embedded user store (no Mongo) there is no history at all.
+ */
+@Service
+public class LoginHistoryService {
+
+    public static final int MAX_PAGE_SIZE = 100;
+
+    private final MongoTemplate mongoTemplate;
+
+    public LoginHistoryService(ObjectProvider<MongoTemplate> mongoTemplate) {
+        this.mongoTemplate = mongoTemplate.getIfAvailable();
+    }
+
+    public LoginHistoryPageResponse recentLogins(String username, String cursor, int limit) {
+        if (limit < 1 || limit > MAX_PAGE_SIZE) {
+            throw new IllegalArgumentException("limit must be between 1 and " + MAX_PAGE_SIZE);
+        }
+        if (mongoTemplate == null) {
+            return new LoginHistoryPageResponse(Collections.emptyList(), null);
+        }
+        Criteria criteria = Criteria.where("username").is(username);
+        if (cursor != null) {
+            Position after = decodeCursor(cursor);
+            criteria = criteria.orOperator(
+                    Criteria.where("timestamp").lt(after.timestamp()),
+                    Criteria.where("timestamp").is(after.timestamp()).and("_id").lt(after.id()));
+        }
+        Query query = new Query(criteria)
+                .with(Sort.by(Sort.Direction.DESC, "timestamp").and(Sort.by(Sort.Direction.DESC, "_id")))
+                .limit(limit + 1);
+
+        List<LoginEvent> events = mongoTemplate.find(query, LoginEvent.class);
+        List<LoginEventResponse> page = new ArrayList<>(Math.min(events.size(), limit));
+        for (int i = 0; i < events.size() && i < limit; i++) {
+            page.add(new LoginEventResponse(events.get(i)));
+        }
+        String nextCursor = events.size() > limit ? encodeCursor(events.get(limit - 1)) : null;
+        return new LoginHistoryPageResponse(page, nextCursor);
+    }
+
+    private record Position(Instant timestamp, ObjectId id) {
+    }
+
+    private static String encodeCursor(LoginEvent event) {
+        byte[] raw = (event.getTimestamp().toEpochMilli() + "\n" + event.getId()).getBytes(StandardCharsets.UTF_8);
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(raw);
+    }
+
+    private static Position decodeCursor(String cursor) {
+        try {
+            String raw = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+            int separator = raw.indexOf('\n');
+            return new Position(Instant.ofEpochMilli(Long.parseLong(raw.substring(0, separator))),
+                    new ObjectId(raw.substring(separator + 1)));
+        } catch (RuntimeException ex) {
+            throw new IllegalArgumentException("Malformed cursor");
+        }
+    }
+}
@@ -0,0 +1,265 @@
+package com.diyauth.service;
+
+import com.diyauth.model.User;
+import com.diyauth.payload.request.UserImportRecord;
+import com.diyauth.payload.response.UserExportRecord;
+import com.diyauth.payload.response.UserImportResult;
+import com.diyauth.store.ConditionalOnMongoUserStore;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.mongodb.bulk.BulkWriteError;
+import jakarta.annotation.PreDestroy;
+import jakarta.validation.ConstraintViolation;
+import jakarta.validation.Validator;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.BulkOperationException;
+import org.springframework.data.mongodb.core.BulkOperations;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.security.crypto.password.PasswordEncoder;
+import org.springframework.stereotype.Service;
+import org.springframework.util.StringUtils;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.regex.Pattern;
+import java.util.stream.Stream;
+
+/**
+ * Streaming NDJSON import and export of the users collection.
+ *
+ * Import reads one record per line and inserts them in unordered bulk writes of
+ * {@code app.admin.import.batch-size}, so at most one batch is held in memory; plain
+ * passwords are hashed in parallel, existing BCrypt hashes are stored as they are.
+ * Rejected records (invalid JSON, validation errors, duplicates reported by the unique
+ * indexes) are written back as they happen, followed by a summary line. Export walks a
+ * Mongo cursor sorted by _id.
+ */
+@Service
+@ConditionalOnMongoUserStore
+public class UserBulkService {
+
+    private static final Logger logger = LoggerFactory.getLogger(UserBulkService.class);
+
+    private static final Pattern BCRYPT_HASH = Pattern.compile("^\\$2[aby]?\\$\\d\\d\\$[./A-Za-z0-9]{53}$");
+    private static final int DUPLICATE_KEY = 11000;
+
+    private final MongoTemplate mongoTemplate;
+    private final PasswordEncoder passwordEncoder;
+    private final Validator validator;
+    private final ObjectMapper objectMapper;
+    private final int batchSize;
+    private final ExecutorService hashExecutor;
+
+    public UserBulkService(MongoTemplate mongoTemplate,
+                           PasswordEncoder passwordEncoder,
+                           Validator validator,
+                           ObjectMapper objectMapper,
+                           @Value("${app.admin.import.batch-size:1000}") int batchSize,
+                           @Value("${app.admin.import.hash-threads:0}") int hashThreads) {
+        this.mongoTemplate = mongoTemplate;
+        this.passwordEncoder = passwordEncoder;
+        this.validator = validator;
+        this.objectMapper = objectMapper;
+        this.batchSize = batchSize;
+        int threads = hashThreads > 0 ? hashThreads : Runtime.getRuntime().availableProcessors();
+        AtomicInteger threadNumber = new AtomicInteger();
+        this.hashExecutor = Executors.newFixedThreadPool(threads, runnable -> {
+            Thread thread = new Thread(runnable, "user-import-hash-" + threadNumber.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        hashExecutor.shutdownNow();
+    }
+
+    public void importUsers(InputStream in, OutputStream out) throws IOException {
+        BufferedReader reader = new BufferedReader(new InputStreamReader(in, StandardCharsets.UTF_8));
+        List<PendingUser> batch = new ArrayList<>(batchSize);
+        long lineNumber = 0;
+        long read = 0;
+        long inserted = 0;
+        long failed = 0;
+
+        String line;
+        while ((line = reader.readLine()) != null) {
+            lineNumber++;
+            if (!StringUtils.hasText(line)) {
+                continue;
+            }
+            read++;
+            PendingUser pending = parse(lineNumber, line);
+            if (pending.error != null) {
+                failed++;
+                write(out, UserImportResult.error(pending.lineNumber, pending.username(), pending.error));
+                continue;
+            }
+            batch.add(pending);
+            if (batch.size() == batchSize) {
+                long batchInserted = insert(batch, out);
+                inserted += batchInserted;
+                failed += batch.size() - batchInserted;
+                batch.clear();
+                out.flush();
+            }
+        }
+        if (!batch.isEmpty()) {
+            long batchInserted = insert(batch, out);
+            inserted += batchInserted;
+            failed += batch.size() - batchInserted;
+        }
+
+        write(out, UserImportResult.summary(read, inserted, failed));
+        out.flush();
+        logger.info("User import finished: {} read, {} inserted, {} failed", read, inserted, failed);
+    }
+
+    public long exportUsers(boolean includePasswordHashes, OutputStream out) throws IOException {
+        Query query = new Query().with(Sort.by(Sort.Direction.ASC, "_id")).cursorBatchSize(batchSize);
+        query.fields().exclude("attributes");
+        if (!includePasswordHashes) {
+            query.fields().exclude("password");
+        }
+
+        long exported = 0;
+        try (Stream<User> users = mongoTemplate.stream(query, User.class)) {
+            for (User user : (Iterable<User>) users::iterator) {
+                write(out, new UserExportRecord(user));
+                if (++exported % batchSize == 0) {
+                    out.flush();
+                }
+            }
+        }
+        out.flush();
+        logger.info("User export finished: {} users", exported);
+        return exported;
+    }
+
+    private PendingUser parse(long lineNumber, String line) {
+        UserImportRecord record;
+        try {
+            record = objectMapper.readValue(line, UserImportRecord.class);
+        } catch (JsonProcessingException ex) {
+            return PendingUser.rejected(lineNumber, null, "invalid JSON: " + ex.getOriginalMessage());
+        }
+
+        Set<ConstraintViolation<UserImportRecord>> violations = validator.validate(record);
+        if (!violations.isEmpty()) {
+            ConstraintViolation<UserImportRecord> violation = violations.iterator().next();
+            return PendingUser.rejected(lineNumber, record, violation.getPropertyPath() + " " + violation.getMessage());
+        }
+        boolean hasPassword = StringUtils.hasText(record.getPassword());
+        boolean hasHash = StringUtils.hasText(record.getPasswordHash());
+        if (hasPassword == hasHash) {
+            return PendingUser.rejected(lineNumber, record, "exactly one of password or passwordHash is required");
+        }
+        if (hasHash && !BCRYPT_HASH.matcher(record.getPasswordHash()).matches()) {
+            return PendingUser.rejected(lineNumber, record, "passwordHash is not a BCrypt hash");
+        }
+        return new PendingUser(lineNumber, record, null);
+    }
+
+    /**
+     * Hashes and inserts one batch, writes the rejected records and returns the number inserted.
+     */
+    private long insert(List<PendingUser> batch, OutputStream out) throws IOException {
+        List<User> users = toUsers(batch);
+
+        BulkOperations operations = mongoTemplate.bulkOps(BulkOperations.BulkMode.UNORDERED, User.class);
+        operations.insert(users);
+        try {
+            return operations.execute().getInsertedCount();
+        } catch (BulkOperationException ex) {
+            for (BulkWriteError error : ex.getErrors()) {
+                PendingUser pending = batch.get(error.getIndex());
+                String message = error.getCode() == DUPLICATE_KEY
+                        ? "username or email already exists"
+                        : error.getMessage();
+                write(out, UserImportResult.error(pending.lineNumber, pending.username(), message));
+            }
+            return ex.getResult().getInsertedCount();
+        }
+    }
+
+    private List<User> toUsers(List<PendingUser> batch) throws IOException {
+        List<Future<String>> hashes = new ArrayList<>(batch.size());
+        for (PendingUser pending : batch) {
+            String password = pending.record.getPassword();
+            hashes.add(StringUtils.hasText(password)
+                    ? hashExecutor.submit(() -> passwordEncoder.encode(password))
+                    : null);
+        }
+
+        List<User> users = new ArrayList<>(batch.size());
+        for (int i = 0; i < batch.size(); i++) {
+            UserImportRecord record = batch.get(i).record;
+            User user = new User(record.getUsername(), record.getEmail(),
+                    hashes.get(i) != null ? await(hashes.get(i)) : record.getPasswordHash());
+            if (record.getEnabled() != null) {
+                user.setEnabled(record.getEnabled());
+            }
+            if (record.getRoles() != null && record.getRoles().length > 0) {
+                user.setRoles(record.getRoles());
+            }
+            user.setProvider(record.getProvider());
+            user.setProviderId(record.getProviderId());
+            user.setImageUrl(record.getImageUrl());
+            users.add(user);
+        }
+        return users;
+    }
+
+    private static String await(Future<String> hash) throws IOException {
+        try {
+            return hash.get();
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while hashing passwords", ex);
+        } catch (ExecutionException ex) {
+            throw new IOException("Password hashing failed", ex.getCause());
+        }
+    }
+
+    private void write(OutputStream out, Object line) throws IOException {
+        out.write(objectMapper.writeValueAsBytes(line));
+        out.write('\n');
+    }
+
+    private static final class PendingUser {
+        private final long lineNumber;
+        private final UserImportRecord record;
+        private final String error;
+
+        private PendingUser(long lineNumber, UserImportRecord record, String error) {
+            this.lineNumber = lineNumber;
+            this.record = record;
+            this.error = error;
+        }
+
+        static PendingUser rejected(long lineNumber, UserImportRecord record, String error) {
+            return new PendingUser(lineNumber, record, error);
+        }
+
+        String username() {
+            return record != null ? record.getUsername() : null;
+        }
+    }
+}
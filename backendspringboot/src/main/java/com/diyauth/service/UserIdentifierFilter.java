@@ -0,0 +1,209 @@
+package com.diyauth.service;
+
+import com.diyauth.model.User;
+import com.diyauth.security.RecentPrincipalCache;
+import com.diyauth.store.ConditionalOnMongoUserStore;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.core.annotation.Order;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.mapping.event.AbstractMongoEventListener;
+import org.springframework.data.mongodb.core.mapping.event.AfterSaveEvent;
+import org.springframework.data.mongodb.core.mapping.event.BeforeSaveEvent;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Stream;
+
+/**
+ * Bloom filter of every username and email in the users collection, so lookups for names
+ * that do not exist (availability checks, credential stuffing against unknown accounts)
+ * can be answered without a query.
+ *
+ * Built by a streaming scan before the application reports ready, rebuilt every
+ * {@code app.user-filter.rebuild-interval-ms} (which also forgets deleted users), and fed
+ * in between from this instance's Mongo save events, including bulk inserts, and from
+ * UserChangeFeed for users written by other instances. Identifiers are added both before
+ * and after a local write, so a rebuild that is scanning concurrently cannot miss a
+ * repository save. Until the first build succeeds, while the change feed is not current
+ * (app.user-cache.invalidation.mode=none, feed down or behind), or with
+ * {@code app.user-filter.enabled=false}, every identifier is reported as possibly present.
+ */
+@Component
+@Order(1)
+@ConditionalOnMongoUserStore
+public class UserIdentifierFilter extends AbstractMongoEventListener<User> implements ApplicationRunner {
+
+    private static final Logger logger = LoggerFactory.getLogger(UserIdentifierFilter.class);
+
+    private final MongoTemplate mongoTemplate;
+    private final RecentPrincipalCache principalCache;
+    private final boolean enabled;
+    private final boolean trainingRun;
+    private final long expectedInsertions;
+    private final double falsePositiveRate;
+
+    private volatile BloomFilter current;
+    private volatile BloomFilter building;
+    private final AtomicLong identifiers = new AtomicLong();
+
+    private final Counter absent;
+    private final Counter maybePresent;
+    private final Counter notReady;
+
+    public UserIdentifierFilter(MongoTemplate mongoTemplate, RecentPrincipalCache principalCache, MeterRegistry meterRegistry,
+                                @Value("${app.user-filter.enabled:true}") boolean enabled,
+                                @Value("${app.user-filter.expected-insertions:2000000}") long expectedInsertions,
+                                @Value("${app.user-filter.false-positive-rate:0.01}") double falsePositiveRate,
+                                @Value("${app.cds.training-run:false}") boolean trainingRun) {
+        this.mongoTemplate = mongoTemplate;
+        this.principalCache = principalCache;
+        this.enabled = enabled;
+        this.expectedInsertions = expectedInsertions;
+        this.falsePositiveRate = falsePositiveRate;
+        this.trainingRun = trainingRun;
+        this.absent = lookupCounter(meterRegistry, "absent");
+        this.maybePresent = lookupCounter(meterRegistry, "maybe_present");
+        this.notReady = lookupCounter(meterRegistry, "not_ready");
+        Gauge.builder("users.identifier.filter.size", identifiers, AtomicLong::get)
+                .description("Usernames and emails added to the filter since the last rebuild")
+                .register(meterRegistry);
+    }
+
+    private static Counter lookupCounter(MeterRegistry registry, String result) {
+        return Counter.builder("users.identifier.filter.lookups")
+                .description("Identifier existence checks answered by the Bloom filter")
+                .tag("result", result)
+                .register(registry);
+    }
+
+    /**
+     * False only if no user has this username or email; true means "query Mongo".
+     */
+    public boolean mightExist(String identifier) {
+        BloomFilter filter = current;
+        if (!answersMisses(filter)) {
+            notReady.increment();
+            return true;
+        }
+        if (identifier == null || !filter.mightContain(identifier)) {
+            absent.increment();
+            return false;
+        }
+        maybePresent.increment();
+        return true;
+    }
+
+    /**
+     * Whether {@link #mightExist} currently answers false for unknown identifiers, so that a
+     * true answer means the identifier was seen.
+     */
+    public boolean answersMisses() {
+        return answersMisses(current);
+    }
+
+    // Users created by other instances reach the filter through the change feed only
+    private boolean answersMisses(BloomFilter filter) {
+        return filter != null && principalCache.invalidationsCurrent();
+    }
+
+    @Override
+    public void run(ApplicationArguments args) {
+        if (enabled && !trainingRun) {
+            rebuild();
+        }
+    }
+
+    @Scheduled(fixedDelayString = "${app.user-filter.rebuild-interval-ms:3600000}",
+            initialDelayString = "${app.user-filter.rebuild-interval-ms:3600000}")
+    public void rebuild() {
+        if (!enabled || trainingRun) {
+            return;
+        }
+        long start = System.nanoTime();
+        try {
+            // Room for growth until the next rebuild: twice the current collection size
+            long users = mongoTemplate.estimatedCount(User.class);
+            BloomFilter filter = new BloomFilter(Math.max(expectedInsertions, users * 4), falsePositiveRate);
+            building = filter;
+
+            Query query = new Query().cursorBatchSize(5000);
+            query.fields().include("username").include("email");
+            long added = 0;
+            try (Stream<User> stream = mongoTemplate.stream(query, User.class)) {
+                for (User user : (Iterable<User>) stream::iterator) {
+                    added += add(filter, user);
+                }
+            }
+            current = filter;
+            identifiers.set(added);
+            logger.info("User identifier filter built: {} identifiers, {} KiB, {} ms",
+                    added, filter.sizeInBytes() / 1024, (System.nanoTime() - start) / 1_000_000);
+        } catch (RuntimeException ex) {
+            logger.warn("Could not build the user identifier filter, keeping the previous one: {}", ex.getMessage());
+        } finally {
+            building = null;
+        }
+    }
+
+    @Override
+    public void onBeforeSave(BeforeSaveEvent<User> event) {
+        record(event.getSource(), false);
+    }
+
+    @Override
+    public void onAfterSave(AfterSaveEvent<User> event) {
+        record(event.getSource(), true);
+    }
+
+    /**
+     * A user change applied by UserChangeFeed, made by this or any other instance. Not
+     * counted in the size gauge: the same change may be seen more than once.
+     */
+    public void recordChange(String username, String email) {
+        record(username, email, false);
+    }
+
+    private void record(User user, boolean count) {
+        record(user.getUsername(), user.getEmail(), count);
+    }
+
+    private void record(String username, String email, boolean count) {
+        BloomFilter filter = current;
+        if (filter != null) {
+            int added = add(filter, username, email);
+            if (count) {
+                identifiers.addAndGet(added);
+            }
+        }
+        BloomFilter rebuilding = building;
+        if (rebuilding != null) {
+            add(rebuilding, username, email);
+        }
+    }
+
+    private static int add(BloomFilter filter, User user) {
+        return add(filter, user.getUsername(), user.getEmail());
+    }
+
+    private static int add(BloomFilter filter, String username, String email) {
+        int added = 0;
+        if (username != null) {
+            filter.add(username);
+            added++;
+        }
+        if (email != null) {
+            filter.add(email);
+            added++;
+        }
+        return added;
+    }
+}
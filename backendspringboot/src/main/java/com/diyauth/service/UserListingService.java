@@ -0,0 +1,89 @@
+package com.diyauth.service;
+
+import com.diyauth.model.User;
+import com.diyauth.payload.response.AdminUserResponse;
+import com.diyauth.payload.response.UserPageResponse;
+import com.diyauth.repository.UserListFilter;
+import com.diyauth.store.UserStore;
+import org.bson.types.ObjectId;
+import org.springframework.stereotype.Service;
+import org.springframework.util.StringUtils;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.List;
+
+/**
+ * Admin user listing with keyset pagination. The sort key follows the filter: username
+ * for a username prefix, email for an email prefix, _id otherwise. The cursor is the
+ * opaque (base64url) pair of sort field and last value of the previous page.
+ */
+@Service
+public class UserListingService {
+
+    public static final int MAX_PAGE_SIZE = 200;
+
+    private final UserStore userStore;
+
+    public UserListingService(UserStore userStore) {
+        this.userStore = userStore;
+    }
+
+    public UserPageResponse list(UserListFilter filter, String cursor, int limit) {
+        if (limit < 1 || limit > MAX_PAGE_SIZE) {
+            throw new IllegalArgumentException("limit must be between 1 and " + MAX_PAGE_SIZE);
+        }
+        if (StringUtils.hasText(filter.getUsernamePrefix()) && StringUtils.hasText(filter.getEmailPrefix())) {
+            throw new IllegalArgumentException("usernamePrefix and emailPrefix cannot be combined");
+        }
+        String sortField = filter.getUsernamePrefix() != null ? "username"
+                : filter.getEmailPrefix() != null ? "email"
+                : "_id";
+        String after = cursor != null ? decodeCursor(cursor, sortField) : null;
+
+        // One extra row tells whether there is a next page without a count query
+        List<User> users = userStore.findPage(filter, sortField, after, limit + 1);
+        boolean hasMore = users.size() > limit;
+        List<AdminUserResponse> page = new ArrayList<>(Math.min(users.size(), limit));
+        for (int i = 0; i < users.size() && i < limit; i++) {
+            page.add(new AdminUserResponse(users.get(i)));
+        }
+        String nextCursor = hasMore ? encodeCursor(sortField, sortValue(users.get(limit - 1), sortField)) : null;
+        return new UserPageResponse(page, nextCursor);
+    }
+
+    private static String sortValue(User user, String sortField) {
+        switch (sortField) {
+            case "username":
+                return user.getUsername();
+            case "email":
+                return user.getEmail();
+            default:
+                return user.getId();
+        }
+    }
+
+    private static String encodeCursor(String sortField, String value) {
+        byte[] raw = (sortField + '\n' + value).getBytes(StandardCharsets.UTF_8);
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(raw);
+    }
+
+    private static String decodeCursor(String cursor, String sortField) {
+        String raw;
+        try {
+            raw = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+        } catch (IllegalArgumentException ex) {
+            throw new IllegalArgumentException("Malformed cursor");
+        }
+        int separator = raw.indexOf('\n');
+        if (separator < 0 || !raw.substring(0, separator).equals(sortField)) {
+            throw new IllegalArgumentException("Cursor does not belong to this query");
+        }
+        String value = raw.substring(separator + 1);
+        if ("_id".equals(sortField) && !ObjectId.isValid(value)) {
+            throw new IllegalArgumentException("Malformed cursor");
+        }
+        return value;
+    }
+}
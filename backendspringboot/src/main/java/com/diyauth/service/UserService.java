@@ -1,7 +1,7 @@
 package com.diyauth.service;
 
 import com.diyauth.model.User;
-import com.diyauth.repository.UserRepository;
+import com.diyauth.store.UserStore;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.security.crypto.password.PasswordEncoder;
 import org.springframework.stereotype.Service;
@@ -12,13 +12,13 @@ import java.util.Optional;
 public class UserService {
 
     @Autowired
-    private UserRepository userRepository;
+    private UserStore userStore;
 
     @Autowired
     private PasswordEncoder passwordEncoder;
 
     public User registerUser(String username, String password) {
-        if (userRepository.existsByUsername(username)) {
+        if (userStore.existsByUsername(username)) {
             throw new RuntimeException("Username is already taken!");
         }
 
@@ -27,16 +27,16 @@ public class UserService {
         user.setPassword(passwordEncoder.encode(password));
         user.setEnabled(true);
         user.setRoles(new String[]{"USER"});
-        return userRepository.save(user);
+        return userStore.save(user);
     }
 
     public User findByUsername(String username) {
-        return userRepository.findByUsername(username)
+        return userStore.findByUsername(username)
                 .orElseThrow(() -> new RuntimeException("User not found with username: " + username));
     }
 
     public boolean validateUser(String username, String password) {
-        Optional<User> userOptional = userRepository.findByUsername(username);
+        Optional<User> userOptional = userStore.findByUsername(username);
         if (userOptional.isEmpty()) {
             return false;
         }
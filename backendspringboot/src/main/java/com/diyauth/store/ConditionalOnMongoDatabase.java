@@ -0,0 +1,39 @@
+package com.diyauth.store;
+
+import org.springframework.boot.autoconfigure.condition.AnyNestedCondition;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Conditional;
+
+import java.lang.annotation.Documented;
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Beans that need the application's MongoDB (spring.data.mongodb.uri) but not the users
+ * collection in it: client settings and login history. Registered with the mongo and the
+ * partitioned user store, not with the embedded one; evaluated at build time for AOT like
+ * {@link ConditionalOnMongoUserStore}.
+ */
+@Retention(RetentionPolicy.RUNTIME)
+@Target({ElementType.TYPE, ElementType.METHOD})
+@Documented
+@Conditional(ConditionalOnMongoDatabase.MongoUserStoreTypes.class)
+public @interface ConditionalOnMongoDatabase {
+
+    class MongoUserStoreTypes extends AnyNestedCondition {
+
+        MongoUserStoreTypes() {
+            super(ConfigurationPhase.REGISTER_BEAN);
+        }
+
+        @ConditionalOnProperty(name = "app.user-store.type", havingValue = "mongo", matchIfMissing = true)
+        static class Mongo {
+        }
+
+        @ConditionalOnProperty(name = "app.user-store.type", havingValue = "partitioned")
+        static class Partitioned {
+        }
+    }
+}
@@ -0,0 +1,21 @@
+package com.diyauth.store;
+
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+
+import java.lang.annotation.Documented;
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Beans that need MongoDB (repositories, index setup, bulk import): registered unless
+ * app.user-store.type selects another store. Like every condition this is evaluated at
+ * build time for AOT/native images, so those are built for one store.
+ */
+@Retention(RetentionPolicy.RUNTIME)
+@Target({ElementType.TYPE, ElementType.METHOD})
+@Documented
+@ConditionalOnProperty(name = "app.user-store.type", havingValue = "mongo", matchIfMissing = true)
+public @interface ConditionalOnMongoUserStore {
+}
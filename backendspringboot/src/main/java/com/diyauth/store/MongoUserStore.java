@@ -0,0 +1,74 @@
+package com.diyauth.store;
+
+import com.diyauth.model.User;
+import com.diyauth.repository.UserListFilter;
+import com.diyauth.repository.UserRepository;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * The users collection, through UserRepository (read routing, causal saves and the Mongo
+ * aspects all stay on the repository).
+ */
+@Component
+@ConditionalOnMongoUserStore
+public class MongoUserStore implements UserStore {
+
+    private final UserRepository userRepository;
+
+    public MongoUserStore(UserRepository userRepository) {
+        this.userRepository = userRepository;
+    }
+
+    @Override
+    public Optional<User> findById(String id) {
+        return userRepository.findById(id);
+    }
+
+    @Override
+    public Optional<User> findByUsername(String username) {
+        return userRepository.findByUsername(username);
+    }
+
+    @Override
+    public Optional<User> findByEmail(String email) {
+        return userRepository.findByEmail(email);
+    }
+
+    @Override
+    public List<User> findByUsernameOrEmail(String username, String email) {
+        return userRepository.findByUsernameOrEmail(username, email);
+    }
+
+    @Override
+    public List<User> findUsernameOrEmailConflicts(String username, String email) {
+        return userRepository.findUsernameOrEmailConflicts(username, email);
+    }
+
+    @Override
+    public boolean existsByUsername(String username) {
+        return userRepository.existsByUsername(username);
+    }
+
+    @Override
+    public boolean existsByEmail(String email) {
+        return userRepository.existsByEmail(email);
+    }
+
+    @Override
+    public User save(User user) {
+        return userRepository.saveCausally(user);
+    }
+
+    @Override
+    public List<User> findPage(UserListFilter filter, String sortField, String after, int limit) {
+        return userRepository.findPage(filter, sortField, after, limit);
+    }
+
+    @Override
+    public long count() {
+        return userRepository.count();
+    }
+}
@@ -0,0 +1,54 @@
+package com.diyauth.store;
+
+import com.diyauth.model.User;
+import com.diyauth.repository.UserListFilter;
+
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * Where users live. MongoUserStore (the default) keeps them in the users collection;
+ * MappedUserStore keeps them in a local memory-mapped log for single-node installs
+ * without MongoDB; PartitionedMongoUserStore hashes them across several MongoDB databases.
+ * Chosen with app.user-store.type=mongo|embedded|partitioned.
+ *
+ * Usernames and emails are unique: save throws DuplicateKeyException when another user
+ * already holds either.
+ */
+public interface UserStore {
+
+    Optional<User> findById(String id);
+
+    Optional<User> findByUsername(String username);
+
+    Optional<User> findByEmail(String email);
+
+    /**
+     * Users whose username or email matches (login accepts either), at most two.
+     */
+    List<User> findByUsernameOrEmail(String username, String email);
+
+    /**
+     * Signup duplicate check; only username and email need to be populated.
+     */
+    List<User> findUsernameOrEmailConflicts(String username, String email);
+
+    boolean existsByUsername(String username);
+
+    boolean existsByEmail(String email);
+
+    /**
+     * Inserts the user (an id is assigned when it has none) or replaces the stored one
+     * with the same id. A username or email lookup right afterwards sees the change.
+     */
+    User save(User user);
+
+    /**
+     * Keyset page of users: {@code limit} users ordered by {@code sortField} (_id, username
+     * or email) whose sort value is greater than {@code after}. Password hashes and OAuth2
+     * attributes may be left out.
+     */
+    List<User> findPage(UserListFilter filter, String sortField, String after, int limit);
+
+    long count();
+}
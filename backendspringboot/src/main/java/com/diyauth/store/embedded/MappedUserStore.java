@@ -0,0 +1,589 @@
+package com.diyauth.store.embedded;
+
+import com.diyauth.model.User;
+import com.diyauth.repository.UserListFilter;
+import com.diyauth.store.UserStore;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.bson.types.ObjectId;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Optional;
+import java.util.PriorityQueue;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+import static com.diyauth.store.embedded.UserRecordCodec.EMAIL;
+import static com.diyauth.store.embedded.UserRecordCodec.ID;
+import static com.diyauth.store.embedded.UserRecordCodec.RECORD_HEADER_BYTES;
+import static com.diyauth.store.embedded.UserRecordCodec.USERNAME;
+
+/**
+ * Embedded user store for single-node installs without MongoDB (app.user-store.type=embedded).
+ *
+ * Users live in one memory-mapped, append-only log, {directory}/users.log: a 16-byte
+ * header followed by records in UserRecordCodec's format. A save appends the new version
+ * of the user; nothing is updated in place. Off-heap hash indexes on id, username and email
+ * point at the latest version of each user and are rebuilt by scanning the log at startup.
+ *
+ * That scan is also the crash recovery: it stops at the first record whose length or
+ * checksum does not add up (the write a crash interrupted) and zeroes the log from there,
+ * so appending resumes after the last complete record. With sync-writes each record is
+ * forced to disk before save returns; without it a crash may lose the latest saves, never
+ * earlier ones.
+ *
+ * Superseded versions are garbage. Once garbage passes both compaction thresholds the live
+ * records are copied into users.log.compact, which is forced and then renamed over
+ * users.log. A crash before the rename leaves the old log as it was (the partial copy is
+ * deleted on the next start). Lookups keep using the old log during the copy; saves wait.
+ *
+ * The log is a single mapping and so limited to 2 GiB, a few million users. The admin
+ * listing scans all users.
+ */
+@Component
+@ConditionalOnProperty(name = "app.user-store.type", havingValue = "embedded")
+public class MappedUserStore implements UserStore, DisposableBean {
+
+    private static final Logger logger = LoggerFactory.getLogger(MappedUserStore.class);
+
+    static final String LOG_FILE = "users.log";
+    static final String COMPACT_FILE = "users.log.compact";
+
+    private static final long MAGIC = 0x4449594155534552L; // "DIYAUSER"
+    private static final int VERSION = 1;
+    private static final int HEADER_BYTES = 16;
+    private static final int MAX_LOG_BYTES = Integer.MAX_VALUE;
+    private static final byte[] ZEROS = new byte[64 * 1024];
+
+    private final Path directory;
+    private final int initialSizeBytes;
+    private final boolean syncWrites;
+    private final double compactionMinGarbageRatio;
+    private final long compactionMinGarbageBytes;
+    private final UserRecordCodec codec;
+
+    // Serializes appends and compaction; lookups never take it
+    private final ReentrantLock writeLock = new ReentrantLock();
+    // Shared by lookups; exclusive only while a save publishes or the log is remapped or swapped
+    private final ReentrantReadWriteLock indexLock = new ReentrantReadWriteLock();
+
+    private FileChannel channel;
+    private FileLock fileLock;
+    private MappedByteBuffer log;
+    private Indexes indexes;
+    private volatile int writePosition;
+    private volatile long garbageBytes;
+
+    public MappedUserStore(@Value("${app.user-store.embedded.directory:data/users}") Path directory,
+                           @Value("${app.user-store.embedded.initial-size-bytes:67108864}") int initialSizeBytes,
+                           @Value("${app.user-store.embedded.sync-writes:true}") boolean syncWrites,
+                           @Value("${app.user-store.embedded.compaction.min-garbage-ratio:0.5}") double compactionMinGarbageRatio,
+                           @Value("${app.user-store.embedded.compaction.min-garbage-bytes:16777216}") long compactionMinGarbageBytes,
+                           ObjectMapper objectMapper, MeterRegistry meterRegistry) throws IOException {
+        this.directory = directory;
+        this.initialSizeBytes = Math.max(initialSizeBytes, HEADER_BYTES + 4096);
+        this.syncWrites = syncWrites;
+        this.compactionMinGarbageRatio = compactionMinGarbageRatio;
+        this.compactionMinGarbageBytes = compactionMinGarbageBytes;
+        this.codec = new UserRecordCodec(objectMapper);
+        open();
+
+        Gauge.builder("users.store.embedded.users", this, MappedUserStore::count)
+                .description("Users in the embedded store")
+                .register(meterRegistry);
+        Gauge.builder("users.store.embedded.log.bytes", this, store -> store.writePosition)
+                .description("Bytes appended to the embedded user log, garbage included")
+                .baseUnit("bytes")
+                .register(meterRegistry);
+        Gauge.builder("users.store.embedded.garbage.bytes", this, store -> store.garbageBytes)
+                .description("Bytes of superseded user versions awaiting compaction")
+                .baseUnit("bytes")
+                .register(meterRegistry);
+    }
+
+    private void open() throws IOException {
+        long start = System.nanoTime();
+        Files.createDirectories(directory);
+        if (Files.deleteIfExists(directory.resolve(COMPACT_FILE))) {
+            logger.warn("Deleted {} left by an interrupted compaction", directory.resolve(COMPACT_FILE));
+        }
+        channel = FileChannel.open(directory.resolve(LOG_FILE),
+                StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        fileLock = channel.tryLock();
+        if (fileLock == null) {
+            channel.close();
+            throw new IllegalStateException(directory.resolve(LOG_FILE) + " is in use by another process");
+        }
+        long fileSize = channel.size();
+        if (fileSize > MAX_LOG_BYTES) {
+            throw new IllegalStateException(directory.resolve(LOG_FILE) + " is larger than 2 GiB");
+        }
+        log = channel.map(FileChannel.MapMode.READ_WRITE, 0, Math.max(fileSize, initialSizeBytes));
+        if (fileSize == 0) {
+            writeHeader(log);
+            log.force();
+        } else if (log.getLong(0) != MAGIC || log.getInt(Long.BYTES) != VERSION) {
+            throw new IllegalStateException(directory.resolve(LOG_FILE) + " is not a version " + VERSION + " user log");
+        }
+        recover();
+        logger.info("Embedded user store opened: {} users, {} KiB log ({} KiB garbage), {} ms",
+                indexes.ids.size(), writePosition / 1024, garbageBytes / 1024,
+                (System.nanoTime() - start) / 1_000_000);
+    }
+
+    private static void writeHeader(ByteBuffer buffer) {
+        buffer.putLong(0, MAGIC);
+        buffer.putInt(Long.BYTES, VERSION);
+    }
+
+    private void recover() {
+        // Rough pre-size from the log length; the tables grow if users are smaller than this
+        indexes = new Indexes((int) Math.min(Integer.MAX_VALUE / 2, log.capacity() / 256));
+        int position = HEADER_BYTES;
+        long garbage = 0;
+        while (position + RECORD_HEADER_BYTES <= log.capacity()) {
+            int length = log.getInt(position);
+            if (length == 0) {
+                // The end of the log, unless a write was torn before its length: a record
+                // left behind it must not resurface once shorter ones are appended here
+                if (!zeroAfter(position)) {
+                    logger.warn("User log has data after an empty record at offset {}, discarding it", position);
+                    zeroFrom(position);
+                }
+                break;
+            }
+            if (length < 0 || (long) position + RECORD_HEADER_BYTES + length > log.capacity()
+                    || UserRecordCodec.checksum(log, position + RECORD_HEADER_BYTES, length) != log.getInt(position + 4)) {
+                logger.warn("User log has an incomplete record at offset {}, discarding it and anything after it", position);
+                zeroFrom(position);
+                break;
+            }
+            garbage += indexes.add(log, position);
+            position += RECORD_HEADER_BYTES + length;
+        }
+        writePosition = position;
+        garbageBytes = garbage;
+    }
+
+    private boolean zeroAfter(int position) {
+        int at = position;
+        for (; at + Long.BYTES <= log.capacity(); at += Long.BYTES) {
+            if (log.getLong(at) != 0) {
+                return false;
+            }
+        }
+        for (; at < log.capacity(); at++) {
+            if (log.get(at) != 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private void zeroFrom(int position) {
+        for (int at = position; at < log.capacity(); at += ZEROS.length) {
+            log.put(at, ZEROS, 0, Math.min(ZEROS.length, log.capacity() - at));
+        }
+        log.force();
+    }
+
+    @Override
+    public Optional<User> findById(String id) {
+        return Optional.ofNullable(find(ID, id));
+    }
+
+    @Override
+    public Optional<User> findByUsername(String username) {
+        return Optional.ofNullable(find(USERNAME, username));
+    }
+
+    @Override
+    public Optional<User> findByEmail(String email) {
+        return Optional.ofNullable(find(EMAIL, email));
+    }
+
+    private User find(int field, String key) {
+        if (key == null) {
+            return null;
+        }
+        byte[] utf8 = utf8(key);
+        indexLock.readLock().lock();
+        try {
+            int offset = indexes.lookup(log, field, utf8);
+            return offset >= 0 ? codec.decode(log, offset, true) : null;
+        } finally {
+            indexLock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public List<User> findByUsernameOrEmail(String username, String email) {
+        return findEither(username, email, true);
+    }
+
+    @Override
+    public List<User> findUsernameOrEmailConflicts(String username, String email) {
+        return findEither(username, email, false);
+    }
+
+    private List<User> findEither(String username, String email, boolean full) {
+        byte[] usernameKey = username != null ? utf8(username) : null;
+        byte[] emailKey = email != null ? utf8(email) : null;
+        List<User> users = new ArrayList<>(2);
+        indexLock.readLock().lock();
+        try {
+            int byUsername = usernameKey != null ? indexes.lookup(log, USERNAME, usernameKey) : -1;
+            int byEmail = emailKey != null ? indexes.lookup(log, EMAIL, emailKey) : -1;
+            if (byUsername >= 0) {
+                users.add(codec.decode(log, byUsername, full));
+            }
+            if (byEmail >= 0 && byEmail != byUsername) {
+                users.add(codec.decode(log, byEmail, full));
+            }
+        } finally {
+            indexLock.readLock().unlock();
+        }
+        return users;
+    }
+
+    @Override
+    public boolean existsByUsername(String username) {
+        return exists(USERNAME, username);
+    }
+
+    @Override
+    public boolean existsByEmail(String email) {
+        return exists(EMAIL, email);
+    }
+
+    private boolean exists(int field, String key) {
+        if (key == null) {
+            return false;
+        }
+        byte[] utf8 = utf8(key);
+        indexLock.readLock().lock();
+        try {
+            return indexes.lookup(log, field, utf8) >= 0;
+        } finally {
+            indexLock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public User save(User user) {
+        if (user.getId() == null) {
+            user.setId(new ObjectId().toHexString());
+        }
+        byte[] payload = codec.encode(user);
+        writeLock.lock();
+        try {
+            // Only saves change the indexes and they hold writeLock, so no index lock is needed to read
+            checkUnique(USERNAME, user.getUsername(), user.getId());
+            checkUnique(EMAIL, user.getEmail(), user.getId());
+            int offset = append(payload);
+            indexLock.writeLock().lock();
+            try {
+                garbageBytes += indexes.add(log, offset);
+            } finally {
+                indexLock.writeLock().unlock();
+            }
+            return user;
+        } catch (IOException ex) {
+            throw new UncheckedIOException("Could not append to " + directory.resolve(LOG_FILE), ex);
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    private void checkUnique(int field, String key, String id) {
+        if (key == null) {
+            return;
+        }
+        int offset = indexes.lookup(log, field, utf8(key));
+        if (offset >= 0 && !UserRecordCodec.fieldEquals(log, offset, ID, utf8(id))) {
+            throw new DuplicateKeyException((field == USERNAME ? "Username " : "Email ") + key + " is already in use");
+        }
+    }
+
+    private int append(byte[] payload) throws IOException {
+        int recordBytes = RECORD_HEADER_BYTES + payload.length;
+        if ((long) writePosition + recordBytes > MAX_LOG_BYTES && garbageBytes > 0) {
+            compact();
+        }
+        ensureCapacity(recordBytes);
+        int offset = writePosition;
+        log.put(offset + RECORD_HEADER_BYTES, payload);
+        log.putInt(offset + 4, UserRecordCodec.checksum(payload));
+        log.putInt(offset, payload.length);
+        if (syncWrites) {
+            log.force(offset, recordBytes);
+        }
+        writePosition = offset + recordBytes;
+        return offset;
+    }
+
+    private void ensureCapacity(int recordBytes) throws IOException {
+        long required = (long) writePosition + recordBytes;
+        if (required <= log.capacity()) {
+            return;
+        }
+        if (required > MAX_LOG_BYTES) {
+            throw new IllegalStateException("The user log is full (2 GiB of live users)");
+        }
+        MappedByteBuffer grown = channel.map(FileChannel.MapMode.READ_WRITE, 0,
+                Math.min(MAX_LOG_BYTES, Math.max(required, 2L * log.capacity())));
+        indexLock.writeLock().lock();
+        try {
+            log = grown;
+        } finally {
+            indexLock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public List<User> findPage(UserListFilter filter, String sortField, String after, int limit) {
+        Comparator<User> order = Comparator.comparing(user -> sortValue(user, sortField),
+                Comparator.nullsFirst(Comparator.<String>naturalOrder()));
+        // The limit smallest matches, largest on top so it is the one evicted
+        PriorityQueue<User> page = new PriorityQueue<>(limit + 1, order.reversed());
+        indexLock.readLock().lock();
+        try {
+            indexes.ids.forEach(offset -> {
+                User user = codec.decode(log, offset, false);
+                String value = sortValue(user, sortField);
+                if (matches(filter, user) && (after == null || value != null && value.compareTo(after) > 0)) {
+                    page.add(user);
+                    if (page.size() > limit) {
+                        page.poll();
+                    }
+                }
+            });
+        } finally {
+            indexLock.readLock().unlock();
+        }
+        List<User> users = new ArrayList<>(page);
+        users.sort(order);
+        return users;
+    }
+
+    private static boolean matches(UserListFilter filter, User user) {
+        return (filter.getProvider() == null || filter.getProvider().equals(user.getProvider()))
+                && (filter.getEnabled() == null || filter.getEnabled() == user.isEnabled())
+                && (filter.getUsernamePrefix() == null
+                        || user.getUsername() != null && user.getUsername().startsWith(filter.getUsernamePrefix()))
+                && (filter.getEmailPrefix() == null
+                        || user.getEmail() != null && user.getEmail().startsWith(filter.getEmailPrefix()));
+    }
+
+    private static String sortValue(User user, String sortField) {
+        switch (sortField) {
+            case "username":
+                return user.getUsername();
+            case "email":
+                return user.getEmail();
+            default:
+                return user.getId();
+        }
+    }
+
+    @Override
+    public long count() {
+        indexLock.readLock().lock();
+        try {
+            return indexes.ids.size();
+        } finally {
+            indexLock.readLock().unlock();
+        }
+    }
+
+    @Scheduled(fixedDelayString = "${app.user-store.embedded.compaction.check-interval-ms:60000}",
+            initialDelayString = "${app.user-store.embedded.compaction.check-interval-ms:60000}")
+    public void compactIfNeeded() {
+        long garbage = garbageBytes;
+        if (garbage < compactionMinGarbageBytes
+                || garbage < compactionMinGarbageRatio * (writePosition - HEADER_BYTES)) {
+            return;
+        }
+        try {
+            compact();
+        } catch (IOException | RuntimeException ex) {
+            logger.warn("User log compaction failed, keeping the current log: {}", ex.getMessage());
+        }
+    }
+
+    /**
+     * Rewrites the log with only the latest version of each user.
+     */
+    public void compact() throws IOException {
+        writeLock.lock();
+        try {
+            long start = System.nanoTime();
+            int before = writePosition;
+            long liveBytes = writePosition - HEADER_BYTES - garbageBytes;
+            int capacity = (int) Math.min(MAX_LOG_BYTES, Math.max(initialSizeBytes, 2 * (HEADER_BYTES + liveBytes)));
+
+            // Oldest first, which also reads the current log sequentially
+            int[] offsets = new int[indexes.ids.size()];
+            int[] count = {0};
+            indexes.ids.forEach(offset -> offsets[count[0]++] = offset);
+            Arrays.sort(offsets);
+
+            Path target = directory.resolve(COMPACT_FILE);
+            FileChannel compacted = FileChannel.open(target, StandardOpenOption.CREATE,
+                    StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.READ, StandardOpenOption.WRITE);
+            MappedByteBuffer copy;
+            Indexes copyIndexes;
+            FileLock copyLock;
+            int position = HEADER_BYTES;
+            try {
+                copyLock = compacted.lock();
+                copy = compacted.map(FileChannel.MapMode.READ_WRITE, 0, capacity);
+                writeHeader(copy);
+                copyIndexes = new Indexes(offsets.length);
+                for (int offset : offsets) {
+                    int recordBytes = UserRecordCodec.recordBytes(log, offset);
+                    copy.put(position, log, offset, recordBytes);
+                    copyIndexes.add(copy, position);
+                    position += recordBytes;
+                }
+                copy.force();
+                Files.move(target, directory.resolve(LOG_FILE),
+                        StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+                forceDirectory();
+            } catch (IOException | RuntimeException ex) {
+                compacted.close();
+                Files.deleteIfExists(target);
+                throw ex;
+            }
+
+            FileChannel previous = channel;
+            indexLock.writeLock().lock();
+            try {
+                log = copy;
+                indexes = copyIndexes;
+                channel = compacted;
+                fileLock = copyLock;
+                writePosition = position;
+                garbageBytes = 0;
+            } finally {
+                indexLock.writeLock().unlock();
+            }
+            // Releases the lock on the replaced (now unlinked) file
+            previous.close();
+            logger.info("Compacted the user log from {} KiB to {} KiB ({} users) in {} ms",
+                    before / 1024, position / 1024, offsets.length, (System.nanoTime() - start) / 1_000_000);
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    // Makes the rename durable; not every platform can open a directory for this
+    private void forceDirectory() {
+        try (FileChannel dir = FileChannel.open(directory, StandardOpenOption.READ)) {
+            dir.force(true);
+        } catch (IOException ex) {
+            logger.debug("Could not sync directory {}: {}", directory, ex.getMessage());
+        }
+    }
+
+    @Override
+    public void destroy() throws IOException {
+        writeLock.lock();
+        try {
+            log.force();
+            channel.close();
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    private static byte[] utf8(String value) {
+        return value.getBytes(StandardCharsets.UTF_8);
+    }
+
+    /**
+     * The three indexes of one log mapping.
+     */
+    private static final class Indexes {
+        final OffHeapHashIndex ids;
+        final OffHeapHashIndex usernames;
+        final OffHeapHashIndex emails;
+
+        Indexes(int expectedUsers) {
+            ids = new OffHeapHashIndex(expectedUsers);
+            usernames = new OffHeapHashIndex(expectedUsers);
+            emails = new OffHeapHashIndex(expectedUsers);
+        }
+
+        int lookup(ByteBuffer log, int field, byte[] key) {
+            return index(field).get(UserRecordCodec.hash(key), offset -> UserRecordCodec.fieldEquals(log, offset, field, key));
+        }
+
+        /**
+         * Points the indexes at the record at {@code offset}; returns the size of the
+         * version it replaces, 0 for a new user.
+         */
+        int add(ByteBuffer log, int offset) {
+            byte[] id = UserRecordCodec.field(log, offset, ID);
+            int idHash = UserRecordCodec.hash(id);
+            int previous = ids.get(idHash, candidate -> UserRecordCodec.fieldEquals(log, candidate, ID, id));
+            if (previous >= 0) {
+                unindex(log, usernames, USERNAME, previous);
+                unindex(log, emails, EMAIL, previous);
+            }
+            ids.put(idHash, offset, candidate -> candidate == previous);
+            index(log, usernames, USERNAME, offset);
+            index(log, emails, EMAIL, offset);
+            return previous >= 0 ? UserRecordCodec.recordBytes(log, previous) : 0;
+        }
+
+        private static void index(ByteBuffer log, OffHeapHashIndex index, int field, int offset) {
+            byte[] key = UserRecordCodec.field(log, offset, field);
+            if (key != null) {
+                index.put(UserRecordCodec.hash(key), offset,
+                        candidate -> UserRecordCodec.fieldEquals(log, candidate, field, key));
+            }
+        }
+
+        private static void unindex(ByteBuffer log, OffHeapHashIndex index, int field, int offset) {
+            byte[] key = UserRecordCodec.field(log, offset, field);
+            if (key != null) {
+                index.remove(UserRecordCodec.hash(key), candidate -> candidate == offset);
+            }
+        }
+
+        private OffHeapHashIndex index(int field) {
+            switch (field) {
+                case USERNAME:
+                    return usernames;
+                case EMAIL:
+                    return emails;
+                default:
+                    return ids;
+            }
+        }
+    }
+}
@@ -0,0 +1,165 @@
+package com.diyauth.store.embedded;
+
+import java.nio.ByteBuffer;
+import java.util.function.IntConsumer;
+import java.util.function.IntPredicate;
+
+/**
+ * Open-addressing hash table from key hash to log offset, in a direct buffer so a million
+ * users cost no heap objects and no GC work. A slot is one long, the 32-bit key hash in the
+ * high half and the record offset in the low half; 0 is an empty slot (offset 0 is the log
+ * header). Keys themselves stay in the log: callers pass a predicate that checks the record
+ * at a candidate offset. Linear probing with backward-shift deletion, so there are no
+ * tombstones; the table doubles beyond 70% load.
+ *
+ * Not thread-safe; MappedUserStore guards it with its index lock.
+ */
+final class OffHeapHashIndex {
+
+    private static final int SLOT_BYTES = Long.BYTES;
+    private static final int MIN_CAPACITY = 1024;
+    private static final int MAX_CAPACITY = 1 << 27;
+
+    private ByteBuffer slots;
+    private int mask;
+    private int size;
+
+    OffHeapHashIndex(int expectedEntries) {
+        allocate(capacityFor(expectedEntries));
+    }
+
+    private static int capacityFor(int entries) {
+        long needed = (long) Math.ceil(Math.max(entries, 1) / 0.7);
+        int capacity = MIN_CAPACITY;
+        while (capacity < needed && capacity < MAX_CAPACITY) {
+            capacity <<= 1;
+        }
+        return capacity;
+    }
+
+    private void allocate(int capacity) {
+        slots = ByteBuffer.allocateDirect(capacity * SLOT_BYTES);
+        mask = capacity - 1;
+    }
+
+    int size() {
+        return size;
+    }
+
+    long sizeInBytes() {
+        return (long) (mask + 1) * SLOT_BYTES;
+    }
+
+    /**
+     * Offset of the entry with this hash accepted by {@code matches}, or -1.
+     */
+    int get(int hash, IntPredicate matches) {
+        for (int slot = home(hash); ; slot = (slot + 1) & mask) {
+            long entry = slots.getLong(slot * SLOT_BYTES);
+            if (entry == 0) {
+                return -1;
+            }
+            if (hashOf(entry) == hash && matches.test(offsetOf(entry))) {
+                return offsetOf(entry);
+            }
+        }
+    }
+
+    /**
+     * Points the entry accepted by {@code sameKey} at {@code offset}, or adds one.
+     */
+    void put(int hash, int offset, IntPredicate sameKey) {
+        int slot = home(hash);
+        for (; ; slot = (slot + 1) & mask) {
+            long entry = slots.getLong(slot * SLOT_BYTES);
+            if (entry == 0) {
+                break;
+            }
+            if (hashOf(entry) == hash && sameKey.test(offsetOf(entry))) {
+                slots.putLong(slot * SLOT_BYTES, entry(hash, offset));
+                return;
+            }
+        }
+        slots.putLong(slot * SLOT_BYTES, entry(hash, offset));
+        if (++size > (mask + 1) * 0.7) {
+            grow();
+        }
+    }
+
+    boolean remove(int hash, IntPredicate sameKey) {
+        for (int slot = home(hash); ; slot = (slot + 1) & mask) {
+            long entry = slots.getLong(slot * SLOT_BYTES);
+            if (entry == 0) {
+                return false;
+            }
+            if (hashOf(entry) == hash && sameKey.test(offsetOf(entry))) {
+                shiftBack(slot);
+                size--;
+                return true;
+            }
+        }
+    }
+
+    // Moves later entries of the probe run into the hole unless that would put them before their home slot
+    private void shiftBack(int hole) {
+        int slot = hole;
+        while (true) {
+            slot = (slot + 1) & mask;
+            long entry = slots.getLong(slot * SLOT_BYTES);
+            if (entry == 0) {
+                break;
+            }
+            int home = home(hashOf(entry));
+            boolean reachable = hole <= slot ? (home <= hole || home > slot) : (home <= hole && home > slot);
+            if (reachable) {
+                slots.putLong(hole * SLOT_BYTES, entry);
+                hole = slot;
+            }
+        }
+        slots.putLong(hole * SLOT_BYTES, 0L);
+    }
+
+    void forEach(IntConsumer action) {
+        for (int slot = 0; slot <= mask; slot++) {
+            long entry = slots.getLong(slot * SLOT_BYTES);
+            if (entry != 0) {
+                action.accept(offsetOf(entry));
+            }
+        }
+    }
+
+    private void grow() {
+        if (mask + 1 >= MAX_CAPACITY) {
+            throw new IllegalStateException("User index is full (" + size + " entries)");
+        }
+        ByteBuffer previous = slots;
+        int previousCapacity = mask + 1;
+        allocate(previousCapacity << 1);
+        for (int slot = 0; slot < previousCapacity; slot++) {
+            long entry = previous.getLong(slot * SLOT_BYTES);
+            if (entry != 0) {
+                int target = home(hashOf(entry));
+                while (slots.getLong(target * SLOT_BYTES) != 0) {
+                    target = (target + 1) & mask;
+                }
+                slots.putLong(target * SLOT_BYTES, entry);
+            }
+        }
+    }
+
+    private int home(int hash) {
+        return (hash ^ (hash >>> 16)) & mask;
+    }
+
+    private static long entry(int hash, int offset) {
+        return ((long) hash << 32) | (offset & 0xffffffffL);
+    }
+
+    private static int hashOf(long entry) {
+        return (int) (entry >>> 32);
+    }
+
+    private static int offsetOf(long entry) {
+        return (int) entry;
+    }
+}
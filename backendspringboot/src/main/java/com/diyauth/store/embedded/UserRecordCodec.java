@@ -0,0 +1,230 @@
+package com.diyauth.store.embedded;
+
+import com.diyauth.model.User;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+import java.util.zip.CRC32C;
+
+/**
+ * Binary form of a user in the log. A record is [int payload length][int CRC32C of the
+ * payload][payload]; the payload is a type byte followed by id, username, email, password
+ * (each an int byte length, -1 for null, and UTF-8), an enabled byte, the roles (int count,
+ * -1 for null, then strings), provider, providerId, imageUrl and the OAuth2 attributes as
+ * JSON (int length, -1 when empty). Id, username and email come first so the indexes can
+ * compare keys in place without decoding the rest.
+ */
+final class UserRecordCodec {
+
+    static final int RECORD_HEADER_BYTES = 8;
+
+    static final int ID = 0;
+    static final int USERNAME = 1;
+    static final int EMAIL = 2;
+
+    private static final byte PUT = 1;
+    private static final int NULL_LENGTH = -1;
+    private static final TypeReference<Map<String, Object>> ATTRIBUTES = new TypeReference<>() {
+    };
+
+    private final ObjectMapper objectMapper;
+
+    UserRecordCodec(ObjectMapper objectMapper) {
+        this.objectMapper = objectMapper;
+    }
+
+    byte[] encode(User user) {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(256);
+        try (DataOutputStream out = new DataOutputStream(bytes)) {
+            out.writeByte(PUT);
+            writeString(out, user.getId());
+            writeString(out, user.getUsername());
+            writeString(out, user.getEmail());
+            writeString(out, user.getPassword());
+            out.writeByte(user.isEnabled() ? 1 : 0);
+            String[] roles = user.getRoles();
+            out.writeInt(roles != null ? roles.length : NULL_LENGTH);
+            if (roles != null) {
+                for (String role : roles) {
+                    writeString(out, role);
+                }
+            }
+            writeString(out, user.getProvider());
+            writeString(out, user.getProviderId());
+            writeString(out, user.getImageUrl());
+            Map<String, Object> attributes = user.getAttributes();
+            if (attributes.isEmpty()) {
+                out.writeInt(NULL_LENGTH);
+            } else {
+                byte[] json = objectMapper.writeValueAsBytes(attributes);
+                out.writeInt(json.length);
+                out.write(json);
+            }
+        } catch (JsonProcessingException ex) {
+            throw new IllegalArgumentException("OAuth2 attributes of " + user.getUsername() + " are not serializable", ex);
+        } catch (IOException ex) {
+            throw new UncheckedIOException(ex);
+        }
+        return bytes.toByteArray();
+    }
+
+    private static void writeString(DataOutputStream out, String value) throws IOException {
+        if (value == null) {
+            out.writeInt(NULL_LENGTH);
+            return;
+        }
+        byte[] utf8 = value.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(utf8.length);
+        out.write(utf8);
+    }
+
+    /**
+     * Decodes the record at {@code offset}; without {@code full} the password hash and the
+     * OAuth2 attributes are skipped.
+     */
+    User decode(ByteBuffer log, int offset, boolean full) {
+        Reader in = new Reader(log, offset + RECORD_HEADER_BYTES + 1);
+        User user = new User();
+        user.setId(in.readString());
+        user.setUsername(in.readString());
+        user.setEmail(in.readString());
+        if (full) {
+            user.setPassword(in.readString());
+        } else {
+            in.skipString();
+        }
+        user.setEnabled(in.readByte() != 0);
+        int roleCount = in.readInt();
+        String[] roles = null;
+        if (roleCount != NULL_LENGTH) {
+            roles = new String[roleCount];
+            for (int i = 0; i < roleCount; i++) {
+                roles[i] = in.readString();
+            }
+        }
+        user.setRoles(roles);
+        user.setProvider(in.readString());
+        user.setProviderId(in.readString());
+        user.setImageUrl(in.readString());
+        if (full) {
+            byte[] json = in.readBytes();
+            if (json != null) {
+                try {
+                    user.setAttributes(objectMapper.readValue(json, ATTRIBUTES));
+                } catch (IOException ex) {
+                    throw new IllegalStateException("Corrupt OAuth2 attributes in the user record at offset " + offset, ex);
+                }
+            }
+        }
+        return user;
+    }
+
+    /**
+     * UTF-8 bytes of the id, username or email of the record at {@code offset}, or null.
+     */
+    static byte[] field(ByteBuffer log, int offset, int field) {
+        Reader in = new Reader(log, offset + RECORD_HEADER_BYTES + 1);
+        for (int i = 0; i < field; i++) {
+            in.skipString();
+        }
+        return in.readBytes();
+    }
+
+    static boolean fieldEquals(ByteBuffer log, int offset, int field, byte[] key) {
+        int position = offset + RECORD_HEADER_BYTES + 1;
+        for (int i = 0; i < field; i++) {
+            position += Integer.BYTES + Math.max(0, log.getInt(position));
+        }
+        if (log.getInt(position) != key.length) {
+            return false;
+        }
+        position += Integer.BYTES;
+        for (int i = 0; i < key.length; i++) {
+            if (log.get(position + i) != key[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    static int recordBytes(ByteBuffer log, int offset) {
+        return RECORD_HEADER_BYTES + log.getInt(offset);
+    }
+
+    static int checksum(byte[] payload) {
+        CRC32C crc = new CRC32C();
+        crc.update(payload);
+        return (int) crc.getValue();
+    }
+
+    static int checksum(ByteBuffer log, int offset, int length) {
+        CRC32C crc = new CRC32C();
+        crc.update(log.slice(offset, length));
+        return (int) crc.getValue();
+    }
+
+    /**
+     * 32-bit FNV-1a with a final avalanche step; the indexes confirm every hash match
+     * against the stored key, so collisions only cost a comparison.
+     */
+    static int hash(byte[] key) {
+        int hash = 0x811c9dc5;
+        for (byte b : key) {
+            hash ^= b & 0xff;
+            hash *= 0x01000193;
+        }
+        hash ^= hash >>> 16;
+        hash *= 0x85ebca6b;
+        hash ^= hash >>> 13;
+        return hash;
+    }
+
+    private static final class Reader {
+        private final ByteBuffer log;
+        private int position;
+
+        Reader(ByteBuffer log, int position) {
+            this.log = log;
+            this.position = position;
+        }
+
+        byte readByte() {
+            return log.get(position++);
+        }
+
+        int readInt() {
+            int value = log.getInt(position);
+            position += Integer.BYTES;
+            return value;
+        }
+
+        byte[] readBytes() {
+            int length = readInt();
+            if (length == NULL_LENGTH) {
+                return null;
+            }
+            byte[] bytes = new byte[length];
+            log.get(position, bytes);
+            position += length;
+            return bytes;
+        }
+
+        String readString() {
+            byte[] utf8 = readBytes();
+            return utf8 != null ? new String(utf8, StandardCharsets.UTF_8) : null;
+        }
+
+        void skipString() {
+            int length = readInt();
+            position += Math.max(0, length);
+        }
+    }
+}
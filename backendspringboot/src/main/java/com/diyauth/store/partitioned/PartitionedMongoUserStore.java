@@ -0,0 +1,441 @@
+package com.diyauth.store.partitioned;
+
+import com.diyauth.config.mongo.UserIndexInitializer;
+import com.diyauth.model.User;
+import com.diyauth.repository.UserListFilter;
+import com.diyauth.repository.UserRepositoryCustomImpl;
+import com.diyauth.store.UserStore;
+import com.diyauth.store.partitioned.UserPartitions.Partition;
+import com.mongodb.MongoWriteException;
+import com.mongodb.client.MongoCollection;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.bson.Document;
+import org.bson.types.ObjectId;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.core.annotation.Order;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Date;
+import java.util.List;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.PriorityQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Users spread over several MongoDB databases or clusters (app.user-store.type=partitioned),
+ * so that signups and logins are served by N primaries instead of one.
+ *
+ * A user document lives in the partition of its username (see UserPartitions), where the
+ * usual unique username index keeps usernames unique. Emails are resolved through a lookup
+ * index, the userEmails collection, itself partitioned by email: one small document per
+ * email, {@code {_id: email, userId, username, claimedAt}}. Its _id makes emails unique
+ * across all partitions: a signup first claims the email there and only then inserts the
+ * user, releasing the claim when the insert fails. A crash between the two leaves a claim
+ * without a user; such a claim is treated as taken for {@code claim-grace-ms} (the signup
+ * may still be running) and replaced by the next signup for the email afterwards. Users
+ * stored before partitioning have no claim until UserPartitionRebalancer creates it (see
+ * application-partitioned.properties).
+ *
+ * Login by username is one query on one partition; login by email and the OAuth2 lookup
+ * are two (the claim, then the user). Lookups by id and the admin listing ask every
+ * partition. The login history and everything else stay in spring.data.mongodb.uri.
+ *
+ * Unlike MongoUserStore there are no secondary reads, causal sessions, identifier filter or
+ * change feed here: every lookup reads a partition's primary, with the bulkhead's
+ * call-timeout-ms as its time limit.
+ */
+@Component
+@Order(0)
+@ConditionalOnProperty(name = "app.user-store.type", havingValue = "partitioned")
+public class PartitionedMongoUserStore implements UserStore, ApplicationRunner {
+
+    private static final Logger logger = LoggerFactory.getLogger(PartitionedMongoUserStore.class);
+
+    public static final String USERS = "users";
+    public static final String USER_EMAILS = "userEmails";
+
+    private static final String ID = "_id";
+    private static final String USER_ID = "userId";
+    private static final String USERNAME = "username";
+    private static final String EMAIL = "email";
+    private static final String CLAIMED_AT = "claimedAt";
+    private static final int DUPLICATE_KEY = 11000;
+
+    private final UserPartitions partitions;
+    private final long claimGraceMs;
+    private final Duration callTimeout;
+    private final boolean trainingRun;
+
+    private final Counter previousHomeReads;
+    private final Counter orphanClaimsReplaced;
+
+    public PartitionedMongoUserStore(UserPartitions partitions, MeterRegistry meterRegistry,
+                                     @Value("${app.user-store.partitioned.claim-grace-ms:60000}") long claimGraceMs,
+                                     @Value("${app.mongo.bulkhead.call-timeout-ms:3000}") long callTimeoutMs,
+                                     @Value("${app.cds.training-run:false}") boolean trainingRun) {
+        this.partitions = partitions;
+        this.claimGraceMs = claimGraceMs;
+        this.callTimeout = Duration.ofMillis(callTimeoutMs);
+        this.trainingRun = trainingRun;
+        this.previousHomeReads = Counter.builder("users.store.partitioned.previous.home.reads")
+                .description("Lookups answered by a key's previous partition while rebalancing")
+                .register(meterRegistry);
+        this.orphanClaimsReplaced = Counter.builder("users.store.partitioned.orphan.claims")
+                .description("Email claims left by failed signups and replaced by a later one")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Creates the users indexes in every partition; failures are logged as in UserIndexInitializer.
+     */
+    @Override
+    public void run(ApplicationArguments args) {
+        if (trainingRun) {
+            return;
+        }
+        for (Partition partition : partitions.all()) {
+            try {
+                UserIndexInitializer.ensureIndexes(partition.template());
+            } catch (RuntimeException ex) {
+                logger.warn("Could not create user indexes in partition {} ({}), continuing without them: {}",
+                        partition.index(), partition.name(), ex.getMessage());
+            }
+        }
+    }
+
+    @Override
+    public Optional<User> findById(String id) {
+        for (Partition partition : partitions.all()) {
+            User user = partition.template().findById(id, User.class);
+            if (user != null) {
+                return Optional.of(user);
+            }
+        }
+        return Optional.empty();
+    }
+
+    @Override
+    public Optional<User> findByUsername(String username) {
+        Query query = new Query(Criteria.where(USERNAME).is(username)).maxTime(callTimeout);
+        User user = partitions.home(username).template().findOne(query, User.class);
+        if (user == null) {
+            Partition previous = partitions.previousHome(username);
+            if (previous != null) {
+                user = previous.template().findOne(query, User.class);
+                if (user != null) {
+                    previousHomeReads.increment();
+                }
+            }
+        }
+        return Optional.ofNullable(user);
+    }
+
+    @Override
+    public Optional<User> findByEmail(String email) {
+        Document claim = findClaim(email);
+        if (claim == null) {
+            return Optional.empty();
+        }
+        Optional<User> user = findByUsername(claim.getString(USERNAME));
+        if (user.isPresent() && email.equals(user.get().getEmail())) {
+            return user;
+        }
+        // A signup in progress, an orphan, or a claim whose user is being renamed
+        return scatter(new Query(Criteria.where(EMAIL).is(email)));
+    }
+
+    @Override
+    public List<User> findByUsernameOrEmail(String username, String email) {
+        List<User> users = new ArrayList<>(2);
+        findByUsername(username).ifPresent(users::add);
+        // Emails always have an @; usernames typed into the login form mostly do not
+        if (email != null && email.indexOf('@') >= 0) {
+            findByEmail(email).filter(user -> users.isEmpty() || !user.getId().equals(users.get(0).getId()))
+                    .ifPresent(users::add);
+        }
+        return users;
+    }
+
+    @Override
+    public List<User> findUsernameOrEmailConflicts(String username, String email) {
+        List<User> conflicts = new ArrayList<>(2);
+        findByUsername(username).ifPresent(conflicts::add);
+        Document claim = email != null ? findClaim(email) : null;
+        if (claim != null && isHeld(claim)) {
+            User holder = new User();
+            holder.setUsername(claim.getString(USERNAME));
+            holder.setEmail(email);
+            conflicts.add(holder);
+        }
+        return conflicts;
+    }
+
+    @Override
+    public boolean existsByUsername(String username) {
+        return findByUsername(username).isPresent();
+    }
+
+    @Override
+    public boolean existsByEmail(String email) {
+        Document claim = findClaim(email);
+        return claim != null && isHeld(claim);
+    }
+
+    @Override
+    public User save(User user) {
+        if (user.getId() == null) {
+            user.setId(new ObjectId().toHexString());
+            return insert(user);
+        }
+        Partition current = locate(user.getId(), user.getUsername());
+        if (current == null) {
+            return insert(user);
+        }
+        User stored = current.template().findById(user.getId(), User.class);
+        if (stored == null) {
+            // Moved by the rebalancer in the meantime
+            return save(user);
+        }
+        return update(stored, current, user);
+    }
+
+    private User insert(User user) {
+        if (user.getEmail() != null) {
+            claim(user.getEmail(), user.getId(), user.getUsername());
+        }
+        try {
+            Partition home = partitions.home(user.getUsername());
+            checkPreviousHome(user);
+            user.setUpdatedAt(Instant.now());
+            return home.template().insert(user);
+        } catch (RuntimeException ex) {
+            if (user.getEmail() != null) {
+                release(user.getEmail(), user.getId());
+            }
+            throw ex;
+        }
+    }
+
+    private User update(User stored, Partition current, User user) {
+        boolean emailChanged = !Objects.equals(stored.getEmail(), user.getEmail());
+        if (emailChanged && user.getEmail() != null) {
+            claim(user.getEmail(), user.getId(), user.getUsername());
+        }
+        Partition home = partitions.home(user.getUsername());
+        User saved;
+        try {
+            if (home != current) {
+                checkPreviousHome(user);
+            }
+            user.setUpdatedAt(Instant.now());
+            saved = home.template().save(user);
+        } catch (RuntimeException ex) {
+            if (emailChanged && user.getEmail() != null) {
+                release(user.getEmail(), user.getId());
+            }
+            throw ex;
+        }
+        if (home != current) {
+            current.template().remove(new Query(Criteria.where(ID).is(user.getId())), User.class);
+        }
+        if (emailChanged && stored.getEmail() != null) {
+            release(stored.getEmail(), user.getId());
+        } else if (!emailChanged && user.getEmail() != null && !Objects.equals(stored.getUsername(), user.getUsername())) {
+            claimCollection(partitionOfClaim(user.getEmail())).updateOne(
+                    new Document(ID, user.getEmail()).append(USER_ID, user.getId()),
+                    new Document("$set", new Document(USERNAME, user.getUsername())));
+        }
+        return saved;
+    }
+
+    // While rebalancing, the username may still be stored where it used to live
+    private void checkPreviousHome(User user) {
+        Partition previous = partitions.previousHome(user.getUsername());
+        if (previous == null) {
+            return;
+        }
+        User existing = previous.template().findOne(new Query(Criteria.where(USERNAME).is(user.getUsername())), User.class);
+        if (existing != null && !existing.getId().equals(user.getId())) {
+            throw new DuplicateKeyException("Username " + user.getUsername() + " is already taken");
+        }
+    }
+
+    // The partition holding the user with this id: the username's home, then where it used to live, then any
+    private Partition locate(String id, String username) {
+        Query byId = new Query(Criteria.where(ID).is(id));
+        if (username != null) {
+            Partition home = partitions.home(username);
+            if (home.template().exists(byId, User.class)) {
+                return home;
+            }
+            Partition previous = partitions.previousHome(username);
+            if (previous != null && previous.template().exists(byId, User.class)) {
+                return previous;
+            }
+        }
+        for (Partition partition : partitions.all()) {
+            if (partition.template().exists(byId, User.class)) {
+                return partition;
+            }
+        }
+        return null;
+    }
+
+    private Optional<User> scatter(Query query) {
+        query.maxTime(callTimeout);
+        for (Partition partition : partitions.all()) {
+            User user = partition.template().findOne(query, User.class);
+            if (user != null) {
+                return Optional.of(user);
+            }
+        }
+        return Optional.empty();
+    }
+
+    // --- Email claims (userEmails) ---
+
+    private Document findClaim(String email) {
+        Document claim = claimCollection(partitions.home(email)).find(new Document(ID, email))
+                .maxTime(callTimeout.toMillis(), TimeUnit.MILLISECONDS).first();
+        if (claim == null) {
+            Partition previous = partitions.previousHome(email);
+            if (previous != null) {
+                claim = claimCollection(previous).find(new Document(ID, email))
+                        .maxTime(callTimeout.toMillis(), TimeUnit.MILLISECONDS).first();
+                if (claim != null) {
+                    previousHomeReads.increment();
+                }
+            }
+        }
+        return claim;
+    }
+
+    // Where the claim of an email is stored now: its home, unless still in the previous one
+    private Partition partitionOfClaim(String email) {
+        Partition previous = partitions.previousHome(email);
+        if (previous != null && claimCollection(previous).find(new Document(ID, email)).first() != null) {
+            return previous;
+        }
+        return partitions.home(email);
+    }
+
+    /**
+     * Whether a claim stands: its user exists with this email, or it is recent enough that
+     * the signup which made it may still be inserting the user.
+     */
+    private boolean isHeld(Document claim) {
+        Date claimedAt = claim.getDate(CLAIMED_AT);
+        if (claimedAt == null || System.currentTimeMillis() - claimedAt.getTime() < claimGraceMs) {
+            return true;
+        }
+        Optional<User> user = findByUsername(claim.getString(USERNAME));
+        return user.isPresent() && user.get().getId().equals(claim.getString(USER_ID))
+                && claim.getString(ID).equals(user.get().getEmail());
+    }
+
+    private void claim(String email, String userId, String username) {
+        Document claim = new Document(ID, email).append(USER_ID, userId).append(USERNAME, username)
+                .append(CLAIMED_AT, new Date());
+        Partition previous = partitions.previousHome(email);
+        if (previous != null) {
+            Document old = claimCollection(previous).find(new Document(ID, email)).first();
+            if (old != null && !userId.equals(old.getString(USER_ID)) && isHeld(old)) {
+                throw new DuplicateKeyException("Email " + email + " is already in use");
+            }
+        }
+        Partition home = partitions.home(email);
+        for (int attempt = 0; ; attempt++) {
+            try {
+                claimCollection(home).insertOne(claim);
+                return;
+            } catch (MongoWriteException ex) {
+                if (ex.getError().getCode() != DUPLICATE_KEY) {
+                    throw ex;
+                }
+            }
+            Document existing = claimCollection(home).find(new Document(ID, email)).first();
+            if (existing == null) {
+                continue;
+            }
+            if (userId.equals(existing.getString(USER_ID))) {
+                return;
+            }
+            if (attempt > 0 || isHeld(existing)) {
+                throw new DuplicateKeyException("Email " + email + " is already in use");
+            }
+            // Left by a signup that never inserted its user: take it over
+            if (claimCollection(home).deleteOne(new Document(ID, email)
+                    .append(CLAIMED_AT, existing.getDate(CLAIMED_AT))).getDeletedCount() == 1) {
+                orphanClaimsReplaced.increment();
+                logger.info("Replaced the orphan claim of {} left by user {}", email, existing.getString(USER_ID));
+            }
+        }
+    }
+
+    private void release(String email, String userId) {
+        Document ours = new Document(ID, email).append(USER_ID, userId);
+        try {
+            if (claimCollection(partitions.home(email)).deleteOne(ours).getDeletedCount() == 0) {
+                Partition previous = partitions.previousHome(email);
+                if (previous != null) {
+                    claimCollection(previous).deleteOne(ours);
+                }
+            }
+        } catch (RuntimeException ex) {
+            // Becomes an orphan, replaced by the next signup for the email after the grace period
+            logger.warn("Could not release the claim of {}: {}", email, ex.getMessage());
+        }
+    }
+
+    private static MongoCollection<Document> claimCollection(Partition partition) {
+        return partition.template().getCollection(USER_EMAILS);
+    }
+
+    @Override
+    public List<User> findPage(UserListFilter filter, String sortField, String after, int limit) {
+        Comparator<User> order = Comparator.comparing(user -> sortValue(user, sortField),
+                Comparator.nullsFirst(Comparator.naturalOrder()));
+        PriorityQueue<User> merged = new PriorityQueue<>(order);
+        for (Partition partition : partitions.all()) {
+            Query query = UserRepositoryCustomImpl.pageQuery(filter, sortField, after, limit).maxTime(callTimeout);
+            merged.addAll(partition.template().find(query, User.class));
+        }
+        List<User> page = new ArrayList<>(Math.min(limit, merged.size()));
+        while (page.size() < limit && !merged.isEmpty()) {
+            page.add(merged.poll());
+        }
+        return page;
+    }
+
+    // ObjectId hex strings order like the ObjectIds
+    private static String sortValue(User user, String sortField) {
+        return switch (sortField) {
+            case USERNAME -> user.getUsername();
+            case EMAIL -> user.getEmail();
+            default -> user.getId();
+        };
+    }
+
+    @Override
+    public long count() {
+        long count = 0;
+        for (Partition partition : partitions.all()) {
+            count += partition.template().count(new Query(), User.class);
+        }
+        return count;
+    }
+}
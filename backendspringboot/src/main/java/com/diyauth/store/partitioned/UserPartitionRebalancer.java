@@ -0,0 +1,263 @@
+package com.diyauth.store.partitioned;
+
+import com.diyauth.store.partitioned.UserPartitions.Partition;
+import com.mongodb.MongoWriteException;
+import com.mongodb.client.MongoCollection;
+import com.mongodb.client.MongoCursor;
+import com.mongodb.client.model.Filters;
+import com.mongodb.client.model.Projections;
+import org.bson.BsonType;
+import org.bson.Document;
+import org.bson.types.ObjectId;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import java.time.Instant;
+import java.util.Date;
+import java.util.Objects;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+
+/**
+ * Moves users and email claims that are not in their home partition there, after a
+ * partition was appended to app.user-store.partitioned.uris, and creates the email claims
+ * that users are missing.
+ *
+ * Steps: append the new connection string and set {@code previous-count} to the old number
+ * of partitions on every instance, so that lookups also try where keys used to live; start
+ * a run ({@code POST /api/admin/user-partitions/rebalance}) and wait for it to complete;
+ * then remove {@code previous-count}. Signups, logins and saves keep working throughout:
+ * saves always write to the home partition, and a user that the application saved there
+ * while the run was copying it counts as already moved.
+ *
+ * Each document is inserted into its home, then deleted from where it was. A username or
+ * email that already belongs to another user in the home partition is a conflict: the
+ * document stays where it is and is logged, for an administrator to resolve.
+ *
+ * Users stored before the store was partitioned have no claim in userEmails, so they
+ * cannot log in by email and their email is not reserved. After the moves, every run
+ * therefore claims the email of each user that has none. This is the migration step from
+ * app.user-store.type=mongo (see application-partitioned.properties), and is harmless
+ * otherwise.
+ */
+@Component
+@ConditionalOnProperty(name = "app.user-store.type", havingValue = "partitioned")
+public class UserPartitionRebalancer implements DisposableBean {
+
+    private static final Logger logger = LoggerFactory.getLogger(UserPartitionRebalancer.class);
+
+    private static final String ID = "_id";
+    private static final String USER_ID = "userId";
+    private static final String USERNAME = "username";
+    private static final String EMAIL = "email";
+    private static final String CLAIMED_AT = "claimedAt";
+    private static final int DUPLICATE_KEY = 11000;
+    private static final int BATCH_SIZE = 1000;
+
+    public enum State {
+        IDLE, RUNNING, COMPLETED, FAILED
+    }
+
+    private final UserPartitions partitions;
+    private final ExecutorService executor = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "user-partition-rebalancer");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private final AtomicBoolean running = new AtomicBoolean();
+
+    private volatile State state = State.IDLE;
+    private volatile Instant startedAt;
+    private volatile Instant finishedAt;
+    private volatile String error;
+    private final AtomicLong scanned = new AtomicLong();
+    private final AtomicLong movedUsers = new AtomicLong();
+    private final AtomicLong movedEmails = new AtomicLong();
+    private final AtomicLong createdClaims = new AtomicLong();
+    private final AtomicLong conflicts = new AtomicLong();
+
+    public UserPartitionRebalancer(UserPartitions partitions) {
+        this.partitions = partitions;
+    }
+
+    /**
+     * Starts a run in the background; false when one is already running.
+     */
+    public boolean start() {
+        if (!running.compareAndSet(false, true)) {
+            return false;
+        }
+        scanned.set(0);
+        movedUsers.set(0);
+        movedEmails.set(0);
+        createdClaims.set(0);
+        conflicts.set(0);
+        error = null;
+        finishedAt = null;
+        startedAt = Instant.now();
+        state = State.RUNNING;
+        executor.execute(this::run);
+        return true;
+    }
+
+    private void run() {
+        logger.info("Rebalancing users across {} partitions", partitions.count());
+        try {
+            for (Partition source : partitions.all()) {
+                move(source, PartitionedMongoUserStore.USERS, USERNAME, movedUsers);
+                move(source, PartitionedMongoUserStore.USER_EMAILS, ID, movedEmails);
+            }
+            // Once every claim is in its home, so that a claim still being moved is not duplicated
+            for (Partition source : partitions.all()) {
+                claimMissingEmails(source);
+            }
+            state = State.COMPLETED;
+            logger.info("Rebalancing completed: {} documents scanned, {} users and {} emails moved, "
+                            + "{} email claims created, {} conflicts",
+                    scanned.get(), movedUsers.get(), movedEmails.get(), createdClaims.get(), conflicts.get());
+        } catch (RuntimeException ex) {
+            error = ex.getMessage();
+            state = State.FAILED;
+            logger.error("Rebalancing failed after {} documents", scanned.get(), ex);
+        } finally {
+            finishedAt = Instant.now();
+            running.set(false);
+        }
+    }
+
+    // Moves the documents of one collection whose key (username, or the email _id) has another home
+    private void move(Partition source, String collectionName, String keyField, AtomicLong moved) {
+        MongoCollection<Document> from = source.template().getCollection(collectionName);
+        try (MongoCursor<Document> keys = from.find().projection(Projections.include(keyField))
+                .batchSize(BATCH_SIZE).iterator()) {
+            while (keys.hasNext()) {
+                Document key = keys.next();
+                scanned.incrementAndGet();
+                Object value = key.get(keyField);
+                if (!(value instanceof String)) {
+                    continue;
+                }
+                Partition home = partitions.home((String) value);
+                if (home != source && moveDocument(from, home.template().getCollection(collectionName),
+                        key.get(ID), collectionName, home)) {
+                    moved.incrementAndGet();
+                }
+            }
+        }
+    }
+
+    private boolean moveDocument(MongoCollection<Document> from, MongoCollection<Document> to, Object id,
+                                 String collectionName, Partition home) {
+        Document document = from.find(new Document(ID, id)).first();
+        if (document == null) {
+            return false;
+        }
+        try {
+            to.insertOne(document);
+        } catch (MongoWriteException ex) {
+            if (ex.getError().getCode() != DUPLICATE_KEY) {
+                throw ex;
+            }
+            Document existing = to.find(new Document(ID, id)).first();
+            if (existing == null || !sameOwner(collectionName, existing, document)) {
+                conflicts.incrementAndGet();
+                logger.warn("Not moving {} {} to partition {}: its key belongs to another document there ({})",
+                        collectionName, id, home.index(), ex.getError().getMessage());
+                return false;
+            }
+            // Saved there by the application, or copied by an interrupted run
+        }
+        // Only the version that was copied; a concurrent save goes to the home partition anyway
+        from.deleteOne(document);
+        return true;
+    }
+
+    private void claimMissingEmails(Partition source) {
+        MongoCollection<Document> users = source.template().getCollection(PartitionedMongoUserStore.USERS);
+        try (MongoCursor<Document> cursor = users.find(Filters.type(EMAIL, BsonType.STRING))
+                .projection(Projections.include(USERNAME, EMAIL)).batchSize(BATCH_SIZE).iterator()) {
+            while (cursor.hasNext()) {
+                Document user = cursor.next();
+                scanned.incrementAndGet();
+                String email = user.getString(EMAIL);
+                String userId = idString(user.get(ID));
+                Partition home = partitions.home(email);
+                Document claim = new Document(ID, email).append(USER_ID, userId)
+                        .append(USERNAME, user.getString(USERNAME)).append(CLAIMED_AT, new Date());
+                try {
+                    home.template().getCollection(PartitionedMongoUserStore.USER_EMAILS).insertOne(claim);
+                    createdClaims.incrementAndGet();
+                } catch (MongoWriteException ex) {
+                    if (ex.getError().getCode() != DUPLICATE_KEY) {
+                        throw ex;
+                    }
+                    Document existing = home.template().getCollection(PartitionedMongoUserStore.USER_EMAILS)
+                            .find(new Document(ID, email)).first();
+                    if (existing != null && !userId.equals(existing.getString(USER_ID))) {
+                        conflicts.incrementAndGet();
+                        logger.warn("Not claiming {} for user {}: it is claimed by user {}",
+                                email, userId, existing.getString(USER_ID));
+                    }
+                }
+            }
+        }
+    }
+
+    // Users saved through Spring Data store ObjectId ids; claims hold their hex string
+    private static String idString(Object id) {
+        return id instanceof ObjectId objectId ? objectId.toHexString() : String.valueOf(id);
+    }
+
+    private static boolean sameOwner(String collectionName, Document existing, Document document) {
+        Function<Document, Object> owner = PartitionedMongoUserStore.USERS.equals(collectionName)
+                ? d -> d.get(ID) : d -> d.get(USER_ID);
+        return Objects.equals(owner.apply(existing), owner.apply(document));
+    }
+
+    public State getState() {
+        return state;
+    }
+
+    public Instant getStartedAt() {
+        return startedAt;
+    }
+
+    public Instant getFinishedAt() {
+        return finishedAt;
+    }
+
+    public String getError() {
+        return error;
+    }
+
+    public long getScanned() {
+        return scanned.get();
+    }
+
+    public long getMovedUsers() {
+        return movedUsers.get();
+    }
+
+    public long getMovedEmails() {
+        return movedEmails.get();
+    }
+
+    public long getCreatedClaims() {
+        return createdClaims.get();
+    }
+
+    public long getConflicts() {
+        return conflicts.get();
+    }
+
+    @Override
+    public void destroy() {
+        executor.shutdownNow();
+    }
+}
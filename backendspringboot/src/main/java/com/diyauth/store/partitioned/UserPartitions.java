@@ -0,0 +1,179 @@
+package com.diyauth.store.partitioned;
+
+import com.diyauth.config.mongo.MongoClientConfig;
+import com.mongodb.ConnectionString;
+import com.mongodb.MongoClientSettings;
+import com.mongodb.client.MongoClient;
+import com.mongodb.client.MongoClients;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.SimpleMongoClientDatabaseFactory;
+import org.springframework.data.mongodb.core.convert.MappingMongoConverter;
+import org.springframework.stereotype.Component;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * The databases of the partitioned user store, one per connection string in
+ * {@code app.user-store.partitioned.uris}, and the function that places a key (username or
+ * email) on one of them.
+ *
+ * Placement is a jump consistent hash (Lamping and Veach) of the key's 64-bit hash: going
+ * from N to N + 1 partitions moves about 1/(N + 1) of the keys, all of them to the new
+ * partition, and nothing else. Partitions can therefore only be appended, never reordered
+ * or removed. While keys are being moved (UserPartitionRebalancer),
+ * {@code app.user-store.partitioned.previous-count} is the count before the new partition was
+ * added, and lookups that miss a key's home fall back to where it used to live.
+ *
+ * Each partition gets its own MongoClient, with the pool, timeout and metrics settings of
+ * MongoClientConfig, and a MongoTemplate sharing the application's mapping converter.
+ */
+@Component
+@ConditionalOnProperty(name = "app.user-store.type", havingValue = "partitioned")
+public class UserPartitions implements DisposableBean {
+
+    private static final Logger logger = LoggerFactory.getLogger(UserPartitions.class);
+
+    private static final long FNV_OFFSET_BASIS = 0xcbf29ce484222325L;
+    private static final long FNV_PRIME = 0x100000001b3L;
+
+    /**
+     * One database of the store.
+     */
+    public record Partition(int index, String name, MongoClient client, MongoTemplate template) {
+    }
+
+    private final List<Partition> partitions;
+    private final int previousCount;
+
+    public UserPartitions(@Value("${app.user-store.partitioned.uris:}") String uris,
+                          @Value("${app.user-store.partitioned.previous-count:0}") int previousCount,
+                          MongoClientConfig mongoClientConfig, MappingMongoConverter mappingMongoConverter,
+                          MeterRegistry meterRegistry) {
+        String[] connectionStrings = uris.trim().isEmpty() ? new String[0] : uris.trim().split("\\s+");
+        if (connectionStrings.length == 0) {
+            throw new IllegalStateException("app.user-store.partitioned.uris lists no databases");
+        }
+        if (previousCount < 0 || previousCount > connectionStrings.length) {
+            throw new IllegalStateException("app.user-store.partitioned.previous-count must be between 0 and "
+                    + connectionStrings.length + ", was " + previousCount);
+        }
+        this.previousCount = previousCount == connectionStrings.length ? 0 : previousCount;
+
+        List<Partition> created = new ArrayList<>();
+        try {
+            for (String uri : connectionStrings) {
+                ConnectionString connectionString = new ConnectionString(uri);
+                if (connectionString.getDatabase() == null) {
+                    throw new IllegalStateException("Partition " + created.size() + " names no database: "
+                            + name(connectionString, "?"));
+                }
+                MongoClientSettings.Builder settings = MongoClientSettings.builder().applyConnectionString(connectionString);
+                mongoClientConfig.applyTo(settings, meterRegistry);
+                MongoClient client = MongoClients.create(settings.build());
+                MongoTemplate template = new MongoTemplate(
+                        new SimpleMongoClientDatabaseFactory(client, connectionString.getDatabase()), mappingMongoConverter);
+                Partition partition = new Partition(created.size(),
+                        name(connectionString, connectionString.getDatabase()), client, template);
+                created.add(partition);
+                Gauge.builder("users.store.partitioned.users", partition,
+                                p -> p.template().getCollection(PartitionedMongoUserStore.USERS).estimatedDocumentCount())
+                        .description("Users stored in the partition (estimated)")
+                        .tag("partition", String.valueOf(partition.index()))
+                        .register(meterRegistry);
+            }
+        } catch (RuntimeException ex) {
+            created.forEach(partition -> partition.client().close());
+            throw ex;
+        }
+        this.partitions = Collections.unmodifiableList(created);
+        logger.info("Users partitioned across {} databases{}: {}", partitions.size(),
+                this.previousCount > 0 ? " (rebalancing from " + this.previousCount + ")" : "",
+                partitions.stream().map(Partition::name).toList());
+    }
+
+    // Hosts and database only: the connection string may carry credentials
+    private static String name(ConnectionString connectionString, String database) {
+        return String.join(",", connectionString.getHosts()) + "/" + database;
+    }
+
+    public List<Partition> all() {
+        return partitions;
+    }
+
+    public int count() {
+        return partitions.size();
+    }
+
+    /**
+     * The partition count before the last one was added, or 0 when no keys are being moved.
+     */
+    public int previousCount() {
+        return previousCount;
+    }
+
+    public Partition get(int index) {
+        return partitions.get(index);
+    }
+
+    /**
+     * Where {@code key} lives.
+     */
+    public Partition home(String key) {
+        return partitions.get(jumpHash(hash(key), partitions.size()));
+    }
+
+    /**
+     * Where {@code key} lived before the last partition was added, or null when that is
+     * its home or no keys are being moved.
+     */
+    public Partition previousHome(String key) {
+        if (previousCount == 0) {
+            return null;
+        }
+        long hash = hash(key);
+        int previous = jumpHash(hash, previousCount);
+        return previous != jumpHash(hash, partitions.size()) ? partitions.get(previous) : null;
+    }
+
+    // FNV-1a over the UTF-8 bytes, finished with MurmurHash3's fmix64 so that similar keys
+    // (user1, user2, ...) spread over all 64 bits
+    static long hash(String key) {
+        long hash = FNV_OFFSET_BASIS;
+        for (byte b : key.getBytes(StandardCharsets.UTF_8)) {
+            hash ^= b & 0xff;
+            hash *= FNV_PRIME;
+        }
+        hash ^= hash >>> 33;
+        hash *= 0xff51afd7ed558ccdL;
+        hash ^= hash >>> 33;
+        hash *= 0xc4ceb9fe1a85ec53L;
+        hash ^= hash >>> 33;
+        return hash;
+    }
+
+    static int jumpHash(long key, int buckets) {
+        long b = -1;
+        long j = 0;
+        while (j < buckets) {
+            b = j;
+            key = key * 2862933555777941757L + 1;
+            j = (long) ((b + 1) * ((double) (1L << 31) / (double) ((key >>> 33) + 1)));
+        }
+        return (int) b;
+    }
+
+    @Override
+    public void destroy() {
+        partitions.forEach(partition -> partition.client().close());
+    }
+}
@@ -0,0 +1,213 @@
+package com.diyauth;
+
+import com.diyauth.service.CustomOAuth2UserService;
+import com.diyauth.testsupport.MongoCommandBudget;
+import com.diyauth.testsupport.MongoTestConfiguration;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Nested;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.http.MediaType;
+import org.springframework.security.oauth2.client.http.OAuth2ErrorResponseErrorHandler;
+import org.springframework.security.oauth2.client.registration.ClientRegistration;
+import org.springframework.security.oauth2.client.registration.ClientRegistrationRepository;
+import org.springframework.security.oauth2.client.userinfo.OAuth2UserRequest;
+import org.springframework.security.oauth2.core.OAuth2AccessToken;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+import org.springframework.test.context.TestPropertySource;
+import org.springframework.test.web.client.MockRestServiceServer;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+import org.springframework.web.client.RestTemplate;
+
+import java.time.Instant;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.springframework.test.web.client.match.MockRestRequestMatchers.requestTo;
+import static org.springframework.test.web.client.response.MockRestResponseCreators.withSuccess;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+/**
+ * Mongo command budgets of the hot endpoints: each request may issue at most this many
+ * round trips to the database. A change that adds a query to one of these paths fails here.
+ */
+@SpringBootTest
+@AutoConfigureMockMvc
+@ActiveProfiles("test")
+@Import(MongoTestConfiguration.class)
+class MongoQueryBudgetTest {
+
+    private static final AtomicInteger USERS = new AtomicInteger();
+
+    @DynamicPropertySource
+    static void mongo(DynamicPropertyRegistry registry) {
+        MongoTestConfiguration.mongoProperties(registry);
+    }
+
+    @Autowired
+    MockMvc mockMvc;
+
+    @Autowired
+    MongoCommandBudget budget;
+
+    @Autowired
+    ObjectMapper objectMapper;
+
+    @Autowired
+    CustomOAuth2UserService customOAuth2UserService;
+
+    @Autowired
+    ClientRegistrationRepository clientRegistrationRepository;
+
+    @Test
+    void signupIssuesAtMostTwoCommands() throws Exception {
+        String username = "budget" + USERS.incrementAndGet();
+        List<String> commands = budget.count(() -> signup(username));
+        assertThat(commands).as("POST /api/auth/signup").hasSizeBetween(1, 2);
+    }
+
+    @Test
+    void signinIssuesAtMostOneCommand() throws Exception {
+        String username = "budget" + USERS.incrementAndGet();
+        signup(username);
+        assertThat(budget.count(() -> signin(username))).as("POST /api/auth/signin by username")
+                .hasSizeLessThanOrEqualTo(1);
+        assertThat(budget.count(() -> signin(username + "@example.com"))).as("POST /api/auth/signin by email")
+                .hasSizeLessThanOrEqualTo(1);
+    }
+
+    @Test
+    void failedSigninIssuesAtMostOneCommand() throws Exception {
+        List<String> commands = budget.count(() -> mockMvc.perform(post("/api/auth/signin")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"username\":\"nobody-" + USERS.incrementAndGet() + "\",\"password\":\"secret123\"}"))
+                .andExpect(status().isBadRequest()));
+        assertThat(commands).as("POST /api/auth/signin, unknown user").hasSizeLessThanOrEqualTo(1);
+    }
+
+    @Test
+    void currentUserIssuesAtMostOneCommand() throws Exception {
+        String username = "budget" + USERS.incrementAndGet();
+        signup(username);
+        String token = signin(username);
+        List<String> commands = budget.count(() -> mockMvc.perform(get("/api/auth/me")
+                        .header("Authorization", "Bearer " + token))
+                .andExpect(status().isOk()));
+        assertThat(commands).as("GET /api/auth/me").hasSizeLessThanOrEqualTo(1);
+    }
+
+    @Test
+    void availabilityIssuesAtMostTwoCommands() throws Exception {
+        String username = "budget" + USERS.incrementAndGet();
+        signup(username);
+        List<String> taken = budget.count(() -> mockMvc.perform(get("/api/auth/availability")
+                        .param("username", username).param("email", username + "@example.com"))
+                .andExpect(status().isOk()));
+        assertThat(taken).as("GET /api/auth/availability, taken").hasSizeLessThanOrEqualTo(2);
+        List<String> free = budget.count(() -> mockMvc.perform(get("/api/auth/availability")
+                        .param("username", "free" + USERS.incrementAndGet()).param("email", "free@example.org"))
+                .andExpect(status().isOk()));
+        assertThat(free).as("GET /api/auth/availability, free").hasSizeLessThanOrEqualTo(2);
+    }
+
+    @Test
+    void loginHistoryIssuesAtMostTwoCommands() throws Exception {
+        String username = "budget" + USERS.incrementAndGet();
+        signup(username);
+        String token = signin(username);
+        List<String> commands = budget.count(() -> mockMvc.perform(get("/api/auth/me/logins")
+                        .header("Authorization", "Bearer " + token))
+                .andExpect(status().isOk()));
+        assertThat(commands).as("GET /api/auth/me/logins").hasSizeLessThanOrEqualTo(2);
+    }
+
+    /**
+     * Without the identifier filter every signin queries, and a miss on a secondary must not
+     * be retried on the primary.
+     */
+    @Nested
+    @TestPropertySource(properties = "app.user-filter.enabled=false")
+    class WithoutIdentifierFilter {
+
+        @Autowired
+        MockMvc mockMvc;
+
+        @Autowired
+        MongoCommandBudget budget;
+
+        @Test
+        void failedSigninIssuesAtMostOneCommand() throws Exception {
+            List<String> commands = budget.count(() -> mockMvc.perform(post("/api/auth/signin")
+                            .contentType(MediaType.APPLICATION_JSON)
+                            .content("{\"username\":\"nobody-" + USERS.incrementAndGet() + "\",\"password\":\"secret123\"}"))
+                    .andExpect(status().isBadRequest()));
+            assertThat(commands).as("POST /api/auth/signin, unknown user, no filter").hasSize(1);
+        }
+    }
+
+    /**
+     * The database part of GET /login/oauth2/code/google: the user lookup and, for a first
+     * login or a changed profile, the save. The token exchange and user info call go to Google.
+     */
+    @Test
+    void oauth2LoginIssuesAtMostTwoCommands() throws Exception {
+        ClientRegistration google = clientRegistrationRepository.findByRegistrationId("google");
+        RestTemplate restTemplate = new RestTemplate();
+        MockRestServiceServer userInfo = MockRestServiceServer.bindTo(restTemplate).build();
+        customOAuth2UserService.setRestOperations(restTemplate);
+        try {
+            String email = "oauth" + USERS.incrementAndGet() + "@example.com";
+            String[] pictures = {"https://example.com/a.png", "https://example.com/a.png", "https://example.com/b.png"};
+            for (String picture : pictures) {
+                userInfo.expect(requestTo(google.getProviderDetails().getUserInfoEndpoint().getUri()))
+                        .andRespond(withSuccess("{\"sub\":\"" + email.hashCode() + "\",\"name\":\"OAuth User\",\"email\":\""
+                                + email + "\",\"picture\":\"" + picture + "\"}", MediaType.APPLICATION_JSON));
+            }
+            // A first login, an unchanged profile, and a changed picture
+            for (String picture : pictures) {
+                OAuth2UserRequest request = new OAuth2UserRequest(google, new OAuth2AccessToken(
+                        OAuth2AccessToken.TokenType.BEARER, "token", Instant.now(), Instant.now().plusSeconds(60)));
+                List<String> commands = budget.count(() -> customOAuth2UserService.loadUser(request));
+                assertThat(commands).as("OAuth2 login with picture " + picture).hasSizeLessThanOrEqualTo(2);
+            }
+            userInfo.verify();
+        } finally {
+            customOAuth2UserService.setRestOperations(defaultRestOperations());
+        }
+    }
+
+    private void signup(String username) throws Exception {
+        mockMvc.perform(post("/api/auth/signup")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"username\":\"" + username + "\",\"email\":\"" + username
+                                + "@example.com\",\"password\":\"secret123\"}"))
+                .andExpect(status().isOk());
+    }
+
+    private String signin(String usernameOrEmail) throws Exception {
+        MvcResult result = mockMvc.perform(post("/api/auth/signin")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"username\":\"" + usernameOrEmail + "\",\"password\":\"secret123\"}"))
+                .andExpect(status().isOk())
+                .andReturn();
+        JsonNode body = objectMapper.readTree(result.getResponse().getContentAsString());
+        return body.get("accessToken").asText();
+    }
+
+    // What DefaultOAuth2UserService sets up for itself
+    private static RestTemplate defaultRestOperations() {
+        RestTemplate restTemplate = new RestTemplate();
+        restTemplate.setErrorHandler(new OAuth2ErrorResponseErrorHandler());
+        return restTemplate;
+    }
+}
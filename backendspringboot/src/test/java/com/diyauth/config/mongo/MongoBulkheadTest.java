@@ -0,0 +1,61 @@
+package com.diyauth.config.mongo;
+
+import com.diyauth.exception.ServiceDegradedException;
+import com.mongodb.MongoSocketReadTimeoutException;
+import com.mongodb.ServerAddress;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class MongoBulkheadTest {
+
+    private static final int FAILURE_THRESHOLD = 3;
+
+    @Test
+    void saturationDoesNotDegrade() {
+        MongoBulkhead bulkhead = new MongoBulkhead(new SimpleMeterRegistry(), 1, 1, FAILURE_THRESHOLD, 60000);
+        bulkhead.acquire();
+        for (int i = 0; i < FAILURE_THRESHOLD * 2; i++) {
+            assertThatThrownBy(bulkhead::acquire).isInstanceOf(ServiceDegradedException.class);
+        }
+        assertThat(bulkhead.getState()).isEqualTo(MongoBulkhead.State.NORMAL);
+        bulkhead.release(null);
+        bulkhead.acquire();
+        bulkhead.release(null);
+    }
+
+    @Test
+    void consecutiveTimeoutsDegrade() {
+        MongoBulkhead bulkhead = new MongoBulkhead(new SimpleMeterRegistry(), 4, 1, FAILURE_THRESHOLD, 60000);
+        for (int i = 0; i < FAILURE_THRESHOLD; i++) {
+            bulkhead.acquire();
+            bulkhead.release(timeout());
+        }
+        assertThat(bulkhead.getState()).isEqualTo(MongoBulkhead.State.DEGRADED);
+        assertThatThrownBy(bulkhead::acquire).isInstanceOf(ServiceDegradedException.class);
+    }
+
+    @Test
+    void successfulProbeEndsTheDegradedPeriod() throws Exception {
+        MongoBulkhead bulkhead = new MongoBulkhead(new SimpleMeterRegistry(), 4, 1, 1, 10);
+        bulkhead.acquire();
+        bulkhead.release(timeout());
+        assertThat(bulkhead.getState()).isEqualTo(MongoBulkhead.State.DEGRADED);
+        TimeUnit.MILLISECONDS.sleep(20);
+
+        bulkhead.acquire();
+        assertThat(bulkhead.getState()).isEqualTo(MongoBulkhead.State.PROBING);
+        assertThatThrownBy(bulkhead::acquire).as("while probing").isInstanceOf(ServiceDegradedException.class);
+        bulkhead.release(null);
+        assertThat(bulkhead.getState()).isEqualTo(MongoBulkhead.State.NORMAL);
+    }
+
+    private static Throwable timeout() {
+        return new MongoSocketReadTimeoutException("read timed out", new ServerAddress(), new IOException());
+    }
+}
@@ -0,0 +1,47 @@
+package com.diyauth.config.mongo;
+
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class MongoReadRoutingTest {
+
+    private static final int MAX_TRACKED = 100;
+
+    @Test
+    void writesPastTheBoundDropTheOldestMarksAndSendMissesToThePrimary() {
+        MongoReadRouting routing = new MongoReadRouting("secondaryPreferred", 90, 120000, MAX_TRACKED);
+        for (int i = 0; i < MAX_TRACKED * 3; i++) {
+            routing.recordWrite(null, "user" + i);
+        }
+
+        MongoReadRouting.WriteMark dropped = routing.recentWrite("user0");
+        assertThat(dropped).as("dropped mark").isNotNull();
+        assertThat(dropped.hasCausalTime()).isFalse();
+        assertThat(routing.recentWrite("never-written")).as("unknown identifier").isNotNull();
+        assertThat(routing.recentWrite("user" + (MAX_TRACKED * 3 - 1))).as("kept mark").isNotNull();
+    }
+
+    @Test
+    void withinTheBoundUnknownIdentifiersHaveNoMark() {
+        MongoReadRouting routing = new MongoReadRouting("secondaryPreferred", 90, 120000, MAX_TRACKED);
+        routing.recordWrite(null, "user", "user@example.com");
+        routing.recordWrite(null, "user", "user@example.com");
+
+        assertThat(routing.recentWrite("user")).isNotNull();
+        assertThat(routing.recentWrite("someone-else")).isNull();
+    }
+
+    @Test
+    void expiredMarksAreDroppedWithoutSendingMissesToThePrimary() throws Exception {
+        MongoReadRouting routing = new MongoReadRouting("secondaryPreferred", 90, 1, MAX_TRACKED);
+        for (int i = 0; i < MAX_TRACKED; i++) {
+            routing.recordWrite(null, "user" + i);
+        }
+        Thread.sleep(5);
+        routing.recordWrite(null, "late");
+
+        assertThat(routing.recentWrite("user0")).isNull();
+        assertThat(routing.recentWrite("someone-else")).isNull();
+    }
+}
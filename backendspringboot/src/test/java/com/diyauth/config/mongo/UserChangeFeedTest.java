@@ -0,0 +1,132 @@
+package com.diyauth.config.mongo;
+
+import com.diyauth.model.User;
+import com.diyauth.security.RecentPrincipalCache;
+import com.diyauth.security.UserPrincipal;
+import com.diyauth.service.UserIdentifierFilter;
+import com.diyauth.testsupport.InMemoryMongo;
+import com.mongodb.client.MongoClient;
+import com.mongodb.client.MongoClients;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.mongodb.core.MongoTemplate;
+
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class UserChangeFeedTest {
+
+    private static final int BATCH_SIZE = 10;
+
+    private MongoClient client;
+    private MongoTemplate mongoTemplate;
+    private RecentPrincipalCache principalCache;
+    private MongoReadRouting readRouting;
+    private UserIdentifierFilter identifierFilter;
+    private UserChangeFeed feed;
+
+    @BeforeEach
+    void setUp() {
+        client = MongoClients.create(InMemoryMongo.shared().uri("feed"));
+        mongoTemplate = new MongoTemplate(client, "feed-" + System.nanoTime());
+        SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+        principalCache = new RecentPrincipalCache(1000, 60000, 60000, 60000, meterRegistry);
+        readRouting = new MongoReadRouting("secondaryPreferred", 90, 120000, 100000);
+        identifierFilter = new UserIdentifierFilter(mongoTemplate, principalCache, meterRegistry, true, 1000, 0.01, false);
+        feed = new UserChangeFeed(mongoTemplate, principalCache, readRouting, identifierFilter, meterRegistry, "poll", 100, 50, 5000, BATCH_SIZE, false);
+    }
+
+    @AfterEach
+    void tearDown() {
+        feed.stop();
+        mongoTemplate.getDb().drop();
+        client.close();
+    }
+
+    @Test
+    void pollReadsThroughMoreChangesThanABatchWithTheSameTimestamp() throws Exception {
+        feed.start();
+        Instant updatedAt = Instant.now().truncatedTo(ChronoUnit.MILLIS);
+        List<User> users = new ArrayList<>();
+        for (int i = 0; i < BATCH_SIZE * 3 + 5; i++) {
+            User user = new User("burst" + i, "burst" + i + "@example.com", "secret");
+            user.setUpdatedAt(updatedAt);
+            users.add(mongoTemplate.insert(user));
+        }
+        long cached = System.nanoTime();
+        for (User user : users) {
+            principalCache.put(user.getUsername(), UserPrincipal.create(user), principalCache.generation());
+        }
+
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+        while (!(allEvicted(users) && caughtUpSince(cached)) && System.nanoTime() < deadline) {
+            TimeUnit.MILLISECONDS.sleep(20);
+        }
+        assertThat(allEvicted(users)).as("every user of the burst evicted").isTrue();
+        assertThat(caughtUpSince(cached)).as("poll returned after the burst").isTrue();
+    }
+
+    @Test
+    void polledChangesSendTheReloadToThePrimary() throws Exception {
+        feed.start();
+        User user = new User("changed", "changed@example.com", "secret");
+        user.setUpdatedAt(Instant.now().truncatedTo(ChronoUnit.MILLIS));
+        mongoTemplate.insert(user);
+
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+        while (readRouting.recentWrite("changed") == null && System.nanoTime() < deadline) {
+            TimeUnit.MILLISECONDS.sleep(20);
+        }
+        for (String identifier : new String[]{"changed", "changed@example.com"}) {
+            MongoReadRouting.WriteMark mark = readRouting.recentWrite(identifier);
+            assertThat(mark).as(identifier).isNotNull();
+            assertThat(mark.hasCausalTime()).as("polling knows no cluster time").isFalse();
+        }
+    }
+
+    @Test
+    void usersWrittenElsewhereReachTheIdentifierFilter() throws Exception {
+        feed.start();
+        identifierFilter.rebuild();
+        long current = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+        while (!principalCache.invalidationsCurrent() && System.nanoTime() < current) {
+            TimeUnit.MILLISECONDS.sleep(20);
+        }
+        assertThat(identifierFilter.mightExist("elsewhere")).isFalse();
+
+        // Inserted without this instance's save events, as another instance would
+        User user = new User("elsewhere", "elsewhere@example.com", "secret");
+        user.setUpdatedAt(Instant.now().truncatedTo(ChronoUnit.MILLIS));
+        mongoTemplate.insert(user);
+
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+        while (!identifierFilter.mightExist("elsewhere") && System.nanoTime() < deadline) {
+            TimeUnit.MILLISECONDS.sleep(20);
+        }
+        assertThat(identifierFilter.mightExist("elsewhere")).isTrue();
+        assertThat(identifierFilter.mightExist("elsewhere@example.com")).isTrue();
+    }
+
+    @Test
+    void identifierFilterIsNotTrustedWithoutACurrentFeed() {
+        identifierFilter.rebuild();
+        assertThat(identifierFilter.mightExist("nobody")).as("feed not started").isTrue();
+    }
+
+    private boolean allEvicted(List<User> users) {
+        return users.stream().allMatch(user -> principalCache.get(user.getUsername()) == null);
+    }
+
+    // A poll that started after the principals were cached has completed
+    private boolean caughtUpSince(long nanos) {
+        return principalCache.invalidationStalenessSeconds() >= 0
+                && principalCache.invalidationStalenessSeconds() < (System.nanoTime() - nanos) / 1e9;
+    }
+}
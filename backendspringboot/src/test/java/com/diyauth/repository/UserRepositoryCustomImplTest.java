@@ -0,0 +1,92 @@
+package com.diyauth.repository;
+
+import com.diyauth.config.mongo.MongoReadRouting;
+import com.diyauth.security.RecentPrincipalCache;
+import com.diyauth.service.UserIdentifierFilter;
+import com.diyauth.testsupport.InMemoryMongo;
+import com.mongodb.ConnectionString;
+import com.mongodb.MongoClientSettings;
+import com.mongodb.client.MongoClient;
+import com.mongodb.client.MongoClients;
+import com.mongodb.event.CommandListener;
+import com.mongodb.event.CommandStartedEvent;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.bson.BsonDocument;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.mongodb.core.MongoTemplate;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class UserRepositoryCustomImplTest {
+
+    private final List<BsonDocument> finds = new CopyOnWriteArrayList<>();
+    private MongoClient client;
+    private MongoTemplate mongoTemplate;
+    private UserRepositoryCustomImpl repository;
+
+    @BeforeEach
+    void setUp() {
+        client = MongoClients.create(MongoClientSettings.builder()
+                .applyConnectionString(new ConnectionString(InMemoryMongo.shared().uri("lookups")))
+                .addCommandListener(new CommandListener() {
+                    @Override
+                    public void commandStarted(CommandStartedEvent event) {
+                        if ("find".equals(event.getCommandName())) {
+                            finds.add(event.getCommand().clone());
+                        }
+                    }
+                })
+                .build());
+        mongoTemplate = new MongoTemplate(client, "lookups-" + System.nanoTime());
+        SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+        RecentPrincipalCache principalCache = new RecentPrincipalCache(1000, 60000, 60000, 60000, meterRegistry);
+        UserIdentifierFilter identifierFilter = new UserIdentifierFilter(mongoTemplate, principalCache, meterRegistry,
+                true, 1000, 0.01, false);
+        identifierFilter.rebuild();
+        // As UserChangeFeed reports it
+        principalCache.invalidationsCurrentAsOf(System.nanoTime());
+        assertThat(identifierFilter.answersMisses()).isTrue();
+        repository = new UserRepositoryCustomImpl(mongoTemplate,
+                new MongoReadRouting("secondaryPreferred", 90, 120000, 100000), identifierFilter, 3000);
+    }
+
+    @AfterEach
+    void tearDown() {
+        mongoTemplate.getDb().drop();
+        client.close();
+    }
+
+    @Test
+    void missOnASecondaryIsRetriedOnThePrimary() {
+        finds.clear();
+        assertThat(repository.findByUsernameOrEmail("lagging", "lagging@example.com")).isEmpty();
+
+        assertThat(finds).hasSize(2);
+        assertThat(readPreference(finds.get(0))).isEqualTo("secondaryPreferred");
+        assertThat(readPreference(finds.get(1))).as("retry").isEqualTo("primary");
+    }
+
+    @Test
+    void lookupsCarryTheCallTimeout() {
+        finds.clear();
+        repository.findByUsername("someone");
+        repository.findByEmail("someone@example.com");
+        repository.existsByUsername("someone");
+        repository.findUsernameOrEmailConflicts("someone", "someone@example.com");
+
+        assertThat(finds).hasSize(4).allSatisfy(find ->
+                assertThat(find.getNumber("maxTimeMS").longValue()).isEqualTo(3000));
+    }
+
+    // The driver sends no $readPreference for primary reads
+    private static String readPreference(BsonDocument command) {
+        return command.containsKey("$readPreference")
+                ? command.getDocument("$readPreference").getString("mode").getValue()
+                : "primary";
+    }
+}
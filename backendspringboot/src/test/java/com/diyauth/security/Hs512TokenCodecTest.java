@@ -0,0 +1,256 @@
+package com.diyauth.security;
+
+import io.jsonwebtoken.Claims;
+import io.jsonwebtoken.JwsHeader;
+import io.jsonwebtoken.Jws;
+import io.jsonwebtoken.JwtBuilder;
+import io.jsonwebtoken.Jwts;
+import io.jsonwebtoken.SignatureAlgorithm;
+import io.jsonwebtoken.security.Keys;
+import org.junit.jupiter.api.Test;
+
+import javax.crypto.Mac;
+import javax.crypto.SecretKey;
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+import java.util.Date;
+import java.util.Map;
+import java.util.Random;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class Hs512TokenCodecTest {
+
+    private static final String ALPHABET = "ABCDEFGHIJKLMNOPQRSTUVWXYZabcdefghijklmnopqrstuvwxyz0123456789-_";
+    // jjwt checks expiry against the clock
+    private static final long NOW = System.currentTimeMillis() / 1000;
+
+    private final SecretKey legacyKey = key(1);
+    private final SecretKey currentKey = key(2);
+    // "retired" and unknown kids have no verification key
+    private final Hs512TokenCodec codec = new Hs512TokenCodec(kid -> kid == null ? legacyKey
+            : Map.of("current", currentKey).get(kid));
+
+    @Test
+    void agreesWithJjwt() {
+        assertThat(Hs512TokenCodec.matchesJjwt()).isTrue();
+    }
+
+    @Test
+    void verifiesItsOwnTokens() {
+        String token = codec.encode("current", currentKey, "alice", NOW, NOW + 60, RoleCatalog.USER);
+        assertThat(codec.verify(token, NOW * 1000)).isEqualTo(new TokenClaims("alice", RoleCatalog.USER));
+        String legacy = codec.encode(null, legacyKey, "bob", NOW, NOW + 60, 0);
+        assertThat(codec.verify(legacy, NOW * 1000)).isEqualTo(new TokenClaims("bob", TokenClaims.NO_ROLE_BITS));
+    }
+
+    @Test
+    void rejectsTamperedSignature() {
+        String token = codec.encode(null, legacyKey, "alice", NOW, NOW + 60, 0);
+        int at = token.length() - 10;
+        String tampered = token.substring(0, at) + other(token.charAt(at)) + token.substring(at + 1);
+        assertThat(codec.verify(tampered, NOW * 1000)).isNull();
+    }
+
+    @Test
+    void rejectsTamperedPayload() {
+        String token = codec.encode(null, legacyKey, "alice", NOW, NOW + 60, RoleCatalog.USER);
+        String[] parts = token.split("\\.");
+        String admin = base64Url("{\"sub\":\"alice\",\"iat\":" + NOW + ",\"exp\":" + (NOW + 60)
+                + ",\"rb\":" + (RoleCatalog.USER | RoleCatalog.ADMIN) + "}");
+        assertThat(codec.verify(parts[0] + "." + admin + "." + parts[2], NOW * 1000)).isNull();
+    }
+
+    @Test
+    void rejectsSignatureWithNonCanonicalTailBits() {
+        String token = codec.encode(null, legacyKey, "alice", NOW, NOW + 60, 0);
+        // 86 characters carry 516 bits for 512: the last character's low 4 bits must be zero
+        char last = token.charAt(token.length() - 1);
+        int value = ALPHABET.indexOf(last);
+        assertThat(value & 0x0f).isZero();
+        String stray = token.substring(0, token.length() - 1) + ALPHABET.charAt(value | 0x01);
+        assertThat(codec.verify(stray, NOW * 1000)).isNull();
+    }
+
+    @Test
+    void rejectsPayloadWithNonCanonicalTailBits() {
+        // A payload whose length leaves stray bits in its last character
+        String payload = "{\"sub\":\"alice\",\"iat\":" + NOW + ",\"exp\":" + (NOW + 60) + "}";
+        assertThat(payload.length() % 3).isNotZero();
+        String encoded = base64Url(payload);
+        char last = encoded.charAt(encoded.length() - 1);
+        String strayPayload = encoded.substring(0, encoded.length() - 1) + ALPHABET.charAt(ALPHABET.indexOf(last) | 0x01);
+        String header = base64Url("{\"alg\":\"HS512\"}");
+        String token = header + "." + strayPayload + "." + sign(header + "." + strayPayload, legacyKey);
+        assertThat(codec.verify(token, NOW * 1000)).isNull();
+    }
+
+    @Test
+    void rejectsOtherHeaders() {
+        String payload = "{\"sub\":\"alice\",\"iat\":" + NOW + ",\"exp\":" + (NOW + 60) + "}";
+        for (String header : new String[]{
+                "{\"alg\":\"HS256\"}",
+                "{\"alg\":\"none\"}",
+                "{\"typ\":\"JWT\",\"alg\":\"HS512\"}",
+                "{\"alg\":\"HS512\",\"kid\":\"current\"}",
+                "{\"kid\":\"cur\\\"rent\",\"alg\":\"HS512\"}",
+                "{\"kid\":\"current\",\"alg\":\"HS512\",\"zip\":\"DEF\"}",
+                "{\"alg\": \"HS512\"}"}) {
+            assertThat(codec.verify(token(header, payload, header.contains("kid") ? currentKey : legacyKey), NOW * 1000))
+                    .as(header).isNull();
+        }
+        assertThat(codec.verify(token("{\"kid\":\"current\",\"alg\":\"HS512\"}", payload, currentKey), NOW * 1000))
+                .isEqualTo(new TokenClaims("alice", TokenClaims.NO_ROLE_BITS));
+    }
+
+    @Test
+    void rejectsUnknownAndRetiredKids() {
+        String payload = "{\"sub\":\"alice\",\"iat\":" + NOW + ",\"exp\":" + (NOW + 60) + "}";
+        assertThat(codec.verify(token("{\"kid\":\"retired\",\"alg\":\"HS512\"}", payload, key(3)), NOW * 1000)).isNull();
+        assertThat(codec.verify(token("{\"kid\":\"unknown\",\"alg\":\"HS512\"}", payload, currentKey), NOW * 1000)).isNull();
+        // A known kid does not verify a token signed with another key
+        assertThat(codec.verify(token("{\"kid\":\"current\",\"alg\":\"HS512\"}", payload, legacyKey), NOW * 1000)).isNull();
+    }
+
+    @Test
+    void rejectsExpiredTokens() {
+        String token = codec.encode(null, legacyKey, "alice", NOW - 60, NOW, 0);
+        assertThat(codec.verify(token, NOW * 1000)).as("at exp").isNotNull();
+        assertThat(codec.verify(token, NOW * 1000 + 1)).as("after exp").isNull();
+    }
+
+    @Test
+    void acceptsOnlyJacksonNumbers() {
+        String[][] numbers = {
+                // iat, exp, rb, accepted
+                {"1", "99999999999", null, "true"},
+                {"999999999999999999", "99999999999", null, "true"},
+                {"1000000000000000000", "99999999999", null, "false"},
+                {"01", "99999999999", null, "false"},
+                {"", "99999999999", null, "false"},
+                {"-1", "99999999999", null, "false"},
+                {"1.0", "99999999999", null, "false"},
+                {"1", "099999999999", null, "false"},
+                {"1", "99999999999", "999999999999999999", "true"},
+                {"1", "99999999999", "1000000000000000000", "false"},
+                {"1", "99999999999", "01", "false"},
+                {"1", "99999999999", "", "false"},
+        };
+        for (String[] number : numbers) {
+            String payload = "{\"sub\":\"alice\",\"iat\":" + number[0] + ",\"exp\":" + number[1]
+                    + (number[2] != null ? ",\"rb\":" + number[2] : "") + "}";
+            TokenClaims claims = codec.verify(token("{\"alg\":\"HS512\"}", payload, legacyKey), NOW * 1000);
+            assertThat(claims != null).as(payload).isEqualTo(Boolean.parseBoolean(number[3]));
+        }
+    }
+
+    @Test
+    void rejectsOtherPayloadShapes() {
+        for (String payload : new String[]{
+                "{\"sub\":\"alice\",\"exp\":" + (NOW + 60) + ",\"iat\":" + NOW + "}",
+                "{\"sub\":\"alice\",\"iat\":" + NOW + ",\"exp\":" + (NOW + 60) + ",\"admin\":true}",
+                "{\"sub\":\"alice\",\"iat\":" + NOW + ",\"exp\":" + (NOW + 60) + "} ",
+                "{\"sub\":\"al\\\"ice\",\"iat\":" + NOW + ",\"exp\":" + (NOW + 60) + "}",
+                "{\"sub\":\"alice\",\"iat\":" + NOW + "}"}) {
+            assertThat(codec.verify(token("{\"alg\":\"HS512\"}", payload, legacyKey), NOW * 1000)).as(payload).isNull();
+        }
+    }
+
+    @Test
+    void leavesSubjectsThatNeedEscapingToJjwt() {
+        assertThat(codec.encode(null, legacyKey, "al\"ice", NOW, NOW + 60, 0)).isNull();
+        assertThat(codec.encode(null, legacyKey, "josé", NOW, NOW + 60, 0)).isNull();
+        assertThat(codec.encode("k\\1", legacyKey, "alice", NOW, NOW + 60, 0)).isNull();
+    }
+
+    @Test
+    void randomTokensMatchJjwtBothWays() {
+        Random random = new Random(42);
+        for (int i = 0; i < 500; i++) {
+            String kid = random.nextBoolean() ? null : "current";
+            SecretKey key = kid == null ? legacyKey : currentKey;
+            String subject = randomSubject(random);
+            long issuedAt = NOW - random.nextInt(1_000_000);
+            long expiresAt = NOW + 1 + random.nextInt(1_000_000_000);
+            long roleBits = switch (random.nextInt(4)) {
+                case 0 -> 0;
+                case 1 -> RoleCatalog.USER;
+                case 2 -> RoleCatalog.USER | RoleCatalog.ADMIN;
+                default -> random.nextLong() & ((1L << 59) - 1);
+            };
+            long expectedBits = roleBits != 0 ? roleBits : TokenClaims.NO_ROLE_BITS;
+            String description = kid + " " + subject + " " + issuedAt + " " + expiresAt + " " + roleBits;
+
+            String jjwtToken = jjwt(kid, key, subject, issuedAt, expiresAt, roleBits);
+            String codecToken = codec.encode(kid, key, subject, issuedAt, expiresAt, roleBits);
+            assertThat(codecToken).as(description).isEqualTo(jjwtToken);
+            assertThat(codec.verify(jjwtToken, NOW * 1000)).as(description)
+                    .isEqualTo(new TokenClaims(subject, expectedBits));
+
+            Jws<Claims> parsed = Jwts.parserBuilder().setSigningKey(key).build().parseClaimsJws(codecToken);
+            assertThat(parsed.getHeader().getKeyId()).as(description).isEqualTo(kid);
+            assertThat(parsed.getBody().getSubject()).as(description).isEqualTo(subject);
+            assertThat(parsed.getBody().getIssuedAt().getTime()).as(description).isEqualTo(issuedAt * 1000);
+            assertThat(parsed.getBody().getExpiration().getTime()).as(description).isEqualTo(expiresAt * 1000);
+            Number parsedBits = parsed.getBody().get(Hs512TokenCodec.ROLE_BITS_CLAIM, Number.class);
+            assertThat(parsedBits != null ? parsedBits.longValue() : 0).as(description).isEqualTo(roleBits);
+        }
+    }
+
+    private static String jjwt(String kid, SecretKey key, String subject, long issuedAt, long expiresAt, long roleBits) {
+        JwtBuilder builder = Jwts.builder();
+        if (kid != null) {
+            builder.setHeaderParam(JwsHeader.KEY_ID, kid);
+        }
+        builder.setSubject(subject)
+                .setIssuedAt(new Date(issuedAt * 1000))
+                .setExpiration(new Date(expiresAt * 1000));
+        if (roleBits != 0) {
+            builder.claim(Hs512TokenCodec.ROLE_BITS_CLAIM, roleBits);
+        }
+        return builder.signWith(key, SignatureAlgorithm.HS512).compact();
+    }
+
+    // Printable ASCII that needs no JSON escaping, 1 to 40 characters
+    private static String randomSubject(Random random) {
+        StringBuilder subject = new StringBuilder();
+        int length = 1 + random.nextInt(40);
+        while (subject.length() < length) {
+            char c = (char) (0x20 + random.nextInt(0x7f - 0x20));
+            if (c != '"' && c != '\\') {
+                subject.append(c);
+            }
+        }
+        return subject.toString();
+    }
+
+    private static String token(String headerJson, String payloadJson, SecretKey key) {
+        String signingInput = base64Url(headerJson) + "." + base64Url(payloadJson);
+        return signingInput + "." + sign(signingInput, key);
+    }
+
+    private static String sign(String signingInput, SecretKey key) {
+        try {
+            Mac mac = Mac.getInstance("HmacSHA512");
+            mac.init(key);
+            return Base64.getUrlEncoder().withoutPadding()
+                    .encodeToString(mac.doFinal(signingInput.getBytes(StandardCharsets.US_ASCII)));
+        } catch (Exception ex) {
+            throw new IllegalStateException(ex);
+        }
+    }
+
+    private static String base64Url(String json) {
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(json.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static char other(char c) {
+        return c == 'A' ? 'B' : 'A';
+    }
+
+    private static SecretKey key(int seed) {
+        byte[] secret = new byte[64];
+        new Random(seed).nextBytes(secret);
+        return Keys.hmacShaKeyFor(secret);
+    }
+}
@@ -0,0 +1,53 @@
+package com.diyauth.security;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.Base64;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class JwtKeyringTest {
+
+    private static final String LEGACY_SECRET = Base64.getEncoder().encodeToString(new byte[64]);
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void fileCompletedWithinTheSameModificationTimeIsLoaded() throws IOException {
+        Path file = directory.resolve("keyring.json");
+        FileTime modified = FileTime.fromMillis(1_700_000_000_000L);
+        Files.writeString(file, "{\"keys\": [{\"kid\": \"k1\", \"sec", StandardCharsets.UTF_8);
+        Files.setLastModifiedTime(file, modified);
+
+        JwtKeyring keyring = new JwtKeyring(LEGACY_SECRET, file.toString());
+        assertThat(keyring.signingKey().kid()).as("half-written file, legacy key").isNull();
+
+        Files.writeString(file, "{\"keys\": [{\"kid\": \"k1\", \"secret\": \""
+                + Base64.getEncoder().encodeToString(new byte[64]) + "\"}]}", StandardCharsets.UTF_8);
+        Files.setLastModifiedTime(file, modified);
+        keyring.reloadIfChanged();
+        assertThat(keyring.signingKey().kid()).isEqualTo("k1");
+    }
+
+    @Test
+    void unchangedFileIsNotReparsed() throws IOException {
+        Path file = directory.resolve("keyring.json");
+        Files.writeString(file, "{\"keys\": [{\"kid\": \"k1\", \"secret\": \""
+                + Base64.getEncoder().encodeToString(new byte[64]) + "\"}]}", StandardCharsets.UTF_8);
+        FileTime modified = Files.getLastModifiedTime(file);
+        JwtKeyring keyring = new JwtKeyring(LEGACY_SECRET, file.toString());
+
+        // Same modification time: the (now broken) content is not looked at
+        Files.writeString(file, "{", StandardCharsets.UTF_8);
+        Files.setLastModifiedTime(file, modified);
+        keyring.reloadIfChanged();
+        assertThat(keyring.signingKey().kid()).isEqualTo("k1");
+    }
+}
@@ -0,0 +1,21 @@
+package com.diyauth.security;
+
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class UserPrincipalTest {
+
+    @Test
+    void tokenPrincipalNeverGrantsAdmin() {
+        UserPrincipal principal = UserPrincipal.fromToken("admin", RoleCatalog.USER | RoleCatalog.ADMIN);
+        assertThat(principal.getRoleBits()).isEqualTo(RoleCatalog.USER);
+        assertThat(principal.getAuthorities()).extracting(Object::toString).containsExactly("ROLE_USER");
+    }
+
+    @Test
+    void tokenPrincipalFallsBackToUser() {
+        assertThat(UserPrincipal.fromToken("legacy", TokenClaims.NO_ROLE_BITS).getRoleBits()).isEqualTo(RoleCatalog.USER);
+        assertThat(UserPrincipal.fromToken("admin-only", RoleCatalog.ADMIN).getRoleBits()).isEqualTo(RoleCatalog.USER);
+    }
+}
@@ -0,0 +1,75 @@
+package com.diyauth.store.embedded;
+
+import com.diyauth.model.User;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class MappedUserStoreTest {
+
+    private static final int HEADER_BYTES = 16;
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void recordsAfterATornLengthDoNotResurface() throws IOException {
+        MappedUserStore store = open();
+        store.save(new User("first", "first@example.com", "secret"));
+        store.save(new User("torn", "torn@example.com", "secret"));
+        store.save(new User("after-torn-with-a-longer-name", "after-torn-with-a-longer-name@example.com", "secret"));
+        store.destroy();
+
+        // The second record's length never reached the disk
+        try (FileChannel channel = FileChannel.open(directory.resolve(MappedUserStore.LOG_FILE),
+                StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            int second = HEADER_BYTES + UserRecordCodec.RECORD_HEADER_BYTES + readInt(channel, HEADER_BYTES);
+            channel.write(ByteBuffer.allocate(Integer.BYTES), second);
+        }
+
+        store = open();
+        assertThat(store.findByUsername("first")).isPresent();
+        assertThat(store.findByUsername("torn")).isEmpty();
+        assertThat(store.findByUsername("after-torn-with-a-longer-name")).isEmpty();
+        // Exactly as long as the torn record, so the next record header would be the old one
+        store.save(new User("tor2", "tor2@example.com", "secret"));
+        store.destroy();
+
+        store = open();
+        assertThat(store.count()).isEqualTo(2);
+        assertThat(store.findByUsername("tor2")).isPresent();
+        assertThat(store.findByUsername("after-torn-with-a-longer-name")).isEmpty();
+        store.destroy();
+    }
+
+    @Test
+    void reopensACleanLog() throws IOException {
+        MappedUserStore store = open();
+        store.save(new User("alice", "alice@example.com", "secret"));
+        store.destroy();
+
+        store = open();
+        assertThat(store.findByEmail("alice@example.com")).isPresent();
+        store.destroy();
+    }
+
+    private MappedUserStore open() throws IOException {
+        return new MappedUserStore(directory, 64 * 1024, false, 0.5, 16 << 20, new ObjectMapper(), new SimpleMeterRegistry());
+    }
+
+    private static int readInt(FileChannel channel, long position) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(Integer.BYTES).order(ByteOrder.BIG_ENDIAN);
+        channel.read(buffer, position);
+        return buffer.getInt(0);
+    }
+}
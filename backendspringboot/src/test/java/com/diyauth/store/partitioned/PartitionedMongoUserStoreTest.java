@@ -0,0 +1,232 @@
+package com.diyauth.store.partitioned;
+
+import com.diyauth.config.mongo.MongoClientConfig;
+import com.diyauth.model.User;
+import com.diyauth.testsupport.InMemoryMongo;
+import com.mongodb.client.MongoClient;
+import com.mongodb.client.MongoClients;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.bson.Document;
+import org.bson.types.ObjectId;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.convert.MappingMongoConverter;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.function.IntFunction;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class PartitionedMongoUserStoreTest {
+
+    private static final int RACERS = 8;
+
+    private final List<UserPartitions> opened = new ArrayList<>();
+    private MongoClient client;
+    private MappingMongoConverter converter;
+    private MongoClientConfig mongoClientConfig;
+    private List<String> uris;
+
+    @BeforeEach
+    void setUp() {
+        client = MongoClients.create(InMemoryMongo.shared().uri("partitions"));
+        converter = (MappingMongoConverter) new MongoTemplate(client, "partitions").getConverter();
+        mongoClientConfig = new MongoClientConfig();
+        ReflectionTestUtils.setField(mongoClientConfig, "poolMaxSize", 100);
+        ReflectionTestUtils.setField(mongoClientConfig, "poolMaxWaitTimeMs", 120000L);
+        long run = System.nanoTime();
+        uris = IntStream.range(0, 3).mapToObj(i -> InMemoryMongo.shared().uri("p" + i + "-" + run)).toList();
+    }
+
+    @AfterEach
+    void tearDown() {
+        for (UserPartitions partitions : opened) {
+            partitions.destroy();
+        }
+        for (String uri : uris) {
+            client.getDatabase(uri.substring(uri.lastIndexOf('/') + 1)).drop();
+        }
+        client.close();
+    }
+
+    @Test
+    void concurrentSignupsForOneEmailLetExactlyOneThrough() throws Exception {
+        PartitionedMongoUserStore store = store(partitions(2, 0));
+        List<Boolean> saved = race(store, i -> new User("racer" + i, "race@example.com", "secret"));
+
+        assertThat(saved.stream().filter(Boolean::booleanValue)).hasSize(1);
+        User winner = store.findByEmail("race@example.com").orElseThrow();
+        assertThat(saved.get(Integer.parseInt(winner.getUsername().substring("racer".length())))).isTrue();
+        assertThat(IntStream.range(0, RACERS).filter(i -> store.existsByUsername("racer" + i))).hasSize(1);
+    }
+
+    @Test
+    void concurrentSignupsForOneUsernameLetExactlyOneThrough() throws Exception {
+        PartitionedMongoUserStore store = store(partitions(2, 0));
+        List<Boolean> saved = race(store, i -> new User("racer", "racer" + i + "@example.com", "secret"));
+
+        assertThat(saved.stream().filter(Boolean::booleanValue)).hasSize(1);
+        User winner = store.findByUsername("racer").orElseThrow();
+        // The losers released their claims
+        for (int i = 0; i < RACERS; i++) {
+            String email = "racer" + i + "@example.com";
+            assertThat(store.existsByEmail(email)).as(email).isEqualTo(email.equals(winner.getEmail()));
+        }
+    }
+
+    @Test
+    void rebalancingFromTwoToThreePartitionsKeepsEveryUserReachable() throws Exception {
+        PartitionedMongoUserStore before = store(partitions(2, 0));
+        List<String> usernames = IntStream.range(0, 60).mapToObj(i -> "user" + i).toList();
+        for (String username : usernames) {
+            before.save(new User(username, username + "@example.com", "secret"));
+        }
+
+        UserPartitions moving = partitions(3, 2);
+        PartitionedMongoUserStore during = store(moving);
+        assertAllReachable(during, usernames);
+        UserPartitionRebalancer rebalancer = new UserPartitionRebalancer(moving);
+        try {
+            assertThat(rebalancer.start()).isTrue();
+            awaitDone(rebalancer);
+        } finally {
+            rebalancer.destroy();
+        }
+        assertThat(rebalancer.getState()).isEqualTo(UserPartitionRebalancer.State.COMPLETED);
+        assertThat(rebalancer.getMovedUsers()).isPositive();
+        assertThat(rebalancer.getMovedEmails()).isPositive();
+        assertThat(rebalancer.getCreatedClaims()).isZero();
+        assertThat(rebalancer.getConflicts()).isZero();
+
+        UserPartitions after = partitions(3, 0);
+        for (String username : usernames) {
+            assertThat(count(after.home(username), PartitionedMongoUserStore.USERS, "username", username))
+                    .as(username).isEqualTo(1);
+            String email = username + "@example.com";
+            assertThat(count(after.home(email), PartitionedMongoUserStore.USER_EMAILS, "_id", email))
+                    .as(email).isEqualTo(1);
+        }
+        assertThat(store(after).count()).isEqualTo(usernames.size());
+        assertAllReachable(store(after), usernames);
+    }
+
+    @Test
+    void rebalancingClaimsTheEmailsOfUsersStoredBeforePartitioning() throws Exception {
+        UserPartitions partitions = partitions(2, 0);
+        PartitionedMongoUserStore store = store(partitions);
+        // As MongoUserStore left them: users with ObjectId ids, and no userEmails
+        List<String> usernames = IntStream.range(0, 20).mapToObj(i -> "legacy" + i).toList();
+        for (String username : usernames) {
+            partitions.home(username).template().getCollection(PartitionedMongoUserStore.USERS)
+                    .insertOne(new Document("_id", new ObjectId()).append("username", username)
+                            .append("email", username + "@example.com").append("password", "secret"));
+        }
+        assertThat(store.findByEmail("legacy0@example.com")).isEmpty();
+        assertThat(store.existsByEmail("legacy0@example.com")).isFalse();
+
+        UserPartitionRebalancer rebalancer = new UserPartitionRebalancer(partitions);
+        try {
+            assertThat(rebalancer.start()).isTrue();
+            awaitDone(rebalancer);
+            assertThat(rebalancer.getState()).isEqualTo(UserPartitionRebalancer.State.COMPLETED);
+            assertThat(rebalancer.getCreatedClaims()).isEqualTo(usernames.size());
+
+            // A second run finds nothing to do; the first releases the run just after completing
+            long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+            while (!rebalancer.start() && System.nanoTime() < deadline) {
+                TimeUnit.MILLISECONDS.sleep(10);
+            }
+            awaitDone(rebalancer);
+            assertThat(rebalancer.getState()).isEqualTo(UserPartitionRebalancer.State.COMPLETED);
+            assertThat(rebalancer.getCreatedClaims()).isZero();
+            assertThat(rebalancer.getConflicts()).isZero();
+        } finally {
+            rebalancer.destroy();
+        }
+
+        assertAllReachable(store, usernames);
+        for (String username : usernames) {
+            assertThat(store.existsByEmail(username + "@example.com")).as(username).isTrue();
+        }
+        User taken = new User("newcomer", "legacy0@example.com", "secret");
+        assertThatThrownBy(() -> store.save(taken))
+                .isInstanceOf(DuplicateKeyException.class);
+    }
+
+    // Saves the users from RACERS threads at once; true for the saves that succeeded
+    private static List<Boolean> race(PartitionedMongoUserStore store, IntFunction<User> user) throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(RACERS);
+        try {
+            CountDownLatch start = new CountDownLatch(1);
+            List<Future<Boolean>> results = new ArrayList<>();
+            for (int i = 0; i < RACERS; i++) {
+                User candidate = user.apply(i);
+                Callable<Boolean> signup = () -> {
+                    start.await();
+                    try {
+                        store.save(candidate);
+                        return true;
+                    } catch (DuplicateKeyException ex) {
+                        return false;
+                    }
+                };
+                results.add(executor.submit(signup));
+            }
+            start.countDown();
+            List<Boolean> saved = new ArrayList<>();
+            for (Future<Boolean> result : results) {
+                saved.add(result.get(30, TimeUnit.SECONDS));
+            }
+            return saved;
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    private static void assertAllReachable(PartitionedMongoUserStore store, List<String> usernames) {
+        for (String username : usernames) {
+            User byUsername = store.findByUsername(username).orElse(null);
+            assertThat(byUsername).as(username).isNotNull();
+            assertThat(store.findByEmail(username + "@example.com")).as(username + "@example.com")
+                    .hasValueSatisfying(user -> assertThat(user.getId()).isEqualTo(byUsername.getId()));
+        }
+    }
+
+    private static long count(UserPartitions.Partition partition, String collection, String field, String value) {
+        return partition.template().getCollection(collection).countDocuments(new Document(field, value));
+    }
+
+    private static void awaitDone(UserPartitionRebalancer rebalancer) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(30);
+        while (rebalancer.getState() == UserPartitionRebalancer.State.RUNNING && System.nanoTime() < deadline) {
+            TimeUnit.MILLISECONDS.sleep(20);
+        }
+    }
+
+    private UserPartitions partitions(int count, int previousCount) {
+        UserPartitions partitions = new UserPartitions(uris.stream().limit(count).collect(Collectors.joining(" ")),
+                previousCount, mongoClientConfig, converter, new SimpleMeterRegistry());
+        opened.add(partitions);
+        return partitions;
+    }
+
+    private static PartitionedMongoUserStore store(UserPartitions partitions) {
+        PartitionedMongoUserStore store = new PartitionedMongoUserStore(partitions, new SimpleMeterRegistry(), 60000, 3000, false);
+        store.run(null);
+        return store;
+    }
+}
@@ -0,0 +1,45 @@
+package com.diyauth.testsupport;
+
+import de.bwaldvogel.mongo.MongoServer;
+import de.bwaldvogel.mongo.backend.memory.MemoryBackend;
+
+import java.net.InetSocketAddress;
+
+/**
+ * An in-process MongoDB wire protocol server (mongo-java-server, memory backend) on an
+ * ephemeral port. Standalone only: no change streams, sessions or secondaries, so the code
+ * paths that need those fall back as they do against a standalone mongod.
+ */
+public final class InMemoryMongo implements AutoCloseable {
+
+    private static InMemoryMongo shared;
+
+    private final MongoServer server;
+    private final InetSocketAddress address;
+
+    public InMemoryMongo() {
+        this.server = new MongoServer(new MemoryBackend());
+        server.bind("127.0.0.1", 0);
+        this.address = server.getLocalAddress();
+    }
+
+    /**
+     * One server for all Spring contexts of the test run, so that they can be cached.
+     */
+    public static synchronized InMemoryMongo shared() {
+        if (shared == null) {
+            shared = new InMemoryMongo();
+            Runtime.getRuntime().addShutdownHook(new Thread(shared::close));
+        }
+        return shared;
+    }
+
+    public String uri(String database) {
+        return "mongodb://" + address.getHostString() + ":" + address.getPort() + "/" + database;
+    }
+
+    @Override
+    public void close() {
+        server.shutdownNow();
+    }
+}
@@ -0,0 +1,46 @@
+package com.diyauth.testsupport;
+
+import com.mongodb.event.CommandListener;
+import com.mongodb.event.CommandStartedEvent;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Counts the Mongo commands the current thread issues while {@link #count} runs an action.
+ * The sync driver notifies listeners on the calling thread, and MockMvc runs the whole
+ * filter chain and controller on the test thread, so the count is exactly the round trips
+ * of the request: the write-behind login history and the driver's monitoring run on their
+ * own threads and are not counted.
+ */
+public class MongoCommandBudget implements CommandListener {
+
+    private final ThreadLocal<List<String>> commands = new ThreadLocal<>();
+
+    @Override
+    public void commandStarted(CommandStartedEvent event) {
+        List<String> current = commands.get();
+        if (current != null) {
+            current.add(event.getCommandName() + " " + event.getCommand().get(event.getCommandName()));
+        }
+    }
+
+    /**
+     * Runs {@code action} and returns the commands it issued (name and collection).
+     */
+    public List<String> count(ThrowingRunnable action) throws Exception {
+        List<String> issued = new ArrayList<>();
+        commands.set(issued);
+        try {
+            action.run();
+        } finally {
+            commands.remove();
+        }
+        return issued;
+    }
+
+    @FunctionalInterface
+    public interface ThrowingRunnable {
+        void run() throws Exception;
+    }
+}
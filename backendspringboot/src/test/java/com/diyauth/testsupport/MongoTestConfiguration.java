@@ -0,0 +1,31 @@
+package com.diyauth.testsupport;
+
+import org.springframework.boot.autoconfigure.mongo.MongoClientSettingsBuilderCustomizer;
+import org.springframework.boot.test.context.TestConfiguration;
+import org.springframework.context.annotation.Bean;
+import org.springframework.test.context.DynamicPropertyRegistry;
+
+/**
+ * Registers {@link MongoCommandBudget} on the application's MongoClient.
+ */
+@TestConfiguration(proxyBeanMethods = false)
+public class MongoTestConfiguration {
+
+    @Bean
+    public MongoCommandBudget mongoCommandBudget() {
+        return new MongoCommandBudget();
+    }
+
+    @Bean
+    public MongoClientSettingsBuilderCustomizer mongoCommandBudgetCustomizer(MongoCommandBudget mongoCommandBudget) {
+        return settings -> settings.addCommandListener(mongoCommandBudget);
+    }
+
+    /**
+     * For a {@code @DynamicPropertySource} method: points the application at the shared
+     * in-memory server.
+     */
+    public static void mongoProperties(DynamicPropertyRegistry registry) {
+        registry.add("spring.data.mongodb.uri", () -> InMemoryMongo.shared().uri("diyauth-test"));
+    }
+}
@@ -49,9 +49,9 @@ build_and_import_backend() {
     
     pushd "${context}" > /dev/null || { echo -e "${RED}Failed to change to directory: ${context}${NC}"; return 1; }
     
-    # Build the JAR file using Maven directly on the host
+    # Build the JAR file using Maven directly on the host (AOT-processed for Dockerfile.runtime)
     echo -e "${GREEN}Building JAR file with Maven...${NC}"
-    if ! mvn clean package -DskipTests; then
+    if ! mvn -Pfast-startup clean package -DskipTests; then
         echo -e "${RED}Failed to build JAR with Maven${NC}"
         popd > /dev/null || true
         return 1
@@ -186,6 +186,10 @@ main() {
     else
         echo -e "${YELLOW}Auth ingress file not found at ${K3S_DIR}/ingresses/auth-ingress.yaml${NC}"
     fi
+    if [ -f "${K3S_DIR}/ingresses/forward-auth-middleware.yaml" ]; then
+        echo -e "${GREEN}Applying forward-auth middleware...${NC}"
+        kubectl apply -f "${K3S_DIR}/ingresses/forward-auth-middleware.yaml"
+    fi
     
     # 7. Restart backend deployment
     echo -e "\n${GREEN}=== Restarting Backend Deployment ===${NC}"
@@ -0,0 +1,59 @@
+#!/bin/bash
+# Measures time from process start to the first successful /api/auth/signin.
+#
+# Usage: measure_startup.sh <command to start the backend...>
+#   e.g. measure_startup.sh java -jar backendspringboot/target/diy-auth-1.0.0.jar
+#        measure_startup.sh docker run --rm --network host --env-file .env diy-auth-backend:latest
+#
+# The signin user must already exist (SIGNIN_USERNAME / SIGNIN_PASSWORD). Set PROBE_URL to
+# poll a plain GET endpoint instead when no database is available.
+set -uo pipefail
+
+# Colors for output
+GREEN='\033[0;32m'
+RED='\033[0;31m'
+NC='\033[0m' # No Color
+
+BASE_URL=${BASE_URL:-http://localhost:8080}
+SIGNIN_USERNAME=${SIGNIN_USERNAME:-startup-probe}
+SIGNIN_PASSWORD=${SIGNIN_PASSWORD:-startup-probe}
+PROBE_URL=${PROBE_URL:-}
+TIMEOUT_SECONDS=${TIMEOUT_SECONDS:-180}
+
+if [ $# -eq 0 ]; then
+    echo -e "${RED}Usage: $0 <command to start the backend...>${NC}"
+    exit 1
+fi
+
+probe() {
+    if [ -n "${PROBE_URL}" ]; then
+        curl -sf -o /dev/null "${PROBE_URL}"
+    else
+        curl -sf -o /dev/null -H 'Content-Type: application/json' \
+            -d "{\"username\":\"${SIGNIN_USERNAME}\",\"password\":\"${SIGNIN_PASSWORD}\"}" \
+            "${BASE_URL}/api/auth/signin"
+    fi
+}
+
+start=$(date +%s%N)
+"$@" > /dev/null 2>&1 &
+pid=$!
+
+until probe; do
+    if ! kill -0 "${pid}" 2> /dev/null; then
+        echo -e "${RED}Backend exited before the first successful request${NC}"
+        exit 1
+    fi
+    if [ $(( ($(date +%s%N) - start) / 1000000000 )) -ge "${TIMEOUT_SECONDS}" ]; then
+        echo -e "${RED}No successful request within ${TIMEOUT_SECONDS}s${NC}"
+        kill "${pid}" 2> /dev/null
+        exit 1
+    fi
+    sleep 0.05
+done
+end=$(date +%s%N)
+
+echo -e "${GREEN}Time to first successful request: $(( (end - start) / 1000000 )) ms${NC}"
+kill "${pid}" 2> /dev/null
+wait "${pid}" 2> /dev/null
+exit 0
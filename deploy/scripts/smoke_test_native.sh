@@ -0,0 +1,80 @@
+#!/bin/bash
+# Smoke test for the native executable: startup time, signup -> signin -> me, idle RSS.
+#
+# Usage: smoke_test_native.sh [path to binary]   (default: backendspringboot/target/diy-auth)
+# Needs MONGODB_URI and JWT_SECRET; the other settings get local defaults.
+set -uo pipefail
+
+# Colors for output
+GREEN='\033[0;32m'
+YELLOW='\033[1;33m'
+RED='\033[0;31m'
+NC='\033[0m' # No Color
+
+BINARY=${1:-backendspringboot/target/diy-auth}
+PORT=${PORT:-8080}
+BASE_URL="http://localhost:${PORT}"
+STARTUP_BUDGET_MS=${STARTUP_BUDGET_MS:-1000}
+RSS_BUDGET_MB=${RSS_BUDGET_MB:-128}
+
+export SERVER_PORT="${PORT}"
+export MONGODB_URI=${MONGODB_URI:?MONGODB_URI must be set}
+export JWT_SECRET=${JWT_SECRET:?JWT_SECRET must be set}
+export JWT_EXPIRATION_MS=${JWT_EXPIRATION_MS:-86400000}
+export GOOGLE_CLIENT_ID=${GOOGLE_CLIENT_ID:-smoke-test}
+export GOOGLE_CLIENT_SECRET=${GOOGLE_CLIENT_SECRET:-smoke-test}
+export APP_URL=${APP_URL:-${BASE_URL}}
+export FRONTEND_URL=${FRONTEND_URL:-http://localhost:3000}
+export BACKEND_URL=${BACKEND_URL:-${BASE_URL}}
+
+fail() {
+    echo -e "${RED}FAIL: $1${NC}"
+    [ -n "${pid:-}" ] && kill "${pid}" 2> /dev/null
+    exit 1
+}
+
+if [ ! -x "${BINARY}" ]; then
+    fail "native executable not found at ${BINARY} (mvn -Pnative native:compile)"
+fi
+
+# 1. Startup time: process start to the first HTTP response
+start=$(date +%s%N)
+"${BINARY}" > /tmp/diy-auth-native.log 2>&1 &
+pid=$!
+until curl -sf -o /dev/null "${BASE_URL}/"; do
+    kill -0 "${pid}" 2> /dev/null || fail "binary exited during startup, see /tmp/diy-auth-native.log"
+    [ $(( ($(date +%s%N) - start) / 1000000 )) -gt 30000 ] && fail "no response within 30s"
+    sleep 0.01
+done
+startup_ms=$(( ($(date +%s%N) - start) / 1000000 ))
+echo -e "${GREEN}Startup: ${startup_ms} ms${NC}"
+
+# 2. Full signup / signin / me flow
+user="smoke$(date +%s%N | tail -c 10)"
+password="smoke-password"
+
+curl -sf -H 'Content-Type: application/json' \
+    -d "{\"username\":\"${user}\",\"email\":\"${user}@example.com\",\"password\":\"${password}\"}" \
+    "${BASE_URL}/api/auth/signup" > /dev/null || fail "signup"
+
+token=$(curl -sf -H 'Content-Type: application/json' \
+    -d "{\"username\":\"${user}\",\"password\":\"${password}\"}" \
+    "${BASE_URL}/api/auth/signin" | jq -r '.accessToken') || fail "signin"
+[ -n "${token}" ] && [ "${token}" != "null" ] || fail "signin returned no token"
+
+me=$(curl -sf -H "Authorization: Bearer ${token}" "${BASE_URL}/api/auth/me" | jq -r '.username') || fail "me"
+[ "${me}" = "${user}" ] || fail "me returned '${me}', expected '${user}'"
+echo -e "${GREEN}signup -> signin -> me: OK${NC}"
+
+# 3. Idle resident set size
+sleep 2
+rss_kb=$(awk '/VmRSS/ {print $2}' "/proc/${pid}/status")
+rss_mb=$(( rss_kb / 1024 ))
+echo -e "${GREEN}Idle RSS: ${rss_mb} MiB${NC}"
+
+kill "${pid}" 2> /dev/null
+wait "${pid}" 2> /dev/null
+
+[ "${startup_ms}" -le "${STARTUP_BUDGET_MS}" ] || fail "startup ${startup_ms} ms exceeds ${STARTUP_BUDGET_MS} ms"
+[ "${rss_mb}" -le "${RSS_BUDGET_MB}" ] || fail "idle RSS ${rss_mb} MiB exceeds ${RSS_BUDGET_MB} MiB"
+echo -e "${GREEN}Native smoke test passed${NC}"
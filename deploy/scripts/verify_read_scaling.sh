@@ -0,0 +1,104 @@
+#!/bin/bash
+# Read scaling and read-your-writes against a local replica set (docker-compose.replicaset.yml).
+#
+# Usage: verify_read_scaling.sh [max members, 1-5 (default 3)]
+# For 1..max members: (re)creates the replica set, starts the backend jar against it, checks
+# that every signup can sign in immediately, runs a me-heavy load test and prints the
+# achieved throughput and the queries each member served.
+set -uo pipefail
+
+# Colors for output
+GREEN='\033[0;32m'
+YELLOW='\033[1;33m'
+RED='\033[0;31m'
+NC='\033[0m' # No Color
+
+MAX_MEMBERS=${1:-3}
+ROOT=$(cd "$(dirname "$0")/../.." && pwd)
+COMPOSE="docker compose -f ${ROOT}/backendspringboot/docker-compose.replicaset.yml"
+JAR=${JAR:-${ROOT}/backendspringboot/target/diy-auth-1.0.0.jar}
+PORT=${PORT:-18080}
+BASE_URL="http://localhost:${PORT}"
+RATE=${RATE:-2000}
+DURATION_SECONDS=${DURATION_SECONDS:-30}
+RYW_USERS=${RYW_USERS:-50}
+
+export JWT_SECRET=${JWT_SECRET:-$(head -c 64 /dev/urandom | base64 -w0)}
+export GOOGLE_CLIENT_ID=${GOOGLE_CLIENT_ID:-read-scaling}
+export GOOGLE_CLIENT_SECRET=${GOOGLE_CLIENT_SECRET:-read-scaling}
+export APP_URL=${APP_URL:-${BASE_URL}}
+export FRONTEND_URL=${FRONTEND_URL:-http://localhost:3000}
+export BACKEND_URL=${BACKEND_URL:-${BASE_URL}}
+
+fail() {
+    echo -e "${RED}FAIL: $1${NC}"
+    [ -n "${pid:-}" ] && kill "${pid}" 2> /dev/null
+    exit 1
+}
+
+mongo_eval() {
+    docker exec "rs-mongo$1" mongosh --port $((27016 + $1)) --quiet --eval "$2"
+}
+
+[ -f "${JAR}" ] || fail "backend jar not found at ${JAR} (mvn package)"
+
+for members in $(seq 1 "${MAX_MEMBERS}"); do
+    echo -e "${YELLOW}=== ${members} member(s) ===${NC}"
+    ${COMPOSE} down -v > /dev/null 2>&1
+    services=$(seq -f "mongo%g" 1 "${members}" | tr '\n' ' ')
+    ${COMPOSE} up -d ${services} > /dev/null || fail "docker compose up"
+    until mongo_eval 1 'db.runCommand({ping: 1}).ok' > /dev/null 2>&1; do sleep 1; done
+
+    config="{_id: 'rs0', members: ["
+    hosts=""
+    for i in $(seq 1 "${members}"); do
+        config+="{_id: ${i}, host: 'localhost:$((27016 + i))', priority: $([ "${i}" = 1 ] && echo 2 || echo 1)},"
+        hosts+="localhost:$((27016 + i)),"
+    done
+    config+="]}"
+    mongo_eval 1 "rs.initiate(${config})" > /dev/null || fail "rs.initiate"
+    until [ "$(mongo_eval 1 'db.hello().isWritablePrimary')" = "true" ]; do sleep 1; done
+    until [ "$(mongo_eval 1 "rs.status().members.filter(m => m.state === 1 || m.state === 2).length")" = "${members}" ]; do
+        sleep 1
+    done
+
+    export MONGODB_URI="mongodb://${hosts%,}/diyauth?replicaSet=rs0"
+    SERVER_PORT=${PORT} java -jar "${JAR}" > "/tmp/read-scaling-${members}.log" 2>&1 &
+    pid=$!
+    until curl -sf -o /dev/null "${BASE_URL}/actuator/health/readiness"; do
+        kill -0 "${pid}" 2> /dev/null || fail "backend exited, see /tmp/read-scaling-${members}.log"
+        sleep 1
+    done
+
+    # Read-your-writes: sign in straight after signing up
+    for i in $(seq 1 "${RYW_USERS}"); do
+        user="ryw${members}x${i}"
+        curl -sf -o /dev/null -H 'Content-Type: application/json' \
+            -d "{\"username\":\"${user}\",\"email\":\"${user}@example.com\",\"password\":\"ryw-password\"}" \
+            "${BASE_URL}/api/auth/signup" || fail "signup ${user}"
+        curl -sf -o /dev/null -H 'Content-Type: application/json' \
+            -d "{\"username\":\"${user}\",\"password\":\"ryw-password\"}" \
+            "${BASE_URL}/api/auth/signin" || fail "signin right after signup failed for ${user}"
+    done
+    echo -e "${GREEN}read-your-writes: ${RYW_USERS}/${RYW_USERS} immediate signins OK${NC}"
+
+    declare -A before
+    for i in $(seq 1 "${members}"); do before[$i]=$(mongo_eval "${i}" 'db.serverStatus().opcounters.query'); done
+
+    (cd "${ROOT}/backendspringboot/loadtest" && mvn -q compile exec:java -Dexec.args="--base-url=${BASE_URL} \
+        --rate=${RATE} --duration-seconds=${DURATION_SECONDS} --mix=signin=1,me=19 \
+        --min-throughput-ratio=0 --max-p99-ms=100000") | tail -n 12
+
+    for i in $(seq 1 "${members}"); do
+        after=$(mongo_eval "${i}" 'db.serverStatus().opcounters.query')
+        role=$(mongo_eval "${i}" 'db.hello().isWritablePrimary ? "primary" : "secondary"')
+        echo "  localhost:$((27016 + i)) (${role}): $((after - before[$i])) queries"
+    done
+
+    kill "${pid}" 2> /dev/null
+    wait "${pid}" 2> /dev/null
+    pid=
+done
+
+${COMPOSE} down -v > /dev/null 2>&1
+echo -e "${GREEN}Read scaling run complete${NC}"